@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTAggregateScanner;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTFilterScanner;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.benchmark.SortedGTRecordGenerator;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Lists;
+
+/**
+ * GTFilterScanner and GTAggregateScanner over a GTSimpleMemStore of sorted synthetic records,
+ * 5 dimensions of type int4 and 2 measures of type long8, the same table as GTScannerBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GridTableScanBenchmark {
+
+    @Param({ "1000000" })
+    public int rows;
+
+    private GTInfo info;
+    private GTSimpleMemStore store;
+
+    private final ImmutableBitSet dimensions = ImmutableBitSet.valueOf(0, 1, 2, 3, 4);
+    private final ImmutableBitSet metrics = ImmutableBitSet.valueOf(5, 6);
+    private final String[] aggrFuncs = new String[] { "SUM", "SUM" };
+
+    private GTScanRequest filterReq;
+    private GTScanRequest aggrLowCardReq;
+    private GTScanRequest aggrHighCardReq;
+    private GTScanRequest filterAggrReq;
+
+    @Setup
+    public void setup() throws IOException {
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        builder.setColumns(tint, tint, tint, tint, tint, tlong, tlong);
+        builder.setPrimaryKey(dimensions);
+        info = builder.build();
+
+        SortedGTRecordGenerator gen = new SortedGTRecordGenerator(info);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(100, 4, null);
+        gen.addMeasure(8);
+        gen.addMeasure(8);
+
+        store = new GTSimpleMemStore(info);
+        GTBuilder writer = new GridTable(info, store).rebuild();
+        for (GTRecord r : gen.generate(rows)) {
+            writer.write(r);
+        }
+        writer.close();
+
+        TupleFilter filter = and(gt(col(0), 2), eq(col(4), 1, 3, 5, 9, 12, 14, 23, 43, 52, 78, 92), or(eq(col(1), 2, 4), eq(col(2), 2, 4, 5, 9)));
+        filterReq = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(info.getAllColumns()).setFilterPushDown(filter).createGTScanRequest();
+        aggrLowCardReq = aggrRequest(ImmutableBitSet.valueOf(0, 1), null);
+        aggrHighCardReq = aggrRequest(dimensions, null);
+        filterAggrReq = aggrRequest(ImmutableBitSet.valueOf(0, 1), filter);
+    }
+
+    private GTScanRequest aggrRequest(ImmutableBitSet groupBy, TupleFilter filter) {
+        return new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(dimensions).setAggrGroupBy(groupBy).setAggrMetrics(metrics).setAggrMetricsFuncs(aggrFuncs).setFilterPushDown(filter).createGTScanRequest();
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole bh) throws IOException {
+        consume(store.scan(filterReq), bh);
+    }
+
+    @Benchmark
+    public void filter(Blackhole bh) throws IOException {
+        consume(new GTFilterScanner(store.scan(filterReq), filterReq), bh);
+    }
+
+    @Benchmark
+    public void aggregateLowCardinality(Blackhole bh) throws IOException {
+        consume(new GTAggregateScanner(store.scan(aggrLowCardReq), aggrLowCardReq, Long.MAX_VALUE), bh);
+    }
+
+    @Benchmark
+    public void aggregateHighCardinality(Blackhole bh) throws IOException {
+        consume(new GTAggregateScanner(store.scan(aggrHighCardReq), aggrHighCardReq, Long.MAX_VALUE), bh);
+    }
+
+    @Benchmark
+    public void filterAndAggregate(Blackhole bh) throws IOException {
+        IGTScanner filtered = new GTFilterScanner(store.scan(filterAggrReq), filterAggrReq);
+        consume(new GTAggregateScanner(filtered, filterAggrReq, Long.MAX_VALUE), bh);
+    }
+
+    private void consume(IGTScanner scanner, Blackhole bh) throws IOException {
+        for (GTRecord r : scanner) {
+            bh.consume(r);
+        }
+        scanner.close();
+    }
+
+    private LogicalTupleFilter and(TupleFilter... filters) {
+        return logical(FilterOperatorEnum.AND, filters);
+    }
+
+    private LogicalTupleFilter or(TupleFilter... filters) {
+        return logical(FilterOperatorEnum.OR, filters);
+    }
+
+    private LogicalTupleFilter logical(FilterOperatorEnum op, TupleFilter[] filters) {
+        LogicalTupleFilter r = new LogicalTupleFilter(op);
+        for (TupleFilter f : filters)
+            r.addChild(f);
+        return r;
+    }
+
+    private CompareTupleFilter gt(ColumnTupleFilter col, int v) {
+        CompareTupleFilter r = new CompareTupleFilter(FilterOperatorEnum.GT);
+        r.addChild(col);
+        r.addChild(new ConstantTupleFilter(code(col, v)));
+        return r;
+    }
+
+    private CompareTupleFilter eq(ColumnTupleFilter col, int... values) {
+        CompareTupleFilter r = new CompareTupleFilter(FilterOperatorEnum.IN);
+        r.addChild(col);
+
+        List<ByteArray> list = Lists.newArrayList();
+        for (int v : values) {
+            list.add(code(col, v));
+        }
+        r.addChild(new ConstantTupleFilter(list));
+        return r;
+    }
+
+    private ByteArray code(ColumnTupleFilter col, int v) {
+        int c = col.getColumn().getColumnDesc().getZeroBasedIndex();
+        int len = info.getCodeSystem().maxCodeLength(c);
+        ByteArray bytes = new ByteArray(len);
+        BytesUtil.writeLong(v, bytes.array(), bytes.offset(), len);
+        return bytes;
+    }
+
+    private ColumnTupleFilter col(int i) {
+        return new ColumnTupleFilter(info.colRef(i));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.measure.hllc.HLLCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BufferedMeasureCodec encoding and decoding a typical measure row: sum/min/max of decimal, counts and a HLL counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MeasureCodecBenchmark {
+
+    private BufferedMeasureCodec codec;
+    private Object[] values;
+    private byte[] encoded;
+    private Object[] decoded;
+
+    @Setup
+    public void setup() {
+        codec = new BufferedMeasureCodec("decimal(19,4)", "decimal(19,4)", "decimal(19,4)", "bigint", "bigint", "double", "hllc(10)");
+
+        HLLCounter hllc = new HLLCounter(10);
+        for (int i = 0; i < 200; i++) {
+            hllc.add("user_" + i);
+        }
+        values = new Object[] { new BigDecimal("333.1234"), new BigDecimal("0.5000"), new BigDecimal("1999.9900"), 2L, 100L, 3.14159d, hllc };
+        decoded = new Object[values.length];
+
+        ByteBuffer buf = codec.encode(values);
+        encoded = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, encoded, 0, encoded.length);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        return codec.encode(values);
+    }
+
+    @Benchmark
+    public Object[] decode() {
+        codec.decode(ByteBuffer.wrap(encoded), decoded);
+        return decoded;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowKeyDecoder;
+import org.apache.kylin.cube.kv.RowKeyEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RowKeyEncoder and RowKeyDecoder on the base cuboid of the test cube, all dictionary encoded
+ * dimensions but one fixed length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RowKeyCodecBenchmark {
+
+    private RowKeyEncoder encoder;
+    private RowKeyDecoder decoder;
+    private String[] values;
+    private byte[] key;
+
+    @Setup
+    public void setup() {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+        CubeInstance cube = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("TEST_KYLIN_CUBE_WITHOUT_SLR_READY");
+        Cuboid baseCuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+
+        encoder = new RowKeyEncoder(cube.getFirstSegment(), baseCuboid);
+        decoder = new RowKeyDecoder(cube.getFirstSegment());
+        values = new String[] { "2012-12-15", "11848", "Health & Beauty", "Fragrances", "Women", "FP-GTC", "0", "15" };
+        key = encoder.encode(values);
+    }
+
+    @TearDown
+    public void tearDown() {
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(values);
+    }
+
+    @Benchmark
+    public List<String> decode() throws IOException {
+        decoder.decode(key);
+        return decoder.getValues();
+    }
+}
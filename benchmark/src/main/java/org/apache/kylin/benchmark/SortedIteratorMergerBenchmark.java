@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.storage.gtrecord.SortedIteratorMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Lists;
+
+/**
+ * SortedIteratorMerger merging sorted shard results, as done for multi-shard and multi-segment queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SortedIteratorMergerBenchmark {
+
+    @Param({ "1000000" })
+    public int rows;
+
+    @Param({ "4", "32" })
+    public int shards;
+
+    private List<List<Integer>> shardResults;
+
+    private final Comparator<Integer> comparator = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    @Setup
+    public void setup() {
+        // the merger expects distinct values, deal 0..rows-1 randomly to the shards
+        Random rand = new Random(0);
+        List<List<Integer>> shardValues = Lists.newArrayListWithCapacity(shards);
+        for (int s = 0; s < shards; s++) {
+            shardValues.add(Lists.<Integer> newArrayList());
+        }
+        for (int i = 0; i < rows; i++) {
+            shardValues.get(rand.nextInt(shards)).add(i);
+        }
+        shardResults = shardValues;
+    }
+
+    @Benchmark
+    public void merge(Blackhole bh) {
+        List<Iterator<Integer>> iterators = Lists.newArrayListWithCapacity(shards);
+        for (List<Integer> shard : shardResults) {
+            iterators.add(shard.iterator());
+        }
+
+        Iterator<Integer> merged = new SortedIteratorMerger<Integer>(iterators.iterator(), comparator).getIterator();
+        while (merged.hasNext()) {
+            bh.consume(merged.next());
+        }
+    }
+}
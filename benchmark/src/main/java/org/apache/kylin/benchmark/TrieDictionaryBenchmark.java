@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionary;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TrieDictionary lookups in both directions, probing values in random order, with and without the value cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrieDictionaryBenchmark {
+
+    private static final int PROBES = 4096;
+
+    @Param({ "1000", "100000" })
+    public int cardinality;
+
+    @Param({ "false", "true" })
+    public boolean cache;
+
+    private TrieDictionary<String> dict;
+    private String[] probeValues;
+    private int[] probeIds;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(0);
+        String[] values = new String[cardinality];
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = 0; i < cardinality; i++) {
+            // shared prefixes of varied length, like real categorical values
+            values[i] = "category_" + (i % 97) + "_" + Long.toString(rand.nextLong() & Long.MAX_VALUE, 36);
+            builder.addValue(values[i]);
+        }
+        dict = builder.build(0);
+        if (cache) {
+            dict.enableCache();
+        } else {
+            dict.disableCache();
+        }
+
+        probeValues = new String[PROBES];
+        probeIds = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probeValues[i] = values[rand.nextInt(cardinality)];
+            probeIds[i] = dict.getIdFromValue(probeValues[i]);
+        }
+    }
+
+    @Benchmark
+    public int getIdFromValue() {
+        return dict.getIdFromValue(probeValues[nextProbe()]);
+    }
+
+    @Benchmark
+    public String getValueFromId() {
+        return dict.getValueFromId(probeIds[nextProbe()]);
+    }
+
+    private int nextProbe() {
+        next = (next + 1) & (PROBES - 1);
+        return next;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.gridtable.CuboidToGridTableMapping;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.measure.MeasureType.IAdvMeasureFiller;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TableRef;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.Tuple;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.apache.kylin.storage.gtrecord.CubeTupleConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Sets;
+
+/**
+ * CubeTupleConverter.translateResult() of base cuboid records of the test cube, selecting 4 dimensions
+ * (3 dictionary encoded, 1 fixed length) and 3 measures (decimal sum, count and bigint sum).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TupleConverterBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private static final List<String> DIMENSIONS = Arrays.asList("META_CATEG_NAME", "CATEG_LVL2_NAME", "CATEG_LVL3_NAME", "LSTG_FORMAT_NAME");
+    private static final List<String> MEASURES = Arrays.asList("GMV_SUM", "TRANS_CNT", "ITEM_COUNT_SUM");
+
+    private CubeTupleConverter converter;
+    private GTRecord[] records;
+    private Tuple tuple;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+        CubeInstance cube = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("TEST_KYLIN_CUBE_WITHOUT_SLR_READY");
+        CubeSegment seg = cube.getFirstSegment();
+        Cuboid cuboid = Cuboid.findById(cube.getDescriptor(), Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        CuboidToGridTableMapping mapping = cuboid.getCuboidToGridTableMapping();
+
+        Set<TblColRef> dims = Sets.newLinkedHashSet();
+        for (String name : DIMENSIONS) {
+            for (TblColRef col : cuboid.getColumns()) {
+                if (col.getName().equals(name))
+                    dims.add(col);
+            }
+        }
+        Set<FunctionDesc> metrics = Sets.newLinkedHashSet();
+        for (MeasureDesc measure : cube.getMeasures()) {
+            if (MEASURES.contains(measure.getName()))
+                metrics.add(measure.getFunction());
+        }
+
+        TupleInfo tupleInfo = new TupleInfo();
+        int index = 0;
+        for (TblColRef col : dims) {
+            tupleInfo.setField(col.getName(), col, index++);
+        }
+        TableRef factTable = cube.getModel().getRootFactTable();
+        for (FunctionDesc func : metrics) {
+            TblColRef col = factTable.makeFakeColumn(func.newFakeRewriteColumn(factTable.getTableDesc()));
+            tupleInfo.setField(col.getName(), col, index++);
+        }
+        tuple = new Tuple(tupleInfo);
+        converter = new CubeTupleConverter(seg, cuboid, dims, metrics, tupleInfo);
+
+        // records carry values of the selected columns only, in the order of gt columns
+        GTInfo info = CubeGridTable.newGTInfo(seg, cuboid.getId());
+        int[] gtCols = new int[dims.size() + metrics.size()];
+        index = 0;
+        for (TblColRef col : dims) {
+            gtCols[index++] = mapping.getIndexOf(col);
+        }
+        for (FunctionDesc func : metrics) {
+            gtCols[index++] = mapping.getIndexOf(func);
+        }
+        ImmutableBitSet selected = ImmutableBitSet.valueOf(gtCols);
+        int recordLength = 0; // the whole record is too long because of the raw measures
+        for (int gtCol : gtCols) {
+            recordLength += info.getCodeSystem().maxCodeLength(gtCol);
+        }
+
+        records = new GTRecord[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            Object[] values = new Object[gtCols.length];
+            int c = 0;
+            for (int gtCol : sorted(gtCols)) {
+                values[c++] = sampleValue(seg, mapping, gtCol, i);
+            }
+            records[i] = new GTRecord(info).setValues(selected, new ByteArray(recordLength), values);
+        }
+    }
+
+    private int[] sorted(int[] array) {
+        int[] copy = Arrays.copyOf(array, array.length);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private Object sampleValue(CubeSegment seg, CuboidToGridTableMapping mapping, int gtCol, int i) {
+        if (gtCol < mapping.getCuboidDimensionsInGTOrder().size()) {
+            TblColRef col = mapping.getCuboidDimensionsInGTOrder().get(gtCol);
+            Dictionary<String> dict = seg.getDictionary(col);
+            if (dict == null)
+                return "FP-GTC"; // the fixed length LSTG_FORMAT_NAME
+            return dict.getValueFromId(dict.getMinId() + i % dict.getSize());
+        }
+        String type = mapping.getDataTypes()[gtCol].getName();
+        return type.equals("decimal") ? new BigDecimal(i + ".1234") : Long.valueOf(i);
+    }
+
+    @TearDown
+    public void tearDown() {
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    @Benchmark
+    public List<IAdvMeasureFiller> translateResult() {
+        next = (next + 1) & (RECORDS - 1);
+        return converter.translateResult(records[next], tuple);
+    }
+}
@@ -300,10 +300,24 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-split-limit", "500"));
     }
 
+    // let each cuboid be built from its smallest parent of the layer above, by the sampled row estimates
+    public boolean isCuboidCostBasedSpanningTreeEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.cube.cost-based-spanning-tree-enabled", "false"));
+    }
+
     public int getCubeAlgorithmInMemConcurrentThreads() {
         return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-concurrent-threads", "1"));
     }
 
+    // keep in-mem cuboids in memory-mapped segment files instead of the disk store with explicit buffers
+    public boolean isInMemCubingMappedStoreEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.cube.algorithm.inmem-mapped-store-enabled", "false"));
+    }
+
+    public boolean isInMemCubingMappedStoreCompressed() {
+        return Boolean.parseBoolean(getOptional("kylin.cube.algorithm.inmem-mapped-store-compressed", "false"));
+    }
+
     public boolean isIgnoreCubeSignatureInconsistency() {
         return Boolean.parseBoolean(getOptional("kylin.cube.ignore-signature-inconsistency", "false"));
     }
@@ -518,6 +532,9 @@ abstract public class KylinConfigBase implements Serializable {
         r.put(0, "org.apache.kylin.storage.hbase.HBaseStorage");
         r.put(1, "org.apache.kylin.storage.hybrid.HybridStorage");
         r.put(2, "org.apache.kylin.storage.hbase.HBaseStorage");
+        if (isColumnarStorageEnabled()) {
+            r.put(3, "org.apache.kylin.storage.columnar.ColumnarStorage");
+        }
         r.putAll(convertKeyToInteger(getPropertiesByPrefix("kylin.storage.provider.")));
         return r;
     }
@@ -592,6 +609,11 @@ abstract public class KylinConfigBase implements Serializable {
         return Float.parseFloat(getOptional("kylin.storage.hbase.hfile-size-gb", "2.0"));
     }
 
+    // place cuboid shards on the least loaded regions instead of the hashed base shard
+    public boolean isHBaseBalancedShardAssignmentEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.hbase.balanced-shard-assignment-enabled", "false"));
+    }
+
     public boolean getQueryRunLocalCoprocessor() {
         return Boolean.parseBoolean(getOptional("kylin.storage.hbase.run-local-coprocessor", "false"));
     }
@@ -600,6 +622,10 @@ abstract public class KylinConfigBase implements Serializable {
         return Double.parseDouble(this.getOptional("kylin.storage.hbase.coprocessor-mem-gb", "3.0"));
     }
 
+    public boolean isQueryCoprocessorOffHeapAggregation() {
+        return Boolean.parseBoolean(this.getOptional("kylin.storage.hbase.coprocessor-offheap-aggregation", "false"));
+    }
+
     public int getQueryCoprocessorTimeoutSeconds() {
         return Integer.parseInt(this.getOptional("kylin.storage.hbase.coprocessor-timeout-seconds", "0"));
     }
@@ -652,6 +678,81 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.storage.hbase.endpoint-compress-result", "true"));
     }
 
+    // codecs accepted for endpoint responses in preference order, the region server picks the first it supports
+    public String[] getEndpointCompressCodecs() {
+        return getOptionalStringArray("kylin.storage.hbase.endpoint-compress-codecs", new String[] { "lz4", "deflate" });
+    }
+
+    // responses smaller than this are sent uncompressed
+    public int getEndpointCompressMinBytes() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-compress-min-bytes", "4096"));
+    }
+
+    // a codec is skipped while its recent compressed/raw ratio is above this
+    public double getEndpointCompressMaxRatio() {
+        return Double.parseDouble(getOptional("kylin.storage.hbase.endpoint-compress-max-ratio", "0.9"));
+    }
+
+    // a region returns its rows in blocks of about this size when set, e.g. 8388608 (8 MB); 0 means one unbounded response
+    public int getEndpointMaxResponseBytes() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-max-response-bytes", "0"));
+    }
+
+    // idle buffers kept by the query server to decompress endpoint responses into
+    public int getEndpointDecodeBufferPoolMB() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-decode-buffer-pool-mb", "64"));
+    }
+
+    // memory shared by all concurrent visits on a region server, capped to half of the max heap, 0 to disable
+    public int getEndpointMemoryBudgetMB() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-memory-budget-mb", "0"));
+    }
+
+    // memory a visit must reserve before it starts, visits wait in queue when the budget cannot afford it
+    public int getEndpointMemoryAdmissionMB() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-memory-admission-mb", "16"));
+    }
+
+    // write a per-block min/max index of rowkey dimensions, for the coprocessor to skip blocks not matching the filter
+    public boolean isStorageSkipIndexEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.hbase.skip-index-enabled", "false"));
+    }
+
+    public int getStorageSkipIndexRowsPerBlock() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.skip-index-rows-per-block", "1000"));
+    }
+
+    // in-mem cubing writes HFiles along with cuboid files, the conversion job is skipped then
+    public boolean isInMemCubingDirectHFileEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.hbase.inmem-direct-hfile-enabled", "false"));
+    }
+
+    public boolean isEndpointResultCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.hbase.endpoint-result-cache-enabled", "false"));
+    }
+
+    // per region server
+    public int getEndpointResultCacheMaxMB() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-result-cache-max-mb", "128"));
+    }
+
+    public int getEndpointResultCacheMaxEntryMB() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-result-cache-max-entry-mb", "4"));
+    }
+
+    public int getHBaseRpcSchedulerThreads() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.rpc-scheduler-threads", "64"));
+    }
+
+    public int getHBaseRpcMaxParallelismPerQuery() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.rpc-max-parallelism-per-query", "16"));
+    }
+
+    // a query is served before the others until it has submitted this many region visits
+    public int getHBaseRpcInteractiveVisits() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.rpc-interactive-visits", "32"));
+    }
+
     public int getHBaseMaxConnectionThreads() {
         return Integer.parseInt(getOptional("kylin.storage.hbase.max-hconnection-threads", "2048"));
     }
@@ -664,6 +765,28 @@ abstract public class KylinConfigBase implements Serializable {
         return Long.parseLong(getOptional("kylin.storage.hbase.hconnection-threads-alive-seconds", "60"));
     }
 
+    // ============================================================================
+    // STORAGE.COLUMNAR
+    // ============================================================================
+
+    // register storage type 3, whose segments are built as columnar files by MR engine 2 and queried by the query server
+    public boolean isColumnarStorageEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.columnar.enabled", "false"));
+    }
+
+    public String getColumnarStorageRootDir() {
+        String root = getOptional("kylin.storage.columnar.root-dir", getHdfsWorkingDirectory() + "columnar/");
+        return root.endsWith("/") ? root : root + "/";
+    }
+
+    public int getColumnarStorageRowsPerBlock() {
+        return Integer.parseInt(getOptional("kylin.storage.columnar.rows-per-block", "8192"));
+    }
+
+    public boolean isColumnarStorageCompress() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.columnar.compress", "true"));
+    }
+
     // ============================================================================
     // ENGINE.MR
     // ============================================================================
@@ -802,6 +925,48 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.large-query-threshold", String.valueOf((int) (getScanThreshold() * 0.1))));
     }
 
+    public boolean isQueryParallelSegmentScan() {
+        return Boolean.parseBoolean(getOptional("kylin.query.parallel-segment-scan-enabled", "false"));
+    }
+
+    public int getQueryParallelSegmentScanThreads() {
+        return Integer.parseInt(getOptional("kylin.query.parallel-segment-scan-threads", "16"));
+    }
+
+    public boolean isQuerySegmentCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.segment-cache-enabled", "false"));
+    }
+
+    public int getQuerySegmentCacheMaxMB() {
+        return Integer.parseInt(getOptional("kylin.query.segment-cache-max-mb", "256"));
+    }
+
+    public int getQuerySegmentCacheMaxEntryMB() {
+        return Integer.parseInt(getOptional("kylin.query.segment-cache-max-entry-mb", "16"));
+    }
+
+    public boolean isQueryCostBasedRoutingEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.cost-based-routing-enabled", "false"));
+    }
+
+    // choose between fuzzy keys, plain range and split ranges by the cuboid statistics of the segment
+    public boolean isQueryCostBasedScanPlanEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.cost-based-scan-plan-enabled", "false"));
+    }
+
+    // record hits and scanned rows of the cuboid each query scans, for pruning unused cuboids
+    public boolean isQueryCuboidUsageTrackingEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.cuboid-usage-tracking-enabled", "false"));
+    }
+
+    public int getQueryCuboidUsageFlushIntervalSeconds() {
+        return Integer.parseInt(getOptional("kylin.query.cuboid-usage-flush-interval-seconds", "300"));
+    }
+
+    public String getQueryCuboidStatsLoader() {
+        return getOptional("kylin.query.cuboid-stats-loader", "org.apache.kylin.engine.mr.common.CuboidStatsLoader");
+    }
+
     public int getDerivedInThreshold() {
         return Integer.parseInt(getOptional("kylin.query.derived-filter-translation-threshold", "20"));
     }
@@ -48,6 +48,10 @@ public class BackdoorToggles {
         _backdoorToggles.get().putAll(toggles);
     }
 
+    public static Map<String, String> getToggles() {
+        return _backdoorToggles.get();
+    }
+
     public static String getCoprocessorBehavior() {
         return getString(DEBUG_TOGGLE_COPROCESSOR_BEHAVIOR);
     }
@@ -69,8 +69,13 @@ public class MemoryBudgetController {
     private final ReentrantLock lock = new ReentrantLock();
 
     public MemoryBudgetController(int totalBudgetMB) {
+        this(totalBudgetMB, getSystemAvailMB());
+    }
+
+    /** for a budget the caller has already capped, limitMB being the memory the budget must fit in */
+    public MemoryBudgetController(int totalBudgetMB, int limitMB) {
         Preconditions.checkArgument(totalBudgetMB >= 0);
-        Preconditions.checkState(totalBudgetMB <= getSystemAvailMB());
+        Preconditions.checkState(totalBudgetMB <= limitMB);
         this.totalBudgetMB = totalBudgetMB;
         this.totalReservedMB = 0;
     }
@@ -98,6 +103,11 @@ public class MemoryBudgetController {
     }
 
     public void reserveInsist(MemoryConsumer consumer, int requestMB) {
+        reserveInsist(consumer, requestMB, Long.MAX_VALUE);
+    }
+
+    /** wait for the budget till deadline (a system time in ms), fail with NotEnoughBudgetException if no mem by then */
+    public void reserveInsist(MemoryConsumer consumer, int requestMB, long deadline) {
         if (requestMB > totalBudgetMB)
             throw new NotEnoughBudgetException();
 
@@ -115,9 +125,13 @@ public class MemoryBudgetController {
             if (waitStart == 0)
                 waitStart = System.currentTimeMillis();
 
+            long waitMillis = deadline == Long.MAX_VALUE ? 0 : deadline - System.currentTimeMillis();
+            if (deadline != Long.MAX_VALUE && waitMillis <= 0)
+                throw new NotEnoughBudgetException();
+
             synchronized (lock) {
                 try {
-                    lock.wait();
+                    lock.wait(waitMillis);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     throw new NotEnoughBudgetException(e);
@@ -83,4 +83,16 @@ public class BytesUtilTest {
         assertEquals(x, y);
     }
 
+    @Test
+    public void testReadVLongFromArray() {
+        long[] values = new long[] { 0, 1, -1, 127, -112, 128, -113, 65535, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        for (long v : values) {
+            buffer.clear();
+            buffer.put((byte) 0); // a non-zero offset
+            BytesUtil.writeVLong(v, buffer);
+            assertEquals(v, BytesUtil.readVLong(buffer.array(), 1));
+        }
+    }
+
 }
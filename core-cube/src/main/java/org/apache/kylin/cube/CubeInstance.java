@@ -19,7 +19,9 @@
 package org.apache.kylin.cube;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.kylin.common.KylinConfig;
@@ -27,9 +29,12 @@ import org.apache.kylin.common.KylinConfigExt;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidStatsCache;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.metadata.model.ColumnDesc;
 import org.apache.kylin.metadata.model.DataModelDesc;
+import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.IBuildable;
 import org.apache.kylin.metadata.model.JoinTableDesc;
 import org.apache.kylin.metadata.model.MeasureDesc;
@@ -49,7 +54,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @SuppressWarnings("serial")
 @JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
@@ -291,6 +298,7 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
         CapabilityResult result = CubeCapabilityChecker.check(this, digest);
         if (result.capable) {
             result.cost = getCost(digest);
+            result.scanRowEstimate = getScanRowEstimate(digest);
             for (CapabilityInfluence i : result.influences) {
                 result.cost *= (i.suggestCostMultiplier() == 0) ? 1.0 : i.suggestCostMultiplier();
             }
@@ -300,6 +308,36 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
         return result;
     }
 
+    /**
+     * Estimate the rows to scan from the statistics of the cuboid that would answer the query, return -1 if unknown.
+     * The cuboid is identified the same way as the storage query, with derived columns replaced by their hosts.
+     */
+    public long getScanRowEstimate(SQLDigest digest) {
+        if (!getConfig().isQueryCostBasedRoutingEnabled())
+            return -1;
+
+        Map<Long, Long> rowEstimates = CuboidStatsCache.getInstance(getConfig()).getCuboidRowEstimates(this);
+        if (rowEstimates == null)
+            return -1;
+
+        CubeDesc cubeDesc = getDescriptor();
+        List<TblColRef> rowKeyColumns = Cuboid.getBaseCuboid(cubeDesc).getColumns();
+        Set<TblColRef> dimensions = Sets.newHashSet();
+        for (TblColRef col : Iterables.concat(digest.groupbyColumns, digest.filterColumns)) {
+            if (cubeDesc.hasHostColumn(col)) {
+                dimensions.addAll(Arrays.asList(cubeDesc.getHostInfo(col).columns));
+            } else if (rowKeyColumns.contains(col)) {
+                dimensions.add(col);
+            }
+        }
+        Set<FunctionDesc> metrics = Sets.newHashSet(digest.aggregations);
+        metrics.retainAll(cubeDesc.listAllFunctions());
+
+        Cuboid cuboid = Cuboid.identifyCuboid(cubeDesc, dimensions, metrics, rowEstimates);
+        Long rows = rowEstimates.get(cuboid.getId());
+        return rows == null ? -1 : rows;
+    }
+
     public int getCost(SQLDigest digest) {
         int calculatedCost = cost;
 
@@ -31,6 +31,7 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ShardingHash;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.kv.CubeDimEncMap;
 import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.cube.model.CubeDesc;
@@ -87,6 +88,12 @@ public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegmen
     private Map<Long, Short> cuboidShardNums = Maps.newHashMap();
     @JsonProperty("total_shards") //it is only valid when all cuboids are squshed into some shards. like the HBASE_STORAGE case, otherwise it'll stay 0
     private int totalShards = 0;
+    @JsonProperty("cuboid_base_shards") // planned base shards, cuboids absent here start from the hashed shard
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Long, Short> plannedBaseShards = Maps.newHashMap();
+    @JsonProperty("cuboid_parents") // child ==> parent chosen by estimated rows, others follow the aggregation group rules
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Long, Long> cuboidParents = Maps.newHashMap();
     @JsonProperty("blackout_cuboids")
     private List<Long> blackoutCuboids = Lists.newArrayList();
 
@@ -512,13 +519,33 @@ public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegmen
 
         Short ret = cuboidBaseShards.get(cuboidId);
         if (ret == null) {
-            ret = ShardingHash.getShard(cuboidId, totalShards);
+            ret = plannedBaseShards.get(cuboidId);
+            if (ret == null) {
+                ret = ShardingHash.getShard(cuboidId, totalShards);
+            }
             cuboidBaseShards.put(cuboidId, ret);
         }
 
         return ret;
     }
 
+    public void setCuboidBaseShards(Map<Long, Short> newBaseShards) {
+        this.plannedBaseShards = newBaseShards;
+        this.cuboidBaseShards.clear();
+    }
+
+    public Map<Long, Long> getCuboidParents() {
+        return cuboidParents;
+    }
+
+    public void setCuboidParents(Map<Long, Long> cuboidParents) {
+        this.cuboidParents = cuboidParents;
+    }
+
+    public CuboidScheduler getCuboidScheduler() {
+        return new CuboidScheduler(getCubeDesc(), cuboidParents);
+    }
+
     public List<Long> getBlackoutCuboids() {
         return this.blackoutCuboids;
     }
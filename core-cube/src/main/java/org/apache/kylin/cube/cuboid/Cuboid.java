@@ -22,6 +22,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.cube.gridtable.CuboidToGridTableMapping;
@@ -54,9 +55,29 @@ public class Cuboid implements Comparable<Cuboid>, java.io.Serializable {
     };
 
     public static Cuboid identifyCuboid(CubeDesc cubeDesc, Set<TblColRef> dimensions, Collection<FunctionDesc> metrics) {
+        return Cuboid.findById(cubeDesc, identifyCuboidId(cubeDesc, dimensions, metrics));
+    }
+
+    /**
+     * Like identifyCuboid(), but among the valid cuboids that can answer, pick the one of the fewest estimated rows
+     * instead of the fewest dimensions. Valid cuboids of different aggregation groups are siblings that can differ
+     * much in size. Fall back to identifyCuboid() if rowEstimates is null.
+     */
+    public static Cuboid identifyCuboid(CubeDesc cubeDesc, Set<TblColRef> dimensions, Collection<FunctionDesc> metrics, Map<Long, Long> rowEstimates) {
+        long cuboidID = identifyCuboidId(cubeDesc, dimensions, metrics);
+        Cuboid cuboid = Cuboid.findById(cubeDesc, cuboidID);
+        if (rowEstimates == null) {
+            return cuboid;
+        }
+
+        long validID = translateToValidCuboid(cubeDesc, cuboidID, rowEstimates);
+        return validID == cuboid.getId() ? cuboid : new Cuboid(cubeDesc, cuboidID, validID);
+    }
+
+    private static long identifyCuboidId(CubeDesc cubeDesc, Set<TblColRef> dimensions, Collection<FunctionDesc> metrics) {
         for (FunctionDesc metric : metrics) {
             if (metric.getMeasureType().onlyAggrInBaseCuboid())
-                return Cuboid.getBaseCuboid(cubeDesc);
+                return getBaseCuboidId(cubeDesc);
         }
 
         long cuboidID = 0;
@@ -64,7 +85,7 @@ public class Cuboid implements Comparable<Cuboid>, java.io.Serializable {
             int index = cubeDesc.getRowkey().getColumnBitIndex(column);
             cuboidID |= 1L << index;
         }
-        return Cuboid.findById(cubeDesc, cuboidID);
+        return cuboidID;
     }
 
     public static Cuboid findById(CubeDesc cube, byte[] cuboidID) {
@@ -131,6 +152,24 @@ public class Cuboid implements Comparable<Cuboid>, java.io.Serializable {
     }
 
     public static long translateToValidCuboid(CubeDesc cubeDesc, long cuboidID) {
+        return translateToValidCuboid(cubeDesc, cuboidID, cuboidSelectComparator);
+    }
+
+    /** translate to the valid cuboid of the fewest estimated rows, the ones without estimate come last */
+    public static long translateToValidCuboid(CubeDesc cubeDesc, long cuboidID, final Map<Long, Long> rowEstimates) {
+        return translateToValidCuboid(cubeDesc, cuboidID, new Comparator<Long>() {
+            @Override
+            public int compare(Long o1, Long o2) {
+                Long rows1 = rowEstimates.get(o1);
+                Long rows2 = rowEstimates.get(o2);
+                return ComparisonChain.start() //
+                        .compare(rows1, rows2, Ordering.natural().nullsLast()) //
+                        .compare(o1, o2, cuboidSelectComparator).result();
+            }
+        });
+    }
+
+    private static long translateToValidCuboid(CubeDesc cubeDesc, long cuboidID, Comparator<Long> selectComparator) {
         long baseCuboidId = getBaseCuboidId(cubeDesc);
         if (cuboidID == baseCuboidId) {
             return cuboidID;
@@ -147,7 +186,7 @@ public class Cuboid implements Comparable<Cuboid>, java.io.Serializable {
             return baseCuboidId;
         }
 
-        return Collections.min(candidates, cuboidSelectComparator);
+        return Collections.min(candidates, selectComparator);
     }
 
     private static Long translateToValidCuboid(AggregationGroup agg, long cuboidID) {
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.cube.model.AggregationGroup;
+import org.apache.kylin.cube.model.AggregationGroup.HierarchyMask;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Recommends how to shrink a cube by the cuboid usage of queries.
+ *
+ * The whitelist keeps exactly the cuboids that served queries, so the observed queries would scan the same cuboids
+ * after the others are pruned. The aggregation group recommendations work on the queried cuboids instead, as
+ * redesigned groups may serve the queries with other (smaller) cuboids.
+ */
+public class CuboidPruningAdvisor {
+
+    public enum Action {
+        REMOVE, MANDATORY, JOINT
+    }
+
+    public static class Recommendation {
+        private final int aggGroupIndex;
+        private final Action action;
+        private final List<String> columns;
+
+        Recommendation(int aggGroupIndex, Action action, List<String> columns) {
+            this.aggGroupIndex = aggGroupIndex;
+            this.action = action;
+            this.columns = columns;
+        }
+
+        public int getAggGroupIndex() {
+            return aggGroupIndex;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        @Override
+        public String toString() {
+            switch (action) {
+            case REMOVE:
+                return "Aggregation group " + aggGroupIndex + ": remove " + columns + ", no query uses them";
+            case MANDATORY:
+                return "Aggregation group " + aggGroupIndex + ": make " + columns + " mandatory, every query uses them";
+            default:
+                return "Aggregation group " + aggGroupIndex + ": make " + columns + " a joint, queries use them together";
+            }
+        }
+    }
+
+    private final CubeDesc cubeDesc;
+    private final CuboidUsage usage;
+    private final long minHits;
+
+    /** cuboids and queries hit less than minHits times are considered unused */
+    public CuboidPruningAdvisor(CubeDesc cubeDesc, CuboidUsage usage, long minHits) {
+        this.cubeDesc = cubeDesc;
+        this.usage = usage;
+        this.minHits = minHits;
+    }
+
+    /** return the cuboids to keep, i.e. the base cuboid and the valid cuboids scanned often enough */
+    public Set<Long> getCuboidWhitelist() {
+        Set<Long> result = Sets.newTreeSet();
+        result.add(Cuboid.getBaseCuboidId(cubeDesc));
+        for (Map.Entry<Long, CuboidUsage.CuboidHits> entry : usage.getScannedCuboids().entrySet()) {
+            if (entry.getValue().getHits() >= minHits && Cuboid.isValid(cubeDesc, entry.getKey())) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** return the cuboids built by the current aggregation groups but not on the whitelist */
+    public List<Long> getUnusedCuboids() {
+        Set<Long> whitelist = getCuboidWhitelist();
+        List<Long> result = Lists.newArrayList();
+        for (long cuboid : new CuboidScheduler(cubeDesc).getAllCuboidIds()) {
+            if (!whitelist.contains(cuboid)) {
+                result.add(cuboid);
+            }
+        }
+        return result;
+    }
+
+    /** return the queried cuboids that no aggregation group covers, they are answered by the base cuboid */
+    public List<Long> getUncoveredQueries() {
+        List<Long> result = Lists.newArrayList();
+        for (long queried : getFrequentQueries()) {
+            boolean covered = false;
+            for (AggregationGroup agg : cubeDesc.getAggregationGroups()) {
+                covered |= isCovered(agg, queried);
+            }
+            if (!covered) {
+                result.add(queried);
+            }
+        }
+        return result;
+    }
+
+    public List<Recommendation> getAggregationGroupRecommendations() {
+        List<Long> queries = getFrequentQueries();
+        List<Recommendation> result = Lists.newArrayList();
+
+        List<AggregationGroup> aggs = cubeDesc.getAggregationGroups();
+        for (int i = 0; i < aggs.size(); i++) {
+            AggregationGroup agg = aggs.get(i);
+            List<Long> aggQueries = Lists.newArrayList();
+            for (long queried : queries) {
+                if (isCovered(agg, queried)) {
+                    aggQueries.add(queried);
+                }
+            }
+            recommend(i, agg, aggQueries, result);
+        }
+        return result;
+    }
+
+    private void recommend(int index, AggregationGroup agg, List<Long> aggQueries, List<Recommendation> result) {
+        long optionalDims = agg.getPartialCubeFullMask() & ~agg.getMandatoryColumnMask();
+        long usedDims = 0;
+        long alwaysUsedDims = aggQueries.isEmpty() ? 0 : optionalDims;
+        for (long queried : aggQueries) {
+            usedDims |= queried;
+            alwaysUsedDims &= queried;
+        }
+
+        // a hierarchy level is needed as long as a lower level is used
+        long keptByHierarchy = 0;
+        for (HierarchyMask hierarchy : agg.getHierarchyMasks()) {
+            for (int level = 0; level < hierarchy.dims.length; level++) {
+                if ((usedDims & hierarchy.allMasks[hierarchy.allMasks.length - 1] & ~hierarchy.allMasks[level]) != 0) {
+                    keptByHierarchy |= hierarchy.dims[level];
+                }
+            }
+        }
+        long unusedDims = optionalDims & ~usedDims & ~keptByHierarchy;
+        if (unusedDims != 0) {
+            result.add(new Recommendation(index, Action.REMOVE, toColumns(unusedDims)));
+        }
+        if (alwaysUsedDims != 0) {
+            result.add(new Recommendation(index, Action.MANDATORY, toColumns(alwaysUsedDims)));
+        }
+
+        // normal dims used by exactly the same queries are always queried together
+        Map<Set<Long>, Long> dimsByQueries = Maps.newLinkedHashMap();
+        for (long dim : agg.getNormalDims()) {
+            if ((dim & usedDims) == 0 || (dim & alwaysUsedDims) != 0) {
+                continue;
+            }
+            Set<Long> queriesUsing = Sets.newHashSet();
+            for (long queried : aggQueries) {
+                if ((queried & dim) != 0) {
+                    queriesUsing.add(queried);
+                }
+            }
+            Long dims = dimsByQueries.get(queriesUsing);
+            dimsByQueries.put(queriesUsing, dims == null ? dim : dims | dim);
+        }
+        for (long joint : dimsByQueries.values()) {
+            if (Long.bitCount(joint) > 1) {
+                result.add(new Recommendation(index, Action.JOINT, toColumns(joint)));
+            }
+        }
+    }
+
+    private List<Long> getFrequentQueries() {
+        List<Long> result = Lists.newArrayList();
+        for (Map.Entry<Long, Long> entry : usage.getQueriedCuboids().entrySet()) {
+            if (entry.getValue() >= minHits) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private boolean isCovered(AggregationGroup agg, long queried) {
+        return (queried & ~agg.getPartialCubeFullMask()) == 0;
+    }
+
+    private List<String> toColumns(long mask) {
+        List<String> result = Lists.newArrayList();
+        for (RowKeyColDesc col : cubeDesc.getRowkey().getRowKeyColumns()) {
+            if ((mask & (1L << col.getBitIndex())) != 0) {
+                result.add(col.getColumn());
+            }
+        }
+        return result;
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.kylin.cube.model.AggregationGroup;
 import org.apache.kylin.cube.model.CubeDesc;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -39,16 +40,30 @@ public class CuboidScheduler implements java.io.Serializable {
     private final CubeDesc cubeDesc;
     private final long max;
     private final Map<Long, List<Long>> cache;
+    private final Map<Long, Long> parentOverrides; // child ==> parent chosen by cost, instead of the rules
     private List<List<Long>> cuboidsByLayer;
 
     public CuboidScheduler(CubeDesc cubeDesc) {
+        this(cubeDesc, null);
+    }
+
+    public CuboidScheduler(CubeDesc cubeDesc, Map<Long, Long> parentOverrides) {
         this.cubeDesc = cubeDesc;
         int size = this.cubeDesc.getRowkey().getRowKeyColumns().length;
         this.max = (long) Math.pow(2, size) - 1;
         this.cache = new ConcurrentHashMap<Long, List<Long>>();
+        this.parentOverrides = parentOverrides == null ? Collections.<Long, Long> emptyMap() : new HashMap<Long, Long>(parentOverrides);
     }
 
     public long getParent(long child) {
+        Long override = parentOverrides.get(child);
+        if (override != null) {
+            return override;
+        }
+        return getRuleParent(child);
+    }
+
+    private long getRuleParent(long child) {
         List<Long> candidates = Lists.newArrayList();
         long baseCuboidID = Cuboid.getBaseCuboidId(cubeDesc);
         if (child == baseCuboidID || !Cuboid.isValid(cubeDesc, child)) {
@@ -207,6 +222,12 @@ public class CuboidScheduler implements java.io.Serializable {
                 result.add(potential);
             }
         }
+        // children moved here by cost are not among the potentials by rules
+        for (Map.Entry<Long, Long> entry : parentOverrides.entrySet()) {
+            if (entry.getValue() == cuboid && !result.contains(entry.getKey())) {
+                result.add(entry.getKey());
+            }
+        }
 
         cache.put(cuboid, result);
         return result;
@@ -260,4 +281,40 @@ public class CuboidScheduler implements java.io.Serializable {
         Preconditions.checkState(totalNum == size, "total Num: " + totalNum + " actual size: " + size);
         return cuboidsByLayer;
     }
+
+    /**
+     * Choose for each cuboid the parent with the least estimated rows, among the cuboids one layer above it in
+     * the spanning tree by rules, so that the number of layers (i.e. MR steps of layered cubing) is kept.
+     * Return the children whose parent differs from the one by rules.
+     */
+    public static Map<Long, Long> planCostBasedParents(CubeDesc cubeDesc, Map<Long, Long> cuboidRows) {
+        CuboidScheduler byRules = new CuboidScheduler(cubeDesc);
+        List<List<Long>> layers = byRules.getCuboidsByLayer();
+
+        Map<Long, Long> result = new HashMap<Long, Long>();
+        for (int i = 1; i < layers.size(); i++) {
+            List<Long> upperLayer = layers.get(i - 1);
+            for (long child : layers.get(i)) {
+                long ruleParent = byRules.getParent(child);
+                Long ruleParentRows = cuboidRows.get(ruleParent);
+                if (ruleParentRows == null) {
+                    continue;
+                }
+
+                long best = ruleParent;
+                long bestRows = ruleParentRows;
+                for (long candidate : upperLayer) {
+                    Long rows = cuboidRows.get(candidate);
+                    if (rows != null && rows < bestRows && (candidate & child) == child && candidate != child) {
+                        best = candidate;
+                        bestRows = rows;
+                    }
+                }
+                if (best != ruleParent) {
+                    result.put(child, best);
+                }
+            }
+        }
+        return result;
+    }
 }
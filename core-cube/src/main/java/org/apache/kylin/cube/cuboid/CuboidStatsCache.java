@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ClassUtil;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+
+/**
+ * Caches the estimated row counts of cuboids for query routing and cuboid selection.
+ *
+ * Statistics are read once per segment by the ICuboidStatsLoader of the build engine, a ready segment does not
+ * change. The estimates of a cube are the sums over its ready segments, and are unknown if any segment lacks them.
+ *
+ * Reading statistics takes a trip to HDFS, so queries never wait for it. A query only gets what is cached, and
+ * a miss starts the loading in background for later queries. Tools may load in the calling thread instead.
+ */
+public class CuboidStatsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CuboidStatsCache.class);
+
+    private static final Map<Long, Long> NO_STATS = Collections.emptyMap();
+
+    // static cached instances
+    private static final ConcurrentHashMap<KylinConfig, CuboidStatsCache> CACHE = new ConcurrentHashMap<KylinConfig, CuboidStatsCache>();
+
+    public static CuboidStatsCache getInstance(KylinConfig config) {
+        CuboidStatsCache r = CACHE.get(config);
+        if (r != null) {
+            return r;
+        }
+
+        synchronized (CuboidStatsCache.class) {
+            r = CACHE.get(config);
+            if (r != null) {
+                return r;
+            }
+            r = new CuboidStatsCache(config);
+            CACHE.put(config, r);
+            if (CACHE.size() > 1) {
+                logger.warn("More than one singleton exist");
+            }
+            return r;
+        }
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    // ============================================================================
+
+    private final ICuboidStatsLoader loader;
+    private final Cache<String, Map<Long, Long>> segmentStats;
+    private final Set<String> loading = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ExecutorService loadingPool; // created on first use
+
+    private CuboidStatsCache(KylinConfig config) {
+        this.loader = createLoader(config.getQueryCuboidStatsLoader());
+        // expire in case statistics are saved after the segment became ready, e.g. by a tool
+        this.segmentStats = CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(1, TimeUnit.HOURS).build();
+    }
+
+    private static ICuboidStatsLoader createLoader(String className) {
+        try {
+            return (ICuboidStatsLoader) ClassUtil.newInstance(className);
+        } catch (Exception e) {
+            // the build engine is not on classpath, e.g. a query-only deployment
+            logger.warn("Cuboid statistics are not available, failed to create loader " + className, e);
+            return null;
+        }
+    }
+
+    /** return cuboid ID ==> estimated row count summed over the ready segments, or null if unknown or not loaded yet */
+    public Map<Long, Long> getCuboidRowEstimates(CubeInstance cube) {
+        return getCuboidRowEstimates(cube, false);
+    }
+
+    /** same as getCuboidRowEstimates(), but statistics not cached yet are loaded in the calling thread */
+    public Map<Long, Long> loadCuboidRowEstimates(CubeInstance cube) {
+        return getCuboidRowEstimates(cube, true);
+    }
+
+    private Map<Long, Long> getCuboidRowEstimates(CubeInstance cube, boolean wait) {
+        if (loader == null) {
+            return null;
+        }
+
+        List<CubeSegment> segments = cube.getSegments(SegmentStatusEnum.READY);
+        if (segments.isEmpty()) {
+            return null;
+        }
+
+        Map<Long, Long> result = null;
+        boolean unknown = false;
+        for (CubeSegment seg : segments) {
+            Map<Long, Long> stats = getSegmentRowEstimates(seg, wait);
+            if (stats == null || stats.isEmpty()) {
+                unknown = true; // go on to have the loading of other segments started
+                continue;
+            }
+            if (unknown) {
+                continue;
+            }
+            if (result == null) {
+                result = Maps.newHashMap(stats);
+            } else {
+                for (Map.Entry<Long, Long> entry : stats.entrySet()) {
+                    Long rows = result.get(entry.getKey());
+                    result.put(entry.getKey(), rows == null ? entry.getValue() : rows + entry.getValue());
+                }
+            }
+        }
+        return unknown ? null : result;
+    }
+
+    /** return cuboid ID ==> estimated row count of one segment, or null if unknown or not loaded yet */
+    public Map<Long, Long> getSegmentCuboidRowEstimates(CubeSegment seg) {
+        if (loader == null) {
+            return null;
+        }
+        Map<Long, Long> stats = getSegmentRowEstimates(seg, false);
+        return stats == null || stats.isEmpty() ? null : stats;
+    }
+
+    /** return null if not cached and not to wait, the loading is started in background then */
+    private Map<Long, Long> getSegmentRowEstimates(final CubeSegment seg, boolean wait) {
+        final String key = seg.getCubeInstance().getName() + "/" + seg.getUuid();
+        Map<Long, Long> stats = segmentStats.getIfPresent(key);
+        if (stats != null) {
+            return stats;
+        }
+        if (wait) {
+            return loadSegmentRowEstimates(seg, key);
+        }
+
+        if (loading.add(key)) {
+            getLoadingPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        loadSegmentRowEstimates(seg, key);
+                    } finally {
+                        loading.remove(key);
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    private Map<Long, Long> loadSegmentRowEstimates(CubeSegment seg, String key) {
+        Map<Long, Long> stats = null;
+        try {
+            stats = loader.loadCuboidRowEstimates(seg);
+        } catch (Exception e) {
+            logger.warn("Failed to load cuboid statistics of segment " + seg, e);
+        }
+        if (stats == null || stats.isEmpty()) {
+            stats = NO_STATS;
+        }
+        segmentStats.put(key, stats);
+        return stats;
+    }
+
+    private synchronized ExecutorService getLoadingPool() {
+        if (loadingPool == null) {
+            // one thread is enough, each segment is loaded once; the queue is bounded by the keys in loading
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            loadingPool = executor;
+        }
+        return loadingPool;
+    }
+}
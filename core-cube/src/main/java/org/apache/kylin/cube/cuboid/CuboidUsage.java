@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.util.Map;
+
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.RootPersistentEntity;
+import org.apache.kylin.metadata.MetadataConstants;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * How queries used the cuboids of a cube, aggregated since the start time.
+ *
+ * A query asks for a cuboid of exactly its dimensions (the queried cuboid), and is answered by scanning a valid
+ * cuboid that contains them (the scanned cuboid). Both are recorded, the former for redesigning aggregation groups,
+ * the latter for finding the cuboids that are built but never used.
+ */
+@SuppressWarnings("serial")
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class CuboidUsage extends RootPersistentEntity {
+
+    @JsonProperty("cube")
+    private String cubeName;
+    @JsonProperty("start_time")
+    private long startTime;
+    @JsonProperty("scanned_cuboids")
+    private Map<Long, CuboidHits> scannedCuboids = Maps.newHashMap(); // scanned cuboid ID ==> hits
+    @JsonProperty("queried_cuboids")
+    private Map<Long, Long> queriedCuboids = Maps.newHashMap(); // queried cuboid ID ==> query count
+
+    public CuboidUsage() {
+    }
+
+    public CuboidUsage(String cubeName) {
+        this.updateRandomUuid();
+        this.cubeName = cubeName;
+    }
+
+    public void record(long queriedCuboid, long scannedCuboid, long scannedRows, long returnedRows, long time) {
+        if (startTime == 0 || time < startTime) {
+            startTime = time;
+        }
+
+        CuboidHits hits = scannedCuboids.get(scannedCuboid);
+        if (hits == null) {
+            hits = new CuboidHits();
+            scannedCuboids.put(scannedCuboid, hits);
+        }
+        hits.add(1, scannedRows, returnedRows);
+
+        Long count = queriedCuboids.get(queriedCuboid);
+        queriedCuboids.put(queriedCuboid, count == null ? 1 : count + 1);
+    }
+
+    /** add up the usage of another period, e.g. the not yet saved usage of a query server */
+    public void merge(CuboidUsage other) {
+        if (other.startTime != 0 && (startTime == 0 || other.startTime < startTime)) {
+            startTime = other.startTime;
+        }
+
+        for (Map.Entry<Long, CuboidHits> entry : other.scannedCuboids.entrySet()) {
+            CuboidHits hits = scannedCuboids.get(entry.getKey());
+            if (hits == null) {
+                hits = new CuboidHits();
+                scannedCuboids.put(entry.getKey(), hits);
+            }
+            CuboidHits o = entry.getValue();
+            hits.add(o.hits, o.scannedRows, o.returnedRows);
+        }
+
+        for (Map.Entry<Long, Long> entry : other.queriedCuboids.entrySet()) {
+            Long count = queriedCuboids.get(entry.getKey());
+            queriedCuboids.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+        }
+    }
+
+    public boolean isEmpty() {
+        return scannedCuboids.isEmpty();
+    }
+
+    public String getCubeName() {
+        return cubeName;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public Map<Long, CuboidHits> getScannedCuboids() {
+        return scannedCuboids;
+    }
+
+    public Map<Long, Long> getQueriedCuboids() {
+        return queriedCuboids;
+    }
+
+    public String getResourcePath() {
+        return concatResourcePath(cubeName);
+    }
+
+    public static String concatResourcePath(String cubeName) {
+        return ResourceStore.CUBOID_USAGE_RESOURCE_ROOT + "/" + cubeName + MetadataConstants.FILE_SURFIX;
+    }
+
+    @Override
+    public String toString() {
+        return "CuboidUsage [cube=" + cubeName + "]";
+    }
+
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+    public static class CuboidHits {
+        @JsonProperty("hits")
+        private long hits;
+        @JsonProperty("scanned_rows")
+        private long scannedRows;
+        @JsonProperty("returned_rows")
+        private long returnedRows;
+
+        void add(long hits, long scannedRows, long returnedRows) {
+            this.hits += hits;
+            this.scannedRows += scannedRows;
+            this.returnedRows += returnedRows;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getScannedRows() {
+            return scannedRows;
+        }
+
+        public long getReturnedRows() {
+            return returnedRows;
+        }
+    }
+}
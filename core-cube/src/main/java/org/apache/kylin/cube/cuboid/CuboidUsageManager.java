@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.Serializer;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects cuboid usage of queries in memory, and adds it to the usage saved in ResourceStore once in a while,
+ * by a background thread started with the first record.
+ *
+ * Several query servers may save the usage of the same cube, a conflicting write is retried on the latest copy.
+ */
+public class CuboidUsageManager {
+
+    public static final Serializer<CuboidUsage> CUBOID_USAGE_SERIALIZER = new JsonSerializer<CuboidUsage>(CuboidUsage.class);
+
+    private static final Logger logger = LoggerFactory.getLogger(CuboidUsageManager.class);
+
+    private static final int SAVE_RETRY = 3;
+
+    // static cached instances
+    private static final ConcurrentHashMap<KylinConfig, CuboidUsageManager> CACHE = new ConcurrentHashMap<KylinConfig, CuboidUsageManager>();
+
+    public static CuboidUsageManager getInstance(KylinConfig config) {
+        CuboidUsageManager r = CACHE.get(config);
+        if (r != null) {
+            return r;
+        }
+
+        synchronized (CuboidUsageManager.class) {
+            r = CACHE.get(config);
+            if (r != null) {
+                return r;
+            }
+            r = new CuboidUsageManager(config);
+            CACHE.put(config, r);
+            if (CACHE.size() > 1) {
+                logger.warn("More than one singleton exist");
+            }
+            return r;
+        }
+    }
+
+    public static void clearCache() {
+        for (CuboidUsageManager manager : CACHE.values()) {
+            manager.stopFlushScheduler();
+        }
+        CACHE.clear();
+    }
+
+    // ============================================================================
+
+    private final KylinConfig config;
+    private final ConcurrentHashMap<String, CuboidUsage> pending = new ConcurrentHashMap<String, CuboidUsage>(); // cube ==> usage not saved yet
+    private volatile ScheduledExecutorService flushScheduler;
+
+    private CuboidUsageManager(KylinConfig config) {
+        this.config = config;
+    }
+
+    public void record(String cubeName, long queriedCuboid, long scannedCuboid, long scannedRows, long returnedRows) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            CuboidUsage usage = pending.get(cubeName);
+            if (usage == null) {
+                pending.putIfAbsent(cubeName, new CuboidUsage(cubeName));
+                continue;
+            }
+            synchronized (usage) {
+                // the usage may have been taken away by a flush in between
+                if (pending.get(cubeName) == usage) {
+                    usage.record(queriedCuboid, scannedCuboid, scannedRows, returnedRows, now);
+                    break;
+                }
+            }
+        }
+
+        if (flushScheduler == null) {
+            startFlushScheduler();
+        }
+    }
+
+    // queries only record in memory, the saving is off their path
+    private synchronized void startFlushScheduler() {
+        if (flushScheduler != null) {
+            return;
+        }
+        long interval = config.getQueryCuboidUsageFlushIntervalSeconds();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    // keep the schedule going, an exception out of here cancels it
+                    logger.warn("Failed to save cuboid usage", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+        flushScheduler = scheduler;
+    }
+
+    private synchronized void stopFlushScheduler() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdownNow();
+            flushScheduler = null;
+        }
+    }
+
+    /** add the usage collected so far to the saved usage */
+    public synchronized void flush() throws IOException {
+        IOException firstError = null;
+        for (String cubeName : pending.keySet()) {
+            CuboidUsage delta = pending.get(cubeName);
+            if (delta == null) {
+                continue;
+            }
+            synchronized (delta) {
+                pending.remove(cubeName, delta);
+            }
+
+            try {
+                save(delta);
+            } catch (IOException e) {
+                // usage is advisory, drop what cannot be saved rather than grow without bound
+                logger.warn("Dropped the usage of " + delta.getScannedCuboids().size() + " cuboids of cube " + cubeName, e);
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    private void save(CuboidUsage delta) throws IOException {
+        for (int retry = 0;; retry++) {
+            CuboidUsage usage = getCuboidUsage(delta.getCubeName());
+            if (usage == null) {
+                usage = new CuboidUsage(delta.getCubeName());
+            }
+            usage.merge(delta);
+            try {
+                getStore().putResource(usage.getResourcePath(), usage, CUBOID_USAGE_SERIALIZER);
+                return;
+            } catch (IllegalStateException e) {
+                // written by another query server meanwhile
+                if (retry >= SAVE_RETRY) {
+                    throw new IOException("Failed to save cuboid usage of cube " + delta.getCubeName(), e);
+                }
+            }
+        }
+    }
+
+    /** return the saved usage of a cube, or null if none */
+    public CuboidUsage getCuboidUsage(String cubeName) throws IOException {
+        return getStore().getResource(CuboidUsage.concatResourcePath(cubeName), CuboidUsage.class, CUBOID_USAGE_SERIALIZER);
+    }
+
+    // synchronized with flush(), so a flush in progress does not save the usage back after it is removed
+    public synchronized void removeCuboidUsage(String cubeName) throws IOException {
+        pending.remove(cubeName);
+        getStore().deleteResource(CuboidUsage.concatResourcePath(cubeName));
+    }
+
+    private ResourceStore getStore() {
+        return ResourceStore.getStore(this.config);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.kylin.cube.CubeSegment;
+
+/**
+ * Loads the cuboid statistics saved by the build engine, see CuboidStatsCache.
+ */
+public interface ICuboidStatsLoader {
+
+    /** return cuboid ID ==> estimated row count of the segment, or null if the segment has no statistics */
+    Map<Long, Long> loadCuboidRowEstimates(CubeSegment segment) throws IOException;
+}
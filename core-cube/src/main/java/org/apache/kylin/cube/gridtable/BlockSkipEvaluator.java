@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.gridtable;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.cube.gridtable.ColumnRangeTranslator.ColumnRange;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.IGTComparator;
+import org.apache.kylin.metadata.filter.TupleFilter;
+
+/**
+ * Tells whether a block of rows may have any row passing a filter, by the min/max values of the columns in the block.
+ *
+ * The filter is translated to OR-AND column ranges the same way as scan range planning, which is looser than
+ * the filter itself, so a block said to have no match can be skipped safely.
+ */
+public class BlockSkipEvaluator {
+
+    private final IGTComparator comparator;
+    private final List<Collection<ColumnRange>> orAndRanges;
+
+    public BlockSkipEvaluator(GTInfo info, TupleFilter gtFilter) {
+        this.comparator = info.getCodeSystem().getComparator();
+        this.orAndRanges = new ColumnRangeTranslator(info).translateToOrAndDimRanges(ColumnRangeTranslator.flattenToOrAndFilter(gtFilter));
+    }
+
+    /**
+     * whether a block may have rows passing the filter, min and max are by GT column, null if not known
+     */
+    public boolean mayMatch(ByteArray[] min, ByteArray[] max) {
+        for (Collection<ColumnRange> andRanges : orAndRanges) {
+            if (mayMatch(andRanges, min, max)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mayMatch(Collection<ColumnRange> andRanges, ByteArray[] min, ByteArray[] max) {
+        for (ColumnRange range : andRanges) {
+            int col = range.column.getColumnDesc().getZeroBasedIndex();
+            if (col >= min.length || min[col] == null || max[col] == null) {
+                continue;
+            }
+
+            if (range.valueSet != null) {
+                boolean anyIn = false;
+                for (ByteArray v : range.valueSet) {
+                    if (comparator.compare(min[col], v) <= 0 && comparator.compare(v, max[col]) <= 0) {
+                        anyIn = true;
+                        break;
+                    }
+                }
+                if (!anyIn) {
+                    return false;
+                }
+            } else {
+                if (range.begin.array() != null && comparator.compare(range.begin, max[col]) > 0) {
+                    return false;
+                }
+                if (range.end.array() != null && comparator.compare(range.end, min[col]) < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
@@ -44,21 +45,29 @@ abstract public class AbstractInMemCubeBuilder {
 
     final protected IJoinedFlatTableDesc flatDesc;
     final protected CubeDesc cubeDesc;
+    final protected CuboidScheduler cuboidScheduler;
     final protected Map<TblColRef, Dictionary<String>> dictionaryMap;
 
     protected int taskThreadCount = 1;
     protected int reserveMemoryMB = 100;
 
     public AbstractInMemCubeBuilder(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        this(cubeDesc, new CuboidScheduler(cubeDesc), flatDesc, dictionaryMap);
+    }
+
+    public AbstractInMemCubeBuilder(CubeDesc cubeDesc, CuboidScheduler cuboidScheduler, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
         if (flatDesc == null)
             throw new NullPointerException();
         if (cubeDesc == null)
             throw new NullPointerException();
+        if (cuboidScheduler == null)
+            throw new NullPointerException();
         if (dictionaryMap == null)
             throw new IllegalArgumentException("dictionary cannot be null");
 
         this.flatDesc = flatDesc;
         this.cubeDesc = cubeDesc;
+        this.cuboidScheduler = cuboidScheduler;
         this.dictionaryMap = dictionaryMap;
     }
 
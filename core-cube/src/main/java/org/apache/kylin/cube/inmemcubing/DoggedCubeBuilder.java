@@ -26,16 +26,25 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.DaemonThreadFactory;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequestBuilder;
 import org.apache.kylin.gridtable.IGTScanner;
@@ -54,11 +63,18 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
 
     private static Logger logger = LoggerFactory.getLogger(DoggedCubeBuilder.class);
 
+    private static final int MERGE_BATCH_ROWS = 1000;
+    private static final int MERGE_QUEUE_BATCHES = 4;
+
     private int splitRowThreshold = Integer.MAX_VALUE;
     private int unitRows = 1000;
 
     public DoggedCubeBuilder(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
-        super(cubeDesc, flatDesc, dictionaryMap);
+        this(cubeDesc, new CuboidScheduler(cubeDesc), flatDesc, dictionaryMap);
+    }
+
+    public DoggedCubeBuilder(CubeDesc cubeDesc, CuboidScheduler cuboidScheduler, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        super(cubeDesc, cuboidScheduler, flatDesc, dictionaryMap);
 
         // check memory more often if a single row is big
         if (cubeDesc.hasMemoryHungryMeasures())
@@ -276,7 +292,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
         RuntimeException exception;
 
         public SplitThread() {
-            this.builder = new InMemCubeBuilder(cubeDesc, flatDesc, dictionaryMap);
+            this.builder = new InMemCubeBuilder(cubeDesc, cuboidScheduler, flatDesc, dictionaryMap);
             this.builder.setConcurrentThreads(taskThreadCount);
             this.builder.setReserveMemoryMB(reserveMemoryMB);
         }
@@ -296,18 +312,6 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
 
     private class Merger {
 
-        MeasureAggregators reuseAggrs;
-        Object[] reuseMetricsArray;
-        ByteArray reuseMetricsSpace;
-
-        long lastCuboidColumnCount;
-        ImmutableBitSet lastMetricsColumns;
-
-        Merger() {
-            reuseAggrs = new MeasureAggregators(cubeDesc.getMeasures());
-            reuseMetricsArray = new Object[cubeDesc.getMeasures().size()];
-        }
-
         public void mergeAndOutput(List<SplitThread> splits, ICuboidWriter output) throws IOException {
             if (splits.size() == 1) {
                 for (CuboidResult cuboidResult : splits.get(0).buildResult.values()) {
@@ -317,45 +321,167 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
                 return;
             }
 
-            LinkedList<MergeSlot> open = Lists.newLinkedList();
+            TreeSet<Long> cuboidIds = new TreeSet<Long>();
             for (SplitThread split : splits) {
-                open.add(new MergeSlot(split));
+                cuboidIds.addAll(split.buildResult.keySet());
             }
 
-            PriorityQueue<MergeSlot> heap = new PriorityQueue<MergeSlot>();
+            if (taskThreadCount <= 1) {
+                for (Long cuboidId : cuboidIds) {
+                    new CuboidMerge(splits, cuboidId).mergeTo(output);
+                }
+            } else {
+                mergeInParallel(splits, cuboidIds, output);
+            }
+        }
 
-            while (true) {
-                // ready records in open slots and add to heap
-                while (!open.isEmpty()) {
-                    MergeSlot slot = open.removeFirst();
-                    if (slot.fetchNext()) {
-                        heap.add(slot);
+        /*
+         * Cuboids are merged by a pool of threads, each into its own bounded queue, while the
+         * output is written by this thread in cuboid order. Merges are submitted in cuboid order
+         * and at most 2 * taskThreadCount ahead of the output, so the queues held at any time fit
+         * in half of reserveMemoryMB. The builds of all splits are done by now, and the other
+         * half is left for system basics.
+         */
+        private void mergeInParallel(List<SplitThread> splits, TreeSet<Long> cuboidIds, ICuboidWriter output) throws IOException {
+            long start = System.currentTimeMillis();
+            int mergeAhead = taskThreadCount * 2;
+            long queueBytes = (long) reserveMemoryMB * MemoryBudgetController.ONE_MB / 2 / mergeAhead;
+
+            ExecutorService mergePool = Executors.newFixedThreadPool(taskThreadCount, new DaemonThreadFactory());
+            try {
+                Iterator<Long> toSubmit = cuboidIds.iterator();
+                LinkedList<PendingMerge> pending = Lists.newLinkedList();
+                while (true) {
+                    while (pending.size() < mergeAhead && toSubmit.hasNext()) {
+                        pending.add(new PendingMerge(mergePool, new CuboidMerge(splits, toSubmit.next()), queueBytes));
+                    }
+                    if (pending.isEmpty())
+                        break;
+
+                    // let go the merged cuboid once output
+                    pending.removeFirst().output(output);
+                }
+            } finally {
+                mergePool.shutdownNow();
+            }
+            logger.info("Merged " + cuboidIds.size() + " cuboids of " + splits.size() + " splits with " + taskThreadCount + " threads, took " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private static class PendingMerge {
+
+        final long cuboidId;
+        final QueueCuboidWriter queue;
+        final Future<?> future;
+
+        PendingMerge(ExecutorService mergePool, final CuboidMerge merge, long queueBytes) {
+            this.cuboidId = merge.cuboidId;
+            this.queue = new QueueCuboidWriter(merge.estimateRecordBytes(), queueBytes);
+            this.future = mergePool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        merge.mergeTo(queue);
+                        queue.flush();
+                    } finally {
+                        queue.markEnd(); // the output thread checks the merge for failure at the end mark
                     }
+                    return null;
                 }
+            });
+        }
 
-                // find the smallest on heap
-                MergeSlot smallest = heap.poll();
-                if (smallest == null)
+        void output(ICuboidWriter output) throws IOException {
+            while (true) {
+                List<GTRecord> batch = queue.take(future);
+                if (batch.isEmpty())
                     break;
-                open.add(smallest);
-
-                // merge with slots having the same key
-                if (smallest.isSameKey(heap.peek())) {
-                    Object[] metrics = getMetricsValues(smallest.currentRecord);
-                    reuseAggrs.reset();
-                    reuseAggrs.aggregate(metrics);
-                    do {
-                        MergeSlot slot = heap.poll();
-                        open.add(slot);
-                        metrics = getMetricsValues(slot.currentRecord);
+                for (GTRecord record : batch) {
+                    output.write(cuboidId, record);
+                }
+            }
+        }
+    }
+
+    /**
+     * A streaming k-way merge of one cuboid across all splits.
+     */
+    private class CuboidMerge {
+
+        final long cuboidId;
+        final List<CuboidResult> results = Lists.newArrayList();
+
+        MeasureAggregators reuseAggrs;
+        Object[] reuseMetricsArray;
+        ByteArray reuseMetricsSpace;
+        ImmutableBitSet metricsColumns;
+
+        CuboidMerge(List<SplitThread> splits, long cuboidId) {
+            this.cuboidId = cuboidId;
+            for (SplitThread split : splits) {
+                CuboidResult result = split.buildResult.get(cuboidId);
+                if (result != null)
+                    results.add(result);
+            }
+        }
+
+        // size of a copied record on heap, the serialized columns plus the objects holding them
+        int estimateRecordBytes() {
+            GTInfo info = results.get(0).table.getInfo();
+            return info.getMaxRecordLength() + info.getColumnCount() * 32 + 64;
+        }
+
+        public void mergeTo(ICuboidWriter output) throws IOException {
+            reuseAggrs = new MeasureAggregators(cubeDesc.getMeasures());
+            reuseMetricsArray = new Object[cubeDesc.getMeasures().size()];
+
+            LinkedList<MergeSlot> open = Lists.newLinkedList();
+            for (CuboidResult result : results) {
+                open.add(new MergeSlot(result));
+            }
+
+            PriorityQueue<MergeSlot> heap = new PriorityQueue<MergeSlot>();
+            try {
+                while (true) {
+                    // ready records in open slots and add to heap
+                    while (!open.isEmpty()) {
+                        MergeSlot slot = open.removeFirst();
+                        if (slot.fetchNext()) {
+                            heap.add(slot);
+                        }
+                    }
+
+                    // find the smallest on heap
+                    MergeSlot smallest = heap.poll();
+                    if (smallest == null)
+                        break;
+                    open.add(smallest);
+
+                    // merge with slots having the same key
+                    if (smallest.isSameKey(heap.peek())) {
+                        Object[] metrics = getMetricsValues(smallest.currentRecord);
+                        reuseAggrs.reset();
                         reuseAggrs.aggregate(metrics);
-                    } while (smallest.isSameKey(heap.peek()));
+                        do {
+                            MergeSlot slot = heap.poll();
+                            open.add(slot);
+                            metrics = getMetricsValues(slot.currentRecord);
+                            reuseAggrs.aggregate(metrics);
+                        } while (smallest.isSameKey(heap.peek()));
+
+                        reuseAggrs.collectStates(metrics);
+                        setMetricsValues(smallest.currentRecord, metrics);
+                    }
 
-                    reuseAggrs.collectStates(metrics);
-                    setMetricsValues(smallest.currentRecord, metrics);
+                    output.write(cuboidId, smallest.currentRecord);
+                }
+            } finally {
+                for (MergeSlot slot : open) {
+                    slot.close();
+                }
+                for (MergeSlot slot : heap) {
+                    slot.close();
                 }
-
-                output.write(smallest.currentCuboidId, smallest.currentRecord);
             }
         }
 
@@ -376,58 +502,117 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
 
         private ImmutableBitSet getMetricsColumns(GTRecord record) {
             // metrics columns always come after dimension columns
-            if (lastCuboidColumnCount == record.getInfo().getColumnCount())
-                return lastMetricsColumns;
+            if (metricsColumns == null) {
+                int to = record.getInfo().getColumnCount();
+                int from = to - reuseMetricsArray.length;
+                metricsColumns = new ImmutableBitSet(from, to);
+            }
+            return metricsColumns;
+        }
+    }
 
-            int to = record.getInfo().getColumnCount();
-            int from = to - reuseMetricsArray.length;
-            lastCuboidColumnCount = record.getInfo().getColumnCount();
-            lastMetricsColumns = new ImmutableBitSet(from, to);
-            return lastMetricsColumns;
+    /**
+     * Hands merged records over to the output thread in batches, at most MERGE_QUEUE_BATCHES are held.
+     * A batch is up to MERGE_BATCH_ROWS, fewer if the queue would not fit in the given bytes otherwise.
+     */
+    private static class QueueCuboidWriter implements ICuboidWriter {
+
+        final BlockingQueue<List<GTRecord>> queue = new ArrayBlockingQueue<List<GTRecord>>(MERGE_QUEUE_BATCHES);
+        final int batchRows;
+        List<GTRecord> batch;
+
+        QueueCuboidWriter(int recordBytes, long queueBytes) {
+            // the queued batches plus the one being filled
+            long rows = queueBytes / (MERGE_QUEUE_BATCHES + 1) / recordBytes;
+            this.batchRows = (int) Math.max(1, Math.min(MERGE_BATCH_ROWS, rows));
+            this.batch = Lists.newArrayListWithCapacity(batchRows);
+        }
+
+        @Override
+        public void write(long cuboidId, GTRecord record) throws IOException {
+            batch.add(record.copy());
+            if (batch.size() >= batchRows)
+                flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!batch.isEmpty()) {
+                put(batch);
+                batch = Lists.newArrayListWithCapacity(batchRows);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            markEnd();
+        }
+
+        void markEnd() throws IOException {
+            put(Collections.<GTRecord> emptyList());
+        }
+
+        private void put(List<GTRecord> records) throws IOException {
+            try {
+                queue.put(records);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while merging cuboid", e);
+            }
+        }
+
+        // next batch, or an empty one at the end; rethrows the failure of the merge
+        List<GTRecord> take(Future<?> merge) throws IOException {
+            try {
+                List<GTRecord> records = queue.take();
+                if (records.isEmpty())
+                    merge.get();
+                return records;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting cuboid merge", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                throw new IOException(cause);
+            }
         }
     }
 
     private static class MergeSlot implements Comparable<MergeSlot> {
 
-        final Iterator<CuboidResult> cuboidIterator;
-        IGTScanner scanner;
-        Iterator<GTRecord> recordIterator;
+        final IGTScanner scanner;
+        final Iterator<GTRecord> recordIterator;
 
-        long currentCuboidId;
         GTRecord currentRecord;
+        boolean closed;
 
-        public MergeSlot(SplitThread split) {
-            cuboidIterator = split.buildResult.values().iterator();
+        public MergeSlot(CuboidResult cuboid) throws IOException {
+            scanner = cuboid.table.scan(new GTScanRequestBuilder().setInfo(cuboid.table.getInfo()).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+            recordIterator = scanner.iterator();
         }
 
         public boolean fetchNext() throws IOException {
-            if (recordIterator == null) {
-                if (cuboidIterator.hasNext()) {
-                    CuboidResult cuboid = cuboidIterator.next();
-                    currentCuboidId = cuboid.cuboidId;
-                    scanner = cuboid.table.scan(new GTScanRequestBuilder().setInfo(cuboid.table.getInfo()).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
-                    recordIterator = scanner.iterator();
-                } else {
-                    return false;
-                }
-            }
-
             if (recordIterator.hasNext()) {
                 currentRecord = recordIterator.next();
                 return true;
             } else {
+                close();
+                return false;
+            }
+        }
+
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
                 scanner.close();
-                recordIterator = null;
-                return fetchNext();
             }
         }
 
         @Override
         public int compareTo(MergeSlot o) {
-            long cuboidComp = this.currentCuboidId - o.currentCuboidId;
-            if (cuboidComp != 0)
-                return cuboidComp < 0 ? -1 : 1;
-
             // note GTRecord.equals() don't work because the two GTRecord comes from different GridTable
             ImmutableBitSet pk = this.currentRecord.getInfo().getPrimaryKey();
             for (int i = 0; i < pk.trueBitCount(); i++) {
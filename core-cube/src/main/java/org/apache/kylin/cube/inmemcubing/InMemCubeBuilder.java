@@ -19,16 +19,22 @@
 package org.apache.kylin.cube.inmemcubing;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
@@ -46,6 +52,7 @@ import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GTScanRequestBuilder;
 import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.measure.topn.Counter;
 import org.apache.kylin.measure.topn.TopNCounter;
@@ -57,6 +64,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Build a cube (many cuboids) in memory. Calculating multiple cuboids at the same time as long as memory permits.
@@ -70,28 +78,34 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private static final double DERIVE_AGGR_CACHE_CONSTANT_FACTOR = 0.1;
     private static final double DERIVE_AGGR_CACHE_VARIABLE_FACTOR = 0.9;
 
-    private final CuboidScheduler cuboidScheduler;
     private final long baseCuboidId;
     private final int totalCuboidCount;
     private final String[] metricsAggrFuncs;
     private final MeasureDesc[] measureDescs;
     private final int measureCount;
+    private final boolean useMappedStore;
+    private final boolean compressMappedStore;
 
     private MemoryBudgetController memBudget;
     private MemoryWaterLevel baseCuboidMemTracker;
 
-    private Thread[] taskThreads;
-    private Throwable[] taskThreadExceptions;
-    private TreeSet<CuboidTask> taskPending;
+    private final Map<Long, Integer> subtreeCuboidCounts = Maps.newHashMap();
+    private volatile ForkJoinPool taskPool;
+    private volatile boolean taskAborted;
     private AtomicInteger taskCuboidCompleted = new AtomicInteger(0);
+    private AtomicLong taskBusyMillis = new AtomicLong(0);
+    private AtomicLong taskMaxWaitMillis = new AtomicLong(0);
 
     private CuboidResult baseResult;
     private Object[] totalSumForSanityCheck;
     private ICuboidCollector resultCollector;
 
     public InMemCubeBuilder(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
-        super(cubeDesc, flatDesc, dictionaryMap);
-        this.cuboidScheduler = new CuboidScheduler(cubeDesc);
+        this(cubeDesc, new CuboidScheduler(cubeDesc), flatDesc, dictionaryMap);
+    }
+
+    public InMemCubeBuilder(CubeDesc cubeDesc, CuboidScheduler cuboidScheduler, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        super(cubeDesc, cuboidScheduler, flatDesc, dictionaryMap);
         this.baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
         this.totalCuboidCount = cuboidScheduler.getCuboidCount();
 
@@ -105,6 +119,19 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
             metricsAggrFuncsList.add(measureDesc.getFunction().getExpression());
         }
         this.metricsAggrFuncs = metricsAggrFuncsList.toArray(new String[metricsAggrFuncsList.size()]);
+        countSubtreeCuboids(baseCuboidId);
+
+        this.useMappedStore = cubeDesc.getConfig().isInMemCubingMappedStoreEnabled();
+        this.compressMappedStore = cubeDesc.getConfig().isInMemCubingMappedStoreCompressed();
+    }
+
+    private int countSubtreeCuboids(long cuboidId) {
+        int count = 1;
+        for (Long child : cuboidScheduler.getSpanningCuboid(cuboidId)) {
+            count += countSubtreeCuboids(child);
+        }
+        subtreeCuboidCounts.put(cuboidId, count);
+        return count;
     }
 
     private GridTable newGridTableByCuboidID(long cuboidID) throws IOException {
@@ -113,7 +140,13 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         // Below several store implementation are very similar in performance. The ConcurrentDiskStore is the simplest.
         // MemDiskStore store = new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget);
         // MemDiskStore store = new MemDiskStore(info, MemoryBudgetController.ZERO_BUDGET);
-        ConcurrentDiskStore store = new ConcurrentDiskStore(info);
+        // The MappedFileStore leaves paging to OS, holds no heap and is optionally compressed, good for large splits.
+        IGTStore store;
+        if (useMappedStore) {
+            store = new MappedFileStore(info, compressMappedStore);
+        } else {
+            store = new ConcurrentDiskStore(info);
+        }
 
         GridTable gridTable = new GridTable(info, store);
         return gridTable;
@@ -149,160 +182,98 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         void collect(CuboidResult result);
     }
 
-    private void build(BlockingQueue<List<String>> input, ICuboidCollector collector) throws IOException {
+    void build(BlockingQueue<List<String>> input, ICuboidCollector collector) throws IOException {
         long startTime = System.currentTimeMillis();
         logger.info("In Mem Cube Build start, " + cubeDesc.getName());
 
         baseCuboidMemTracker = new MemoryWaterLevel();
         baseCuboidMemTracker.markLow();
 
-        // multiple threads to compute cuboid in parallel
-        taskPending = new TreeSet<CuboidTask>();
+        // a work-stealing pool to compute cuboids in parallel
         taskCuboidCompleted.set(0);
-        taskThreads = prepareTaskThreads();
-        taskThreadExceptions = new Throwable[taskThreadCount];
-
-        // build base cuboid
-        resultCollector = collector;
-        totalSumForSanityCheck = null;
-        baseResult = createBaseCuboid(input);
-        if (baseResult.nRows == 0)
-            return;
+        taskBusyMillis.set(0);
+        taskMaxWaitMillis.set(0);
+        taskAborted = false;
+        taskPool = new ForkJoinPool(taskThreadCount, new CuboidTaskThreadFactory(), null, false);
 
-        // plan memory budget
-        baseCuboidMemTracker.markLow();
-        makeMemoryBudget();
-
-        // kick off N-D cuboid tasks and output
-        addChildTasks(baseResult);
-        start(taskThreads);
-
-        // wait complete
-        join(taskThreads);
+        try {
+            // build base cuboid
+            resultCollector = collector;
+            totalSumForSanityCheck = null;
+            baseResult = createBaseCuboid(input);
+            if (baseResult.nRows == 0)
+                return;
+
+            // plan memory budget
+            baseCuboidMemTracker.markLow();
+            makeMemoryBudget();
+
+            // kick off N-D cuboid tasks and wait complete
+            long taskStartTime = System.currentTimeMillis();
+            try {
+                taskPool.invoke(new ChildCuboidTasks(baseResult));
+            } catch (Throwable ex) {
+                // tasks on other branches are still running, stop them from going deeper
+                taskAborted = true;
+                throw toIOException(ex);
+            }
+            logTaskMetrics(System.currentTimeMillis() - taskStartTime);
+        } finally {
+            awaitTaskPoolQuiesce();
+        }
 
         long endTime = System.currentTimeMillis();
         logger.info("In Mem Cube Build end, " + cubeDesc.getName() + ", takes " + (endTime - startTime) + " ms");
-
-        throwExceptionIfAny();
     }
 
     public void abort() {
-        interrupt(taskThreads);
-    }
-
-    private void start(Thread... threads) {
-        for (Thread t : threads)
-            t.start();
-    }
-
-    private void interrupt(Thread... threads) {
-        for (Thread t : threads)
-            t.interrupt();
+        taskAborted = true;
+        ForkJoinPool pool = taskPool;
+        if (pool != null)
+            pool.shutdownNow();
     }
 
-    private void join(Thread... threads) throws IOException {
+    // in-flight tasks still use the memory budget and the collector, don't return before they are done
+    private void awaitTaskPoolQuiesce() {
+        taskPool.shutdown();
         try {
-            for (Thread t : threads)
-                t.join();
+            while (!taskPool.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.info("Waiting for in-flight cuboid tasks to finish");
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new IOException("interrupted while waiting task and output complete", e);
+            taskPool.shutdownNow();
         }
     }
 
-    private void throwExceptionIfAny() throws IOException {
-        ArrayList<Throwable> errors = new ArrayList<Throwable>();
-        for (int i = 0; i < taskThreadCount; i++) {
-            Throwable t = taskThreadExceptions[i];
-            if (t != null)
-                errors.add(t);
-        }
-        if (errors.isEmpty()) {
-            return;
-        } else if (errors.size() == 1) {
-            Throwable t = errors.get(0);
+    private IOException toIOException(Throwable ex) {
+        // exceptions of a task may be wrapped when rethrown in another thread
+        for (Throwable t = ex; t != null; t = t.getCause()) {
             if (t instanceof IOException)
-                throw (IOException) t;
-            else
-                throw new IOException(t);
-        } else {
-            for (Throwable t : errors)
-                logger.error("Exception during in-mem cube build", t);
-            throw new IOException(errors.size() + " exceptions during in-mem cube build, cause set to the first, check log for more", errors.get(0));
+                return (IOException) t;
         }
+        if (ex instanceof CancellationException || ex instanceof RejectedExecutionException)
+            return new IOException("in-mem cube build is aborted", ex);
+        return new IOException(ex);
     }
 
-    private Thread[] prepareTaskThreads() {
-        Thread[] result = new Thread[taskThreadCount];
-        for (int i = 0; i < taskThreadCount; i++) {
-            result[i] = new CuboidTaskThread(i);
-        }
-        return result;
+    private void logTaskMetrics(long wallMillis) {
+        long busy = taskBusyMillis.get();
+        double utilization = wallMillis == 0 ? 1.0 : (double) busy / wallMillis / taskThreadCount;
+        logger.info(String.format("%d cuboid tasks on %d threads, busy %d ms in %d ms, CPU utilization %.2f, %d tasks stolen, max task wait %d ms", //
+                taskCuboidCompleted.get() - 1, taskThreadCount, busy, wallMillis, utilization, taskPool.getStealCount(), taskMaxWaitMillis.get()));
     }
 
     public boolean isAllCuboidDone() {
         return taskCuboidCompleted.get() == totalCuboidCount;
     }
 
-    private class CuboidTaskThread extends Thread {
-        private int id;
-
-        CuboidTaskThread(int id) {
-            super("CuboidTask-" + id);
-            this.id = id;
-        }
-
+    private static class CuboidTaskThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
         @Override
-        public void run() {
-            try {
-                while (!isAllCuboidDone()) {
-                    CuboidTask task = null;
-                    synchronized (taskPending) {
-                        while (task == null && taskHasNoException()) {
-                            task = taskPending.pollFirst();
-                            if (task == null)
-                                taskPending.wait(60000);
-                        }
-                    }
-                    // if task error occurs
-                    if (task == null)
-                        break;
-
-                    CuboidResult newCuboid = buildCuboid(task.parent, task.childCuboidId);
-                    addChildTasks(newCuboid);
-
-                    if (isAllCuboidDone()) {
-                        for (Thread t : taskThreads) {
-                            if (t != Thread.currentThread())
-                                t.interrupt();
-                        }
-                    }
-                }
-            } catch (Throwable ex) {
-                if (!isAllCuboidDone()) {
-                    logger.error("task thread exception", ex);
-                    taskThreadExceptions[id] = ex;
-                }
-            }
-        }
-    }
-
-    private boolean taskHasNoException() {
-        for (int i = 0; i < taskThreadExceptions.length; i++)
-            if (taskThreadExceptions[i] != null)
-                return false;
-        return true;
-    }
-
-    private void addChildTasks(CuboidResult parent) {
-        List<Long> children = cuboidScheduler.getSpanningCuboid(parent.cuboidId);
-        if (!children.isEmpty()) {
-            synchronized (taskPending) {
-                for (Long child : children) {
-                    taskPending.add(new CuboidTask(parent, child));
-                }
-                taskPending.notifyAll();
-            }
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("CuboidTask-" + thread.getPoolIndex());
+            return thread;
         }
     }
 
@@ -322,7 +293,8 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         }
 
         logger.debug("Memory Budget is " + budget + " MB");
-        memBudget = new MemoryBudgetController(budget);
+        // check against the avail memory measured above, a second reading can be lower by the little reserve
+        memBudget = new MemoryBudgetController(budget, systemAvailMB);
     }
 
     private CuboidResult createBaseCuboid(BlockingQueue<List<String>> input) throws IOException {
@@ -492,17 +464,88 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
     // ===========================================================================
 
-    private static class CuboidTask implements Comparable<CuboidTask> {
+    /**
+     * Tasks of all children of a parent cuboid, each child task goes on to build its own children.
+     * Sorted biggest subtree first, so invokeAll() builds the biggest on the current thread and
+     * an idle thread steals the next biggest to work on.
+     */
+    private List<CuboidTask> createChildTasks(CuboidResult parent) {
+        List<Long> children = cuboidScheduler.getSpanningCuboid(parent.cuboidId);
+        List<CuboidTask> tasks = Lists.newArrayListWithCapacity(children.size());
+        for (Long child : children) {
+            tasks.add(new CuboidTask(parent, child));
+        }
+        Collections.sort(tasks);
+        return tasks;
+    }
+
+    private class ChildCuboidTasks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
         final CuboidResult parent;
+
+        ChildCuboidTasks(CuboidResult parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(createChildTasks(parent));
+        }
+    }
+
+    private class CuboidTask extends RecursiveAction implements Comparable<CuboidTask> {
+        private static final long serialVersionUID = 1L;
+
+        // dropped once the child is built, so the parent is unreachable from tasks when all its children are built
+        CuboidResult parent;
         final long childCuboidId;
+        final int subtreeCuboidCount;
+        final long createTime = System.currentTimeMillis();
 
         CuboidTask(CuboidResult parent, long childCuboidId) {
             this.parent = parent;
             this.childCuboidId = childCuboidId;
+            this.subtreeCuboidCount = subtreeCuboidCounts.get(childCuboidId);
+        }
+
+        @Override
+        protected void compute() {
+            // the parent of children is the new cuboid, which is smaller than this parent
+            invokeAll(createChildTasks(buildChild()));
+        }
+
+        private CuboidResult buildChild() {
+            if (taskAborted)
+                throw new CancellationException("in-mem cube build is aborted");
+
+            long startTime = System.currentTimeMillis();
+            long wait = startTime - createTime;
+            long maxWait = taskMaxWaitMillis.get();
+            while (wait > maxWait && !taskMaxWaitMillis.compareAndSet(maxWait, wait)) {
+                maxWait = taskMaxWaitMillis.get();
+            }
+
+            boolean built = false;
+            try {
+                CuboidResult newCuboid = buildCuboid(parent, childCuboidId);
+                built = true;
+                parent = null;
+                return newCuboid;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                // fail fast, siblings and tasks on other threads won't start new cuboids
+                if (!built)
+                    taskAborted = true;
+                taskBusyMillis.addAndGet(System.currentTimeMillis() - startTime);
+            }
         }
 
         @Override
         public int compareTo(CuboidTask o) {
+            if (this.subtreeCuboidCount != o.subtreeCuboidCount)
+                return this.subtreeCuboidCount > o.subtreeCuboidCount ? -1 : 1;
             long comp = this.childCuboidId - o.childCuboidId;
             return comp < 0 ? -1 : (comp > 0 ? 1 : 0);
         }
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.util.DirectBufferUtil;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.IGTWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * A store that appends records to memory-mapped segment files, allows concurrent read and exclusive write.
+ *
+ * Records are written straight into the mapped pages and read back from the same mapping, paging
+ * between memory and disk is left to the OS, so no heap is held and no budget is needed.
+ * A segment is [length (4 bytes)][record] repeated, or when compressed, [raw length][lz4 length][lz4 block]
+ * repeated with each block holding records of about 64 KB. Segments start small and double in size.
+ */
+public class MappedFileStore implements IGTStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileStore.class);
+
+    // a cube has many small cuboids, most of them fit in the first segment
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    final private GTInfo info;
+    final private Object lock;
+    final private File dir;
+    final private boolean compress;
+
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private Writer activeWriter;
+    private int activeReaders;
+
+    public MappedFileStore(GTInfo info, boolean compress) throws IOException {
+        this.info = info;
+        this.lock = this;
+        this.dir = Files.createTempDirectory("MappedFileStore").toFile();
+        this.compress = compress;
+
+        // in case user forget to call close()
+        dir.deleteOnExit();
+
+        logger.debug(this + " segment dir " + dir.getAbsolutePath());
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public IGTWriter rebuild() throws IOException {
+        synchronized (lock) {
+            checkNoActiveAccess();
+            deleteSegments();
+            return activeWriter = new Writer();
+        }
+    }
+
+    @Override
+    public IGTWriter append() throws IOException {
+        synchronized (lock) {
+            checkNoActiveAccess();
+            return activeWriter = new Writer();
+        }
+    }
+
+    private void closeWriter(Writer w) {
+        synchronized (lock) {
+            if (activeWriter != w)
+                throw new IllegalStateException();
+
+            activeWriter = null;
+        }
+    }
+
+    @Override
+    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null)
+                throw new IllegalStateException();
+
+            activeReaders++;
+            return new Reader(new ArrayList<Segment>(segments));
+        }
+    }
+
+    private void closeReader() {
+        synchronized (lock) {
+            if (activeReaders <= 0)
+                throw new IllegalStateException();
+
+            activeReaders--;
+        }
+    }
+
+    private void checkNoActiveAccess() {
+        if (activeWriter != null || activeReaders > 0)
+            throw new IllegalStateException();
+    }
+
+    private static class Segment {
+        final File file;
+        final MappedByteBuffer buffer;
+        int length;
+
+        Segment(File file, int size) throws IOException {
+            this.file = file;
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                // the mapping stays valid after the file is closed
+                this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                raf.close();
+            }
+        }
+
+        ByteBuffer readBuffer() {
+            ByteBuffer result = buffer.duplicate();
+            result.position(0);
+            result.limit(length);
+            return result;
+        }
+    }
+
+    private class Reader implements IGTScanner {
+        final List<Segment> toRead;
+        long count;
+
+        Reader(List<Segment> toRead) {
+            this.toRead = toRead;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            count = 0;
+            return new Iterator<GTRecord>() {
+                final GTRecord record = new GTRecord(info);
+                final ByteBuffer recordBuf = ByteBuffer.allocate(info.getMaxRecordLength());
+                ByteBuffer blockBuf;
+                final LZ4FastDecompressor decompressor = compress ? LZ4Factory.fastestInstance().fastDecompressor() : null;
+                byte[] compressed = new byte[0];
+                int segIndex = 0;
+                ByteBuffer in;
+                GTRecord next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next != null)
+                        return true;
+
+                    if (compress) {
+                        if (blockBuf == null || blockBuf.hasRemaining() == false) {
+                            if (nextInput() == false)
+                                return false;
+                            readBlock();
+                        }
+                        blockBuf.getInt(); // record length
+                        record.loadColumns(info.getAllColumns(), blockBuf);
+                    } else {
+                        if (nextInput() == false)
+                            return false;
+                        int len = in.getInt();
+                        recordBuf.clear();
+                        in.get(recordBuf.array(), 0, len);
+                        recordBuf.limit(len);
+                        record.loadColumns(info.getAllColumns(), recordBuf);
+                    }
+                    next = record;
+                    return true;
+                }
+
+                private boolean nextInput() {
+                    while (in == null || in.hasRemaining() == false) {
+                        if (segIndex >= toRead.size())
+                            return false;
+                        in = toRead.get(segIndex++).readBuffer();
+                    }
+                    return true;
+                }
+
+                private void readBlock() {
+                    int rawLen = in.getInt();
+                    int compressedLen = in.getInt();
+                    if (compressed.length < compressedLen)
+                        compressed = new byte[compressedLen];
+                    in.get(compressed, 0, compressedLen);
+                    if (blockBuf == null || blockBuf.capacity() < rawLen)
+                        blockBuf = ByteBuffer.allocate(rawLen);
+                    blockBuf.clear();
+                    decompressor.decompress(compressed, 0, blockBuf.array(), 0, rawLen);
+                    blockBuf.limit(rawLen);
+                }
+
+                @Override
+                public GTRecord next() {
+                    if (next == null) {
+                        hasNext();
+                        if (next == null)
+                            throw new NoSuchElementException();
+                    }
+                    GTRecord r = next;
+                    next = null;
+                    count++;
+                    return r;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeReader();
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public long getScannedRowCount() {
+            return count;
+        }
+    }
+
+    private class Writer implements IGTWriter {
+        final ByteBuffer recordBuf = ByteBuffer.allocate(info.getMaxRecordLength());
+        final ByteBuffer blockBuf = compress ? ByteBuffer.allocate(BLOCK_SIZE + 4 + info.getMaxRecordLength()) : null;
+        final LZ4Compressor compressor = compress ? LZ4Factory.fastestInstance().fastCompressor() : null;
+        final byte[] compressed = compress ? new byte[compressor.maxCompressedLength(blockBuf.capacity())] : null;
+        Segment current;
+        long bytesWritten;
+
+        @Override
+        public void write(GTRecord rec) throws IOException {
+            recordBuf.clear();
+            rec.exportColumns(info.getAllColumns(), recordBuf);
+            int len = recordBuf.position();
+
+            if (compress) {
+                if (blockBuf.position() > 0 && blockBuf.position() + 4 + len > BLOCK_SIZE)
+                    flushBlock();
+                blockBuf.putInt(len);
+                blockBuf.put(recordBuf.array(), 0, len);
+            } else {
+                MappedByteBuffer out = ensureRoom(4 + len);
+                out.putInt(len);
+                out.put(recordBuf.array(), 0, len);
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            int rawLen = blockBuf.position();
+            int compressedLen = compressor.compress(blockBuf.array(), 0, rawLen, compressed, 0, compressed.length);
+            MappedByteBuffer out = ensureRoom(8 + compressedLen);
+            out.putInt(rawLen);
+            out.putInt(compressedLen);
+            out.put(compressed, 0, compressedLen);
+            blockBuf.clear();
+        }
+
+        private MappedByteBuffer ensureRoom(int size) throws IOException {
+            if (current == null || current.buffer.remaining() < size) {
+                int segSize = current == null ? MIN_SEGMENT_SIZE : Math.min(MAX_SEGMENT_SIZE, current.buffer.capacity() * 2);
+                finishSegment();
+                current = new Segment(new File(dir, "segment-" + segments.size()), Math.max(segSize, size));
+            }
+            return current.buffer;
+        }
+
+        private void finishSegment() {
+            if (current != null) {
+                current.length = current.buffer.position();
+                bytesWritten += current.length;
+                synchronized (lock) {
+                    segments.add(current);
+                }
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (compress && blockBuf.position() > 0)
+                flushBlock();
+            finishSegment();
+            closeWriter(this);
+
+            logger.debug(MappedFileStore.this + " wrote " + bytesWritten + " bytes, " + segments.size() + " segments");
+        }
+    }
+
+    private void deleteSegments() {
+        for (Segment seg : segments) {
+            // unmap now, a mapping left to GC holds the disk space of the deleted file
+            DirectBufferUtil.release(seg.buffer);
+            seg.file.delete();
+        }
+        segments.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            checkNoActiveAccess();
+            deleteSegments();
+            dir.delete();
+
+            logger.debug(this + " closed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFileStore@" + (info.getTableName() == null ? this.hashCode() : info.getTableName());
+    }
+}
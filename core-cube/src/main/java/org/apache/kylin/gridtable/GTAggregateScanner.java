@@ -30,6 +30,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.SortedMap;
 import java.util.Map.Entry;
@@ -37,14 +38,20 @@ import java.util.Map.Entry;
 import org.apache.commons.io.IOUtils;
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.common.util.MemoryBudgetController.MemoryWaterLevel;
 import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.measure.IDoubleBatchAggregator;
+import org.apache.kylin.measure.ILongBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.measure.MeasureAggregators;
 import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.apache.kylin.metadata.datatype.DoubleSerializer;
+import org.apache.kylin.metadata.datatype.LongSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +63,9 @@ public class GTAggregateScanner implements IGTScanner {
 
     private static final Logger logger = LoggerFactory.getLogger(GTAggregateScanner.class);
 
+    private static final int BATCH_SIZE = 256;
+    private static final int BUDGET_CHECK_ROWS = 10000;
+
     final GTInfo info;
     final ImmutableBitSet dimensions; // dimensions to return, can be more than group by
     final ImmutableBitSet groupBy;
@@ -64,6 +74,7 @@ public class GTAggregateScanner implements IGTScanner {
     final IGTScanner inputScanner;
     final AggregationCache aggrCache;
     final long spillThreshold;
+    final MemoryBudgetController memBudget; // shared by concurrent scans, null if not shared
     final int storagePushDownLimit;//default to be Int.MAX
     final long deadline;
 
@@ -81,8 +92,9 @@ public class GTAggregateScanner implements IGTScanner {
         this.metrics = req.getAggrMetrics();
         this.metricsAggrFuncs = req.getAggrMetricsFuncs();
         this.inputScanner = inputScanner;
-        this.aggrCache = new AggregationCache();
+        this.aggrCache = new AggregationCache(req.isAggCacheOffHeap());
         this.spillThreshold = (long) (req.getAggCacheMemThreshold() * MemoryBudgetController.ONE_GB);
+        this.memBudget = req.getAggCacheMemBudget();
         this.aggrMask = new boolean[metricsAggrFuncs.length];
         this.storagePushDownLimit = req.getStoragePushDownLimit();
         this.deadline = deadline;
@@ -90,6 +102,32 @@ public class GTAggregateScanner implements IGTScanner {
         Arrays.fill(aggrMask, true);
     }
 
+    /** how a metric is decoded from its column bytes, the primitive ones without boxing */
+    enum MetricDecode {
+        OBJECT, VLONG, DOUBLE
+    }
+
+    /**
+     * the metrics serialized as vlong or double by the DataTypeSerializer of their type, like the code systems
+     * do, can be read straight from the column bytes
+     */
+    static MetricDecode[] resolveMetricDecodes(GTInfo info, ImmutableBitSet metrics) {
+        MetricDecode[] result = new MetricDecode[metrics.trueBitCount()];
+        for (int i = 0; i < result.length; i++) {
+            DataType type = info.getColumnType(metrics.trueBitAt(i));
+            result[i] = MetricDecode.OBJECT;
+            if (type.isNumberFamily() && !type.isDecimal()) {
+                Class<?> serializer = DataTypeSerializer.create(type).getClass();
+                if (serializer == LongSerializer.class) {
+                    result[i] = MetricDecode.VLONG;
+                } else if (serializer == DoubleSerializer.class) {
+                    result[i] = MetricDecode.DOUBLE;
+                }
+            }
+        }
+        return result;
+    }
+
     public static long estimateSizeOfAggrCache(byte[] keySample, MeasureAggregator<?>[] aggrSample, int size) {
         // Aggregation cache is basically a tree map. The tree map entry overhead is
         // - 40 according to http://java-performance.info/memory-consumption-of-java-data-types-2/
@@ -132,6 +170,9 @@ public class GTAggregateScanner implements IGTScanner {
     public void close() throws IOException {
         inputScanner.close();
         aggrCache.close();
+        if (memBudget != null) {
+            memBudget.reserve(aggrCache, 0);
+        }
     }
 
     @Override
@@ -168,6 +209,12 @@ public class GTAggregateScanner implements IGTScanner {
 
     public void setAggrMask(boolean[] aggrMask) {
         this.aggrMask = aggrMask;
+        for (boolean m : aggrMask) {
+            if (!m) {
+                // the off-heap table aggregates every measure of a slot
+                aggrCache.disableOffHeap();
+            }
+        }
     }
 
     /** return the estimate memory size of aggregation cache */
@@ -175,7 +222,7 @@ public class GTAggregateScanner implements IGTScanner {
         return aggrCache.estimatedMemSize();
     }
 
-    class AggregationCache implements Closeable {
+    class AggregationCache implements Closeable, MemoryBudgetController.MemoryConsumer {
         final List<Dump> dumps;
         final int keyLength;
         final boolean[] compareMask;
@@ -209,8 +256,32 @@ public class GTAggregateScanner implements IGTScanner {
         };
 
         SortedMap<byte[], MeasureAggregator[]> aggBufMap;
-
-        public AggregationCache() {
+        OffHeapAggregationTable offHeapTable; // used instead of aggBufMap if not null
+
+        // Column batch of the latest records. Primitive measures are decoded straight from the column bytes into
+        // the batch, which is aggregated group by group when full, so the aggregator of a group takes all its
+        // values of the batch in one call, whether or not the records of the group are consecutive.
+        final MetricDecode[] metricDecodes;
+        final long[][] longBatch; // by metric, null if not a vlong into ILongBatchAggregator
+        final double[][] doubleBatch; // by metric, null if not a double into IDoubleBatchAggregator
+        final int[] batchGroups = new int[BATCH_SIZE]; // index into groupAggrs of each record
+        final List<MeasureAggregator[]> groupAggrs = Lists.newArrayList(); // the groups of the batch
+        final Map<MeasureAggregator[], Integer> groupIndexes = Maps.newIdentityHashMap();
+        final int[] groupStarts = new int[BATCH_SIZE + 1];
+        final int[] groupFills = new int[BATCH_SIZE];
+        final int[] batchOrder = new int[BATCH_SIZE]; // records ordered by group
+        final long[] longSorted = new long[BATCH_SIZE];
+        final double[] doubleSorted = new double[BATCH_SIZE];
+        int batchLength;
+        byte[] lastKey; // the input is usually sorted by dimensions, a record often has the group of the last one
+        int lastGroup;
+
+        // set by other scans short of the shared budget, the spill is done by the thread of this scan
+        volatile boolean spillRequested = false;
+        volatile boolean reserving = false;
+        long sizeAfterSpill = 0;
+
+        public AggregationCache(boolean offHeap) {
             compareMask = createCompareMask();
             for (boolean l : compareMask) {
                 compareAll = compareAll && l;
@@ -219,6 +290,36 @@ public class GTAggregateScanner implements IGTScanner {
             dumps = Lists.newArrayList();
             aggBufMap = createBuffMap();
             measureCodec = createMeasureCodec();
+
+            metricDecodes = resolveMetricDecodes(info, metrics);
+            MeasureAggregator[] sample = newAggregators();
+            longBatch = new long[sample.length][];
+            doubleBatch = new double[sample.length][];
+            for (int i = 0; i < sample.length; i++) {
+                if (sample[i] instanceof ILongBatchAggregator && metricDecodes[i] == MetricDecode.VLONG) {
+                    longBatch[i] = new long[BATCH_SIZE];
+                } else if (sample[i] instanceof IDoubleBatchAggregator && metricDecodes[i] == MetricDecode.DOUBLE) {
+                    doubleBatch[i] = new double[BATCH_SIZE];
+                }
+            }
+
+            if (offHeap) {
+                OffHeapAggregationTable.SlotAggr[] slotAggrs = OffHeapAggregationTable.resolveSlotAggrs(info, metrics, metricsAggrFuncs);
+                if (slotAggrs != null) {
+                    offHeapTable = new OffHeapAggregationTable(keyLength, compareMask, slotAggrs);
+                } else {
+                    logger.info("Off-heap aggregation is not applicable to measures " + Arrays.toString(metricsAggrFuncs) + ", fall back to on-heap");
+                }
+            }
+        }
+
+        void disableOffHeap() {
+            if (offHeapTable != null) {
+                if (!offHeapTable.isEmpty())
+                    throw new IllegalStateException("Cannot switch to on-heap aggregation after rows are aggregated");
+                offHeapTable.close();
+                offHeapTable = null;
+            }
         }
 
         private BufferedMeasureCodec createMeasureCodec() {
@@ -283,38 +384,204 @@ public class GTAggregateScanner implements IGTScanner {
                     }
                 }
             }
+            if (memBudget != null && aggregatedRowCount % BUDGET_CHECK_ROWS == 0) {
+                reserveBudget();
+            }
 
             final byte[] key = createKey(r);
-            MeasureAggregator[] aggrs = aggBufMap.get(key);
-            if (aggrs == null) {
+            if (offHeapTable != null) {
+                return aggregateOffHeap(r, key, stopForLimit);
+            }
 
-                //for storage push down limit
-                if (aggBufMap.size() >= stopForLimit) {
-                    return false;
-                }
+            if (lastKey == null || bytesComparator.compare(lastKey, key) != 0) {
+                MeasureAggregator[] aggrs = aggBufMap.get(key);
+                if (aggrs == null) {
+
+                    //for storage push down limit
+                    if (aggBufMap.size() >= stopForLimit) {
+                        return false;
+                    }
 
-                aggrs = newAggregators();
-                aggBufMap.put(key, aggrs);
+                    aggrs = newAggregators();
+                    aggBufMap.put(key, aggrs);
+                }
+                lastKey = key;
+                lastGroup = indexOfGroup(aggrs);
             }
+
+            MeasureAggregator[] aggrs = groupAggrs.get(lastGroup);
             for (int i = 0; i < aggrs.length; i++) {
                 if (aggrMask[i]) {
                     int col = metrics.trueBitAt(i);
-                    Object metrics = info.codeSystem.decodeColumnValue(col, r.cols[col].asBuffer());
-                    aggrs[i].aggregate(metrics);
+                    ByteArray value = r.cols[col];
+                    if (longBatch[i] != null) {
+                        longBatch[i][batchLength] = BytesUtil.readVLong(value.array(), value.offset());
+                    } else if (doubleBatch[i] != null) {
+                        doubleBatch[i][batchLength] = Bytes.toDouble(value.array(), value.offset());
+                    } else {
+                        aggrs[i].aggregate(info.codeSystem.decodeColumnValue(col, value.asBuffer()));
+                    }
                 }
             }
+            batchGroups[batchLength] = lastGroup;
+            if (++batchLength == BATCH_SIZE) {
+                flushBatch();
+            }
             return true;
         }
 
+        private int indexOfGroup(MeasureAggregator[] aggrs) {
+            Integer index = groupIndexes.get(aggrs);
+            if (index == null) {
+                index = groupAggrs.size();
+                groupAggrs.add(aggrs);
+                groupIndexes.put(aggrs, index);
+            }
+            return index;
+        }
+
+        /** aggregate the pending column batch group by group, must be done before the groups are read or spilled */
+        void flushBatch() {
+            int groups = groupAggrs.size();
+            if (groups > 1) {
+                // counting sort of the records by group, then each group is a contiguous range
+                Arrays.fill(groupStarts, 0, groups + 1, 0);
+                for (int row = 0; row < batchLength; row++) {
+                    groupStarts[batchGroups[row] + 1]++;
+                }
+                for (int g = 0; g < groups; g++) {
+                    groupStarts[g + 1] += groupStarts[g];
+                }
+                System.arraycopy(groupStarts, 0, groupFills, 0, groups);
+                for (int row = 0; row < batchLength; row++) {
+                    batchOrder[groupFills[batchGroups[row]]++] = row;
+                }
+            } else {
+                groupStarts[0] = 0;
+                groupStarts[1] = batchLength;
+            }
+
+            for (int i = 0; i < aggrMask.length && groups > 0; i++) {
+                if (!aggrMask[i]) {
+                    continue;
+                }
+                if (longBatch[i] != null) {
+                    long[] values = longBatch[i];
+                    if (groups > 1) {
+                        for (int j = 0; j < batchLength; j++) {
+                            longSorted[j] = longBatch[i][batchOrder[j]];
+                        }
+                        values = longSorted;
+                    }
+                    for (int g = 0; g < groups; g++) {
+                        ((ILongBatchAggregator) groupAggrs.get(g)[i]).aggregate(values, groupStarts[g], groupStarts[g + 1] - groupStarts[g]);
+                    }
+                } else if (doubleBatch[i] != null) {
+                    double[] values = doubleBatch[i];
+                    if (groups > 1) {
+                        for (int j = 0; j < batchLength; j++) {
+                            doubleSorted[j] = doubleBatch[i][batchOrder[j]];
+                        }
+                        values = doubleSorted;
+                    }
+                    for (int g = 0; g < groups; g++) {
+                        ((IDoubleBatchAggregator) groupAggrs.get(g)[i]).aggregate(values, groupStarts[g], groupStarts[g + 1] - groupStarts[g]);
+                    }
+                }
+            }
+
+            batchLength = 0;
+            groupAggrs.clear();
+            groupIndexes.clear();
+            lastKey = null;
+        }
+
+        private boolean aggregateOffHeap(GTRecord r, byte[] key, int stopForLimit) {
+            int slot = offHeapTable.find(key);
+            if (slot < 0) {
+
+                //for storage push down limit
+                if (offHeapTable.size() >= stopForLimit) {
+                    return false;
+                }
+
+                // the table cannot grow any more, spill it before the spill threshold is reached
+                if (offHeapTable.isFull()) {
+                    logger.info("Spill off-heap aggregation table of " + offHeapTable.size() + " groups as it reaches the size limit");
+                    spillBuffMap();
+                    slot = offHeapTable.find(key);
+                }
+
+                slot = offHeapTable.insert(slot, key);
+            }
+            for (int i = 0; i < metricDecodes.length; i++) {
+                int col = metrics.trueBitAt(i);
+                ByteArray value = r.cols[col];
+                switch (metricDecodes[i]) {
+                case VLONG:
+                    offHeapTable.aggregate(slot, i, BytesUtil.readVLong(value.array(), value.offset()));
+                    break;
+                case DOUBLE:
+                    offHeapTable.aggregate(slot, i, Bytes.toDouble(value.array(), value.offset()));
+                    break;
+                default:
+                    offHeapTable.aggregate(slot, i, info.codeSystem.decodeColumnValue(col, value.asBuffer()));
+                }
+            }
+            return true;
+        }
+
+        /** keep the reservation in line with the cache size, spill if the shared budget cannot afford it */
+        private void reserveBudget() {
+            long memSize = estimatedMemSize();
+            if (!spillRequested && tryReserve(memSize)) {
+                return;
+            }
+
+            spillRequested = false;
+            if (memSize <= sizeAfterSpill) {
+                return; // nothing to free until the cache grows again, spilling now only makes another tiny dump
+            }
+
+            logger.info("Spill aggregation cache of " + memSize + " bytes because memory budget is short, " + memBudget.getRemainingBudgetMB() + " MB remaining");
+            spillBuffMap();
+            // the cache shrinks back on spill, keep only what it still holds
+            sizeAfterSpill = estimatedMemSize();
+            tryReserve(sizeAfterSpill);
+        }
+
+        private boolean tryReserve(long bytes) {
+            reserving = true;
+            try {
+                memBudget.reserve(this, (int) ((bytes + MemoryBudgetController.ONE_MB - 1) / MemoryBudgetController.ONE_MB));
+                return true;
+            } catch (MemoryBudgetController.NotEnoughBudgetException e) {
+                return false;
+            } finally {
+                reserving = false;
+            }
+        }
+
+        @Override
+        public int freeUp(int mb) {
+            // called by another scan, cannot touch the cache from its thread, ask for a spill at next check instead
+            if (!reserving) {
+                spillRequested = true;
+            }
+            return 0;
+        }
+
         private void spillBuffMap() throws RuntimeException {
-            if (aggBufMap.isEmpty())
+            flushBatch();
+            if (offHeapTable != null ? offHeapTable.isEmpty() : aggBufMap.isEmpty())
                 return;
 
             try {
-                Dump dump = new Dump(aggBufMap);
+                Dump dump = offHeapTable != null ? new Dump(offHeapTable) : new Dump(aggBufMap);
                 dump.flush();
                 dumps.add(dump);
-                aggBufMap = createBuffMap();
+                if (offHeapTable == null)
+                    aggBufMap = createBuffMap();
             } catch (Exception e) {
                 throw new RuntimeException("AggregationCache spill failed: " + e.getMessage());
             }
@@ -323,6 +590,9 @@ public class GTAggregateScanner implements IGTScanner {
         @Override
         public void close() throws RuntimeException {
             try {
+                if (offHeapTable != null) {
+                    offHeapTable.close();
+                }
                 for (Dump dump : dumps) {
                     dump.terminate();
                 }
@@ -336,6 +606,9 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         public long estimatedMemSize() {
+            if (offHeapTable != null)
+                return offHeapTable.memSize();
+
             if (aggBufMap.isEmpty())
                 return 0;
 
@@ -345,7 +618,38 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         public Iterator<GTRecord> iterator() {
-            if (dumps.isEmpty()) {
+            flushBatch();
+            if (dumps.isEmpty() && offHeapTable != null) {
+                // the all-in-mem case, off-heap
+
+                return new Iterator<GTRecord>() {
+
+                    final int[] slots = offHeapTable.sortedSlots();
+                    final byte[] key = new byte[keyLength];
+                    final Object[] values = new Object[metrics.trueBitCount()];
+                    final ReturningRecord returningRecord = new ReturningRecord();
+                    int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < slots.length;
+                    }
+
+                    @Override
+                    public GTRecord next() {
+                        int slot = slots[i++];
+                        offHeapTable.readKey(slot, key);
+                        offHeapTable.readValues(slot, values);
+                        returningRecord.load(key, values);
+                        return returningRecord.record;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            } else if (dumps.isEmpty()) {
                 // the all-in-mem case
 
                 return new Iterator<GTRecord>() {
@@ -406,6 +710,13 @@ public class GTAggregateScanner implements IGTScanner {
             final Object[] tmpValues = new Object[metrics.trueBitCount()];
 
             void load(byte[] key, MeasureAggregator[] value) {
+                for (int i = 0; i < value.length; i++) {
+                    tmpValues[i] = value[i].getState();
+                }
+                load(key, tmpValues);
+            }
+
+            void load(byte[] key, Object[] values) {
                 int offset = 0;
                 for (int i = 0; i < dimensions.trueBitCount(); i++) {
                     int c = dimensions.trueBitAt(i);
@@ -414,14 +725,10 @@ public class GTAggregateScanner implements IGTScanner {
                     offset += columnLength;
                 }
 
-                for (int i = 0; i < value.length; i++) {
-                    tmpValues[i] = value[i].getState();
-                }
-
-                byte[] bytes = measureCodec.encode(tmpValues).array();
+                byte[] bytes = measureCodec.encode(values).array();
                 int[] sizes = measureCodec.getMeasureSizes();
                 offset = 0;
-                for (int i = 0; i < value.length; i++) {
+                for (int i = 0; i < values.length; i++) {
                     int col = metrics.trueBitAt(i);
                     record.cols[col].set(bytes, offset, sizes[i]);
                     offset += sizes[i];
@@ -433,11 +740,16 @@ public class GTAggregateScanner implements IGTScanner {
             File dumpedFile;
             DataInputStream dis;
             SortedMap<byte[], MeasureAggregator[]> buffMap;
+            OffHeapAggregationTable offHeapTable;
 
             public Dump(SortedMap<byte[], MeasureAggregator[]> buffMap) throws IOException {
                 this.buffMap = buffMap;
             }
 
+            public Dump(OffHeapAggregationTable offHeapTable) throws IOException {
+                this.offHeapTable = offHeapTable;
+            }
+
             @Override
             public Iterator<Pair<byte[], byte[]>> iterator() {
                 try {
@@ -482,7 +794,9 @@ public class GTAggregateScanner implements IGTScanner {
             }
 
             public void flush() throws IOException {
-                if (buffMap != null) {
+                if (offHeapTable != null) {
+                    flushOffHeap();
+                } else if (buffMap != null) {
                     DataOutputStream dos = null;
                     Object[] aggrResult = null;
                     try {
@@ -508,6 +822,34 @@ public class GTAggregateScanner implements IGTScanner {
                 }
             }
 
+            private void flushOffHeap() throws IOException {
+                DataOutputStream dos = null;
+                try {
+                    dumpedFile = File.createTempFile("KYLIN_AGGR_", ".tmp");
+
+                    logger.info("AggregationCache will dump off-heap table to file: " + dumpedFile.getAbsolutePath());
+                    dos = new DataOutputStream(new FileOutputStream(dumpedFile));
+                    int[] slots = offHeapTable.sortedSlots();
+                    byte[] key = new byte[keyLength];
+                    Object[] values = new Object[metrics.trueBitCount()];
+                    dos.writeInt(slots.length);
+                    for (int slot : slots) {
+                        offHeapTable.readKey(slot, key);
+                        offHeapTable.readValues(slot, values);
+                        ByteBuffer metricsBuf = measureCodec.encode(values);
+                        dos.writeInt(key.length);
+                        dos.write(key);
+                        dos.writeInt(metricsBuf.position());
+                        dos.write(metricsBuf.array(), 0, metricsBuf.position());
+                    }
+                } finally {
+                    // the table is reused for the following rows
+                    offHeapTable.clear();
+                    offHeapTable = null;
+                    IOUtils.closeQuietly(dos);
+                }
+            }
+
             public void terminate() throws IOException {
                 buffMap = null;
                 if (dis != null)
@@ -30,6 +30,7 @@ import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.common.util.SerializeToByteBuffer;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.model.TblColRef;
@@ -38,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 
 public class GTScanRequest {
 
@@ -66,15 +68,17 @@ public class GTScanRequest {
     private long timeout;
     private boolean allowStorageAggregation;
     private double aggCacheMemThreshold;
+    private boolean aggCacheOffHeap;
     private int storageScanRowNumThreshold;
     private int storagePushDownLimit;
 
     // runtime computed fields
     private transient boolean doingStorageAggregation = false;
+    private transient MemoryBudgetController aggCacheMemBudget = null;
 
     GTScanRequest(GTInfo info, List<GTScanRange> ranges, ImmutableBitSet dimensions, ImmutableBitSet aggrGroupBy, //
             ImmutableBitSet aggrMetrics, String[] aggrMetricsFuncs, TupleFilter filterPushDown, boolean allowStorageAggregation, //
-            double aggCacheMemThreshold, int storageScanRowNumThreshold, int storagePushDownLimit, String storageBehavior, long startTime, long timeout) {
+            double aggCacheMemThreshold, boolean aggCacheOffHeap, int storageScanRowNumThreshold, int storagePushDownLimit, String storageBehavior, long startTime, long timeout) {
         this.info = info;
         if (ranges == null) {
             this.ranges = Lists.newArrayList(new GTScanRange(new GTRecord(info), new GTRecord(info)));
@@ -93,6 +97,7 @@ public class GTScanRequest {
         this.timeout = timeout;
         this.allowStorageAggregation = allowStorageAggregation;
         this.aggCacheMemThreshold = aggCacheMemThreshold;
+        this.aggCacheOffHeap = aggCacheOffHeap;
         this.storageScanRowNumThreshold = storageScanRowNumThreshold;
         this.storagePushDownLimit = storagePushDownLimit;
 
@@ -284,6 +289,20 @@ public class GTScanRequest {
         this.aggCacheMemThreshold = 0;
     }
 
+    /** the budget shared by concurrent scans that the aggregation cache reserves memory from, null if not shared */
+    public MemoryBudgetController getAggCacheMemBudget() {
+        return aggCacheMemBudget;
+    }
+
+    public void setAggCacheMemBudget(MemoryBudgetController aggCacheMemBudget) {
+        this.aggCacheMemBudget = aggCacheMemBudget;
+    }
+
+    /** whether the aggregation cache should use the off-heap hash table when measures allow */
+    public boolean isAggCacheOffHeap() {
+        return aggCacheOffHeap;
+    }
+
     public int getStorageScanRowNumThreshold() {
         return storageScanRowNumThreshold;
     }
@@ -319,9 +338,29 @@ public class GTScanRequest {
         return Arrays.copyOf(byteBuffer.array(), byteBuffer.position());
     }
 
-    public static final BytesSerializer<GTScanRequest> serializer = new BytesSerializer<GTScanRequest>() {
+    /**
+     * Digest of what the request reads, ignoring the start time and timeout that vary by query execution.
+     * Two requests of the same digest return the same records from the same data.
+     */
+    public String getDigest() {
+        ByteBuffer byteBuffer = SerializeToByteBuffer.retrySerialize(new SerializeToByteBuffer.IWriter() {
+            @Override
+            public void write(ByteBuffer byteBuffer) throws BufferOverflowException {
+                ((GTScanRequestSerializer) serializer).serialize(GTScanRequest.this, byteBuffer, 0, 0);
+            }
+        });
+        return Hashing.md5().hashBytes(byteBuffer.array(), 0, byteBuffer.position()).toString();
+    }
+
+    public static final BytesSerializer<GTScanRequest> serializer = new GTScanRequestSerializer();
+
+    private static class GTScanRequestSerializer implements BytesSerializer<GTScanRequest> {
         @Override
         public void serialize(GTScanRequest value, ByteBuffer out) {
+            serialize(value, out, value.startTime, value.timeout);
+        }
+
+        private void serialize(GTScanRequest value, ByteBuffer out, long startTime, long timeout) {
             GTInfo.serializer.serialize(value.info, out);
 
             BytesUtil.writeVInt(value.ranges.size(), out);
@@ -344,9 +383,10 @@ public class GTScanRequest {
             out.putDouble(value.aggCacheMemThreshold);
             BytesUtil.writeVInt(value.storageScanRowNumThreshold, out);
             BytesUtil.writeVInt(value.storagePushDownLimit, out);
-            BytesUtil.writeVLong(value.startTime, out);
-            BytesUtil.writeVLong(value.timeout, out);
+            BytesUtil.writeVLong(startTime, out);
+            BytesUtil.writeVLong(timeout, out);
             BytesUtil.writeUTFString(value.storageBehavior, out);
+            BytesUtil.writeVInt(value.aggCacheOffHeap ? 1 : 0, out);
         }
 
         @Override
@@ -380,10 +420,11 @@ public class GTScanRequest {
             long startTime = BytesUtil.readVLong(in);
             long timeout = BytesUtil.readVLong(in);
             String storageBehavior = BytesUtil.readUTFString(in);
+            boolean sAggCacheOffHeap = (BytesUtil.readVInt(in) == 1);
 
             return new GTScanRequestBuilder().setInfo(sInfo).setRanges(sRanges).setDimensions(sColumns).//
             setAggrGroupBy(sAggGroupBy).setAggrMetrics(sAggrMetrics).setAggrMetricsFuncs(sAggrMetricFuncs).//
-            setFilterPushDown(sGTFilter).setAllowStorageAggregation(sAllowPreAggr).setAggCacheMemThreshold(sAggrCacheGB).//
+            setFilterPushDown(sGTFilter).setAllowStorageAggregation(sAllowPreAggr).setAggCacheMemThreshold(sAggrCacheGB).setAggCacheOffHeap(sAggCacheOffHeap).//
             setStorageScanRowNumThreshold(storageScanRowNumThreshold).setStoragePushDownLimit(storagePushDownLimit).//
             setStartTime(startTime).setTimeout(timeout).setStorageBehavior(storageBehavior).createGTScanRequest();
         }
@@ -404,5 +445,5 @@ public class GTScanRequest {
             return new GTRecord(sInfo, sCols);
         }
 
-    };
+    }
 }
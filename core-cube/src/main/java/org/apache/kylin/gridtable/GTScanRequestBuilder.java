@@ -35,6 +35,7 @@ public class GTScanRequestBuilder {
     private String[] aggrMetricsFuncs = null;
     private boolean allowStorageAggregation = true;
     private double aggCacheMemThreshold = 0;
+    private boolean aggCacheOffHeap = false;
     private int storageScanRowNumThreshold = Integer.MAX_VALUE;// storage should terminate itself when $storageScanRowNumThreshold cuboid rows are scanned, and throw exception.   
     private int storagePushDownLimit = Integer.MAX_VALUE;// storage can quit scanning safely when $toragePushDownLimit aggregated rows are produced. 
     private long startTime = -1;
@@ -86,6 +87,11 @@ public class GTScanRequestBuilder {
         return this;
     }
 
+    public GTScanRequestBuilder setAggCacheOffHeap(boolean aggCacheOffHeap) {
+        this.aggCacheOffHeap = aggCacheOffHeap;
+        return this;
+    }
+
     public GTScanRequestBuilder setStorageScanRowNumThreshold(int storageScanRowNumThreshold) {
         this.storageScanRowNumThreshold = storageScanRowNumThreshold;
         return this;
@@ -131,6 +137,6 @@ public class GTScanRequestBuilder {
         this.startTime = startTime == -1 ? System.currentTimeMillis() : startTime;
         this.timeout = timeout == -1 ? 300000 : timeout;
 
-        return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, allowStorageAggregation, aggCacheMemThreshold, storageScanRowNumThreshold, storagePushDownLimit, storageBehavior, startTime, timeout);
+        return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, allowStorageAggregation, aggCacheMemThreshold, aggCacheOffHeap, storageScanRowNumThreshold, storagePushDownLimit, storageBehavior, startTime, timeout);
     }
 }
\ No newline at end of file
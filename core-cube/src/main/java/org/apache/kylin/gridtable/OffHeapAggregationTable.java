@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.common.util.DirectBufferUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.model.FunctionDesc;
+
+/**
+ * An open addressing hash table in direct memory, for aggregating fixed length GT keys with
+ * primitive SUM/COUNT/MIN/MAX measures. Each slot is laid out flat as
+ *
+ * [used flag (1 byte)][key (keyLength bytes)][measure (8 bytes) * measure count]
+ *
+ * Only the key bytes marked by compareMask take part in hashing and equality, which is the same
+ * semantic as the comparator of the TreeMap based aggregation cache. Slots are sorted only when read out.
+ */
+class OffHeapAggregationTable implements Closeable {
+
+    enum SlotAggr {
+        LONG_SUM, LONG_MIN, LONG_MAX, DOUBLE_SUM, DOUBLE_MIN, DOUBLE_MAX
+    }
+
+    private static final int INIT_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * return the slot aggregations of the metrics, or null if any of them cannot be laid out in a flat slot
+     */
+    static SlotAggr[] resolveSlotAggrs(GTInfo info, ImmutableBitSet metrics, String[] metricsAggrFuncs) {
+        SlotAggr[] result = new SlotAggr[metricsAggrFuncs.length];
+        for (int i = 0; i < result.length; i++) {
+            DataType type = info.getColumnType(metrics.trueBitAt(i));
+            String func = metricsAggrFuncs[i];
+            boolean isLong = type.isIntegerFamily();
+            boolean isDouble = type.isNumberFamily() && !type.isDecimal() && !isLong;
+            if (!isLong && !isDouble) {
+                return null;
+            }
+
+            if (FunctionDesc.FUNC_SUM.equals(func) || FunctionDesc.FUNC_COUNT.equals(func)) {
+                result[i] = isLong ? SlotAggr.LONG_SUM : SlotAggr.DOUBLE_SUM;
+            } else if (FunctionDesc.FUNC_MIN.equals(func)) {
+                result[i] = isLong ? SlotAggr.LONG_MIN : SlotAggr.DOUBLE_MIN;
+            } else if (FunctionDesc.FUNC_MAX.equals(func)) {
+                result[i] = isLong ? SlotAggr.LONG_MAX : SlotAggr.DOUBLE_MAX;
+            } else {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private final int keyLength;
+    private final boolean[] compareMask;
+    private final SlotAggr[] aggrs;
+    private final int slotSize;
+    private final long maxBytes;
+
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+    private final byte[] rehashKey;
+
+    OffHeapAggregationTable(int keyLength, boolean[] compareMask, SlotAggr[] aggrs) {
+        this(keyLength, compareMask, aggrs, Integer.MAX_VALUE); // a ByteBuffer is indexed by int
+    }
+
+    OffHeapAggregationTable(int keyLength, boolean[] compareMask, SlotAggr[] aggrs, long maxBytes) {
+        this.keyLength = keyLength;
+        this.compareMask = compareMask;
+        this.aggrs = aggrs;
+        this.slotSize = 1 + keyLength + 8 * aggrs.length;
+        this.maxBytes = maxBytes;
+        this.rehashKey = new byte[keyLength];
+        allocate(INIT_CAPACITY);
+    }
+
+    private void allocate(int newCapacity) {
+        long bytes = (long) newCapacity * slotSize;
+        if (bytes > maxBytes) {
+            throw new IllegalStateException("Off-heap aggregation table cannot grow beyond " + maxBytes + " bytes, current groups " + size);
+        }
+        capacity = newCapacity;
+        table = ByteBuffer.allocateDirect((int) bytes); // direct buffer is zero filled, i.e. all slots free
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** return the bytes of direct memory held by this table */
+    public long memSize() {
+        return (long) capacity * slotSize;
+    }
+
+    /** return true if one more key needs the table to grow beyond its limit, the caller shall spill and clear it first */
+    public boolean isFull() {
+        return size + 1 > capacity * LOAD_FACTOR && (long) capacity * 2 * slotSize > maxBytes;
+    }
+
+    /**
+     * return the slot holding the key, or (-insertSlot - 1) if the key is absent
+     */
+    public int find(byte[] key) {
+        int mask = capacity - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int base = slot * slotSize;
+            if (table.get(base) == 0) {
+                return -slot - 1;
+            }
+            if (keyEquals(base + 1, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * insert an absent key, notFound is the negative value returned by find(), return the slot actually used
+     */
+    public int insert(int notFound, byte[] key) {
+        if (size + 1 > capacity * LOAD_FACTOR) {
+            grow();
+            notFound = find(key);
+        }
+        int freeSlot = -notFound - 1;
+
+        int base = freeSlot * slotSize;
+        table.put(base, (byte) 1);
+        for (int i = 0; i < keyLength; i++) {
+            table.put(base + 1 + i, key[i]);
+        }
+        int p = base + 1 + keyLength;
+        for (SlotAggr aggr : aggrs) {
+            switch (aggr) {
+            case LONG_MIN:
+                table.putLong(p, Long.MAX_VALUE);
+                break;
+            case LONG_MAX:
+                table.putLong(p, Long.MIN_VALUE);
+                break;
+            case DOUBLE_MIN:
+                table.putDouble(p, Double.POSITIVE_INFINITY);
+                break;
+            case DOUBLE_MAX:
+                table.putDouble(p, Double.NEGATIVE_INFINITY);
+                break;
+            case DOUBLE_SUM:
+                table.putDouble(p, 0d);
+                break;
+            default:
+                table.putLong(p, 0L);
+            }
+            p += 8;
+        }
+        size++;
+        return freeSlot;
+    }
+
+    public void aggregate(int slot, int i, Object value) {
+        switch (aggrs[i]) {
+        case LONG_SUM:
+        case LONG_MIN:
+        case LONG_MAX:
+            aggregate(slot, i, ((Number) value).longValue());
+            break;
+        default:
+            aggregate(slot, i, ((Number) value).doubleValue());
+        }
+    }
+
+    public void aggregate(int slot, int i, long value) {
+        int p = slot * slotSize + 1 + keyLength + 8 * i;
+        switch (aggrs[i]) {
+        case LONG_SUM:
+            table.putLong(p, table.getLong(p) + value);
+            break;
+        case LONG_MIN:
+            table.putLong(p, Math.min(table.getLong(p), value));
+            break;
+        case LONG_MAX:
+            table.putLong(p, Math.max(table.getLong(p), value));
+            break;
+        default:
+            throw new IllegalStateException("Measure " + i + " is " + aggrs[i] + ", not of long");
+        }
+    }
+
+    public void aggregate(int slot, int i, double value) {
+        int p = slot * slotSize + 1 + keyLength + 8 * i;
+        switch (aggrs[i]) {
+        case DOUBLE_SUM:
+            table.putDouble(p, table.getDouble(p) + value);
+            break;
+        case DOUBLE_MIN:
+            table.putDouble(p, Math.min(table.getDouble(p), value));
+            break;
+        case DOUBLE_MAX:
+            table.putDouble(p, Math.max(table.getDouble(p), value));
+            break;
+        default:
+            throw new IllegalStateException("Measure " + i + " is " + aggrs[i] + ", not of double");
+        }
+    }
+
+    public void readKey(int slot, byte[] dest) {
+        int base = slot * slotSize + 1;
+        for (int i = 0; i < keyLength; i++) {
+            dest[i] = table.get(base + i);
+        }
+    }
+
+    /** read the measures of a slot as Long or Double, the types expected by measure codec */
+    public void readValues(int slot, Object[] dest) {
+        int p = slot * slotSize + 1 + keyLength;
+        for (int i = 0; i < aggrs.length; i++) {
+            switch (aggrs[i]) {
+            case LONG_SUM:
+            case LONG_MIN:
+            case LONG_MAX:
+                dest[i] = table.getLong(p);
+                break;
+            default:
+                dest[i] = table.getDouble(p);
+            }
+            p += 8;
+        }
+    }
+
+    /**
+     * return the used slots sorted by key, in the same order as the TreeMap based aggregation cache
+     */
+    public int[] sortedSlots() {
+        int[] slots = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (table.get(slot * slotSize) != 0) {
+                slots[n++] = slot;
+            }
+        }
+        mergeSort(slots, new int[n], 0, n);
+        return slots;
+    }
+
+    /** free all slots and shrink to the initial capacity, e.g. after a spill */
+    public void clear() {
+        if (capacity > INIT_CAPACITY) {
+            DirectBufferUtil.release(table);
+            allocate(INIT_CAPACITY);
+            return;
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            table.put(slot * slotSize, (byte) 0);
+        }
+        size = 0;
+    }
+
+    @Override
+    public void close() {
+        DirectBufferUtil.release(table);
+        table = null;
+        capacity = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        ByteBuffer old = table;
+        int oldCapacity = capacity;
+        int oldSize = size;
+        allocate(oldCapacity * 2);
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int oldBase = slot * slotSize;
+            if (old.get(oldBase) == 0) {
+                continue;
+            }
+            for (int i = 0; i < keyLength; i++) {
+                rehashKey[i] = old.get(oldBase + 1 + i);
+            }
+            int newBase = (-find(rehashKey) - 1) * slotSize;
+            for (int i = 0; i < slotSize; i++) {
+                table.put(newBase + i, old.get(oldBase + i));
+            }
+        }
+        size = oldSize;
+        DirectBufferUtil.release(old);
+    }
+
+    private int hash(byte[] key) {
+        int h = 1;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask[i]) {
+                h = 31 * h + key[i];
+            }
+        }
+        // spread the bits, as the low bits are used as slot index
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private boolean keyEquals(int keyBase, byte[] key) {
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask[i] && table.get(keyBase + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareSlots(int slotA, int slotB) {
+        int a = slotA * slotSize + 1;
+        int b = slotB * slotSize + 1;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask[i]) {
+                int result = (table.get(a + i) & 0xff) - (table.get(b + i) & 0xff);
+                if (result != 0) {
+                    return result;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void mergeSort(int[] slots, int[] tmp, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(slots, tmp, from, mid);
+        mergeSort(slots, tmp, mid, to);
+        if (compareSlots(slots[mid - 1], slots[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(slots, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            slots[k++] = compareSlots(tmp[i], tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+        }
+        while (i < mid) {
+            slots[k++] = tmp[i++];
+        }
+        while (j < to) {
+            slots[k++] = tmp[j++];
+        }
+    }
+}
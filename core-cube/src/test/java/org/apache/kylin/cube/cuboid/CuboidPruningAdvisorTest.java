@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.cuboid.CuboidPruningAdvisor.Action;
+import org.apache.kylin.cube.cuboid.CuboidPruningAdvisor.Recommendation;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class CuboidPruningAdvisorTest extends LocalFileMetadataTestCase {
+
+    // rowkey of test_kylin_cube_with_slr_desc, seller_id is mandatory, 3 categories are a hierarchy, 3 lstg/slr are a joint
+    private static final long SELLER_ID = 256, CAL_DT = 128, LEAF_CATEG_ID = 64, META_CATEG_NAME = 32, CATEG_LVL2_NAME = 16;
+
+    private CubeDesc cubeDesc;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        cubeDesc = CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_with_slr_desc");
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    private void record(CuboidUsage usage, long queried, int times) {
+        long scanned = Cuboid.findById(cubeDesc, queried).getId();
+        for (int i = 0; i < times; i++) {
+            usage.record(queried, scanned, 100, 10, 1L);
+        }
+    }
+
+    @Test
+    public void testRecommend() {
+        CuboidUsage usage = new CuboidUsage(cubeDesc.getName());
+        long q1 = SELLER_ID | CAL_DT | LEAF_CATEG_ID | META_CATEG_NAME | CATEG_LVL2_NAME;
+        long q2 = SELLER_ID | META_CATEG_NAME;
+        long rare = SELLER_ID | CAL_DT;
+        record(usage, q1, 5);
+        record(usage, q2, 3);
+        record(usage, rare, 1);
+
+        CuboidPruningAdvisor advisor = new CuboidPruningAdvisor(cubeDesc, usage, 2);
+        Set<Long> whitelist = advisor.getCuboidWhitelist();
+        assertEquals(Sets.newHashSet(Cuboid.getBaseCuboidId(cubeDesc), Cuboid.findById(cubeDesc, q1).getId(), Cuboid.findById(cubeDesc, q2).getId()), whitelist);
+        assertFalse(whitelist.contains(Cuboid.findById(cubeDesc, rare).getId()));
+        assertEquals(new CuboidScheduler(cubeDesc).getCuboidCount() - whitelist.size(), advisor.getUnusedCuboids().size());
+        assertTrue(advisor.getUncoveredQueries().isEmpty());
+
+        List<Recommendation> recommendations = advisor.getAggregationGroupRecommendations();
+        assertEquals(3, recommendations.size());
+        assertRecommendation(recommendations.get(0), Action.REMOVE, "CATEG_LVL3_NAME", "LSTG_FORMAT_NAME", "LSTG_SITE_ID", "SLR_SEGMENT_CD");
+        assertRecommendation(recommendations.get(1), Action.MANDATORY, "META_CATEG_NAME");
+        assertRecommendation(recommendations.get(2), Action.JOINT, "CAL_DT", "LEAF_CATEG_ID");
+    }
+
+    private void assertRecommendation(Recommendation r, Action action, String... columns) {
+        assertEquals(0, r.getAggGroupIndex());
+        assertEquals(action, r.getAction());
+        assertEquals(columns.length, r.getColumns().size());
+        for (int i = 0; i < columns.length; i++) {
+            assertTrue(r.getColumns().get(i).toUpperCase().endsWith(columns[i]));
+        }
+    }
+}
@@ -25,7 +25,10 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeDescManager;
@@ -304,6 +307,38 @@ public class CuboidSchedulerTest extends LocalFileMetadataTestCase {
         assertTrue(spanningChild.size() > 0);
     }
 
+    @Test
+    public void testCostBasedParents() {
+        CubeDesc cube = getTestKylinCubeWithSeller();
+        CuboidScheduler byRules = new CuboidScheduler(cube);
+
+        // pretend a smaller cuboid id has fewer rows, so parents by rules are often not the cheapest
+        Map<Long, Long> cuboidRows = new HashMap<Long, Long>();
+        for (long cuboid : byRules.getAllCuboidIds()) {
+            cuboidRows.put(cuboid, cuboid);
+        }
+        Map<Long, Long> parents = CuboidScheduler.planCostBasedParents(cube, cuboidRows);
+        assertTrue(parents.size() > 0);
+
+        CuboidScheduler byCost = new CuboidScheduler(cube, parents);
+        List<List<Long>> ruleLayers = byRules.getCuboidsByLayer();
+        List<List<Long>> costLayers = byCost.getCuboidsByLayer();
+        assertEquals(ruleLayers.size(), costLayers.size());
+        for (int i = 0; i < ruleLayers.size(); i++) {
+            assertEquals(new HashSet<Long>(ruleLayers.get(i)), new HashSet<Long>(costLayers.get(i)));
+        }
+
+        for (Map.Entry<Long, Long> entry : parents.entrySet()) {
+            long child = entry.getKey();
+            long parent = entry.getValue();
+            assertEquals(parent, byCost.getParent(child));
+            assertTrue(parent != child && (parent & child) == child);
+            assertTrue(parent < byRules.getParent(child));
+            assertTrue(byCost.getSpanningCuboid(parent).contains(child));
+            assertTrue(!byCost.getSpanningCuboid(byRules.getParent(child)).contains(child));
+        }
+    }
+
     public CubeDescManager getCubeDescManager() {
         return CubeDescManager.getInstance(getTestConfig());
     }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class CuboidStatsCacheTest extends LocalFileMetadataTestCase {
+
+    public static class MockLoader implements ICuboidStatsLoader {
+        @Override
+        public Map<Long, Long> loadCuboidRowEstimates(CubeSegment segment) {
+            Map<Long, Long> stats = Maps.newHashMap();
+            stats.put(1L, 10L);
+            stats.put(3L, 100L);
+            return stats;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        getTestConfig().setProperty("kylin.query.cuboid-stats-loader", MockLoader.class.getName());
+        CuboidStatsCache.clearCache();
+    }
+
+    @After
+    public void after() throws Exception {
+        CuboidStatsCache.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testLoadInBackground() throws InterruptedException {
+        KylinConfig config = getTestConfig();
+        CubeInstance cube = CubeManager.getInstance(config).getCube("test_kylin_cube_with_slr_ready_2_segments");
+        CuboidStatsCache cache = CuboidStatsCache.getInstance(config);
+
+        // the query does not wait for the statistics, they come later
+        assertNull(cache.getCuboidRowEstimates(cube));
+        Map<Long, Long> estimates = null;
+        long wait = System.currentTimeMillis() + 10000;
+        while (estimates == null && System.currentTimeMillis() < wait) {
+            Thread.sleep(10);
+            estimates = cache.getCuboidRowEstimates(cube);
+        }
+        assertNotNull(estimates);
+        assertEquals(20L, (long) estimates.get(1L));
+        assertEquals(200L, (long) estimates.get(3L));
+    }
+
+    @Test
+    public void testLoadInCallingThread() {
+        KylinConfig config = getTestConfig();
+        CubeInstance cube = CubeManager.getInstance(config).getCube("test_kylin_cube_with_slr_ready_2_segments");
+
+        Map<Long, Long> estimates = CuboidStatsCache.getInstance(config).loadCuboidRowEstimates(cube);
+        assertEquals(200L, (long) estimates.get(3L));
+        assertEquals(100L, (long) CuboidStatsCache.getInstance(config).getSegmentCuboidRowEstimates(cube.getFirstSegment()).get(3L));
+    }
+}
@@ -20,6 +20,8 @@ package org.apache.kylin.cube.cuboid;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Map;
+
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeDescManager;
 import org.apache.kylin.cube.model.CubeDesc;
@@ -28,6 +30,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Maps;
+
 /**
  * @author yangli9
  */
@@ -194,4 +198,24 @@ public class CuboidTest extends LocalFileMetadataTestCase {
         cuboid = Cuboid.findById(cube, toLong("10111111"));
         assertEquals(toLong("11111111"), cuboid.getId());
     }
+
+    @Test
+    public void testTranslateToValidCuboidByRowEstimates() {
+        CubeDesc cube = getTestKylinCubeWithoutSellerLeftJoin();
+        long leafCategOnly = toLong("01000000");
+
+        // the 2 aggregation groups give 11111000 and 11000000, by default the one of fewer dimensions
+        assertEquals(toLong("11000000"), Cuboid.translateToValidCuboid(cube, leafCategOnly));
+
+        Map<Long, Long> rowEstimates = Maps.newHashMap();
+        rowEstimates.put(toLong("11000000"), 1000L);
+        rowEstimates.put(toLong("11111000"), 10L);
+        assertEquals(toLong("11111000"), Cuboid.translateToValidCuboid(cube, leafCategOnly, rowEstimates));
+
+        // cuboids without estimate come last
+        rowEstimates.remove(toLong("11111000"));
+        assertEquals(toLong("11000000"), Cuboid.translateToValidCuboid(cube, leafCategOnly, rowEstimates));
+        rowEstimates.clear();
+        assertEquals(toLong("11000000"), Cuboid.translateToValidCuboid(cube, leafCategOnly, rowEstimates));
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.metadata.project.ProjectInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuboidUsageManagerTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        CuboidUsageManager.clearCache();
+    }
+
+    @After
+    public void after() throws Exception {
+        CuboidUsageManager.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRecordAndFlush() throws Exception {
+        CuboidUsageManager manager = CuboidUsageManager.getInstance(getTestConfig());
+        assertNull(manager.getCuboidUsage("test_cube"));
+
+        manager.record("test_cube", 3, 7, 100, 10);
+        manager.record("test_cube", 3, 7, 50, 5);
+        manager.record("test_cube", 7, 7, 20, 20);
+        manager.record("another_cube", 1, 1, 1, 1);
+        assertNull(manager.getCuboidUsage("test_cube")); // not saved until flush
+
+        manager.flush();
+        CuboidUsage usage = manager.getCuboidUsage("test_cube");
+        assertEquals(1, usage.getScannedCuboids().size());
+        assertEquals(3, usage.getScannedCuboids().get(7L).getHits());
+        assertEquals(170, usage.getScannedCuboids().get(7L).getScannedRows());
+        assertEquals(35, usage.getScannedCuboids().get(7L).getReturnedRows());
+        assertEquals(2L, (long) usage.getQueriedCuboids().get(3L));
+        assertEquals(1L, (long) usage.getQueriedCuboids().get(7L));
+        assertEquals(1, manager.getCuboidUsage("another_cube").getScannedCuboids().size());
+
+        // usage of the next period adds up
+        manager.record("test_cube", 3, 15, 30, 3);
+        manager.flush();
+        usage = manager.getCuboidUsage("test_cube");
+        assertEquals(2, usage.getScannedCuboids().size());
+        assertEquals(1, usage.getScannedCuboids().get(15L).getHits());
+        assertEquals(3L, (long) usage.getQueriedCuboids().get(3L));
+
+        manager.removeCuboidUsage("test_cube");
+        assertNull(manager.getCuboidUsage("test_cube"));
+    }
+
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        getTestConfig().setProperty("kylin.query.cuboid-usage-flush-interval-seconds", "1");
+        CuboidUsageManager manager = CuboidUsageManager.getInstance(getTestConfig());
+
+        manager.record("test_cube", 3, 7, 100, 10);
+        assertNull(manager.getCuboidUsage("test_cube")); // the query does not save
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (manager.getCuboidUsage("test_cube") == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertNotNull(manager.getCuboidUsage("test_cube"));
+    }
+
+    @Test
+    public void testRemovedOnCubeDrop() throws Exception {
+        CubeManager cubeMgr = CubeManager.getInstance(getTestConfig());
+        cubeMgr.createCube("cube_of_usage", ProjectInstance.DEFAULT_PROJECT_NAME, CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_with_slr_desc"), null);
+
+        CuboidUsageManager manager = CuboidUsageManager.getInstance(getTestConfig());
+        manager.record("cube_of_usage", 3, 7, 100, 10);
+        manager.flush();
+        assertNotNull(manager.getCuboidUsage("cube_of_usage"));
+
+        cubeMgr.dropCube("cube_of_usage", false);
+        assertNull(manager.getCuboidUsage("cube_of_usage"));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class DoggedCubeBuilderTest extends LocalFileMetadataTestCase {
+
+    private CubeDesc cubeDesc;
+    private CubeJoinedFlatTableDesc flatDesc;
+    private Map<TblColRef, Dictionary<String>> dictionaryMap;
+    private List<String> lines;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        cubeDesc = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_left_join_empty").getDescriptor();
+        flatDesc = new CubeJoinedFlatTableDesc(cubeDesc);
+        lines = FileUtils.readLines(new File(InMemCubeBuilderTest.FLAT_TABLE), "UTF-8");
+        dictionaryMap = InMemCubeBuilderTest.getDictionaryMap(cubeDesc, flatDesc, lines);
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testParallelMerge() throws IOException {
+        List<String> sequential = build(1, 100);
+        List<String> parallel = build(4, 100);
+        // a tiny reserve makes small merge batches
+        List<String> smallBatches = build(4, 1);
+
+        assertTrue(sequential.size() > 0);
+        assertEquals(sequential, parallel);
+        assertEquals(sequential, smallBatches);
+    }
+
+    private List<String> build(int threads, int reserveMemoryMB) throws IOException {
+        DoggedCubeBuilder builder = new DoggedCubeBuilder(cubeDesc, flatDesc, dictionaryMap);
+        builder.setConcurrentThreads(threads);
+        builder.setReserveMemoryMB(reserveMemoryMB);
+        builder.setSplitRowThreshold(lines.size() / 2 + 1);
+
+        final List<String> result = Lists.newArrayList();
+        builder.build(InMemCubeBuilderTest.feed(lines), new ICuboidWriter() {
+            @Override
+            public void write(long cuboidId, GTRecord record) throws IOException {
+                result.add(cuboidId + ", " + record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
+import org.apache.kylin.dict.DictionaryGenerator;
+import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class InMemCubeBuilderTest extends LocalFileMetadataTestCase {
+
+    static final String FLAT_TABLE = LOCALMETA_TEST_DATA + "/data/flatten_data_for_without_slr_left_join.csv";
+
+    private CubeDesc cubeDesc;
+    private CubeJoinedFlatTableDesc flatDesc;
+    private Map<TblColRef, Dictionary<String>> dictionaryMap;
+    private List<String> lines;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_left_join_empty");
+        cubeDesc = cube.getDescriptor();
+        flatDesc = new CubeJoinedFlatTableDesc(cubeDesc);
+        lines = FileUtils.readLines(new File(FLAT_TABLE), "UTF-8");
+        dictionaryMap = getDictionaryMap(cubeDesc, flatDesc, lines);
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testConcurrentScheduling() throws IOException {
+        ConcurrentNavigableMap<Long, CuboidResult> sequential = build(1);
+        ConcurrentNavigableMap<Long, CuboidResult> parallel = build(4);
+
+        assertEquals(new CuboidScheduler(cubeDesc).getCuboidCount(), parallel.size());
+        assertEquals(sequential.keySet(), parallel.keySet());
+        for (Long cuboidId : sequential.keySet()) {
+            assertEquals("rows of cuboid " + cuboidId, sequential.get(cuboidId).nRows, parallel.get(cuboidId).nRows);
+        }
+    }
+
+    @Test
+    public void testFailingTask() throws Exception {
+        InMemCubeBuilder builder = new InMemCubeBuilder(cubeDesc, flatDesc, dictionaryMap);
+        builder.setConcurrentThreads(4);
+
+        final long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+        final long failingCuboidId = new CuboidScheduler(cubeDesc).getSpanningCuboid(baseCuboidId).get(0);
+        final AtomicInteger collected = new AtomicInteger(0);
+        try {
+            builder.build(feed(lines), new InMemCubeBuilder.ICuboidCollector() {
+                @Override
+                public void collect(CuboidResult result) {
+                    if (result.cuboidId == failingCuboidId)
+                        throw new IllegalStateException("failing cuboid " + failingCuboidId);
+                    collected.incrementAndGet();
+                }
+            });
+            fail("build should fail");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        // no task keeps running after build returns, and the rest of the cube is not built
+        int collectedOnFailure = collected.get();
+        Thread.sleep(500);
+        assertEquals(collectedOnFailure, collected.get());
+        assertTrue(collectedOnFailure < new CuboidScheduler(cubeDesc).getCuboidCount());
+
+        // the builder is good for the next build
+        ConcurrentNavigableMap<Long, CuboidResult> result = builder.build(feed(lines));
+        assertEquals(new CuboidScheduler(cubeDesc).getCuboidCount(), result.size());
+    }
+
+    private ConcurrentNavigableMap<Long, CuboidResult> build(int threads) throws IOException {
+        InMemCubeBuilder builder = new InMemCubeBuilder(cubeDesc, flatDesc, dictionaryMap);
+        builder.setConcurrentThreads(threads);
+        return builder.build(feed(lines));
+    }
+
+    static BlockingQueue<List<String>> feed(List<String> lines) {
+        BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(lines.size() + 1);
+        for (String line : lines) {
+            queue.add(Lists.newArrayList(line.trim().split(",")));
+        }
+        queue.add(Lists.<String> newArrayList());
+        return queue;
+    }
+
+    static Map<TblColRef, Dictionary<String>> getDictionaryMap(CubeDesc cubeDesc, CubeJoinedFlatTableDesc flatDesc, List<String> lines) throws IOException {
+        Map<TblColRef, Dictionary<String>> result = Maps.newHashMap();
+        CubeJoinedFlatTableEnrich flatEnrich = new CubeJoinedFlatTableEnrich(flatDesc, cubeDesc);
+        List<TblColRef> columns = Cuboid.getBaseCuboid(cubeDesc).getColumns();
+        for (int c = 0; c < columns.size(); c++) {
+            TblColRef col = columns.get(c);
+            if (cubeDesc.getRowkey().isUseDictionary(col)) {
+                result.put(col, buildDictionary(col, flatEnrich.getRowKeyColumnIndexes()[c], lines));
+            }
+        }
+
+        for (int measureIdx = 0; measureIdx < cubeDesc.getMeasures().size(); measureIdx++) {
+            FunctionDesc func = cubeDesc.getMeasures().get(measureIdx).getFunction();
+            List<TblColRef> dictCols = func.getMeasureType().getColumnsNeedDictionary(func);
+            List<TblColRef> paramCols = func.getParameter().getColRefs();
+            for (int i = 0; i < paramCols.size(); i++) {
+                TblColRef col = paramCols.get(i);
+                if (dictCols.contains(col)) {
+                    result.put(col, buildDictionary(col, flatEnrich.getMeasureColumnIndexes()[measureIdx][i], lines));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Dictionary<String> buildDictionary(TblColRef col, int colIdx, List<String> lines) throws IOException {
+        List<String> values = Lists.newArrayList();
+        for (String line : lines) {
+            values.add(line.trim().split(",")[colIdx]);
+        }
+        return DictionaryGenerator.buildDictionary(col.getType(), new IterableDictionaryValueEnumerator(values));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MappedFileStoreTest extends LocalFileMetadataTestCase {
+
+    final GTInfo info = UnitTestSupport.advancedInfo();
+    final List<GTRecord> data = UnitTestSupport.mockupData(info, 1000000); // converts to about 34 MB data, several segments
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testMultiThreadRead() throws IOException, InterruptedException {
+        verifyWriteAndRead(new MappedFileStore(info, false), 10);
+    }
+
+    @Test
+    public void testCompressed() throws IOException, InterruptedException {
+        verifyWriteAndRead(new MappedFileStore(info, true), 10);
+    }
+
+    @Test
+    public void testAppendAndRebuild() throws IOException {
+        MappedFileStore store = new MappedFileStore(info, true);
+        GridTable table = new GridTable(info, store);
+
+        write(table.rebuild(), 0, 1000);
+        write(table.append(), 1000, 3000);
+        assertEquals(3000, scan(table, null));
+
+        write(table.rebuild(), 3000, 3010);
+        assertEquals(10, scan(table, null));
+        table.close();
+    }
+
+    private void write(GTBuilder builder, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            builder.write(data.get(i));
+        }
+        builder.close();
+    }
+
+    private int scan(GridTable table, AtomicInteger errors) throws IOException {
+        IGTScanner scanner = table.scan(new GTScanRequestBuilder().setInfo(table.getInfo()).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+        int i = 0;
+        for (GTRecord r : scanner) {
+            if (errors == null)
+                i++;
+            else if (data.get(i++).equals(r) == false)
+                errors.incrementAndGet();
+        }
+        scanner.close();
+        return i;
+    }
+
+    private void verifyWriteAndRead(MappedFileStore store, int readThreads) throws IOException, InterruptedException {
+        final GridTable table = new GridTable(info, store);
+        write(table.rebuild(), 0, data.size());
+
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger counts = new AtomicInteger();
+        Thread[] t = new Thread[readThreads];
+        for (int i = 0; i < readThreads; i++) {
+            t[i] = new Thread() {
+                public void run() {
+                    try {
+                        counts.addAndGet(scan(table, errors));
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (int i = 0; i < readThreads; i++) {
+            t[i].join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(data.size() * readThreads, counts.get());
+        table.close();
+    }
+}
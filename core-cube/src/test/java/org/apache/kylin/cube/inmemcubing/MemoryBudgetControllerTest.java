@@ -75,6 +75,27 @@ public class MemoryBudgetControllerTest {
         }
     }
 
+    @Test
+    public void testReserveInsistTillDeadline() {
+        MemoryBudgetController mbc = new MemoryBudgetController(2);
+        Consumer a = new Consumer();
+        mbc.reserve(a, 2);
+
+        long waitStart = System.currentTimeMillis();
+        try {
+            mbc.reserveInsist(new Consumer(), 1, waitStart + 500);
+            fail();
+        } catch (NotEnoughBudgetException ex) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - waitStart >= 500);
+
+        mbc.reserve(a, 1);
+        Consumer b = new Consumer();
+        mbc.reserveInsist(b, 1, System.currentTimeMillis() + 500);
+        assertEquals(2, mbc.getTotalReservedMB());
+    }
+
     class Consumer implements MemoryBudgetController.MemoryConsumer {
 
         byte[] data;
@@ -20,6 +20,7 @@ package org.apache.kylin.gridtable;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -28,6 +29,7 @@ import java.util.List;
 
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.MemoryBudgetController;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -100,6 +102,49 @@ public class AggregationCacheSpillTest extends LocalFileMetadataTestCase {
         scanner.close();
     }
 
+    @Test
+    public void testSpillOnSharedBudget() throws IOException {
+        IGTScanner inputScanner = new IGTScanner() {
+            @Override
+            public GTInfo getInfo() {
+                return INFO;
+            }
+
+            @Override
+            public long getScannedRowCount() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return TEST_DATA.iterator();
+            }
+        };
+
+        // no spill by threshold, the budget is what forces it
+        GTScanRequest scanRequest = new GTScanRequestBuilder().setInfo(INFO).setRanges(null).setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(new ImmutableBitSet(0, 3)).setAggrMetrics(new ImmutableBitSet(3, 6)).setAggrMetricsFuncs(new String[] { "SUM", "SUM", "COUNT_DISTINCT" }).setFilterPushDown(null).setAggCacheMemThreshold(0).createGTScanRequest();
+        MemoryBudgetController budget = new MemoryBudgetController(1);
+        scanRequest.setAggCacheMemBudget(budget);
+
+        GTAggregateScanner scanner = new GTAggregateScanner(inputScanner, scanRequest, Long.MAX_VALUE);
+
+        int count = 0;
+        for (GTRecord record : scanner) {
+            Object[] returnRecord = record.getValues();
+            assertEquals(20, ((Long) returnRecord[3]).longValue());
+            assertEquals(21, ((BigDecimal) returnRecord[4]).longValue());
+            count++;
+        }
+        assertEquals(DATA_CARDINALITY, count);
+        assertTrue(scanner.getNumOfSpills() > 0);
+        scanner.close();
+        assertEquals(0, budget.getTotalReservedMB());
+    }
+
     @Test
     public void testAggregationCacheInMem() throws IOException {
         IGTScanner inputScanner = new IGTScanner() {
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.OffHeapAggregationTable.SlotAggr;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class OffHeapAggregationTest extends LocalFileMetadataTestCase {
+    final static int DATA_CARDINALITY = 40000;
+    final static int DATA_REPLICATION = 3;
+    final static List<GTRecord> TEST_DATA = Lists.newArrayListWithCapacity(DATA_CARDINALITY * DATA_REPLICATION);
+
+    static GTInfo INFO;
+
+    @BeforeClass
+    public static void beforeClass() {
+        staticCreateTestMetadata();
+
+        INFO = UnitTestSupport.basicInfo();
+        final List<GTRecord> data = UnitTestSupport.mockupData(INFO, DATA_CARDINALITY);
+        for (int i = 0; i < DATA_REPLICATION; i++)
+            TEST_DATA.addAll(data);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testInMem() throws IOException {
+        // group by 2 of the 3 dimensions, 10 groups
+        assertSameResult(new ImmutableBitSet(1, 3), 0.5, 10);
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        // a tiny threshold forces spill at the 100000th row
+        assertSameResult(new ImmutableBitSet(0, 3), 0.000001, DATA_CARDINALITY);
+    }
+
+    @Test
+    public void testFallbackOnDecimal() {
+        assertNull(OffHeapAggregationTable.resolveSlotAggrs(INFO, new ImmutableBitSet(3, 5), new String[] { "SUM", "SUM" }));
+    }
+
+    @Test
+    public void testTableGrowAndSort() {
+        int keyLength = 4;
+        boolean[] mask = new boolean[] { true, true, true, false };
+        OffHeapAggregationTable table = new OffHeapAggregationTable(keyLength, mask, new SlotAggr[] { SlotAggr.LONG_SUM, SlotAggr.LONG_MIN, SlotAggr.DOUBLE_MAX });
+
+        int groups = 5000;
+        for (int round = 0; round < 2; round++) {
+            for (int i = groups - 1; i >= 0; i--) {
+                byte[] key = Bytes.toBytes(i << 8 | round); // last byte is not compared
+                int slot = table.find(key);
+                if (slot < 0)
+                    slot = table.insert(slot, key);
+                table.aggregate(slot, 0, 1L);
+                table.aggregate(slot, 1, (long) (i - round));
+                table.aggregate(slot, 2, (double) round);
+            }
+        }
+        assertEquals(groups, table.size());
+
+        int[] slots = table.sortedSlots();
+        byte[] key = new byte[keyLength];
+        Object[] values = new Object[3];
+        for (int i = 0; i < groups; i++) {
+            table.readKey(slots[i], key);
+            table.readValues(slots[i], values);
+            assertEquals(i, Bytes.toInt(key) >>> 8);
+            assertArrayEquals(new Object[] { 2L, (long) (i - 1), 1.0 }, values);
+        }
+
+        long grownSize = table.memSize();
+        table.clear();
+        assertEquals(0, table.size());
+        assertTrue(table.memSize() < grownSize); // memory given back after spill
+        table.close();
+    }
+
+    @Test
+    public void testSizeLimit() {
+        int keyLength = 4;
+        boolean[] mask = new boolean[] { true, true, true, true };
+        SlotAggr[] aggrs = new SlotAggr[] { SlotAggr.LONG_SUM };
+        int slotSize = 1 + keyLength + 8;
+        OffHeapAggregationTable table = new OffHeapAggregationTable(keyLength, mask, aggrs, 4096L * slotSize);
+
+        int inserted = 0;
+        while (!table.isFull()) {
+            byte[] key = Bytes.toBytes(inserted++);
+            table.insert(table.find(key), key);
+        }
+        assertEquals(4096L * slotSize, table.memSize());
+        assertEquals((int) (4096 * 0.6f), table.size());
+
+        // a spill clears the table and it can take keys again
+        table.clear();
+        assertFalse(table.isFull());
+        byte[] key = Bytes.toBytes(inserted);
+        table.insert(table.find(key), key);
+        assertEquals(1, table.size());
+        table.close();
+    }
+
+    private void assertSameResult(ImmutableBitSet groupBy, double memThresholdGB, int expectedCount) throws IOException {
+        List<String> onHeap = scan(groupBy, memThresholdGB, false);
+        List<String> offHeap = scan(groupBy, memThresholdGB, true);
+        assertEquals(expectedCount, offHeap.size());
+        assertEquals(onHeap, offHeap);
+    }
+
+    private List<String> scan(ImmutableBitSet groupBy, double memThresholdGB, boolean offHeap) throws IOException {
+        IGTScanner inputScanner = new IGTScanner() {
+            @Override
+            public GTInfo getInfo() {
+                return INFO;
+            }
+
+            @Override
+            public long getScannedRowCount() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return TEST_DATA.iterator();
+            }
+        };
+
+        GTScanRequest scanRequest = new GTScanRequestBuilder().setInfo(INFO).setRanges(null).setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(groupBy).setAggrMetrics(new ImmutableBitSet(3, 4)).setAggrMetricsFuncs(new String[] { "SUM" }).setFilterPushDown(null).setAggCacheMemThreshold(memThresholdGB).setAggCacheOffHeap(offHeap).createGTScanRequest();
+
+        GTAggregateScanner scanner = new GTAggregateScanner(inputScanner, scanRequest, Long.MAX_VALUE);
+        List<String> result = Lists.newArrayList();
+        for (GTRecord record : scanner) {
+            result.add(Arrays.toString(record.getValues()));
+        }
+        if (memThresholdGB < 0.001) {
+            assertEquals(2, scanner.getNumOfSpills());
+        }
+        scanner.close();
+        return result;
+    }
+}
@@ -182,6 +182,17 @@ public class SimpleGridTableTest extends LocalFileMetadataTestCase {
         System.out.println("Written Row Count: " + builder.getWrittenRowCount());
     }
 
+    @Test
+    public void testDigest() {
+        GTInfo info = UnitTestSupport.advancedInfo();
+        GTScanRequest req1 = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(setOf(0, 2)).setAggrMetrics(setOf(3, 4)).setAggrMetricsFuncs(new String[] { "count", "sum" }).setFilterPushDown(null).setStartTime(1000).setTimeout(5000).createGTScanRequest();
+        GTScanRequest req2 = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(setOf(0, 2)).setAggrMetrics(setOf(3, 4)).setAggrMetricsFuncs(new String[] { "count", "sum" }).setFilterPushDown(null).setStartTime(2000).setTimeout(6000).createGTScanRequest();
+        GTScanRequest req3 = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(setOf(0)).setAggrMetrics(setOf(3, 4)).setAggrMetricsFuncs(new String[] { "count", "sum" }).setFilterPushDown(null).setStartTime(1000).setTimeout(5000).createGTScanRequest();
+
+        assertEquals(req1.getDigest(), req2.getDigest());
+        assertTrue(!req1.getDigest().equals(req3.getDigest()));
+    }
+
     private static ImmutableBitSet setOf(int... values) {
         return ImmutableBitSet.valueOf(values);
     }
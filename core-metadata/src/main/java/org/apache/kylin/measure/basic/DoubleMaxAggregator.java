@@ -18,26 +18,43 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.measure.IDoubleBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 
 /**
  */
 @SuppressWarnings("serial")
-public class DoubleMaxAggregator extends MeasureAggregator<Double> {
+public class DoubleMaxAggregator extends MeasureAggregator<Double> implements IDoubleBatchAggregator {
 
-    Double max = null;
+    double max;
+    boolean empty = true;
 
     @Override
     public void reset() {
-        max = null;
+        empty = true;
     }
 
     @Override
     public void aggregate(Double value) {
-        if (max == null)
+        if (empty) {
             max = value;
-        else if (max < value)
+            empty = false;
+        } else if (max < value) {
             max = value;
+        }
+    }
+
+    @Override
+    public void aggregate(double[] values, int offset, int length) {
+        if (length == 0)
+            return;
+        double m = empty ? values[offset] : max;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (m < values[i])
+                m = values[i];
+        }
+        max = m;
+        empty = false;
     }
 
     @Override
@@ -47,7 +64,7 @@ public class DoubleMaxAggregator extends MeasureAggregator<Double> {
 
     @Override
     public Double getState() {
-        return max;
+        return empty ? null : max;
     }
 
     @Override
@@ -18,26 +18,43 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.measure.IDoubleBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 
 /**
  */
 @SuppressWarnings("serial")
-public class DoubleMinAggregator extends MeasureAggregator<Double> {
+public class DoubleMinAggregator extends MeasureAggregator<Double> implements IDoubleBatchAggregator {
 
-    Double min = null;
+    double min;
+    boolean empty = true;
 
     @Override
     public void reset() {
-        min = null;
+        empty = true;
     }
 
     @Override
     public void aggregate(Double value) {
-        if (min == null)
+        if (empty) {
             min = value;
-        else if (min > value)
+            empty = false;
+        } else if (min > value) {
             min = value;
+        }
+    }
+
+    @Override
+    public void aggregate(double[] values, int offset, int length) {
+        if (length == 0)
+            return;
+        double m = empty ? values[offset] : min;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (m > values[i])
+                m = values[i];
+        }
+        min = m;
+        empty = false;
     }
 
     @Override
@@ -47,7 +64,7 @@ public class DoubleMinAggregator extends MeasureAggregator<Double> {
 
     @Override
     public Double getState() {
-        return min;
+        return empty ? null : min;
     }
 
     @Override
@@ -18,23 +18,33 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.measure.IDoubleBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 
 /**
  */
 @SuppressWarnings("serial")
-public class DoubleSumAggregator extends MeasureAggregator<Double> {
+public class DoubleSumAggregator extends MeasureAggregator<Double> implements IDoubleBatchAggregator {
 
-    Double sum = new Double(0);
+    double sum = 0;
 
     @Override
     public void reset() {
-        sum = new Double(0);
+        sum = 0;
     }
 
     @Override
     public void aggregate(Double value) {
-        sum = sum + value;
+        sum += value;
+    }
+
+    @Override
+    public void aggregate(double[] values, int offset, int length) {
+        double s = sum;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            s += values[i];
+        }
+        sum = s;
     }
 
     @Override
@@ -18,26 +18,42 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.measure.ILongBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 
 /**
  */
 @SuppressWarnings("serial")
-public class LongMaxAggregator extends MeasureAggregator<Long> {
+public class LongMaxAggregator extends MeasureAggregator<Long> implements ILongBatchAggregator {
 
-    Long max = null;
+    long max;
+    boolean empty = true;
 
     @Override
     public void reset() {
-        max = null;
+        empty = true;
     }
 
     @Override
     public void aggregate(Long value) {
-        if (max == null)
+        if (empty) {
             max = value;
-        else if (max < value)
+            empty = false;
+        } else if (max < value) {
             max = value;
+        }
+    }
+
+    @Override
+    public void aggregate(long[] values, int offset, int length) {
+        if (length == 0)
+            return;
+        long m = empty ? values[offset] : max;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            m = Math.max(m, values[i]);
+        }
+        max = m;
+        empty = false;
     }
 
     @Override
@@ -47,7 +63,7 @@ public class LongMaxAggregator extends MeasureAggregator<Long> {
 
     @Override
     public Long getState() {
-        return max;
+        return empty ? null : max;
     }
 
     @Override
@@ -18,26 +18,42 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.measure.ILongBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 
 /**
  */
 @SuppressWarnings("serial")
-public class LongMinAggregator extends MeasureAggregator<Long> {
+public class LongMinAggregator extends MeasureAggregator<Long> implements ILongBatchAggregator {
 
-    Long min = null;
+    long min;
+    boolean empty = true;
 
     @Override
     public void reset() {
-        min = null;
+        empty = true;
     }
 
     @Override
     public void aggregate(Long value) {
-        if (min == null)
+        if (empty) {
             min = value;
-        else if (min > value)
+            empty = false;
+        } else if (min > value) {
             min = value;
+        }
+    }
+
+    @Override
+    public void aggregate(long[] values, int offset, int length) {
+        if (length == 0)
+            return;
+        long m = empty ? values[offset] : min;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            m = Math.min(m, values[i]);
+        }
+        min = m;
+        empty = false;
     }
 
     @Override
@@ -47,7 +63,7 @@ public class LongMinAggregator extends MeasureAggregator<Long> {
 
     @Override
     public Long getState() {
-        return min;
+        return empty ? null : min;
     }
 
     @Override
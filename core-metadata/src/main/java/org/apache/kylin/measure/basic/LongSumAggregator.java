@@ -18,18 +18,19 @@
 
 package org.apache.kylin.measure.basic;
 
+import org.apache.kylin.measure.ILongBatchAggregator;
 import org.apache.kylin.measure.MeasureAggregator;
 
 /**
  */
 @SuppressWarnings("serial")
-public class LongSumAggregator extends MeasureAggregator<Long> {
+public class LongSumAggregator extends MeasureAggregator<Long> implements ILongBatchAggregator {
 
-    Long sum = new Long(0L);
+    long sum = 0;
 
     @Override
     public void reset() {
-        sum = new Long(0L);
+        sum = 0;
     }
 
     @Override
@@ -37,6 +38,15 @@ public class LongSumAggregator extends MeasureAggregator<Long> {
         sum += value;
     }
 
+    @Override
+    public void aggregate(long[] values, int offset, int length) {
+        long s = sum;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            s += values[i];
+        }
+        sum = s;
+    }
+
     @Override
     public Long aggregate(Long value1, Long value2) {
         return Long.valueOf(value1 + value2);
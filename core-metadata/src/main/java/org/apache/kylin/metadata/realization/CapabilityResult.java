@@ -32,6 +32,9 @@ public class CapabilityResult {
     /** The smaller the cost, the more capable the realization */
     public int cost;
 
+    /** Estimated number of rows to scan, from the statistics of the realization; -1 if unknown */
+    public long scanRowEstimate = -1;
+
     /**
      * Marker objects to indicate all special features
      * (dimension-as-measure, topN etc.) that have influenced the capability check.
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.measure.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.apache.kylin.measure.IDoubleBatchAggregator;
+import org.apache.kylin.measure.ILongBatchAggregator;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.junit.Test;
+
+public class BatchAggregatorTest {
+
+    private final Random rand = new Random(1);
+
+    private void verifyLong(MeasureAggregator<Long> perRow, MeasureAggregator<Long> batch) {
+        long[] values = new long[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rand.nextLong() % 100000;
+        }
+        for (long v : values) {
+            perRow.aggregate(v);
+        }
+        // aggregate in batches of varied length, skipping the first value in the array
+        long[] buf = new long[values.length + 1];
+        System.arraycopy(values, 0, buf, 1, values.length);
+        ((ILongBatchAggregator) batch).aggregate(buf, 1, 300);
+        ((ILongBatchAggregator) batch).aggregate(buf, 301, 0);
+        ((ILongBatchAggregator) batch).aggregate(buf, 301, 700);
+        assertEquals(perRow.getState(), batch.getState());
+
+        batch.reset();
+        ((ILongBatchAggregator) batch).aggregate(buf, 1, 1);
+        assertEquals(Long.valueOf(values[0]), batch.getState());
+    }
+
+    private void verifyDouble(MeasureAggregator<Double> perRow, MeasureAggregator<Double> batch) {
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rand.nextDouble() * 1000 - 500;
+        }
+        for (double v : values) {
+            perRow.aggregate(v);
+        }
+        ((IDoubleBatchAggregator) batch).aggregate(values, 0, 256);
+        ((IDoubleBatchAggregator) batch).aggregate(values, 256, 744);
+        assertEquals(perRow.getState(), batch.getState(), 0);
+    }
+
+    @Test
+    public void testLong() {
+        verifyLong(new LongSumAggregator(), new LongSumAggregator());
+        verifyLong(new LongMinAggregator(), new LongMinAggregator());
+        verifyLong(new LongMaxAggregator(), new LongMaxAggregator());
+    }
+
+    @Test
+    public void testDouble() {
+        verifyDouble(new DoubleSumAggregator(), new DoubleSumAggregator());
+        verifyDouble(new DoubleMinAggregator(), new DoubleMinAggregator());
+        verifyDouble(new DoubleMaxAggregator(), new DoubleMaxAggregator());
+    }
+
+    @Test
+    public void testEmptyState() {
+        assertEquals(Long.valueOf(0), new LongSumAggregator().getState());
+        assertNull(new LongMinAggregator().getState());
+        assertNull(new DoubleMaxAggregator().getState());
+
+        LongMaxAggregator max = new LongMaxAggregator();
+        max.aggregate(new long[] { 1, 2 }, 0, 0);
+        assertNull(max.getState());
+        max.aggregate(-5L);
+        max.reset();
+        assertNull(max.getState());
+    }
+}
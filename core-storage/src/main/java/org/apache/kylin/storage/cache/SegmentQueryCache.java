@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Sets;
+
+/**
+ * Caches the scanned records of a cube segment, keyed by (segment, cuboid, scan request digest).
+ *
+ * Data of a ready segment never changes, a refresh or merge creates a new segment of a new UUID. So a
+ * repeated query only needs to scan the newly built segments and could take the other segments from cache.
+ * Entries of segments no longer ready, e.g. merged or dropped, are evicted when the cube change is broadcast.
+ */
+public class SegmentQueryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentQueryCache.class);
+
+    // static cached instances
+    private static final ConcurrentHashMap<KylinConfig, SegmentQueryCache> CACHE = new ConcurrentHashMap<KylinConfig, SegmentQueryCache>();
+
+    public static SegmentQueryCache getInstance(KylinConfig config) {
+        SegmentQueryCache r = CACHE.get(config);
+        if (r != null) {
+            return r;
+        }
+
+        synchronized (SegmentQueryCache.class) {
+            r = CACHE.get(config);
+            if (r != null) {
+                return r;
+            }
+            r = new SegmentQueryCache(config);
+            CACHE.put(config, r);
+            if (CACHE.size() > 1) {
+                logger.warn("More than one singleton exist");
+            }
+            return r;
+        }
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /** whether records scanned from the segment could be cached */
+    public static boolean isCacheable(CubeSegment segment) {
+        return segment.getConfig().isQuerySegmentCacheEnabled() && segment.getStatus() == SegmentStatusEnum.READY;
+    }
+
+    // ============================================================================
+
+    private final KylinConfig config;
+    private final long maxEntryBytes;
+    private final Cache<Key, Entry> cache;
+
+    private SegmentQueryCache(KylinConfig config) {
+        this.config = config;
+        this.maxEntryBytes = (long) config.getQuerySegmentCacheMaxEntryMB() * 1024 * 1024;
+        this.cache = CacheBuilder.newBuilder().maximumWeight((long) config.getQuerySegmentCacheMaxMB() * 1024 * 1024).weigher(new Weigher<Key, Entry>() {
+            @Override
+            public int weigh(Key key, Entry value) {
+                return (int) Math.min(Integer.MAX_VALUE, value.bytes);
+            }
+        }).build();
+
+        Broadcaster.getInstance(config).registerListener(new SegmentCacheSyncListener(), "cube");
+    }
+
+    private class SegmentCacheSyncListener extends Broadcaster.Listener {
+        @Override
+        public void onClearAll(Broadcaster broadcaster) throws IOException {
+            clear();
+        }
+
+        @Override
+        public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey) throws IOException {
+            String cubeName = cacheKey;
+            CubeInstance cube = event == Event.DROP ? null : CubeManager.getInstance(config).getCube(cubeName);
+            Set<String> readySegments = Sets.newHashSet();
+            if (cube != null) {
+                for (CubeSegment seg : cube.getSegments(SegmentStatusEnum.READY)) {
+                    readySegments.add(seg.getUuid());
+                }
+            }
+            evict(cubeName, readySegments);
+        }
+    }
+
+    /** return the cached records, or null if absent */
+    public List<ByteArray> get(CubeSegment segment, long cuboidId, String scanDigest) {
+        Entry entry = cache.getIfPresent(new Key(segment, cuboidId, scanDigest));
+        return entry == null ? null : entry.records;
+    }
+
+    /** cache the records, unless they are larger than the max entry size */
+    public void put(CubeSegment segment, long cuboidId, String scanDigest, List<ByteArray> records, long bytes) {
+        if (bytes > maxEntryBytes) {
+            return;
+        }
+        cache.put(new Key(segment, cuboidId, scanDigest), new Entry(records, bytes));
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /** evict the entries of the cube, except those of the given segments */
+    public void evict(String cubeName, Set<String> keepSegments) {
+        int count = 0;
+        for (Iterator<Key> it = cache.asMap().keySet().iterator(); it.hasNext();) {
+            Key key = it.next();
+            if (key.cubeName.equals(cubeName) && !keepSegments.contains(key.segmentUuid)) {
+                it.remove();
+                count++;
+            }
+        }
+        if (count > 0) {
+            logger.info("Evicted {} segment cache entries of cube {}", count, cubeName);
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static class Key {
+        final String cubeName;
+        final String segmentUuid;
+        final long cuboidId;
+        final String scanDigest;
+
+        Key(CubeSegment segment, long cuboidId, String scanDigest) {
+            this.cubeName = segment.getCubeInstance().getName();
+            this.segmentUuid = segment.getUuid();
+            this.cuboidId = cuboidId;
+            this.scanDigest = scanDigest;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(segmentUuid, cuboidId, scanDigest);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return cuboidId == other.cuboidId && segmentUuid.equals(other.segmentUuid) && scanDigest.equals(other.scanDigest) && cubeName.equals(other.cubeName);
+        }
+    }
+
+    private static class Entry {
+        final List<ByteArray> records;
+        final long bytes;
+
+        Entry(List<ByteArray> records, long bytes) {
+            this.records = records;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.columnar;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.kylin.common.util.ByteArray;
+
+/**
+ * Where the column chunks of a block are in a columnar cuboid file, and the min/max of its primary key columns.
+ */
+class ColumnarBlockMeta {
+
+    int rowCount;
+    final long[] offsets;
+    final int[] lengths; // stored length, compressed if the file is
+    final int[] rawLengths;
+    final ByteArray[] min; // null for non primary key columns
+    final ByteArray[] max;
+
+    ColumnarBlockMeta(int columnCount) {
+        offsets = new long[columnCount];
+        lengths = new int[columnCount];
+        rawLengths = new int[columnCount];
+        min = new ByteArray[columnCount];
+        max = new ByteArray[columnCount];
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(rowCount);
+        for (int c = 0; c < offsets.length; c++) {
+            out.writeLong(offsets[c]);
+            out.writeInt(lengths[c]);
+            out.writeInt(rawLengths[c]);
+            writeBytes(min[c], out);
+            writeBytes(max[c], out);
+        }
+    }
+
+    static ColumnarBlockMeta read(DataInput in, int columnCount) throws IOException {
+        ColumnarBlockMeta meta = new ColumnarBlockMeta(columnCount);
+        meta.rowCount = in.readInt();
+        for (int c = 0; c < columnCount; c++) {
+            meta.offsets[c] = in.readLong();
+            meta.lengths[c] = in.readInt();
+            meta.rawLengths[c] = in.readInt();
+            meta.min[c] = readBytes(in);
+            meta.max[c] = readBytes(in);
+        }
+        return meta;
+    }
+
+    private static void writeBytes(ByteArray bytes, DataOutput out) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length());
+            out.write(bytes.array(), bytes.offset(), bytes.length());
+        }
+    }
+
+    private static ByteArray readBytes(DataInput in) throws IOException {
+        int len = in.readInt();
+        if (len < 0)
+            return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new ByteArray(bytes);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.storage.columnar;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.inmemcubing.ICuboidWriter;
+import org.apache.kylin.gridtable.GTRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Writes the output of the in-mem cube builder into columnar cuboid files of a segment, one file per cuboid.
+ */
+public class ColumnarCuboidOutput implements ICuboidWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarCuboidOutput.class);
+
+    private final CubeSegment segment;
+    private final KylinConfig config;
+    private final Map<Long, ColumnarCuboidWriter> writers = Maps.newHashMap();
+
+    public ColumnarCuboidOutput(CubeSegment segment) {
+        this.segment = segment;
+        this.config = segment.getConfig();
+    }
+
+    @Override
+    public void write(long cuboidId, GTRecord record) throws IOException {
+        ColumnarCuboidWriter writer = writers.get(cuboidId);
+        if (writer == null) {
+            Path path = ColumnarStorage.getCuboidPath(config, segment, cuboidId);
+            FileSystem fs = HadoopUtil.getFileSystem(path);
+            writer = new ColumnarCuboidWriter(record.getInfo(), fs.create(path, true), config.getColumnarStorageRowsPerBlock(), config.isColumnarStorageCompress());
+            writers.put(cuboidId, writer);
+        }
+        writer.write(record);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // a file is complete only when closed
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Map.Entry<Long, ColumnarCuboidWriter> entry : writers.entrySet()) {
+            try {
+                entry.getValue().close();
+                logger.info("Cuboid " + entry.getKey() + " of segment " + segment + " has " + entry.getValue().getRowCount() + " rows written");
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        writers.clear();
+        if (error != null)
+            throw error;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.columnar;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTComparator;
+import org.apache.kylin.gridtable.IGTScanner;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads a file written by {@link ColumnarCuboidWriter}. A scan reads only the chunks of the requested columns,
+ * from the blocks whose primary key min/max could fall in the scan ranges.
+ */
+public class ColumnarCuboidReader implements Closeable {
+
+    private final GTInfo info;
+    private final FSDataInputStream in;
+    private final IGTComparator comparator;
+    private final boolean compressed;
+    private final List<ColumnarBlockMeta> blocks;
+
+    public ColumnarCuboidReader(GTInfo info, FSDataInputStream in, long fileLength) throws IOException {
+        this.info = info;
+        this.in = in;
+        this.comparator = info.getCodeSystem().getComparator();
+
+        byte[] magic = new byte[ColumnarCuboidWriter.MAGIC.length];
+        in.readFully(0, magic);
+        byte[] trailer = new byte[ColumnarCuboidWriter.TRAILER_LENGTH];
+        in.readFully(fileLength - trailer.length, trailer);
+        ByteBuffer trailerBuf = ByteBuffer.wrap(trailer);
+        long footerOffset = trailerBuf.getLong();
+        if (!Arrays.equals(magic, ColumnarCuboidWriter.MAGIC) || !Arrays.equals(Arrays.copyOfRange(trailer, 8, trailer.length), ColumnarCuboidWriter.MAGIC)) {
+            throw new IOException("Not a columnar cuboid file, or the file is incomplete");
+        }
+
+        byte[] footer = new byte[(int) (fileLength - trailer.length - footerOffset)];
+        in.readFully(footerOffset, footer);
+        DataInputStream footerIn = new DataInputStream(new ByteArrayInputStream(footer));
+        this.compressed = footerIn.readBoolean();
+        int columnCount = footerIn.readInt();
+        if (columnCount != info.getColumnCount()) {
+            throw new IllegalStateException("The file has " + columnCount + " columns while the table has " + info.getColumnCount());
+        }
+        int blockCount = footerIn.readInt();
+        this.blocks = Lists.newArrayListWithCapacity(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            blocks.add(ColumnarBlockMeta.read(footerIn, columnCount));
+        }
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    public long getRowCount() {
+        long count = 0;
+        for (ColumnarBlockMeta block : blocks) {
+            count += block.rowCount;
+        }
+        return count;
+    }
+
+    /** whether the block could have rows in any of the ranges */
+    boolean isBlockInRanges(ColumnarBlockMeta block, List<GTScanRange> ranges) {
+        for (GTScanRange range : ranges) {
+            if (isBlockInRange(block, range))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isBlockInRange(ColumnarBlockMeta block, GTScanRange range) {
+        // rows are ordered by primary key columns one by one, so a column is bounded by the range
+        // only if the columns before it have the same start and end
+        ImmutableBitSet primaryKey = info.getPrimaryKey();
+        for (int i = 0; i < primaryKey.trueBitCount(); i++) {
+            int c = primaryKey.trueBitAt(i);
+            ByteArray start = range.pkStart.get(c);
+            ByteArray end = range.pkEnd.get(c);
+            if (start.array() != null && comparator.compare(block.max[c], start) < 0)
+                return false;
+            if (end.array() != null && comparator.compare(block.min[c], end) > 0)
+                return false;
+            if (start.array() == null || end.array() == null || comparator.compare(start, end) != 0)
+                break;
+        }
+        return true;
+    }
+
+    public IGTScanner scan(final GTScanRequest req) {
+        final List<ColumnarBlockMeta> selected = Lists.newArrayList();
+        for (ColumnarBlockMeta block : blocks) {
+            if (isBlockInRanges(block, req.getGTScanRanges()))
+                selected.add(block);
+        }
+
+        return new IGTScanner() {
+            long scannedRowCount = 0;
+
+            @Override
+            public GTInfo getInfo() {
+                return info;
+            }
+
+            @Override
+            public long getScannedRowCount() {
+                return scannedRowCount;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return new BlockIterator(selected.iterator(), req.getColumns()) {
+                    @Override
+                    void onBlockLoaded(ColumnarBlockMeta block) {
+                        scannedRowCount += block.rowCount;
+                    }
+                };
+            }
+        };
+    }
+
+    private byte[] readChunk(ColumnarBlockMeta block, int c) throws IOException {
+        byte[] stored = new byte[block.lengths[c]];
+        in.readFully(block.offsets[c], stored);
+        if (!compressed)
+            return stored;
+
+        byte[] raw = new byte[block.rawLengths[c]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                n += inflater.inflate(raw, n, raw.length - n);
+            }
+            if (n != raw.length)
+                throw new IOException("Column chunk is corrupted, expect " + raw.length + " bytes but got " + n);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private abstract class BlockIterator implements Iterator<GTRecord> {
+        final Iterator<ColumnarBlockMeta> blockIterator;
+        final int[] columns;
+        final ByteBuffer[] chunks;
+        final GTRecord record = new GTRecord(info);
+        int remainingRows = 0;
+
+        BlockIterator(Iterator<ColumnarBlockMeta> blockIterator, ImmutableBitSet selectedColumns) {
+            this.blockIterator = blockIterator;
+            this.columns = new int[selectedColumns.trueBitCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = selectedColumns.trueBitAt(i);
+            }
+            this.chunks = new ByteBuffer[columns.length];
+        }
+
+        abstract void onBlockLoaded(ColumnarBlockMeta block);
+
+        @Override
+        public boolean hasNext() {
+            while (remainingRows == 0) {
+                if (!blockIterator.hasNext())
+                    return false;
+
+                ColumnarBlockMeta block = blockIterator.next();
+                try {
+                    for (int i = 0; i < columns.length; i++) {
+                        chunks[i] = ByteBuffer.wrap(readChunk(block, columns[i]));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read columnar cuboid file", e);
+                }
+                remainingRows = block.rowCount;
+                onBlockLoaded(block);
+            }
+            return true;
+        }
+
+        @Override
+        public GTRecord next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            for (int i = 0; i < columns.length; i++) {
+                int c = columns[i];
+                ByteBuffer chunk = chunks[i];
+                int pos = chunk.position();
+                int len = info.getCodeSystem().codeLength(c, chunk);
+                record.get(c).set(chunk.array(), pos, len);
+                chunk.position(pos + len);
+            }
+            remainingRows--;
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
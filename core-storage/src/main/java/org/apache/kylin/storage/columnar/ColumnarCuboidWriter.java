@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTComparator;
+import org.apache.kylin.gridtable.IGTWriter;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes the records of a cuboid into a column oriented file. Records are cut into blocks of a number of rows,
+ * and each column of a block is stored as a separate chunk, optionally deflated.
+ *
+ * <pre>
+ * file   := MAGIC version chunk* footer footerOffset(long) MAGIC
+ * footer := compressed(boolean) columnCount(int) blockCount(int) blockMeta*
+ * </pre>
+ *
+ * A chunk is the encoded column values of the block concatenated, the same bytes as GTRecord columns. Block meta
+ * records where the chunks are, and the min/max of primary key columns to skip blocks out of the scan ranges.
+ */
+public class ColumnarCuboidWriter implements IGTWriter {
+
+    static final byte[] MAGIC = new byte[] { 'K', 'C', 'O', 'L' };
+    static final int VERSION = 1;
+    static final int TRAILER_LENGTH = 8 + MAGIC.length;
+
+    private final DataOutputStream out;
+    private final int rowsPerBlock;
+    private final boolean compress;
+    private final IGTComparator comparator;
+    private final ImmutableBitSet primaryKey;
+
+    private final ByteArrayOutputStream[] chunks;
+    private final ByteArray[] min;
+    private final ByteArray[] max;
+    private final List<ColumnarBlockMeta> blocks = Lists.newArrayList();
+    private final ByteArrayOutputStream deflateBuf = new ByteArrayOutputStream();
+    private int blockRows = 0;
+    private long position = 0; // DataOutputStream.size() overflows beyond 2GB
+    private long rowCount = 0;
+
+    public ColumnarCuboidWriter(GTInfo info, OutputStream out, int rowsPerBlock, boolean compress) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.rowsPerBlock = rowsPerBlock;
+        this.compress = compress;
+        this.comparator = info.getCodeSystem().getComparator();
+        this.primaryKey = info.getPrimaryKey();
+
+        int nCols = info.getColumnCount();
+        this.chunks = new ByteArrayOutputStream[nCols];
+        for (int c = 0; c < nCols; c++) {
+            chunks[c] = new ByteArrayOutputStream();
+        }
+        this.min = new ByteArray[nCols];
+        this.max = new ByteArray[nCols];
+
+        this.out.write(MAGIC);
+        this.out.writeInt(VERSION);
+        position = MAGIC.length + 4;
+    }
+
+    @Override
+    public void write(GTRecord rec) throws IOException {
+        for (int c = 0; c < chunks.length; c++) {
+            ByteArray v = rec.get(c);
+            if (v.array() == null) {
+                throw new IllegalStateException("Column " + c + " of the record is not set");
+            }
+            chunks[c].write(v.array(), v.offset(), v.length());
+
+            if (primaryKey.get(c)) {
+                if (min[c] == null || comparator.compare(v, min[c]) < 0)
+                    min[c] = v.copy();
+                if (max[c] == null || comparator.compare(v, max[c]) > 0)
+                    max[c] = v.copy();
+            }
+        }
+        rowCount++;
+        if (++blockRows == rowsPerBlock) {
+            flushBlock();
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void flushBlock() throws IOException {
+        ColumnarBlockMeta meta = new ColumnarBlockMeta(chunks.length);
+        meta.rowCount = blockRows;
+        for (int c = 0; c < chunks.length; c++) {
+            byte[] raw = chunks[c].toByteArray();
+            byte[] stored = compress ? deflate(raw) : raw;
+            meta.offsets[c] = position;
+            meta.lengths[c] = stored.length;
+            meta.rawLengths[c] = raw.length;
+            meta.min[c] = min[c];
+            meta.max[c] = max[c];
+            out.write(stored);
+            position += stored.length;
+
+            chunks[c].reset();
+            min[c] = null;
+            max[c] = null;
+        }
+        blocks.add(meta);
+        blockRows = 0;
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            deflateBuf.reset();
+            byte[] buf = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                deflateBuf.write(buf, 0, n);
+            }
+            return deflateBuf.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (blockRows > 0) {
+            flushBlock();
+        }
+
+        long footerOffset = position;
+        out.writeBoolean(compress);
+        out.writeInt(chunks.length);
+        out.writeInt(blocks.size());
+        for (ColumnarBlockMeta meta : blocks) {
+            meta.write(out);
+        }
+        out.writeLong(footerOffset);
+        out.write(MAGIC);
+        out.close();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.storage.columnar;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.EmptyGTScanner;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStorage;
+import org.apache.kylin.metadata.model.ISegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves a GTScanRequest from the columnar file of a cuboid, by the query server itself. Filter and
+ * aggregation are done on top of the file scan, the same as what the coprocessor does for HBase.
+ */
+public class ColumnarGTStorage implements IGTStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarGTStorage.class);
+
+    private final CubeSegment segment;
+    private final Cuboid cuboid;
+    private final GTInfo info;
+
+    public ColumnarGTStorage(ISegment segment, Cuboid cuboid, GTInfo info) {
+        this.segment = (CubeSegment) segment;
+        this.cuboid = cuboid;
+        this.info = info;
+    }
+
+    @Override
+    public IGTScanner getGTScanner(GTScanRequest scanRequest) throws IOException {
+        KylinConfig config = segment.getConfig();
+        Path path = ColumnarStorage.getCuboidPath(config, segment, cuboid.getId());
+        FileSystem fs = HadoopUtil.getFileSystem(path);
+        if (!fs.exists(path)) {
+            // a cuboid of no rows has no file
+            logger.info("Columnar cuboid file {} does not exist, the cuboid is empty", path);
+            return new EmptyGTScanner(0);
+        }
+
+        ColumnarGTStore store = new ColumnarGTStore(info, fs, path, config.getColumnarStorageRowsPerBlock(), config.isColumnarStorageCompress());
+        long deadline = scanRequest.getTimeout() > 0 ? System.currentTimeMillis() + scanRequest.getTimeout() : Long.MAX_VALUE;
+        return scanRequest.decorateScanner(store.scan(scanRequest), true, true, deadline);
+    }
+}
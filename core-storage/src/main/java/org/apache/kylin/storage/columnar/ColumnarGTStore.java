@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.storage.columnar;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.IGTWriter;
+
+/**
+ * A grid table store of one columnar cuboid file. The file is immutable once written, so it can be rebuilt but not appended.
+ */
+public class ColumnarGTStore implements IGTStore {
+
+    private final GTInfo info;
+    private final FileSystem fs;
+    private final Path path;
+    private final int rowsPerBlock;
+    private final boolean compress;
+
+    public ColumnarGTStore(GTInfo info, FileSystem fs, Path path, int rowsPerBlock, boolean compress) {
+        this.info = info;
+        this.fs = fs;
+        this.path = path;
+        this.rowsPerBlock = rowsPerBlock;
+        this.compress = compress;
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public IGTWriter rebuild() throws IOException {
+        return new ColumnarCuboidWriter(info, fs.create(path, true), rowsPerBlock, compress);
+    }
+
+    @Override
+    public IGTWriter append() throws IOException {
+        throw new UnsupportedOperationException("Columnar cuboid file " + path + " cannot be appended");
+    }
+
+    @Override
+    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+        final ColumnarCuboidReader reader = new ColumnarCuboidReader(info, fs.open(path), fs.getFileStatus(path).getLen());
+        final IGTScanner scanner = reader.scan(scanRequest);
+        return new IGTScanner() {
+            @Override
+            public GTInfo getInfo() {
+                return info;
+            }
+
+            @Override
+            public long getScannedRowCount() {
+                return scanner.getScannedRowCount();
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return scanner.iterator();
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.storage.columnar;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ClassUtil;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.metadata.realization.IRealization;
+import org.apache.kylin.metadata.realization.RealizationType;
+import org.apache.kylin.storage.IStorage;
+import org.apache.kylin.storage.IStorageQuery;
+
+/**
+ * Stores each cuboid of a segment as a column oriented, block compressed file on a Hadoop file system, see
+ * {@link ColumnarCuboidWriter}. Files are written by {@link ColumnarCuboidOutput}, which MR engine 2 feeds from
+ * the cuboid files of a build or merge, and read by {@link ColumnarGTStorage} at query time.
+ *
+ * Registered as storage type 3 only when kylin.storage.columnar.enabled is true.
+ */
+@SuppressWarnings("unused")
+//used by reflection
+public class ColumnarStorage implements IStorage {
+
+    public static Path getSegmentPath(KylinConfig config, CubeSegment segment) {
+        return getSegmentPath(config, segment.getCubeInstance().getName(), segment.getUuid());
+    }
+
+    public static Path getSegmentPath(KylinConfig config, String cubeName, String segmentId) {
+        return new Path(config.getColumnarStorageRootDir() + cubeName + "/" + segmentId);
+    }
+
+    public static Path getCuboidPath(KylinConfig config, CubeSegment segment, long cuboidId) {
+        return new Path(getSegmentPath(config, segment), String.valueOf(cuboidId));
+    }
+
+    @Override
+    public IStorageQuery createQuery(IRealization realization) {
+        if (realization.getType() == RealizationType.CUBE) {
+            return new ColumnarStorageQuery((CubeInstance) realization);
+        } else {
+            throw new IllegalArgumentException("Unknown realization type " + realization.getType());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <I> I adaptToBuildEngine(Class<I> engineInterface) {
+        // the adapter lives in engine-mr, which depends on this module
+        if ("org.apache.kylin.engine.mr.IMROutput2".equals(engineInterface.getName())) {
+            return (I) ClassUtil.newInstance("org.apache.kylin.engine.mr.steps.ColumnarMROutput2");
+        } else {
+            throw new RuntimeException("Cannot adapt to " + engineInterface);
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.kylin.storage.gtrecord;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -29,10 +30,14 @@ import java.util.Set;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.common.FuzzyValueCombination;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidStatsCache;
+import org.apache.kylin.cube.gridtable.ColumnRangeTranslator;
+import org.apache.kylin.cube.gridtable.ColumnRangeTranslator.ColumnRange;
 import org.apache.kylin.cube.gridtable.CubeGridTable;
 import org.apache.kylin.cube.gridtable.CuboidToGridTableMapping;
 import org.apache.kylin.cube.gridtable.RecordComparators;
@@ -61,9 +66,17 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeScanRangePlanner.class);
 
+    // cost of a seek and of matching one fuzzy key against a row, both in rows scanned
+    private static final double SEEK_COST = 10;
+    private static final double FUZZY_KEY_MATCH_COST = 0.05;
+
     protected int maxScanRanges;
     protected int maxFuzzyKeys;
 
+    // statistics for choosing between fuzzy keys, split ranges and plain range, unknown if negative
+    protected long cuboidRowEstimate = -1;
+    protected long[] columnCardinality; // by GT column
+
     //non-GT
     protected CubeSegment cubeSegment;
     protected CubeDesc cubeDesc;
@@ -115,6 +128,40 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             }
         }
 
+        if (cubeSegment.getConfig().isQueryCostBasedScanPlanEnabled()) {
+            initScanStats(mapping);
+        }
+    }
+
+    private void initScanStats(CuboidToGridTableMapping mapping) {
+        Map<Long, Long> rowEstimates;
+        try {
+            rowEstimates = CuboidStatsCache.getInstance(cubeSegment.getConfig()).getSegmentCuboidRowEstimates(cubeSegment);
+        } catch (Exception e) {
+            logger.warn("Failed to get cuboid statistics of segment " + cubeSegment + ", scan is planned without cost", e);
+            return;
+        }
+        if (rowEstimates == null || !rowEstimates.containsKey(cuboid.getId())) {
+            return;
+        }
+
+        List<TblColRef> dims = mapping.getCuboidDimensionsInGTOrder();
+        long[] cardinality = new long[gtInfo.getColumnCount()];
+        Arrays.fill(cardinality, -1);
+        for (int i = 0; i < dims.size(); i++) {
+            TblColRef dim = dims.get(i);
+            // rows of the single dimension cuboid is the cardinality, the dictionary size is an upper bound of it
+            Long rows = rowEstimates.get(1L << cubeDesc.getRowkey().getColumnBitIndex(dim));
+            if (rows != null) {
+                cardinality[i] = rows;
+            } else if (cubeDesc.getRowkey().isUseDictionary(dim)) {
+                Dictionary<String> dict = cubeSegment.getDictionary(dim);
+                if (dict != null) {
+                    cardinality[i] = dict.getSize();
+                }
+            }
+        }
+        setScanStats(rowEstimates.get(cuboid.getId()), cardinality);
     }
 
     /**
@@ -151,6 +198,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             scanRequest = new GTScanRequestBuilder().setInfo(gtInfo).setRanges(scanRanges).setDimensions(gtDimensions).//
                     setAggrGroupBy(gtAggrGroups).setAggrMetrics(gtAggrMetrics).setAggrMetricsFuncs(gtAggrFuncs).setFilterPushDown(gtFilter).//
                     setAllowStorageAggregation(context.isNeedStorageAggregation()).setAggCacheMemThreshold(cubeSegment.getCubeInstance().getConfig().getQueryCoprocessorMemGB()).//
+                    setAggCacheOffHeap(cubeSegment.getCubeInstance().getConfig().isQueryCoprocessorOffHeapAggregation()).//
                     setStoragePushDownLimit(context.getFinalPushDownLimit()).setStorageScanRowNumThreshold(context.getThreshold()).createGTScanRequest();
         } else {
             scanRequest = null;
@@ -163,15 +211,13 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
      * @return
      */
     public List<GTScanRange> planScanRanges() {
-        TupleFilter flatFilter = flattenToOrAndFilter(gtFilter);
+        TupleFilter flatFilter = ColumnRangeTranslator.flattenToOrAndFilter(gtFilter);
 
-        List<Collection<ColumnRange>> orAndDimRanges = translateToOrAndDimRanges(flatFilter);
+        List<Collection<ColumnRange>> orAndDimRanges = new ColumnRangeTranslator(gtInfo).translateToOrAndDimRanges(flatFilter);
 
         List<GTScanRange> scanRanges = Lists.newArrayListWithCapacity(orAndDimRanges.size());
         for (Collection<ColumnRange> andDimRanges : orAndDimRanges) {
-            GTScanRange scanRange = newScanRange(andDimRanges);
-            if (scanRange != null)
-                scanRanges.add(scanRange);
+            scanRanges.addAll(newScanRanges(andDimRanges));
         }
 
         List<GTScanRange> mergedRanges = mergeOverlapRanges(scanRanges);
@@ -194,7 +240,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         return ret;
     }
 
-    protected GTScanRange newScanRange(Collection<ColumnRange> andDimRanges) {
+    protected List<GTScanRange> newScanRanges(Collection<ColumnRange> andDimRanges) {
         GTRecord pkStart = new GTRecord(gtInfo);
         GTRecord pkEnd = new GTRecord(gtInfo);
         Map<Integer, Set<ByteArray>> fuzzyValues = Maps.newHashMap();
@@ -211,7 +257,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
                 } else {
                     logger.debug("Pre-check partition col filter failed, partitionColRef {}, segment start {}, segment end {}, range begin {}, range end {}", //
                             gtPartitionCol, makeReadable(gtStartAndEnd.getFirst()), makeReadable(gtStartAndEnd.getSecond()), makeReadable(range.begin), makeReadable(range.end));
-                    return null;
+                    return Collections.emptyList();
                 }
             }
 
@@ -227,10 +273,120 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             }
         }
 
-        fuzzyKeys =
+        fuzzyKeys = buildFuzzyKeys(fuzzyValues);
+        GTScanRange fuzzyRange = new GTScanRange(pkStart, pkEnd, fuzzyKeys);
+        if (cuboidRowEstimate < 0 || fuzzyValues.isEmpty() || BackdoorToggles.getDisableFuzzyKey()) {
+            return Lists.newArrayList(fuzzyRange);
+        }
+        return planByCost(fuzzyRange, fuzzyValues);
+    }
+
+    /**
+     * Choose the cheapest of three plans by estimated scan cost, i.e. rows scanned plus seeks:
+     * - one range with fuzzy keys, which skips rows by seeking but matches every fuzzy key on each row
+     * - one range without fuzzy keys
+     * - one range per value of the leading IN column, each with its own fewer fuzzy keys if cheaper
+     * The first is kept when the cost cannot be estimated.
+     */
+    private List<GTScanRange> planByCost(GTScanRange fuzzyRange, Map<Integer, Set<ByteArray>> fuzzyValues) {
+        // the leading columns of a single value fix the key prefix, the range opens from the first other column
+        int split = 0;
+        while (split < gtInfo.getPrimaryKey().trueBitCount() && fuzzyValues.containsKey(split) && fuzzyValues.get(split).size() == 1) {
+            split++;
+        }
+        double prefixRows = cuboidRowEstimate;
+        for (int i = 0; i < split; i++) {
+            if (columnCardinality[i] <= 0) {
+                return Lists.newArrayList(fuzzyRange);
+            }
+            prefixRows /= columnCardinality[i];
+        }
+
+        double fuzzyCost = estimateCost(prefixRows, split, fuzzyValues, fuzzyRange.fuzzyKeys.size());
+        double rangeCost = estimateCost(prefixRows, split, fuzzyValues, 0);
+        if (Double.isNaN(fuzzyCost)) {
+            return Lists.newArrayList(fuzzyRange);
+        }
 
-                buildFuzzyKeys(fuzzyValues);
-        return new GTScanRange(pkStart, pkEnd, fuzzyKeys);
+        double splitCost = Double.NaN;
+        boolean splitWithFuzzyKeys = false;
+        Set<ByteArray> splitValues = fuzzyValues.get(split);
+        if (splitValues != null && splitValues.size() <= maxFuzzyKeys && columnCardinality[split] > 0) {
+            // each split range fixes one more column, so it is estimated like the plans above
+            double subPrefixRows = prefixRows / columnCardinality[split];
+            Map<Integer, Set<ByteArray>> subFuzzyValues = Maps.newHashMap(fuzzyValues);
+            subFuzzyValues.put(split, Collections.singleton(splitValues.iterator().next()));
+            List<GTRecord> subKeys = buildFuzzyKeys(subFuzzyValues);
+            double subFuzzyCost = estimateCost(subPrefixRows, split + 1, subFuzzyValues, subKeys.size());
+            double subRangeCost = estimateCost(subPrefixRows, split + 1, subFuzzyValues, 0);
+            if (!Double.isNaN(subFuzzyCost) && subFuzzyCost < subRangeCost) {
+                splitCost = splitValues.size() * subFuzzyCost;
+                splitWithFuzzyKeys = true;
+            } else {
+                splitCost = splitValues.size() * subRangeCost;
+            }
+        }
+
+        if (!(rangeCost < fuzzyCost) && !(splitCost < fuzzyCost)) {
+            logger.debug("Planned range with {} fuzzy keys, cost {}, range cost {}, split cost {}", fuzzyRange.fuzzyKeys.size(), fuzzyCost, rangeCost, splitCost);
+            return Lists.newArrayList(fuzzyRange);
+        }
+        if (!(splitCost < rangeCost)) {
+            logger.debug("Planned range without fuzzy keys, cost {}, fuzzy cost {}, split cost {}", rangeCost, fuzzyCost, splitCost);
+            return Lists.newArrayList(new GTScanRange(fuzzyRange.pkStart, fuzzyRange.pkEnd, new ArrayList<GTRecord>()));
+        }
+
+        logger.debug("Planned {} split ranges, cost {}, fuzzy cost {}, range cost {}", splitValues.size(), splitCost, fuzzyCost, rangeCost);
+        List<GTScanRange> result = Lists.newArrayListWithCapacity(splitValues.size());
+        for (ByteArray value : splitValues) {
+            GTRecord start = new GTRecord(fuzzyRange.pkStart);
+            GTRecord end = new GTRecord(fuzzyRange.pkEnd);
+            start.set(split, value);
+            end.set(split, value);
+            List<GTRecord> keys = new ArrayList<GTRecord>();
+            if (splitWithFuzzyKeys) {
+                Map<Integer, Set<ByteArray>> subFuzzyValues = Maps.newHashMap(fuzzyValues);
+                subFuzzyValues.put(split, Collections.singleton(value));
+                keys = buildFuzzyKeys(subFuzzyValues);
+            }
+            result.add(new GTScanRange(start, end, keys));
+        }
+        return result;
+    }
+
+    /**
+     * the estimated cost of scanning a range whose key prefix of prefixLen columns is fixed, with or without
+     * fuzzy keys, or NaN if some cardinality is unknown
+     */
+    private double estimateCost(double prefixRows, int prefixLen, Map<Integer, Set<ByteArray>> fuzzyValues, int fuzzyKeyCount) {
+        if (fuzzyKeyCount == 0) {
+            return prefixRows + SEEK_COST;
+        }
+
+        // rows matching the fuzzy columns after the prefix, and the seeks to skip from one match to the next,
+        // i.e. one per fuzzy key and combination of the free columns between the fuzzy ones
+        int lastFuzzyCol = -1;
+        for (Integer col : fuzzyValues.keySet()) {
+            lastFuzzyCol = Math.max(lastFuzzyCol, col);
+        }
+
+        double rows = prefixRows;
+        double seeks = fuzzyKeyCount;
+        double freeCombinations = 1;
+        for (int col = prefixLen; col <= lastFuzzyCol; col++) {
+            if (columnCardinality[col] <= 0) {
+                return Double.NaN;
+            }
+            if (fuzzyValues.containsKey(col)) {
+                rows *= Math.min(1.0, (double) fuzzyValues.get(col).size() / columnCardinality[col]);
+                seeks *= freeCombinations;
+                freeCombinations = 1;
+            } else {
+                freeCombinations *= columnCardinality[col];
+            }
+        }
+        seeks = Math.min(seeks, prefixRows);
+        return rows * (1 + FUZZY_KEY_MATCH_COST * fuzzyKeyCount) + SEEK_COST * (seeks + 1);
     }
 
     private List<GTRecord> buildFuzzyKeys(Map<Integer, Set<ByteArray>> fuzzyValueSet) {
@@ -342,6 +498,15 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         return result;
     }
 
+    /**
+     * set the estimated row count of the cuboid and the cardinality of each GT column (negative if unknown),
+     * used to choose between fuzzy keys, split ranges and plain range
+     */
+    public void setScanStats(long cuboidRowEstimate, long[] columnCardinality) {
+        this.cuboidRowEstimate = cuboidRowEstimate;
+        this.columnCardinality = columnCardinality;
+    }
+
     public int getMaxScanRanges() {
         return maxScanRanges;
     }
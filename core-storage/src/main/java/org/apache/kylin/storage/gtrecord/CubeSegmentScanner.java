@@ -21,8 +21,12 @@ package org.apache.kylin.storage.gtrecord;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.dict.BuiltInFunctionTransformer;
@@ -38,9 +42,12 @@ import org.apache.kylin.metadata.filter.TupleFilterSerializer;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.cache.SegmentQueryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 public class CubeSegmentScanner implements IGTScanner {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeSegmentScanner.class);
@@ -51,6 +58,10 @@ public class CubeSegmentScanner implements IGTScanner {
 
     final GTScanRequest scanRequest;
 
+    final SegmentQueryCache segmentCache;
+    final String scanDigest;
+    final List<ByteArray> cachedRecords;
+
     public CubeSegmentScanner(CubeSegment cubeSeg, Cuboid cuboid, Set<TblColRef> dimensions, Set<TblColRef> groups, //
             Collection<FunctionDesc> metrics, TupleFilter originalfilter, StorageContext context) {
         
@@ -78,18 +89,43 @@ public class CubeSegmentScanner implements IGTScanner {
             throw new RuntimeException(e);
         }
         scanRequest = scanRangePlanner.planScanRequest();
-        String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
-        scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage);
+
+        // only aggregated results are cached, raw records are usually too many to keep
+        if (scanRequest != null && scanRequest.hasAggregation() && SegmentQueryCache.isCacheable(cubeSeg)) {
+            segmentCache = SegmentQueryCache.getInstance(KylinConfig.getInstanceFromEnv());
+            scanDigest = scanRequest.getDigest();
+            cachedRecords = segmentCache.get(cubeSeg, cuboid.getId(), scanDigest);
+        } else {
+            segmentCache = null;
+            scanDigest = null;
+            cachedRecords = null;
+        }
+
+        if (cachedRecords != null) {
+            logger.info("Segment {} hits segment cache, {} records", cubeSeg.getName(), cachedRecords.size());
+            scanner = null;
+        } else {
+            String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
+            scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage);
+        }
     }
 
     @Override
     public Iterator<GTRecord> iterator() {
+        if (cachedRecords != null) {
+            return new CachedRecordIterator(cachedRecords.iterator());
+        }
+        if (segmentCache != null) {
+            return new CachingRecordIterator(scanner.iterator());
+        }
         return scanner.iterator();
     }
 
     @Override
     public void close() throws IOException {
-        scanner.close();
+        if (scanner != null) {
+            scanner.close();
+        }
     }
 
     @Override
@@ -99,11 +135,79 @@ public class CubeSegmentScanner implements IGTScanner {
 
     @Override
     public long getScannedRowCount() {
-        return scanner.getScannedRowCount();
+        return scanner == null ? 0 : scanner.getScannedRowCount();
     }
 
     public CubeSegment getSegment() {
         return this.cubeSeg;
     }
 
+    private class CachedRecordIterator implements Iterator<GTRecord> {
+        private final Iterator<ByteArray> input;
+        private final GTRecord record = new GTRecord(scanRequest.getInfo());
+
+        CachedRecordIterator(Iterator<ByteArray> input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return input.hasNext();
+        }
+
+        @Override
+        public GTRecord next() {
+            record.loadColumns(scanRequest.getColumns(), input.next().asBuffer());
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Copies the records passed by, and puts them into segment cache once the scan completes.
+     * Gives up as soon as the records exceed the max entry size.
+     */
+    private class CachingRecordIterator implements Iterator<GTRecord> {
+        private final Iterator<GTRecord> input;
+        private List<ByteArray> records = Lists.newArrayList();
+        private long bytes = 0;
+
+        CachingRecordIterator(Iterator<GTRecord> input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = input.hasNext();
+            if (!hasNext && records != null) {
+                segmentCache.put(cubeSeg, cuboid.getId(), scanDigest, records, bytes);
+                records = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public GTRecord next() {
+            GTRecord next = input.next();
+            if (records != null) {
+                ByteArray copy = next.exportColumns(scanRequest.getColumns());
+                records.add(copy);
+                bytes += copy.length() + 48; // plus the rough overhead of object headers and references
+                if (bytes > segmentCache.getMaxEntryBytes()) {
+                    records = null;
+                }
+            }
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 }
@@ -19,8 +19,12 @@
 package org.apache.kylin.storage.gtrecord;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+
 public class DummyPartitionStreamer implements IPartitionStreamer {
     private Iterator<byte[]> iterator;
 
@@ -34,7 +38,17 @@ public class DummyPartitionStreamer implements IPartitionStreamer {
     }
 
     @Override
-    public Iterator<byte[]> asByteArrayIterator() {
-        return this.iterator;
+    public Iterator<ByteBuffer> asBlockIterator() {
+        return Iterators.transform(this.iterator, new Function<byte[], ByteBuffer>() {
+            @Override
+            public ByteBuffer apply(byte[] input) {
+                return ByteBuffer.wrap(input);
+            }
+        });
+    }
+
+    @Override
+    public void release(ByteBuffer block) {
+        //do nothing
     }
 }
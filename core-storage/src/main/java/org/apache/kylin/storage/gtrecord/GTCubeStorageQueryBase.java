@@ -26,12 +26,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.RawQueryLastHacker;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidStatsCache;
+import org.apache.kylin.cube.cuboid.CuboidUsageManager;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
 import org.apache.kylin.dict.lookup.LookupStringTable;
@@ -105,7 +108,11 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         Set<TblColRef> dimensionsD = new LinkedHashSet<TblColRef>();
         dimensionsD.addAll(groupsD);
         dimensionsD.addAll(otherDimsD);
-        Cuboid cuboid = Cuboid.identifyCuboid(cubeDesc, dimensionsD, metrics);
+        Map<Long, Long> cuboidRowEstimates = null;
+        if (cubeDesc.getConfig().isQueryCostBasedRoutingEnabled()) {
+            cuboidRowEstimates = CuboidStatsCache.getInstance(cubeDesc.getConfig()).getCuboidRowEstimates(cubeInstance);
+        }
+        Cuboid cuboid = Cuboid.identifyCuboid(cubeDesc, dimensionsD, metrics, cuboidRowEstimates);
         logger.info("Cuboid identified: cube={}, cuboidId={}, groupsD={}, otherDimsD={}", cubeInstance.getName(), cuboid.getId(), groupsD, otherDimsD);
         context.setCuboid(cuboid);
 
@@ -136,8 +143,12 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
             scanners.add(scanner);
         }
 
-        if (scanners.isEmpty())
+        if (scanners.isEmpty()) {
+            if (cubeDesc.getConfig().isQueryCuboidUsageTrackingEnabled()) {
+                CuboidUsageManager.getInstance(KylinConfig.getInstanceFromEnv()).record(cubeInstance.getName(), cuboid.getInputID(), cuboid.getId(), 0, 0);
+            }
             return ITupleIterator.EMPTY_TUPLE_ITERATOR;
+        }
 
         return new SequentialCubeTupleIterator(scanners, cuboid, dimensionsD, metrics, returnTupleInfo, context);
     }
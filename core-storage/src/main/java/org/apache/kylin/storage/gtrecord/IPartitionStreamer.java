@@ -19,8 +19,18 @@
 package org.apache.kylin.storage.gtrecord;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 public interface IPartitionStreamer extends Closeable {
-    public Iterator<byte[]> asByteArrayIterator();
+
+    /**
+     * the blocks of serialized records, each between position and limit of the buffer
+     */
+    public Iterator<ByteBuffer> asBlockIterator();
+
+    /**
+     * called once all records of a block are consumed, so the streamer may reuse the memory of the block
+     */
+    public void release(ByteBuffer block);
 }
@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Iterates the segments of a query concurrently on a shared thread pool. Each segment is drained by a pool
+ * thread into a bounded queue, either its own queue (for sorted merge) or a queue shared by all segments
+ * (for unordered consumption).
+ *
+ * The storage RPCs of a segment are already issued when its scanner is created, so what runs concurrently
+ * here is the draining and decoding of the segment results, not the RPCs themselves.
+ *
+ * A segment that has not been picked up by the pool when the consumer needs it is iterated in the consumer
+ * thread instead, so a busy pool slows a query down but never blocks it. This is also why the pool queue is
+ * bounded and simply discards what does not fit.
+ */
+public class ParallelSegmentFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSegmentFetcher.class);
+
+    private static final int QUEUE_SIZE = 1000;
+    private static final long POLL_MILLIS = 100;
+
+    private static ExecutorService pool;
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            int threads = KylinConfig.getInstanceFromEnv().getQueryParallelSegmentScanThreads();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads * 4), new DaemonThreadFactory(), new ThreadPoolExecutor.DiscardPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            pool = executor;
+        }
+        return pool;
+    }
+
+    private final List<SegmentFetcher> fetchers;
+    private final long deadline;
+    private final String queryId;
+    private final Map<String, String> toggles;
+
+    public ParallelSegmentFetcher(List<? extends ITupleIterator> segmentIterators, long deadline) {
+        this.deadline = deadline;
+        this.queryId = QueryContext.getQueryId();
+        Map<String, String> queryToggles = BackdoorToggles.getToggles();
+        this.toggles = queryToggles == null ? null : Maps.newHashMap(queryToggles);
+        this.fetchers = Lists.newArrayListWithCapacity(segmentIterators.size());
+        for (ITupleIterator segmentIterator : segmentIterators) {
+            fetchers.add(new SegmentFetcher(segmentIterator));
+        }
+    }
+
+    /**
+     * start the segments and return one iterator per segment, each keeps the order of its segment
+     */
+    public List<Iterator<ITuple>> startSegmentIterators() {
+        List<Iterator<ITuple>> result = Lists.newArrayListWithCapacity(fetchers.size());
+        for (SegmentFetcher fetcher : fetchers) {
+            fetcher.queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+            result.add(new SegmentQueueIterator(fetcher));
+        }
+        submitAll();
+        return result;
+    }
+
+    /**
+     * start the segments and return a single iterator of the tuples of all segments, in no particular order
+     */
+    public Iterator<ITuple> startUnordered() {
+        BlockingQueue<Object> shared = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+        for (SegmentFetcher fetcher : fetchers) {
+            fetcher.queue = shared;
+        }
+        submitAll();
+        return new UnorderedIterator(shared);
+    }
+
+    private void submitAll() {
+        ExecutorService executor = getPool();
+        for (SegmentFetcher fetcher : fetchers) {
+            executor.execute(fetcher);
+        }
+    }
+
+    public void close() {
+        for (SegmentFetcher fetcher : fetchers) {
+            fetcher.close();
+        }
+    }
+
+    private void checkDeadline() {
+        if (System.currentTimeMillis() > deadline) {
+            throw new RuntimeException("Timeout when waiting for segment scan results of query " + queryId);
+        }
+    }
+
+    private Object poll(BlockingQueue<Object> queue) {
+        try {
+            return queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when waiting for segment scan results", e);
+        }
+    }
+
+    private class SegmentFetcher implements Runnable {
+        final ITupleIterator source;
+        final AtomicBoolean claimed = new AtomicBoolean(false); // by either a pool thread or the consumer thread
+        BlockingQueue<Object> queue; // the fetcher itself is put into queue to mark the end of segment
+        volatile Throwable error;
+
+        boolean running; // a pool thread is draining source, guarded by this
+        boolean closed; // guarded by this
+
+        SegmentFetcher(ITupleIterator source) {
+            this.source = source;
+        }
+
+        /** claim the segment for the consumer thread, return false if it is already taken by the pool */
+        boolean claimForConsumer() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (closed || !claimed.compareAndSet(false, true))
+                    return;
+                running = true;
+            }
+
+            // the pool thread works on behalf of the query thread, carry over its thread locals
+            String oldQueryId = QueryContext.getQueryId();
+            Map<String, String> oldToggles = BackdoorToggles.getToggles();
+            QueryContext.setQueryId(queryId);
+            BackdoorToggles.setToggles(toggles);
+            try {
+                while (!isClosed() && source.hasNext()) {
+                    if (!put(source.next().makeCopy()))
+                        break;
+                }
+            } catch (Throwable ex) {
+                logger.error("Error when fetching segment tuples", ex);
+                error = ex;
+            } finally {
+                put(this);
+                QueryContext.setQueryId(oldQueryId);
+                BackdoorToggles.setToggles(oldToggles);
+                synchronized (this) {
+                    running = false;
+                    if (closed) {
+                        source.close();
+                    }
+                }
+            }
+        }
+
+        private boolean put(Object o) {
+            try {
+                while (!isClosed()) {
+                    if (queue.offer(o, POLL_MILLIS, TimeUnit.MILLISECONDS))
+                        return true;
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        void checkError() {
+            if (error != null) {
+                throw Throwables.propagate(error);
+            }
+        }
+
+        synchronized void close() {
+            if (closed)
+                return;
+            closed = true;
+            claimed.set(true);
+            // a running pool thread closes the source when it quits
+            if (!running) {
+                source.close();
+            }
+        }
+    }
+
+    private class SegmentQueueIterator implements Iterator<ITuple> {
+        final SegmentFetcher fetcher;
+        boolean direct; // iterate source in consumer thread
+        boolean done;
+        ITuple next;
+
+        SegmentQueueIterator(SegmentFetcher fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                if (direct || (direct = fetcher.claimForConsumer())) {
+                    if (fetcher.source.hasNext())
+                        next = fetcher.source.next();
+                    else
+                        done = true;
+                    continue;
+                }
+
+                Object o = poll(fetcher.queue);
+                if (o == null) {
+                    checkDeadline();
+                } else if (o == fetcher) {
+                    fetcher.checkError();
+                    done = true;
+                } else {
+                    next = (ITuple) o;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ITuple ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class UnorderedIterator implements Iterator<ITuple> {
+        final BlockingQueue<Object> shared;
+        ITupleIterator directSource; // a segment iterated in consumer thread
+        int ended = 0;
+        ITuple next;
+
+        UnorderedIterator(BlockingQueue<Object> shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && ended < fetchers.size()) {
+                if (directSource != null) {
+                    if (directSource.hasNext()) {
+                        next = directSource.next();
+                    } else {
+                        directSource = null;
+                        ended++;
+                    }
+                    continue;
+                }
+
+                // rather than wait, work on a segment the pool has not started (or has discarded)
+                Object o = shared.poll();
+                if (o == null && (directSource = claimIdleSegment()) != null)
+                    continue;
+                if (o == null && (o = poll(shared)) == null) {
+                    checkDeadline();
+                } else if (o instanceof SegmentFetcher) {
+                    ((SegmentFetcher) o).checkError();
+                    ended++;
+                } else {
+                    next = (ITuple) o;
+                }
+            }
+            return next != null;
+        }
+
+        private ITupleIterator claimIdleSegment() {
+            for (SegmentFetcher fetcher : fetchers) {
+                if (fetcher.claimForConsumer())
+                    return fetcher.source;
+            }
+            return null;
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ITuple ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -27,7 +27,9 @@ import java.util.Set;
 import javax.annotation.Nullable;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidUsageManager;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.tuple.ITuple;
@@ -52,7 +54,9 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
     protected List<CubeSegmentScanner> scanners;
     protected List<SegmentCubeTupleIterator> segmentCubeTupleIterators;
     protected Iterator<ITuple> tupleIterator;
+    protected ParallelSegmentFetcher parallelFetcher; // not null if segments are scanned concurrently
     protected StorageContext context;
+    protected Cuboid cuboid;
 
     private int scanCount;
     private int scanCountDelta;
@@ -61,13 +65,22 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
             Set<FunctionDesc> selectedMetrics, TupleInfo returnTupleInfo, StorageContext context) {
         this.context = context;
         this.scanners = scanners;
+        this.cuboid = cuboid;
 
         segmentCubeTupleIterators = Lists.newArrayList();
         for (CubeSegmentScanner scanner : scanners) {
             segmentCubeTupleIterators.add(new SegmentCubeTupleIterator(scanner, cuboid, selectedDimensions, selectedMetrics, returnTupleInfo, context));
         }
 
-        if (!context.isLimitEnabled()) {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        if (segmentCubeTupleIterators.size() > 1 && config.isQueryParallelSegmentScan()) {
+            parallelFetcher = new ParallelSegmentFetcher(segmentCubeTupleIterators, getQueryDeadline(config));
+            if (!context.isLimitEnabled()) {
+                tupleIterator = parallelFetcher.startUnordered();
+            } else {
+                tupleIterator = new SortedIteratorMergerWithLimit<ITuple>(parallelFetcher.startSegmentIterators().iterator(), context.getFinalPushDownLimit(), getTupleDimensionComparator(cuboid, returnTupleInfo)).getIterator();
+            }
+        } else if (!context.isLimitEnabled()) {
             //normal case
             tupleIterator = Iterators.concat(segmentCubeTupleIterators.iterator());
         } else {
@@ -83,6 +96,17 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
         }
     }
 
+    /**
+     * the segment scanners time out on their own, this deadline just keeps the consumer from waiting beyond the query timeout
+     */
+    private long getQueryDeadline(KylinConfig config) {
+        long timeout = BackdoorToggles.getQueryTimeout();
+        if (timeout == -1) {
+            timeout = config.getQueryCoprocessorTimeoutSeconds() * 1000L;
+        }
+        return timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+    }
+
     public Comparator<ITuple> getTupleDimensionComparator(Cuboid cuboid, TupleInfo returnTupleInfo) {
         // dimensionIndexOnTuple is for SQL with limit
         List<Integer> temp = Lists.newArrayList();
@@ -163,9 +187,29 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
         // close all the remaining segmentIterator
         flushScanCountDelta();
 
-        for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
-            iterator.close();
+        if (parallelFetcher != null) {
+            parallelFetcher.close();
+        } else {
+            for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
+                iterator.close();
+            }
+        }
+
+        recordCuboidUsage();
+    }
+
+    private void recordCuboidUsage() {
+        if (scanners.isEmpty() || cuboid == null || !scanners.get(0).getSegment().getConfig().isQueryCuboidUsageTrackingEnabled()) {
+            return;
+        }
+
+        long scannedRows = 0;
+        for (CubeSegmentScanner scanner : scanners) {
+            scannedRows += scanner.getScannedRowCount();
         }
+        String cubeName = scanners.get(0).getSegment().getCubeInstance().getName();
+        CuboidUsageManager.getInstance(KylinConfig.getInstanceFromEnv()).record(cubeName, cuboid.getInputID(), cuboid.getId(), scannedRows, scanCount);
+        cuboid = null; // record once even if closed again
     }
 
     protected void close(CubeSegmentScanner scanner) {
@@ -43,7 +43,8 @@ public class StorageResponseGTScatter implements IGTScanner {
 
     private GTInfo info;
     private IPartitionStreamer partitionStreamer;
-    private Iterator<byte[]> blocks;
+    private Iterator<ByteBuffer> blocks;
+    private ByteBuffer exhaustedBlock; // released only once another block yields a record, as its last record may still be in use
     private ImmutableBitSet columns;
     private long totalScannedCount;
     private int storagePushDownLimit = -1;
@@ -51,7 +52,7 @@ public class StorageResponseGTScatter implements IGTScanner {
     public StorageResponseGTScatter(GTInfo info, IPartitionStreamer partitionStreamer, ImmutableBitSet columns, long totalScannedCount, int storagePushDownLimit) {
         this.info = info;
         this.partitionStreamer = partitionStreamer;
-        this.blocks = partitionStreamer.asByteArrayIterator();
+        this.blocks = partitionStreamer.asBlockIterator();
         this.columns = columns;
         this.totalScannedCount = totalScannedCount;
         this.storagePushDownLimit = storagePushDownLimit;
@@ -70,6 +71,10 @@ public class StorageResponseGTScatter implements IGTScanner {
     @Override
     public void close() throws IOException {
         //If upper consumer failed while consuming the GTRecords, the consumer should call IGTScanner's close method to ensure releasing resource
+        if (exhaustedBlock != null) {
+            partitionStreamer.release(exhaustedBlock);
+            exhaustedBlock = null;
+        }
         partitionStreamer.close();
     }
 
@@ -85,28 +90,58 @@ public class StorageResponseGTScatter implements IGTScanner {
         }
     }
 
-    class EndpointResponseGTScatterFunc implements Function<byte[], Iterator<GTRecord>> {
+    private void onBlockYield(ByteBuffer block) {
+        if (exhaustedBlock != null && exhaustedBlock != block) {
+            partitionStreamer.release(exhaustedBlock);
+            exhaustedBlock = null;
+        }
+    }
+
+    private void onBlockExhausted(ByteBuffer block, boolean yielded) {
+        if (!yielded) {
+            // no record of an empty block can be in use, while the last record of the previous block may be
+            partitionStreamer.release(block);
+            return;
+        }
+        onBlockYield(block);
+        exhaustedBlock = block;
+    }
+
+    class EndpointResponseGTScatterFunc implements Function<ByteBuffer, Iterator<GTRecord>> {
         @Nullable
         @Override
-        public Iterator<GTRecord> apply(@Nullable final byte[] input) {
+        public Iterator<GTRecord> apply(@Nullable final ByteBuffer input) {
 
             return new Iterator<GTRecord>() {
                 private ByteBuffer inputBuffer = null;
                 //rotate between two buffer GTRecord to support SortedIteratorMergerWithLimit, which will peek one more GTRecord
                 private GTRecord firstRecord = null;
+                private boolean exhausted = false;
+                private boolean yielded = false;
 
                 @Override
                 public boolean hasNext() {
                     if (inputBuffer == null) {
-                        inputBuffer = ByteBuffer.wrap(input);
+                        inputBuffer = input;
                         firstRecord = new GTRecord(info);
                     }
 
-                    return inputBuffer.position() < inputBuffer.limit();
+                    if (inputBuffer.position() < inputBuffer.limit()) {
+                        return true;
+                    }
+                    if (!exhausted) {
+                        exhausted = true;
+                        onBlockExhausted(input, yielded);
+                    }
+                    return false;
                 }
 
                 @Override
                 public GTRecord next() {
+                    if (!yielded) {
+                        yielded = true;
+                        onBlockYield(input);
+                    }
                     firstRecord.loadColumns(columns, inputBuffer);
                     return firstRecord;
                 }
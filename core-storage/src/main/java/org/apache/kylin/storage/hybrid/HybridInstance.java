@@ -194,6 +194,8 @@ public class HybridInstance extends RootPersistentEntity implements IRealization
         if (result.cost > 0)
             result.cost--; // let hybrid win its children
 
+        // scanRowEstimate is left unknown, a child scans fewer rows but only part of the data, and would win the hybrid
+
         return result;
     }
 
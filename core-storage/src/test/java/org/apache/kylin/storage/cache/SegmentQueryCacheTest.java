@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class SegmentQueryCacheTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        SegmentQueryCache.clearCache();
+    }
+
+    @After
+    public void after() throws Exception {
+        SegmentQueryCache.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    private List<ByteArray> records(String... values) {
+        List<ByteArray> result = Lists.newArrayList();
+        for (String v : values) {
+            result.add(new ByteArray(v.getBytes()));
+        }
+        return result;
+    }
+
+    @Test
+    public void testPutAndEvict() throws Exception {
+        SegmentQueryCache cache = SegmentQueryCache.getInstance(getTestConfig());
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready_2_segments");
+        CubeSegment seg1 = cube.getSegments().get(0);
+        CubeSegment seg2 = cube.getSegments().get(1);
+
+        cache.put(seg1, 255, "digest", records("a", "b"), 2);
+        cache.put(seg2, 255, "digest", records("c"), 1);
+        assertEquals(2, cache.get(seg1, 255, "digest").size());
+        assertNull(cache.get(seg1, 254, "digest"));
+        assertNull(cache.get(seg1, 255, "other"));
+
+        // too large to cache
+        cache.put(seg1, 254, "digest", records("a"), cache.getMaxEntryBytes() + 1);
+        assertNull(cache.get(seg1, 254, "digest"));
+
+        // seg1 is gone, e.g. merged into another segment
+        cache.evict(cube.getName(), Sets.newHashSet(seg2.getUuid()));
+        assertNull(cache.get(seg1, 255, "digest"));
+        assertEquals(1, cache.get(seg2, 255, "digest").size());
+
+        Broadcaster.getInstance(getTestConfig()).notifyListener("cube", Broadcaster.Event.DROP, cube.getName());
+        assertNull(cache.get(seg2, 255, "digest"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testKeepReadySegmentsOnCubeUpdate() throws Exception {
+        SegmentQueryCache cache = SegmentQueryCache.getInstance(getTestConfig());
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready_2_segments");
+        CubeSegment seg = cube.getSegments().get(0);
+
+        cache.put(seg, 255, "digest", records("a"), 1);
+        Broadcaster.getInstance(getTestConfig()).notifyListener("cube", Broadcaster.Event.UPDATE, cube.getName());
+        assertEquals(1, cache.get(seg, 255, "digest").size());
+
+        cache.evict(cube.getName(), Collections.<String> emptySet());
+        assertEquals(0, cache.size());
+    }
+}
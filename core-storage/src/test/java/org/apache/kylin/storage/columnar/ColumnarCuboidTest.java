@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.columnar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ColumnarCuboidTest {
+
+    private File dir;
+    private FileSystem fs;
+    private GTInfo info;
+    private List<GTRecord> data;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("columnar", "");
+        dir.delete();
+        dir.mkdirs();
+        fs = FileSystem.getLocal(new Configuration());
+        info = UnitTestSupport.basicInfo();
+        data = UnitTestSupport.mockupData(info, 1000);
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    private GridTable newTable(boolean compress) throws IOException {
+        ColumnarGTStore store = new ColumnarGTStore(info, fs, new Path(dir.getAbsolutePath(), "cuboid-" + compress), 100, compress);
+        GridTable table = new GridTable(info, store);
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data) {
+            builder.write(r);
+        }
+        builder.close();
+        return table;
+    }
+
+    private List<String> scan(GridTable table, GTScanRequest req, long expectScannedRows) throws IOException {
+        List<String> result = Lists.newArrayList();
+        IGTScanner scanner = table.scan(req);
+        for (GTRecord r : scanner) {
+            result.add(r.toString(req.getColumns()));
+        }
+        scanner.close();
+        assertEquals(expectScannedRows, scanner.getScannedRowCount());
+        return result;
+    }
+
+    @Test
+    public void testFullScan() throws IOException {
+        for (boolean compress : new boolean[] { false, true }) {
+            GridTable table = newTable(compress);
+            GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest();
+            List<String> rows = scan(table, req, 1000);
+            assertEquals(1000, rows.size());
+            for (int i = 0; i < data.size(); i++) {
+                assertEquals(data.get(i).toString(), rows.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testColumnPruning() throws IOException {
+        GridTable table = newTable(true);
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(setOf(0, 3)).setFilterPushDown(null).createGTScanRequest();
+        IGTScanner scanner = table.scan(req);
+        GTRecord first = scanner.iterator().next();
+        assertEquals(data.get(0).get(3), first.get(3));
+        assertNull(first.get(1).array()); // not read
+        scanner.close();
+    }
+
+    @Test
+    public void testBlockSkipping() throws IOException {
+        GridTable table = newTable(true);
+
+        // the first date is only in the first block of 100 rows
+        GTRecord key = data.get(0).copy();
+        List<GTScanRange> ranges = Lists.newArrayList(new GTScanRange(key, key));
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(ranges).setDimensions(null).setFilterPushDown(null).createGTScanRequest();
+        List<String> rows = scan(table, req, 100);
+        assertEquals(100, rows.size());
+
+        // a date beyond all blocks
+        GTRecord beyond = UnitTestSupport.mockupData(info, 2000).get(1999).copy();
+        ranges = Lists.newArrayList(new GTScanRange(beyond, beyond));
+        req = new GTScanRequestBuilder().setInfo(info).setRanges(ranges).setDimensions(null).setFilterPushDown(null).createGTScanRequest();
+        assertEquals(0, scan(table, req, 0).size());
+    }
+
+    @Test
+    public void testAggregation() throws IOException {
+        GridTable table = newTable(true);
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(setOf(2)).setAggrMetrics(setOf(3)).setAggrMetricsFuncs(new String[] { "sum" }).setFilterPushDown(null).createGTScanRequest();
+        IGTScanner scanner = table.scan(req);
+        int count = 0;
+        for (GTRecord r : scanner) {
+            assertEquals(10000L, ((Long) r.getValues()[3]).longValue());
+            count++;
+        }
+        scanner.close();
+        assertEquals(1, count);
+    }
+
+    private static ImmutableBitSet setOf(int... values) {
+        ImmutableBitSet set = new ImmutableBitSet(0, 0);
+        for (int i : values) {
+            set = set.set(i);
+        }
+        return set;
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.gridtable.BlockSkipEvaluator;
 import org.apache.kylin.cube.gridtable.CubeCodeSystem;
 import org.apache.kylin.dict.NumberDictionaryBuilder;
 import org.apache.kylin.dict.StringBytesConverter;
@@ -262,6 +263,71 @@ public class DictGridTableTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void verifyScanRangePlannerByCost() {
+        CompareTupleFilter ageIn = compare(info.colRef(1), FilterOperatorEnum.IN, enc(info, 1, "10"), enc(info, 1, "20"), enc(info, 1, "30"));
+        CompareTupleFilter timeIn = compare(info.colRef(0), FilterOperatorEnum.IN, enc(info, 0, "2015-01-14"), enc(info, 0, "2015-01-15"), enc(info, 0, "2015-01-16"));
+
+        // no statistics, fuzzy keys as always
+        {
+            CubeScanRangePlanner planner = new CubeScanRangePlanner(info, null, null, ageIn);
+            List<GTScanRange> r = planner.planScanRanges();
+            assertEquals(1, r.size());
+            assertEquals(3, r.get(0).fuzzyKeys.size());
+        }
+
+        // the fuzzy column follows a column of high cardinality, seeking costs more than scanning through
+        {
+            CubeScanRangePlanner planner = new CubeScanRangePlanner(info, null, null, ageIn);
+            planner.setScanStats(1000000, new long[] { 100000, 10, -1, -1, -1 });
+            List<GTScanRange> r = planner.planScanRanges();
+            assertEquals(1, r.size());
+            assertEquals(0, r.get(0).fuzzyKeys.size());
+        }
+
+        // the fuzzy column is selective and follows a column of low cardinality
+        {
+            CubeScanRangePlanner planner = new CubeScanRangePlanner(info, null, null, ageIn);
+            planner.setScanStats(1000000, new long[] { 10, 10000, -1, -1, -1 });
+            List<GTScanRange> r = planner.planScanRanges();
+            assertEquals(1, r.size());
+            assertEquals(3, r.get(0).fuzzyKeys.size());
+        }
+
+        // split by the leading IN column, each range matches fewer fuzzy keys
+        {
+            CubeScanRangePlanner planner = new CubeScanRangePlanner(info, null, null, and(timeIn, ageIn));
+            planner.setScanStats(1000000, new long[] { 100, 100, -1, -1, -1 });
+            List<GTScanRange> r = planner.planScanRanges();
+            assertEquals(3, r.size());
+            assertEquals("[1421193600000, 10]-[1421193600000, 30]", r.get(0).toString());
+            assertEquals("[1421366400000, 10]-[1421366400000, 30]", r.get(2).toString());
+            for (GTScanRange range : r) {
+                assertEquals(3, range.fuzzyKeys.size());
+            }
+        }
+    }
+
+    @Test
+    public void verifyBlockSkipEvaluator() {
+        ByteArray[] min = new ByteArray[] { enc(info, 0, "2015-01-14"), enc(info, 1, "10"), null, null, null };
+        ByteArray[] max = new ByteArray[] { enc(info, 0, "2015-01-15"), enc(info, 1, "20"), null, null, null };
+
+        CompareTupleFilter ageIn = compare(info.colRef(1), FilterOperatorEnum.IN, enc(info, 1, "20"), enc(info, 1, "30"));
+        CompareTupleFilter ageGte = compare(info.colRef(1), FilterOperatorEnum.GTE, enc(info, 1, "30"));
+        CompareTupleFilter ageLte = compare(info.colRef(1), FilterOperatorEnum.LTE, enc(info, 1, "10"));
+        CompareTupleFilter timeEq = compare(info.colRef(0), FilterOperatorEnum.EQ, enc(info, 0, "2015-01-16"));
+        CompareTupleFilter nameEq = compare(info.colRef(2), FilterOperatorEnum.EQ, enc(info, 2, "Yang"));
+
+        assertEquals(true, new BlockSkipEvaluator(info, ageIn).mayMatch(min, max));
+        assertEquals(false, new BlockSkipEvaluator(info, ageGte).mayMatch(min, max));
+        assertEquals(true, new BlockSkipEvaluator(info, ageLte).mayMatch(min, max));
+        assertEquals(false, new BlockSkipEvaluator(info, and(ageIn, timeEq)).mayMatch(min, max));
+        assertEquals(true, new BlockSkipEvaluator(info, or(ageGte, ageLte)).mayMatch(min, max));
+        // no min/max of the column, cannot skip
+        assertEquals(true, new BlockSkipEvaluator(info, nameEq).mayMatch(min, max));
+    }
+
     @Test
     public void verifyFirstRow() throws IOException {
         doScanAndVerify(table, new GTScanRequestBuilder().setInfo(table.getInfo()).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest(), "[1421193600000, 30, Yang, 10, 10.5]", //
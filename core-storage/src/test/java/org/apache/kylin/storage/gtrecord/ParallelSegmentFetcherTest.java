@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.metadata.tuple.Tuple;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class ParallelSegmentFetcherTest extends LocalFileMetadataTestCase {
+
+    static final TupleInfo INFO = new TupleInfo();
+    static {
+        INFO.setField("V", null, 0);
+    }
+
+    /** a segment of int values 0, step, 2 * step, ..., reusing one tuple like SegmentCubeTupleIterator */
+    static class MockSegment implements ITupleIterator {
+        final Tuple tuple = new Tuple(INFO);
+        final int count;
+        final int step;
+        final int failAt;
+        int i = 0;
+        volatile boolean closed = false;
+        volatile String queryId;
+        volatile Map<String, String> toggles;
+
+        MockSegment(int count, int step, int failAt) {
+            this.count = count;
+            this.step = step;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return i < count;
+        }
+
+        @Override
+        public ITuple next() {
+            if (i == 0) {
+                queryId = QueryContext.getQueryId();
+                toggles = BackdoorToggles.getToggles();
+            }
+            if (i == failAt)
+                throw new IllegalStateException("mock failure");
+            tuple.getAllValues()[0] = i++ * step;
+            return tuple;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    private List<MockSegment> mockSegments(int n, int count, int failAt) {
+        List<MockSegment> segments = Lists.newArrayList();
+        for (int i = 0; i < n; i++) {
+            segments.add(new MockSegment(count, i + 1, failAt));
+        }
+        return segments;
+    }
+
+    @Test
+    public void testUnordered() throws InterruptedException {
+        List<MockSegment> segments = mockSegments(8, 5000, -1);
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(segments, Long.MAX_VALUE);
+
+        List<Integer> values = Lists.newArrayList();
+        Iterator<ITuple> it = fetcher.startUnordered();
+        while (it.hasNext()) {
+            values.add((Integer) it.next().getAllValues()[0]);
+        }
+        fetcher.close();
+
+        List<Integer> expected = Lists.newArrayList();
+        for (MockSegment seg : segments) {
+            for (int i = 0; i < seg.count; i++) {
+                expected.add(i * seg.step);
+            }
+        }
+        Collections.sort(values);
+        Collections.sort(expected);
+        Assert.assertEquals(expected, values);
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testSortedMergeWithLimit() throws InterruptedException {
+        List<MockSegment> segments = mockSegments(8, 5000, -1);
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(segments, Long.MAX_VALUE);
+
+        Iterator<ITuple> it = new SortedIteratorMergerWithLimit<ITuple>(fetcher.startSegmentIterators().iterator(), 100, new ValueComparator()).getIterator();
+        int last = -1;
+        int n = 0;
+        while (it.hasNext()) {
+            int v = (Integer) it.next().getAllValues()[0];
+            Assert.assertTrue(v >= last);
+            last = v;
+            n++;
+        }
+        Assert.assertTrue(n >= 100);
+
+        // close before segments are drained
+        fetcher.close();
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testMoreSegmentsThanPoolQueue() throws InterruptedException {
+        // segments that do not fit in the pool queue are discarded by the pool and iterated by the consumer
+        List<MockSegment> segments = mockSegments(500, 100, -1);
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(segments, Long.MAX_VALUE);
+
+        int n = 0;
+        Iterator<ITuple> it = fetcher.startUnordered();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        fetcher.close();
+
+        Assert.assertEquals(500 * 100, n);
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testThreadLocalsPropagated() throws InterruptedException {
+        Map<String, String> toggles = Maps.newHashMap();
+        toggles.put(BackdoorToggles.DEBUG_TOGGLE_QUERY_TIMEOUT, "60000");
+        BackdoorToggles.setToggles(toggles);
+        QueryContext.setQueryId("test-query");
+        try {
+            List<MockSegment> segments = mockSegments(8, 5000, -1);
+            ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(segments, Long.MAX_VALUE);
+            Iterator<ITuple> it = fetcher.startUnordered();
+            while (it.hasNext()) {
+                it.next();
+            }
+            fetcher.close();
+
+            for (MockSegment seg : segments) {
+                Assert.assertEquals("test-query", seg.queryId);
+                Assert.assertEquals(toggles, seg.toggles);
+            }
+        } finally {
+            BackdoorToggles.cleanToggles();
+            QueryContext.setQueryId(null);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSegmentFailure() {
+        List<MockSegment> segments = mockSegments(4, 5000, 3000);
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(segments, Long.MAX_VALUE);
+        try {
+            Iterator<ITuple> it = fetcher.startUnordered();
+            while (it.hasNext()) {
+                it.next();
+            }
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    private void assertAllClosed(List<MockSegment> segments) throws InterruptedException {
+        long wait = System.currentTimeMillis() + 10000;
+        for (MockSegment seg : segments) {
+            while (!seg.closed && System.currentTimeMillis() < wait) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(seg.closed);
+        }
+    }
+
+    static class ValueComparator implements Comparator<ITuple> {
+        @Override
+        public int compare(ITuple o1, ITuple o2) {
+            return ((Integer) o1.getAllValues()[0]).compareTo((Integer) o2.getAllValues()[0]);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class StorageResponseGTScatterTest {
+
+    static class RecordingStreamer implements IPartitionStreamer {
+        final List<ByteBuffer> blocks;
+        final List<ByteBuffer> released = Lists.newArrayList();
+
+        RecordingStreamer(List<ByteBuffer> blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public Iterator<ByteBuffer> asBlockIterator() {
+            return blocks.iterator();
+        }
+
+        @Override
+        public void release(ByteBuffer block) {
+            released.add(block);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static ByteBuffer block(GTInfo info, List<GTRecord> records) {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (GTRecord record : records) {
+            record.exportColumns(info.getAllColumns(), buf);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    @Test
+    public void testEmptyBlockInBetween() throws IOException {
+        GTInfo info = UnitTestSupport.basicInfo();
+        List<GTRecord> data = UnitTestSupport.mockupData(info, 10);
+        ByteBuffer first = block(info, data.subList(0, 2));
+        ByteBuffer empty = block(info, data.subList(0, 0));
+        ByteBuffer last = block(info, data.subList(2, 4));
+        RecordingStreamer streamer = new RecordingStreamer(Lists.newArrayList(first, empty, last));
+
+        StorageResponseGTScatter scatter = new StorageResponseGTScatter(info, streamer, info.getAllColumns(), 0, Integer.MAX_VALUE);
+        Iterator<GTRecord> it = scatter.iterator();
+        it.next();
+        GTRecord lastOfFirst = it.next();
+
+        // moving past the empty block releases it, but not the block of the record still in hand
+        Assert.assertTrue(it.hasNext());
+        Assert.assertEquals(Lists.newArrayList(empty), streamer.released);
+        Assert.assertEquals(data.get(1).toString(), lastOfFirst.toString());
+
+        // the first block goes once the next block yields a record
+        Assert.assertEquals(data.get(2).toString(), it.next().toString());
+        Assert.assertEquals(Lists.newArrayList(empty, first), streamer.released);
+
+        it.next();
+        Assert.assertFalse(it.hasNext());
+        scatter.close();
+        Assert.assertEquals(Lists.newArrayList(empty, first, last), streamer.released);
+    }
+}
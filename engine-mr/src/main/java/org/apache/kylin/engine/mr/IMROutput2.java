@@ -18,9 +18,11 @@
 
 package org.apache.kylin.engine.mr;
 
+import org.apache.hadoop.mapreduce.Job;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.job.execution.DefaultChainedExecutable;
 
+import java.io.IOException;
 import java.util.List;
 
 public interface IMROutput2 {
@@ -53,6 +55,22 @@ public interface IMROutput2 {
 
         /** Add step that does any necessary clean up. */
         public void addStepPhase4_Cleanup(DefaultChainedExecutable jobFlow);
+
+        /**
+         * Return the format for in-mem cubing to write storage files directly, or null if the storage
+         * only loads from cuboid files. The cuboid files are still written, as merge reads them later.
+         */
+        public IMRInMemCubingOutputFormat getInMemCubingOutputFormat();
+    }
+
+    /**
+     * Lets the reducers of in-mem cubing write storage files along with cuboid files, so that the step
+     * converting cuboid files can be skipped when in-mem cubing is selected.
+     */
+    public interface IMRInMemCubingOutputFormat {
+
+        /** Configure the reducer and output of the in-mem cubing job, whose map output is rowkey and measures. */
+        public void configureJob(Job job, String cuboidRootPath, String jobFlowId) throws IOException;
     }
 
     /** Return a helper to participate in batch merge job flow. */
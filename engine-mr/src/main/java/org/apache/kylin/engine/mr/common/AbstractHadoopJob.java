@@ -635,4 +635,9 @@ public abstract class AbstractHadoopJob extends Configured implements Tool {
         return false;
     }
 
+    // bytes an earlier step has written on behalf of this skipped job, saved like the HDFS bytes written counter, -1 if none
+    public long getSkippedBytesWritten() {
+        return -1;
+    }
+
 }
@@ -21,6 +21,7 @@ package org.apache.kylin.engine.mr.common;
 import java.io.IOException;
 import java.util.Map;
 
+import org.apache.kylin.common.util.ShardingHash;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.CubeUpdate;
@@ -33,6 +34,10 @@ public class CuboidShardUtil {
     protected static final Logger logger = LoggerFactory.getLogger(CuboidShardUtil.class);
 
     public static void saveCuboidShards(CubeSegment segment, Map<Long, Short> cuboidShards, int totalShards) throws IOException {
+        saveCuboidShards(segment, cuboidShards, null, totalShards);
+    }
+
+    public static void saveCuboidShards(CubeSegment segment, Map<Long, Short> cuboidShards, Map<Long, Short> cuboidBaseShards, int totalShards) throws IOException {
         CubeManager cubeManager = CubeManager.getInstance(segment.getConfig());
 
         Map<Long, Short> filtered = Maps.newHashMap();
@@ -45,8 +50,20 @@ public class CuboidShardUtil {
             }
         }
 
+        // base shards same as the hashed one need not be saved
+        Map<Long, Short> plannedBase = Maps.newHashMap();
+        if (cuboidBaseShards != null) {
+            for (Map.Entry<Long, Short> entry : cuboidBaseShards.entrySet()) {
+                if (entry.getValue() != ShardingHash.getShard(entry.getKey(), totalShards)) {
+                    plannedBase.put(entry.getKey(), entry.getValue());
+                }
+            }
+            logger.info("{} cuboids have a planned base shard", plannedBase.size());
+        }
+
         segment.setCuboidShardNums(filtered);
         segment.setTotalShards(totalShards);
+        segment.setCuboidBaseShards(plannedBase);
 
         CubeUpdate cubeBuilder = new CubeUpdate(segment.getCubeInstance());
         cubeBuilder.setToUpdateSegs(segment);
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.common;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.ICuboidStatsLoader;
+
+/**
+ * Loads the cuboid row estimates saved by SaveStatisticsStep, for cost based query routing.
+ */
+public class CuboidStatsLoader implements ICuboidStatsLoader {
+
+    @Override
+    public Map<Long, Long> loadCuboidRowEstimates(CubeSegment segment) throws IOException {
+        ResourceStore store = ResourceStore.getStore(segment.getConfig());
+        if (!store.exists(segment.getStatisticsResourcePath())) {
+            return null;
+        }
+        return new CubeStatsReader(segment, segment.getConfig()).getCuboidRowEstimatesHLL();
+    }
+}
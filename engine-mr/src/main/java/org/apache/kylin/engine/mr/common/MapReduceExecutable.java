@@ -46,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 
 /**
  */
@@ -123,6 +124,11 @@ public class MapReduceExecutable extends AbstractExecutable {
                     MRUtil.runMRJob(hadoopJob, args);
 
                     if (hadoopJob.isSkipped()) {
+                        if (hadoopJob.getSkippedBytesWritten() >= 0) {
+                            Map<String, String> info = Maps.newHashMap();
+                            saveSkippedCounters(hadoopJob.getSkippedBytesWritten(), info);
+                            mgr.addJobInfo(getId(), info);
+                        }
                         return new ExecuteResult(ExecuteResult.State.SUCCEED, "skipped");
                     }
                 } catch (Exception ex) {
@@ -214,6 +220,14 @@ public class MapReduceExecutable extends AbstractExecutable {
         }
     }
 
+    private void saveSkippedCounters(long bytesWritten, Map<String, String> info) {
+        info.put(ExecutableConstants.HDFS_BYTES_WRITTEN, String.valueOf(bytesWritten));
+        String saveAs = getParam(KEY_COUNTER_SAVEAS);
+        if (saveAs != null) {
+            saveCounterAs(String.valueOf(bytesWritten), saveAs.split(","), 2, info);
+        }
+    }
+
     private void saveCounterAs(String counter, String[] saveAsNames, int i, Map<String, String> info) {
         if (saveAsNames.length > i && StringUtils.isBlank(saveAsNames[i]) == false) {
             info.put(saveAsNames[i].trim(), counter);
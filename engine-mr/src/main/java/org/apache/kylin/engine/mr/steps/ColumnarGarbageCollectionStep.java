@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.job.exception.ExecuteException;
+import org.apache.kylin.job.execution.AbstractExecutable;
+import org.apache.kylin.job.execution.ExecutableContext;
+import org.apache.kylin.job.execution.ExecuteResult;
+import org.apache.kylin.storage.columnar.ColumnarStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drops the columnar files of the segments merged into a new one.
+ */
+public class ColumnarGarbageCollectionStep extends AbstractExecutable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarGarbageCollectionStep.class);
+
+    public ColumnarGarbageCollectionStep() {
+        super();
+    }
+
+    @Override
+    protected ExecuteResult doWork(ExecutableContext context) throws ExecuteException {
+        StringBuilder output = new StringBuilder();
+        String cubeName = CubingExecutableUtil.getCubeName(getParams());
+        try {
+            for (String segmentId : CubingExecutableUtil.getMergingSegmentIds(getParams())) {
+                Path path = ColumnarStorage.getSegmentPath(context.getConfig(), cubeName, segmentId);
+                FileSystem fs = HadoopUtil.getFileSystem(path);
+                if (fs.exists(path)) {
+                    fs.delete(path, true);
+                    logger.debug("Columnar segment path " + path + " is dropped.");
+                    output.append("Columnar segment path " + path + " is dropped.\n");
+                }
+            }
+        } catch (IOException e) {
+            logger.error("job:" + getId() + " execute finished with exception", e);
+            output.append("\n").append(e.getLocalizedMessage());
+            return new ExecuteResult(ExecuteResult.State.ERROR, output.toString());
+        }
+        return new ExecuteResult(ExecuteResult.State.SUCCEED, output.toString());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.util.List;
+
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.engine.mr.IMROutput2;
+import org.apache.kylin.engine.mr.JobBuilderSupport;
+import org.apache.kylin.job.constant.ExecutableConstants;
+import org.apache.kylin.job.execution.DefaultChainedExecutable;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The MR engine 2 output of the columnar storage (type 3). Like HBase, cuboid files are built first, then
+ * converted into one columnar file per cuboid, see ConvertCuboidToColumnarStep. Merge reads the cuboid files
+ * of the merging segments as well.
+ */
+@SuppressWarnings("unused")
+//used by reflection
+public class ColumnarMROutput2 implements IMROutput2 {
+
+    @Override
+    public IMRBatchCubingOutputSide2 getBatchCubingOutputSide(final CubeSegment seg) {
+        return new IMRBatchCubingOutputSide2() {
+            JobBuilderSupport steps = new JobBuilderSupport(seg, null);
+
+            @Override
+            public void addStepPhase2_BuildDictionary(DefaultChainedExecutable jobFlow) {
+                // nothing to do
+            }
+
+            @Override
+            public void addStepPhase3_BuildCube(DefaultChainedExecutable jobFlow) {
+                jobFlow.addTask(createConvertCuboidToColumnarStep(seg, steps.getCuboidRootPath(jobFlow.getId())));
+            }
+
+            @Override
+            public void addStepPhase4_Cleanup(DefaultChainedExecutable jobFlow) {
+                // nothing to do
+            }
+
+            @Override
+            public IMRInMemCubingOutputFormat getInMemCubingOutputFormat() {
+                return null;
+            }
+        };
+    }
+
+    @Override
+    public IMRBatchMergeOutputSide2 getBatchMergeOutputSide(final CubeSegment seg) {
+        return new IMRBatchMergeOutputSide2() {
+            JobBuilderSupport steps = new JobBuilderSupport(seg, null);
+
+            @Override
+            public void addStepPhase1_MergeDictionary(DefaultChainedExecutable jobFlow) {
+                // nothing to do
+            }
+
+            @Override
+            public void addStepPhase2_BuildCube(CubeSegment seg, List<CubeSegment> mergingSegments, DefaultChainedExecutable jobFlow) {
+                jobFlow.addTask(steps.createMergeCuboidDataStep(seg, mergingSegments, jobFlow.getId(), MergeCuboidJob.class));
+                jobFlow.addTask(createConvertCuboidToColumnarStep(seg, steps.getCuboidRootPath(jobFlow.getId())));
+            }
+
+            @Override
+            public void addStepPhase3_Cleanup(DefaultChainedExecutable jobFlow) {
+                List<String> mergingSegmentIds = Lists.newArrayList();
+                for (CubeSegment merging : seg.getCubeInstance().getMergingSegments(seg)) {
+                    mergingSegmentIds.add(merging.getUuid());
+                }
+
+                ColumnarGarbageCollectionStep step = new ColumnarGarbageCollectionStep();
+                step.setName(ExecutableConstants.STEP_NAME_GARBAGE_COLLECTION_COLUMNAR);
+                CubingExecutableUtil.setCubeName(seg.getRealization().getName(), step.getParams());
+                CubingExecutableUtil.setMergingSegmentIds(mergingSegmentIds, step.getParams());
+                jobFlow.addTask(step);
+            }
+        };
+    }
+
+    private ConvertCuboidToColumnarStep createConvertCuboidToColumnarStep(CubeSegment seg, String cuboidRootPath) {
+        ConvertCuboidToColumnarStep step = new ConvertCuboidToColumnarStep();
+        step.setName(ExecutableConstants.STEP_NAME_CONVERT_CUBOID_TO_COLUMNAR);
+        CubingExecutableUtil.setCubeName(seg.getRealization().getName(), step.getParams());
+        CubingExecutableUtil.setSegmentId(seg.getUuid(), step.getParams());
+        step.getParams().put(ConvertCuboidToColumnarStep.CUBOID_ROOT_PATH, cuboidRootPath);
+        return step;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.engine.mr.CubingJob;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.job.exception.ExecuteException;
+import org.apache.kylin.job.execution.AbstractExecutable;
+import org.apache.kylin.job.execution.ExecutableContext;
+import org.apache.kylin.job.execution.ExecuteResult;
+import org.apache.kylin.storage.columnar.ColumnarCuboidOutput;
+import org.apache.kylin.storage.columnar.ColumnarStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Converts the cuboid files of a segment into columnar files, one per cuboid, see ColumnarStorage.
+ *
+ * The conversion runs in the job server and reads the cuboid files one directory at a time, i.e. one
+ * layer of layer cubing, or the whole output of in-mem cubing or merge, keeping a file open per cuboid
+ * of the directory.
+ */
+public class ConvertCuboidToColumnarStep extends AbstractExecutable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConvertCuboidToColumnarStep.class);
+
+    public static final String CUBOID_ROOT_PATH = "cuboidRootPath";
+
+    public ConvertCuboidToColumnarStep() {
+        super();
+    }
+
+    @Override
+    protected ExecuteResult doWork(ExecutableContext context) throws ExecuteException {
+        CubeSegment segment = CubingExecutableUtil.findSegment(context, CubingExecutableUtil.getCubeName(getParams()), CubingExecutableUtil.getSegmentId(getParams()));
+        try {
+            long bytes = convert(segment, new Path(getParam(CUBOID_ROOT_PATH)));
+            addExtraInfo(CubingJob.CUBE_SIZE_BYTES, String.valueOf(bytes));
+            return new ExecuteResult(ExecuteResult.State.SUCCEED, "succeed");
+        } catch (IOException e) {
+            logger.error("fail to convert cuboid files of " + segment + " to columnar files", e);
+            return new ExecuteResult(ExecuteResult.State.ERROR, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * write the columnar files of the segment from the cuboid files under the root path, return their total size
+     */
+    public static long convert(CubeSegment segment, Path cuboidRootPath) throws IOException {
+        Path segmentPath = ColumnarStorage.getSegmentPath(segment.getConfig(), segment);
+        FileSystem outFs = HadoopUtil.getFileSystem(segmentPath);
+        // a retry starts over
+        if (outFs.exists(segmentPath)) {
+            outFs.delete(segmentPath, true);
+        }
+
+        FileSystem inFs = HadoopUtil.getFileSystem(cuboidRootPath);
+        Map<Path, List<Path>> filesByDir = Maps.newTreeMap();
+        RemoteIterator<LocatedFileStatus> files = inFs.listFiles(cuboidRootPath, true);
+        while (files.hasNext()) {
+            Path file = files.next().getPath();
+            if (file.getName().startsWith("part-")) {
+                if (!filesByDir.containsKey(file.getParent())) {
+                    filesByDir.put(file.getParent(), Lists.<Path> newArrayList());
+                }
+                filesByDir.get(file.getParent()).add(file);
+            }
+        }
+
+        long rows = 0;
+        for (Map.Entry<Path, List<Path>> dir : filesByDir.entrySet()) {
+            ColumnarCuboidOutput output = new ColumnarCuboidOutput(segment);
+            try {
+                for (Path file : dir.getValue()) {
+                    rows += convertFile(segment, inFs, file, output);
+                }
+            } finally {
+                output.close();
+            }
+        }
+
+        long bytes = 0;
+        if (outFs.exists(segmentPath)) {
+            for (FileStatus status : outFs.listStatus(segmentPath)) {
+                bytes += status.getLen();
+            }
+        }
+        logger.info("Converted " + rows + " rows of " + filesByDir.size() + " cuboid directories to " + bytes + " bytes of columnar files at " + segmentPath);
+        return bytes;
+    }
+
+    /**
+     * the key of a cuboid file row is [shard] cuboid dimensions, the value is the measures, both as of the GT
+     * columns of the cuboid
+     */
+    private static long convertFile(CubeSegment segment, FileSystem fs, Path file, ColumnarCuboidOutput output) throws IOException {
+        int preambleSize = segment.getRowKeyPreambleSize();
+        int cuboidIdOffset = preambleSize - RowConstants.ROWKEY_CUBOIDID_LEN;
+        Map<Long, GTRecord> records = Maps.newHashMap();
+        Map<Long, ImmutableBitSet> measures = Maps.newHashMap();
+        Text key = new Text();
+        Text value = new Text();
+        long rows = 0;
+
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs.getConf(), SequenceFile.Reader.file(file));
+        try {
+            while (reader.next(key, value)) {
+                long cuboidId = Bytes.toLong(key.getBytes(), cuboidIdOffset, RowConstants.ROWKEY_CUBOIDID_LEN);
+                GTRecord record = records.get(cuboidId);
+                if (record == null) {
+                    GTInfo info = CubeGridTable.newGTInfo(segment, cuboidId);
+                    record = new GTRecord(info);
+                    records.put(cuboidId, record);
+                    measures.put(cuboidId, new ImmutableBitSet(info.getPrimaryKey().trueBitCount(), info.getColumnCount()));
+                }
+
+                record.loadColumns(record.getInfo().getPrimaryKey(), ByteBuffer.wrap(key.getBytes(), preambleSize, key.getLength() - preambleSize));
+                record.loadColumns(measures.get(cuboidId), ByteBuffer.wrap(value.getBytes(), 0, value.getLength()));
+                output.write(cuboidId, record);
+                rows++;
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return rows;
+    }
+}
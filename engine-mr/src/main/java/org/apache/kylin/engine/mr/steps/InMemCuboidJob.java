@@ -37,6 +37,7 @@ import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.engine.mr.ByteArrayWritable;
 import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.engine.mr.IMRInput.IMRTableInputFormat;
+import org.apache.kylin.engine.mr.IMROutput2.IMRInMemCubingOutputFormat;
 import org.apache.kylin.engine.mr.MRUtil;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
@@ -116,20 +117,25 @@ public class InMemCuboidJob extends AbstractHadoopJob {
             job.setMapOutputKeyClass(ByteArrayWritable.class);
             job.setMapOutputValueClass(ByteArrayWritable.class);
 
-            // set output
-            job.setReducerClass(InMemCuboidReducer.class);
-            job.setNumReduceTasks(calculateReducerNum(segment));
-
-            // the cuboid file and KV class must be compatible with 0.7 version for smooth upgrade
-            job.setOutputFormatClass(SequenceFileOutputFormat.class);
-            job.setOutputKeyClass(Text.class);
-            job.setOutputValueClass(Text.class);
-
             Path outputPath = new Path(output);
-            FileOutputFormat.setOutputPath(job, outputPath);
-
             HadoopUtil.deletePath(job.getConfiguration(), outputPath);
 
+            // set output
+            IMRInMemCubingOutputFormat directOutput = MRUtil.getBatchCubingOutputSide2(segment).getInMemCubingOutputFormat();
+            if (directOutput != null) {
+                logger.info("In-mem cubing writes storage files directly by " + directOutput.getClass().getName());
+                directOutput.configureJob(job, output, cubingJobId);
+            } else {
+                job.setReducerClass(InMemCuboidReducer.class);
+                job.setNumReduceTasks(calculateReducerNum(segment));
+
+                // the cuboid file and KV class must be compatible with 0.7 version for smooth upgrade
+                job.setOutputFormatClass(SequenceFileOutputFormat.class);
+                job.setOutputKeyClass(Text.class);
+                job.setOutputValueClass(Text.class);
+                FileOutputFormat.setOutputPath(job, outputPath);
+            }
+
             return waitForCompletion(job);
         } finally {
             if (job != null)
@@ -19,6 +19,8 @@
 package org.apache.kylin.engine.mr.steps;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -28,7 +30,10 @@ import org.apache.hadoop.io.IOUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.CubeUpdate;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.engine.mr.CubingJob.AlgorithmEnum;
 import org.apache.kylin.engine.mr.common.BatchConstants;
@@ -73,6 +78,9 @@ public class SaveStatisticsStep extends AbstractExecutable {
                 IOUtils.closeStream(is);
             }
 
+            if (kylinConf.isCuboidCostBasedSpanningTreeEnabled()) {
+                planCuboidParents(newSegment, kylinConf);
+            }
             decideCubingAlgorithm(newSegment, kylinConf);
 
             return new ExecuteResult(ExecuteResult.State.SUCCEED, "succeed");
@@ -82,6 +90,32 @@ public class SaveStatisticsStep extends AbstractExecutable {
         }
     }
 
+    private void planCuboidParents(CubeSegment seg, KylinConfig kylinConf) throws IOException {
+        Map<Long, Long> cuboidRows = new CubeStatsReader(seg, kylinConf).getCuboidRowEstimatesHLL();
+        CuboidScheduler byRules = new CuboidScheduler(seg.getCubeDesc());
+        Map<Long, Long> parents = CuboidScheduler.planCostBasedParents(seg.getCubeDesc(), cuboidRows);
+        CuboidScheduler byCost = new CuboidScheduler(seg.getCubeDesc(), parents);
+        logger.info("Cost based spanning tree of " + seg + " changes the parent of " + parents.size() + " cuboids, estimated rows to aggregate " //
+                + getRowsToAggregate(byRules, cuboidRows) + " by rules and " + getRowsToAggregate(byCost, cuboidRows) + " by cost");
+
+        seg.setCuboidParents(parents);
+        CubeUpdate cubeBuilder = new CubeUpdate(seg.getCubeInstance());
+        cubeBuilder.setToUpdateSegs(seg);
+        CubeManager.getInstance(kylinConf).updateCube(cubeBuilder);
+    }
+
+    private long getRowsToAggregate(CuboidScheduler scheduler, Map<Long, Long> cuboidRows) {
+        long total = 0;
+        for (List<Long> layer : scheduler.getCuboidsByLayer()) {
+            for (long cuboid : layer) {
+                // every child aggregates all rows of its parent once
+                Long rows = cuboidRows.get(cuboid);
+                total += (rows == null ? 0 : rows) * scheduler.getSpanningCuboid(cuboid).size();
+            }
+        }
+        return total;
+    }
+
     private void decideCubingAlgorithm(CubeSegment seg, KylinConfig kylinConf) throws IOException {
         String algPref = kylinConf.getCubeAlgorithm();
         AlgorithmEnum alg;
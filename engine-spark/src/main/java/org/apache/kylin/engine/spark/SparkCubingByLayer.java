@@ -175,7 +175,7 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         final Broadcast<CubeSegment> vCubeSegment = sc.broadcast(cubeSegment);
         final NDCuboidBuilder ndCuboidBuilder = new NDCuboidBuilder(vCubeSegment.getValue(), new RowKeyEncoderProvider(vCubeSegment.getValue()));
 
-        final Broadcast<CuboidScheduler> vCuboidScheduler = sc.broadcast(new CuboidScheduler(vCubeDesc.getValue()));
+        final Broadcast<CuboidScheduler> vCuboidScheduler = sc.broadcast(vCubeSegment.getValue().getCuboidScheduler());
 
         final long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
         final Cuboid baseCuboid = Cuboid.findById(cubeDesc, baseCuboidId);
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Rows of a streaming query, read lazily from the binary response of the query server. See
+ * BinarySQLResponseWriter of the server for the format. A batch of rows is decoded at a time.
+ *
+ * Can be iterated only once. The underlying http request is released when the rows are exhausted or
+ * when the iterator is closed, which happens when the result set is closed.
+ */
+class BinaryQueryResult implements Iterable<Object>, Iterator<Object>, Closeable {
+
+    static final String CONTENT_TYPE = "application/x-kylin-binary";
+    static final String HEADER_COMPRESSION = "X-Kylin-Compression";
+
+    private static final byte[] MAGIC = new byte[] { 'K', 'Y', 'B', '1' };
+    private static final int FLAG_DEFLATE = 1;
+
+    private final HttpRequestBase request;
+    private final DataInputStream in;
+    private final ObjectMapper jsonMapper;
+    private boolean deflate;
+    private int[] columnTypes;
+
+    private Object[][] batch;
+    private int batchRows = 0;
+    private int batchPos = 0;
+    private boolean done = false;
+    private boolean exhausted = false; // the whole response is read
+    private boolean iterated = false;
+
+    BinaryQueryResult(HttpRequestBase request, InputStream in, ObjectMapper jsonMapper) {
+        this.request = request;
+        this.in = new DataInputStream(in);
+        this.jsonMapper = jsonMapper;
+    }
+
+    SQLResponseStub readHead() throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i])
+                throw new IOException("Unexpected binary query response from " + request.getURI());
+        }
+        deflate = (in.readByte() & FLAG_DEFLATE) != 0;
+
+        int tag = in.readByte();
+        SQLResponseStub head = readJson();
+        if (tag == 'E') {
+            // failed before any row is sent, there is only the status
+            throw new IOException(head.getExceptionMessage());
+        }
+        if (tag != 'H') {
+            throw new IOException("Unexpected binary query response from " + request.getURI());
+        }
+        return head;
+    }
+
+    void setColumnMetas(List<ColumnMetaData> columnMetas) {
+        columnTypes = new int[columnMetas.size()];
+        for (int i = 0; i < columnTypes.length; i++) {
+            columnTypes[i] = columnMetas.get(i).type.id;
+        }
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Streaming query result can be iterated only once");
+        }
+        iterated = true;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (batchPos < batchRows)
+            return true;
+        if (done)
+            return false;
+
+        try {
+            int tag = in.read();
+            if (tag == 'B') {
+                readBatch();
+                return hasNext();
+            }
+
+            done = true;
+            exhausted = true;
+            SQLResponseStub status = tag == 'E' ? readJson() : null;
+            close();
+            if (status == null) {
+                throw new IllegalStateException("Streaming query response ended without status, the connection might be broken");
+            }
+            if (status.getIsException()) {
+                throw new IllegalStateException(status.getExceptionMessage());
+            }
+            return false;
+        } catch (IOException e) {
+            close();
+            throw new IllegalStateException("Error reading streaming query response", e);
+        }
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Object[] ret = batch[batchPos];
+        batch[batchPos++] = null;
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        try {
+            in.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        // abort rather than drain the remaining rows of an unfinished response
+        if (!exhausted) {
+            request.abort();
+        }
+        request.releaseConnection();
+    }
+
+    private SQLResponseStub readJson() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return jsonMapper.readValue(bytes, SQLResponseStub.class);
+    }
+
+    private void readBatch() throws IOException {
+        int rows = in.readInt();
+        int rawLength = in.readInt();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        DataInputStream payload;
+        if (deflate) {
+            byte[] raw = new byte[rawLength];
+            DataInputStream inflater = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)));
+            inflater.readFully(raw);
+            inflater.close();
+            payload = new DataInputStream(new ByteArrayInputStream(raw));
+        } else {
+            payload = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        if (batch == null || batch.length < rows) {
+            batch = new Object[rows][];
+        }
+        for (int r = 0; r < rows; r++) {
+            batch[r] = new Object[columnTypes.length];
+        }
+
+        byte[] nullBits = new byte[(rows + 7) / 8];
+        for (int c = 0; c < columnTypes.length; c++) {
+            payload.readFully(nullBits);
+            for (int r = 0; r < rows; r++) {
+                if ((nullBits[r >> 3] & (1 << (r & 7))) == 0) {
+                    batch[r][c] = readValue(payload, columnTypes[c]);
+                }
+            }
+        }
+        batchRows = rows;
+        batchPos = 0;
+    }
+
+    /** the same java types as KylinClient.wrapObject() */
+    @SuppressWarnings("deprecation")
+    static Object readValue(DataInputStream in, int type) throws IOException {
+        switch (type) {
+        case Types.TINYINT:
+            return (byte) in.readLong();
+        case Types.SMALLINT:
+            return (short) in.readLong();
+        case Types.INTEGER:
+            return (int) in.readLong();
+        case Types.BIGINT:
+            return in.readLong();
+        case Types.FLOAT:
+            return in.readFloat();
+        case Types.REAL:
+        case Types.DOUBLE:
+            return in.readDouble();
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            int scale = in.readInt();
+            byte[] unscaled = new byte[in.readShort()];
+            in.readFully(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), scale);
+        case Types.BIT:
+            return in.readBoolean();
+        case Types.DATE:
+            return new Date(in.readShort() - 1900, in.readByte() - 1, in.readByte());
+        case Types.TIME:
+            return new Time(in.readByte(), in.readByte(), in.readByte());
+        case Types.TIMESTAMP:
+            return new Timestamp(in.readShort() - 1900, in.readByte() - 1, in.readByte(), in.readByte(), in.readByte(), in.readByte(), in.readInt());
+        default:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            String str = new String(bytes, "UTF-8");
+            return KylinClient.wrapObject(str, type);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.ColumnMetaData.Rep;
 import org.apache.calcite.avatica.ColumnMetaData.ScalarType;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -74,6 +75,7 @@ public class KylinClient implements IRemoteClient {
     private final Properties connProps;
     private DefaultHttpClient httpClient;
     private final ObjectMapper jsonMapper;
+    private volatile boolean streamUnsupported = false; // an old server without the streaming endpoint
 
     public KylinClient(KylinConnection conn) {
         this.conn = conn;
@@ -204,6 +206,18 @@ public class KylinClient implements IRemoteClient {
         return Boolean.parseBoolean(connProps.getProperty("ssl", "false"));
     }
 
+    private boolean isStreaming() {
+        return Boolean.parseBoolean(connProps.getProperty("stream", "false"));
+    }
+
+    private boolean isBinary() {
+        return Boolean.parseBoolean(connProps.getProperty("binary", "false"));
+    }
+
+    private boolean isCompress() {
+        return Boolean.parseBoolean(connProps.getProperty("compress", "false"));
+    }
+
     private String baseUrl() {
         return (isSSL() ? "https://" : "http://") + conn.getBaseUrl();
     }
@@ -323,6 +337,12 @@ public class KylinClient implements IRemoteClient {
     @Override
     public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException {
 
+        if ((isStreaming() || isBinary()) && !streamUnsupported) {
+            QueryResult result = executeKylinQueryStreaming(sql, convertParameters(params, paramValues), queryToggles);
+            if (result != null)
+                return result;
+        }
+
         SQLResponseStub queryResp = executeKylinQuery(sql, convertParameters(params, paramValues), queryToggles);
         if (queryResp.getIsException())
             throw new IOException(queryResp.getExceptionMessage());
@@ -347,6 +367,70 @@ public class KylinClient implements IRemoteClient {
     }
 
     private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+        HttpPost post = newQueryPost(sql, params, queryToggles, false);
+
+        HttpResponse response = httpClient.execute(post);
+
+        if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+            throw asIOException(post, response);
+        }
+
+        SQLResponseStub stub = jsonMapper.readValue(response.getEntity().getContent(), SQLResponseStub.class);
+        post.releaseConnection();
+        return stub;
+    }
+
+    /**
+     * Post the query to the streaming endpoint. The rows are read from the response while the
+     * result set is iterated, the http connection is released when the result set is closed.
+     * The binary format is asked for if enabled, and the server may answer in newline delimited JSON.
+     *
+     * Return null if the server has no streaming endpoint, the caller should fall back to the legacy query API.
+     */
+    private QueryResult executeKylinQueryStreaming(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+        HttpPost post = newQueryPost(sql, params, queryToggles, true);
+        if (isBinary()) {
+            post.setHeader("Accept", BinaryQueryResult.CONTENT_TYPE + ", application/x-ndjson, application/json");
+            if (isCompress()) {
+                post.setHeader(BinaryQueryResult.HEADER_COMPRESSION, "deflate");
+            }
+        }
+
+        HttpResponse response = httpClient.execute(post);
+
+        int code = response.getStatusLine().getStatusCode();
+        if (code == 404 || code == 405) {
+            logger.info("Streaming query is not supported by the server, fall back to the JSON query API");
+            streamUnsupported = true;
+            post.releaseConnection();
+            return null;
+        }
+        if (code != 200 && code != 201) {
+            IOException ex = asIOException(post, response);
+            post.releaseConnection();
+            throw ex;
+        }
+
+        try {
+            Header contentType = response.getEntity().getContentType();
+            if (contentType != null && contentType.getValue().startsWith(BinaryQueryResult.CONTENT_TYPE)) {
+                BinaryQueryResult result = new BinaryQueryResult(post, response.getEntity().getContent(), jsonMapper);
+                List<ColumnMetaData> metas = convertColumnMeta(result.readHead());
+                result.setColumnMetas(metas);
+                return new QueryResult(metas, result);
+            } else {
+                StreamingQueryResult result = new StreamingQueryResult(post, jsonMapper.getFactory().createParser(response.getEntity().getContent()));
+                List<ColumnMetaData> metas = convertColumnMeta(result.readHead());
+                result.setColumnMetas(metas);
+                return new QueryResult(metas, result);
+            }
+        } catch (IOException | RuntimeException e) {
+            post.releaseConnection();
+            throw e;
+        }
+    }
+
+    private HttpPost newQueryPost(String sql, List<StatementParameter> params, Map<String, String> queryToggles, boolean streaming) throws IOException {
         String url = baseUrl() + "/kylin/api/query";
         String project = conn.getProject();
 
@@ -358,6 +442,9 @@ public class KylinClient implements IRemoteClient {
         } else {
             request = new QueryRequest();
         }
+        if (streaming) {
+            url += "/stream";
+        }
         request.setSql(sql);
         request.setProject(project);
         request.setBackdoorToggles(queryToggles);
@@ -369,16 +456,7 @@ public class KylinClient implements IRemoteClient {
         logger.debug("Post body:\n " + postBody);
         StringEntity requestEntity = new StringEntity(postBody, ContentType.create("application/json", "UTF-8"));
         post.setEntity(requestEntity);
-
-        HttpResponse response = httpClient.execute(post);
-
-        if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
-            throw asIOException(post, response);
-        }
-
-        SQLResponseStub stub = jsonMapper.readValue(response.getEntity().getContent(), SQLResponseStub.class);
-        post.releaseConnection();
-        return stub;
+        return post;
     }
 
     private List<ColumnMetaData> convertColumnMeta(SQLResponseStub queryResp) {
@@ -400,16 +478,19 @@ public class KylinClient implements IRemoteClient {
         List<String[]> stringResults = queryResp.getResults();
         List<Object> data = new ArrayList<Object>(stringResults.size());
         for (String[] result : stringResults) {
-            Object[] row = new Object[result.length];
+            data.add(convertRow(result, metas));
+        }
+        return (List<Object>) data;
+    }
 
-            for (int i = 0; i < result.length; i++) {
-                ColumnMetaData meta = metas.get(i);
-                row[i] = wrapObject(result[i], meta.type.id);
-            }
+    static Object[] convertRow(String[] result, List<ColumnMetaData> metas) {
+        Object[] row = new Object[result.length];
 
-            data.add(row);
+        for (int i = 0; i < result.length; i++) {
+            ColumnMetaData meta = metas.get(i);
+            row[i] = wrapObject(result[i], meta.type.id);
         }
-        return (List<Object>) data;
+        return row;
     }
 
     private IOException asIOException(HttpRequestBase request, HttpResponse response) throws IOException {
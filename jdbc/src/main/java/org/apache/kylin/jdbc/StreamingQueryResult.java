@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Rows of a streaming query, read lazily from the newline delimited JSON response of the query server.
+ * The first value is the column metas, then one JSON array per row, and the last value is the query status.
+ *
+ * Can be iterated only once. The underlying http request is released when the rows are exhausted or
+ * when the iterator is closed, which happens when the result set is closed.
+ */
+class StreamingQueryResult implements Iterable<Object>, Iterator<Object>, Closeable {
+
+    private final HttpRequestBase request;
+    private final JsonParser parser;
+    private List<ColumnMetaData> columnMetas;
+    private Object[] next;
+    private boolean done = false;
+    private boolean exhausted = false; // the whole response is read
+    private boolean iterated = false;
+
+    StreamingQueryResult(HttpRequestBase request, JsonParser parser) {
+        this.request = request;
+        this.parser = parser;
+    }
+
+    SQLResponseStub readHead() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected streaming query response from " + request.getURI());
+        }
+        SQLResponseStub head = parser.readValueAs(SQLResponseStub.class);
+        if (head.getIsException()) {
+            // failed before any row is sent, there is only the status
+            throw new IOException(head.getExceptionMessage());
+        }
+        return head;
+    }
+
+    void setColumnMetas(List<ColumnMetaData> columnMetas) {
+        this.columnMetas = columnMetas;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Streaming query result can be iterated only once");
+        }
+        iterated = true;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null)
+            return true;
+        if (done)
+            return false;
+
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                next = KylinClient.convertRow(parser.readValueAs(String[].class), columnMetas);
+                return true;
+            }
+
+            done = true;
+            exhausted = true;
+            SQLResponseStub status = token == JsonToken.START_OBJECT ? parser.readValueAs(SQLResponseStub.class) : null;
+            close();
+            if (status == null) {
+                throw new IllegalStateException("Streaming query response ended without status, the connection might be broken");
+            }
+            if (status.getIsException()) {
+                throw new IllegalStateException(status.getExceptionMessage());
+            }
+            return false;
+        } catch (IOException e) {
+            close();
+            throw new IllegalStateException("Error reading streaming query response", e);
+        }
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Object[] ret = next;
+        next = null;
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        // abort rather than drain the remaining rows of an unfinished response
+        if (!exhausted) {
+            request.abort();
+        }
+        request.releaseConnection();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BinaryQueryResultTest {
+
+    private static final String HEAD = "{\"columnMetas\":[{\"label\":\"NAME\",\"columnType\":12},{\"label\":\"CNT\",\"columnType\":-5},{\"label\":\"PRICE\",\"columnType\":3},{\"label\":\"DT\",\"columnType\":91},{\"label\":\"TS\",\"columnType\":93}]}";
+    private static final String END = "{\"isException\":false,\"exceptionMessage\":null,\"totalScanCount\":2}";
+
+    private List<ColumnMetaData> metas() {
+        return Arrays.asList(ColumnMetaData.dummy(ColumnMetaData.scalar(Types.VARCHAR, "VARCHAR", Rep.STRING), true), //
+                ColumnMetaData.dummy(ColumnMetaData.scalar(Types.BIGINT, "BIGINT", Rep.LONG), true), //
+                ColumnMetaData.dummy(ColumnMetaData.scalar(Types.DECIMAL, "DECIMAL", Rep.OBJECT), true), //
+                ColumnMetaData.dummy(ColumnMetaData.scalar(Types.DATE, "DATE", Rep.OBJECT), true), //
+                ColumnMetaData.dummy(ColumnMetaData.scalar(Types.TIMESTAMP, "TIMESTAMP", Rep.OBJECT), true));
+    }
+
+    private byte[] payload() throws IOException {
+        // two rows: ("a", 1, 3.14, 2012-01-02, 2012-01-02 10:11:12.5) and (null, null, null, null, null)
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(2);
+        out.writeInt(1);
+        out.write("a".getBytes("UTF-8"));
+        out.writeByte(2);
+        out.writeLong(1);
+        out.writeByte(2);
+        out.writeInt(2);
+        out.writeShort(2);
+        out.writeShort(314);
+        out.writeByte(2);
+        out.writeShort(2012);
+        out.writeByte(1);
+        out.writeByte(2);
+        out.writeByte(2);
+        out.writeShort(2012);
+        out.write(new byte[] { 1, 2, 10, 11, 12 });
+        out.writeInt(500000000);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private byte[] response(boolean deflate, boolean withBatch, String end) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[] { 'K', 'Y', 'B', '1' });
+        out.writeByte(deflate ? 1 : 0);
+        writeJson(out, 'H', HEAD);
+        if (withBatch) {
+            byte[] raw = payload();
+            byte[] data = raw;
+            if (deflate) {
+                ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+                DeflaterOutputStream dos = new DeflaterOutputStream(deflated);
+                dos.write(raw);
+                dos.close();
+                data = deflated.toByteArray();
+            }
+            out.writeByte('B');
+            out.writeInt(2);
+            out.writeInt(raw.length);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        if (end != null) {
+            writeJson(out, 'E', end);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private void writeJson(DataOutputStream out, char tag, String json) throws IOException {
+        byte[] bytes = json.getBytes("UTF-8");
+        out.writeByte(tag);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private BinaryQueryResult newResult(byte[] response) throws IOException {
+        BinaryQueryResult result = new BinaryQueryResult(new HttpPost("http://localhost/kylin/api/query/stream"), new ByteArrayInputStream(response), new ObjectMapper());
+        assertEquals(5, result.readHead().getColumnMetas().size());
+        result.setColumnMetas(metas());
+        return result;
+    }
+
+    @Test
+    public void testRows() throws IOException {
+        for (boolean deflate : new boolean[] { false, true }) {
+            Iterator<Object> it = newResult(response(deflate, true, END)).iterator();
+            assertArrayEquals(new Object[] { "a", 1L, new BigDecimal("3.14"), Date.valueOf("2012-01-02"), Timestamp.valueOf("2012-01-02 10:11:12.5") }, (Object[]) it.next());
+            assertArrayEquals(new Object[] { null, null, null, null, null }, (Object[]) it.next());
+            assertFalse(it.hasNext());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertFalse(newResult(response(false, false, END)).iterator().hasNext());
+    }
+
+    @Test
+    public void testErrorAfterRows() throws IOException {
+        Iterator<Object> it = newResult(response(false, true, "{\"isException\":true,\"exceptionMessage\":\"Scan count exceed\"}")).iterator();
+        it.next();
+        it.next();
+        try {
+            it.hasNext();
+            throw new AssertionError("exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Scan count exceed", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBrokenStream() throws IOException {
+        Iterator<Object> it = newResult(response(false, true, null)).iterator();
+        it.next();
+        it.next();
+        it.hasNext();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StreamingQueryResultTest {
+
+    private static final String HEAD = "{\"columnMetas\":[{\"isNullable\":1,\"label\":\"NAME\",\"name\":\"NAME\",\"columnType\":12,\"columnTypeName\":\"VARCHAR\"},{\"isNullable\":1,\"label\":\"CNT\",\"name\":\"CNT\",\"columnType\":-5,\"columnTypeName\":\"BIGINT\"}]}\n";
+
+    private StreamingQueryResult newResult(String payload) throws IOException {
+        return new StreamingQueryResult(new HttpPost("http://localhost/kylin/api/query/stream"), new ObjectMapper().getFactory().createParser(payload));
+    }
+
+    private List<ColumnMetaData> metas() {
+        return Arrays.asList(ColumnMetaData.dummy(ColumnMetaData.scalar(Types.VARCHAR, "VARCHAR", Rep.STRING), true), //
+                ColumnMetaData.dummy(ColumnMetaData.scalar(Types.BIGINT, "BIGINT", Rep.LONG), true));
+    }
+
+    @Test
+    public void testRows() throws IOException {
+        StreamingQueryResult result = newResult(HEAD + "[\"a\",\"1\"]\n[\"b\",null]\n{\"isException\":false,\"exceptionMessage\":null,\"totalScanCount\":2}\n");
+        SQLResponseStub head = result.readHead();
+        assertEquals(2, head.getColumnMetas().size());
+        assertEquals("CNT", head.getColumnMetas().get(1).getName());
+        result.setColumnMetas(metas());
+
+        Iterator<Object> it = result.iterator();
+        assertArrayEquals(new Object[] { "a", 1L }, (Object[]) it.next());
+        assertArrayEquals(new Object[] { "b", null }, (Object[]) it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testErrorAfterRows() throws IOException {
+        StreamingQueryResult result = newResult(HEAD + "[\"a\",\"1\"]\n{\"isException\":true,\"exceptionMessage\":\"Scan count exceed\"}\n");
+        result.readHead();
+        result.setColumnMetas(metas());
+
+        Iterator<Object> it = result.iterator();
+        assertTrue(it.hasNext());
+        it.next();
+        try {
+            it.hasNext();
+            throw new AssertionError("exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Scan count exceed", e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testErrorBeforeRows() throws IOException {
+        newResult("{\"isException\":true,\"exceptionMessage\":\"Not Supported SQL.\"}\n").readHead();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBrokenStream() throws IOException {
+        StreamingQueryResult result = newResult(HEAD + "[\"a\",\"1\"]\n");
+        result.readHead();
+        result.setColumnMetas(metas());
+        Iterator<Object> it = result.iterator();
+        it.next();
+        it.hasNext();
+    }
+}
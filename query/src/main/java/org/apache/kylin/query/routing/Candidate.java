@@ -89,6 +89,14 @@ public class Candidate implements Comparable<Candidate> {
             return comp;
         }
 
+        // prefer fewer rows to scan when known for both, as told by cube statistics, the static cost is a guess
+        if (this.capability.scanRowEstimate >= 0 && o.capability.scanRowEstimate >= 0) {
+            comp = Long.compare(this.capability.scanRowEstimate, o.capability.scanRowEstimate);
+            if (comp != 0) {
+                return comp;
+            }
+        }
+
         comp = this.capability.cost - o.capability.cost;
         if (comp != 0) {
             return comp;
@@ -23,6 +23,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
@@ -34,7 +35,9 @@ import org.apache.kylin.rest.request.MetaRequest;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.request.SaveSqlRequest;
+import org.apache.kylin.rest.response.BinarySQLResponseWriter;
 import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.response.StreamingSQLResponseWriter;
 import org.apache.kylin.rest.service.QueryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +72,53 @@ public class QueryController extends BasicController {
         return queryService.doQueryWithCache(sqlRequest);
     }
 
+    /**
+     * Stream the result as newline delimited JSON, see {@link StreamingSQLResponseWriter} for the format.
+     * If the client accepts {@link BinarySQLResponseWriter#CONTENT_TYPE}, the result is streamed in binary instead.
+     */
+    @RequestMapping(value = "/query/stream", method = RequestMethod.POST)
+    @ResponseBody
+    public void queryStreaming(@RequestBody SQLRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        doQueryStreaming(sqlRequest, request, response);
+    }
+
+    @RequestMapping(value = "/query/prestate/stream", method = RequestMethod.POST)
+    @ResponseBody
+    public void prepareQueryStreaming(@RequestBody PrepareSqlRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        doQueryStreaming(sqlRequest, request, response);
+    }
+
+    private void doQueryStreaming(SQLRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String accept = request.getHeader("Accept");
+        if (accept != null && accept.contains(BinarySQLResponseWriter.CONTENT_TYPE)) {
+            boolean deflate = "deflate".equalsIgnoreCase(request.getHeader(BinarySQLResponseWriter.HEADER_COMPRESSION));
+            response.setContentType(BinarySQLResponseWriter.CONTENT_TYPE);
+            BinarySQLResponseWriter writer = new BinarySQLResponseWriter(response.getOutputStream(), deflate);
+            SQLResponse result = queryService.doQueryStreaming(sqlRequest, writer);
+            try {
+                if (result != null)
+                    writer.writeEnd(result);
+            } catch (IOException e) {
+                logClientDisconnected(e);
+            }
+        } else {
+            response.setContentType(StreamingSQLResponseWriter.CONTENT_TYPE + ";charset=utf-8");
+            StreamingSQLResponseWriter writer = new StreamingSQLResponseWriter(response.getOutputStream());
+            SQLResponse result = queryService.doQueryStreaming(sqlRequest, writer);
+            try {
+                if (result != null)
+                    writer.writeEnd(result);
+            } catch (IOException e) {
+                logClientDisconnected(e);
+            }
+        }
+    }
+
+    private void logClientDisconnected(IOException e) {
+        // the query itself is done, the client just did not wait for its status
+        logger.info("Client disconnected before the query status is sent: " + e);
+    }
+
     // TODO should be just "prepare" a statement, get back expected ResultSetMetaData
     @RequestMapping(value = "/query/prestate", method = RequestMethod.POST, produces = "application/json")
     @ResponseBody
@@ -71,7 +71,8 @@ public class QueryMetricsFacade {
             if (!sqlResponse.getIsException()) {
                 queryMetrics.addQueryLatency(sqlResponse.getDuration());
                 queryMetrics.addScanRowCount(sqlResponse.getTotalScanCount());
-                queryMetrics.addResultRowCount(sqlResponse.getResults().size());
+                if (sqlResponse.getResults() != null) // null for streaming query
+                    queryMetrics.addResultRowCount(sqlResponse.getResults().size());
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a query result in a compact typed binary format, decoded by BinaryQueryResult of the jdbc driver.
+ *
+ * <pre>
+ * stream := MAGIC flags head? batch* end
+ * flags  := byte, FLAG_DEFLATE if batches are deflated
+ * head   := 'H' int length, utf8 json {"columnMetas":[...]}
+ * batch  := 'B' int rowCount, int rawLength, int length, payload (deflated if flagged)
+ * end    := 'E' int length, utf8 json of query status, same as the last line of {@link StreamingSQLResponseWriter}
+ * </pre>
+ *
+ * The payload of a batch is column by column, each column is a null bitmap followed by the non-null values
+ * encoded by column type: long for integer types, double for floating types, scale and unscaled bytes for
+ * decimal, year/month/day etc. for date and time, one byte for boolean, and utf8 bytes for everything else.
+ * Values are converted from the same strings as the JSON response, so both formats give identical results.
+ */
+public class BinarySQLResponseWriter implements QueryResultWriter {
+
+    public static final String CONTENT_TYPE = "application/x-kylin-binary";
+    public static final String HEADER_COMPRESSION = "X-Kylin-Compression"; // request header, "deflate" or absent
+
+    public static final byte[] MAGIC = new byte[] { 'K', 'Y', 'B', '1' };
+    public static final byte FLAG_DEFLATE = 1;
+
+    private static final int BATCH_ROWS = 1024;
+
+    private final DataOutputStream out;
+    private final boolean deflate;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private int[] columnTypes;
+    private String[][] batch; // column oriented
+    private int batchRows = 0;
+    private int rowCount = 0;
+
+    private final ByteArrayOutputStream payloadBuf = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream payload = new DataOutputStream(payloadBuf);
+    private final ByteArrayOutputStream deflateBuf = new ByteArrayOutputStream(64 * 1024);
+
+    public BinarySQLResponseWriter(OutputStream out, boolean deflate) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.deflate = deflate;
+        this.out.write(MAGIC);
+        this.out.writeByte(deflate ? FLAG_DEFLATE : 0);
+    }
+
+    @Override
+    public void writeColumnMetas(List<SelectedColumnMeta> columnMetas) throws IOException {
+        columnTypes = new int[columnMetas.size()];
+        for (int i = 0; i < columnTypes.length; i++) {
+            columnTypes[i] = columnMetas.get(i).getColumnType();
+        }
+        batch = new String[columnTypes.length][BATCH_ROWS];
+
+        Map<String, Object> head = new LinkedHashMap<String, Object>();
+        head.put("columnMetas", columnMetas);
+        writeJson('H', head);
+        out.flush();
+    }
+
+    @Override
+    public void writeRow(List<String> row) throws IOException {
+        for (int c = 0; c < columnTypes.length; c++) {
+            batch[c][batchRows] = row.get(c);
+        }
+        rowCount++;
+        if (++batchRows == BATCH_ROWS) {
+            flushBatch();
+        }
+    }
+
+    public void writeEnd(SQLResponse response) throws IOException {
+        if (batchRows > 0) {
+            flushBatch();
+        }
+
+        Map<String, Object> tail = new LinkedHashMap<String, Object>();
+        tail.put("isException", response.getIsException());
+        tail.put("exceptionMessage", response.getExceptionMessage());
+        tail.put("cube", response.getCube());
+        tail.put("partial", response.isPartial());
+        tail.put("totalScanCount", response.getTotalScanCount());
+        tail.put("duration", response.getDuration());
+        tail.put("resultRowCount", rowCount);
+        writeJson('E', tail);
+        out.flush();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    private void writeJson(char tag, Object value) throws IOException {
+        byte[] bytes = jsonMapper.writeValueAsBytes(value);
+        out.writeByte(tag);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void flushBatch() throws IOException {
+        payloadBuf.reset();
+        try {
+            for (int c = 0; c < columnTypes.length; c++) {
+                writeColumn(columnTypes[c], batch[c], batchRows);
+            }
+            payload.flush();
+        } catch (RuntimeException e) {
+            // nothing of the batch is sent yet, drop it so that the error status can still be written
+            batchRows = 0;
+            throw e;
+        }
+
+        byte[] raw = payloadBuf.toByteArray();
+        out.writeByte('B');
+        out.writeInt(batchRows);
+        out.writeInt(raw.length);
+        if (deflate) {
+            deflateBuf.reset();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream dos = new DeflaterOutputStream(deflateBuf, deflater);
+                dos.write(raw);
+                dos.finish();
+            } finally {
+                deflater.end();
+            }
+            out.writeInt(deflateBuf.size());
+            deflateBuf.writeTo(out);
+        } else {
+            out.writeInt(raw.length);
+            out.write(raw);
+        }
+        out.flush();
+        batchRows = 0;
+    }
+
+    private void writeColumn(int type, String[] values, int n) throws IOException {
+        // null bitmap
+        for (int i = 0; i < n; i += 8) {
+            int bits = 0;
+            for (int j = i; j < i + 8 && j < n; j++) {
+                if (values[j] == null)
+                    bits |= 1 << (j - i);
+            }
+            payload.writeByte(bits);
+        }
+
+        for (int i = 0; i < n; i++) {
+            String v = values[i];
+            if (v != null) {
+                writeValue(type, v);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void writeValue(int type, String value) throws IOException {
+        // keep in line with KylinClient.wrapObject() of the jdbc driver
+        switch (type) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+            payload.writeLong(Long.parseLong(value));
+            break;
+        case Types.FLOAT:
+            payload.writeFloat(Float.parseFloat(value));
+            break;
+        case Types.REAL:
+        case Types.DOUBLE:
+            payload.writeDouble(Double.parseDouble(value));
+            break;
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            BigDecimal decimal = new BigDecimal(value);
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            payload.writeInt(decimal.scale());
+            payload.writeShort(unscaled.length);
+            payload.write(unscaled);
+            break;
+        case Types.BIT:
+            payload.writeBoolean(Boolean.parseBoolean(value));
+            break;
+        case Types.DATE:
+            Date date = Date.valueOf(value);
+            payload.writeShort(date.getYear() + 1900);
+            payload.writeByte(date.getMonth() + 1);
+            payload.writeByte(date.getDate());
+            break;
+        case Types.TIME:
+            Time time = Time.valueOf(value);
+            payload.writeByte(time.getHours());
+            payload.writeByte(time.getMinutes());
+            payload.writeByte(time.getSeconds());
+            break;
+        case Types.TIMESTAMP:
+            Timestamp ts = Timestamp.valueOf(value);
+            payload.writeShort(ts.getYear() + 1900);
+            payload.writeByte(ts.getMonth() + 1);
+            payload.writeByte(ts.getDate());
+            payload.writeByte(ts.getHours());
+            payload.writeByte(ts.getMinutes());
+            payload.writeByte(ts.getSeconds());
+            payload.writeInt(ts.getNanos());
+            break;
+        default:
+            byte[] bytes = value.getBytes("UTF-8");
+            payload.writeInt(bytes.length);
+            payload.write(bytes);
+        }
+    }
+}
@@ -93,6 +93,10 @@ public class SQLResponse implements Serializable {
         return columnMetas;
     }
 
+    public void setColumnMetas(List<SelectedColumnMeta> columnMetas) {
+        this.columnMetas = columnMetas;
+    }
+
     public List<List<String>> getResults() {
         return results;
     }
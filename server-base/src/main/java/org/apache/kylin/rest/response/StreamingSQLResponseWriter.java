@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a query result as newline delimited JSON, one JSON value per line:
+ *
+ * <pre>
+ * {"columnMetas":[...]}
+ * ["row1col1","row1col2"]
+ * ["row2col1","row2col2"]
+ * {"isException":false,"exceptionMessage":null,"cube":...,"partial":...,"totalScanCount":...,"duration":...}
+ * </pre>
+ *
+ * The last line always carries the query status, as an error may happen after some rows are sent.
+ * Rows are flushed in batches, a slow client blocks the writing thread and hence the query itself.
+ */
+public class StreamingSQLResponseWriter implements QueryResultWriter {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final int FLUSH_ROWS = 1000;
+
+    private final JsonGenerator generator;
+    private final OutputStream out;
+    private int rowCount = 0;
+
+    public StreamingSQLResponseWriter(OutputStream out) throws IOException {
+        this.out = out;
+        this.generator = new ObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void writeColumnMetas(List<SelectedColumnMeta> columnMetas) throws IOException {
+        Map<String, Object> head = new LinkedHashMap<String, Object>();
+        head.put("columnMetas", columnMetas);
+        writeLine(head);
+        generator.flush();
+    }
+
+    @Override
+    public void writeRow(List<String> row) throws IOException {
+        generator.writeStartArray();
+        for (String v : row) {
+            generator.writeString(v);
+        }
+        generator.writeEndArray();
+        newLine();
+
+        if (++rowCount % FLUSH_ROWS == 0) {
+            generator.flush();
+        }
+    }
+
+    /** the status line, rows and column metas in the response are ignored */
+    public void writeEnd(SQLResponse response) throws IOException {
+        Map<String, Object> tail = new LinkedHashMap<String, Object>();
+        tail.put("isException", response.getIsException());
+        tail.put("exceptionMessage", response.getExceptionMessage());
+        tail.put("cube", response.getCube());
+        tail.put("partial", response.isPartial());
+        tail.put("totalScanCount", response.getTotalScanCount());
+        tail.put("duration", response.getDuration());
+        tail.put("resultRowCount", rowCount);
+        writeLine(tail);
+        generator.flush();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    private void writeLine(Object value) throws IOException {
+        generator.writeObject(value);
+        newLine();
+    }
+
+    private void newLine() throws IOException {
+        generator.writeRaw('\n');
+    }
+}
@@ -75,6 +75,7 @@ import org.apache.kylin.rest.model.SelectedColumnMeta;
 import org.apache.kylin.rest.model.TableMeta;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.QueryResultWriter;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.util.QueryUtil;
 import org.apache.kylin.rest.util.Serializer;
@@ -319,7 +320,7 @@ public class QueryService extends BasicService {
         }
     }
 
-    public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
+    private void checkQueryAllowed(SQLRequest sqlRequest) {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
         String serverMode = kylinConfig.getServerMode();
         if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase()) || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
@@ -328,6 +329,168 @@ public class QueryService extends BasicService {
         if (StringUtils.isBlank(sqlRequest.getProject())) {
             throw new InternalErrorException("Project cannot be empty. Please select a project.");
         }
+    }
+
+    /**
+     * Execute the query and send out the rows while they are produced. A cached response is replayed to
+     * the writer, and a fresh response small enough is cached like the one of {@link #doQueryWithCache}.
+     *
+     * The returned response carries everything but the rows. Exceptions are not thrown but returned
+     * in the response, as the writer may have sent some rows already. Returns null if the client has
+     * disconnected, nothing more should be written then.
+     */
+    public SQLResponse doQueryStreaming(SQLRequest sqlRequest, QueryResultWriter writer) {
+        checkQueryAllowed(sqlRequest);
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+
+        final String queryId = UUID.randomUUID().toString();
+        if (sqlRequest.getBackdoorToggles() != null)
+            BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
+        QueryContext.setQueryId(queryId);
+
+        try (SetThreadName ignored = new SetThreadName("Query %s", queryId)) {
+            String sql = sqlRequest.getSql();
+            logger.info("Using project: " + sqlRequest.getProject());
+            logger.info("The original query (streaming):  " + sql);
+
+            boolean queryCacheEnabled = checkCondition(kylinConfig.isQueryCacheEnabled(), "query cache disabled in KylinConfig") && //
+                    checkCondition(!BackdoorToggles.getDisableCache(), "query cache disabled in BackdoorToggles");
+            StreamingResultWriter streamingWriter = new StreamingResultWriter(writer, queryCacheEnabled ? kylinConfig.getLargeQueryThreshold() : 0);
+
+            long startTime = System.currentTimeMillis();
+            SQLResponse sqlResponse = null;
+            try {
+                if (!sql.toLowerCase().contains("select")) {
+                    throw new InternalErrorException("Not Supported SQL.");
+                }
+
+                if (queryCacheEnabled) {
+                    sqlResponse = searchQueryInCache(sqlRequest);
+                }
+
+                if (sqlResponse != null) {
+                    checkQueryAuth(sqlResponse);
+                    streamingWriter.replay(sqlResponse);
+                    sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+                } else {
+                    final String user = SecurityContextHolder.getContext().getAuthentication().getName();
+                    badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user);
+                    try {
+                        sqlResponse = queryWithSqlMassage(sqlRequest, streamingWriter);
+                    } finally {
+                        badQueryDetector.queryEnd(Thread.currentThread());
+                    }
+                    sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+
+                    if (streamingWriter.getCollectedRows() != null) {
+                        sqlResponse.setColumnMetas(streamingWriter.getColumnMetas());
+                        sqlResponse.setResults(streamingWriter.getCollectedRows());
+                        cacheSuccessQuery(sqlRequest, sqlResponse);
+                    }
+                }
+            } catch (Throwable e) { // calcite may throw AssertError
+                if (streamingWriter.isClientDisconnected()) {
+                    logger.info("Client disconnected, stop streaming the query result: " + e);
+                    return null;
+                }
+                logger.error("Exception when execute sql", e);
+                sqlResponse = new SQLResponse(null, null, 0, true, QueryUtil.makeErrorMsgUserFriendly(e));
+
+                // for exception queries, only cache ScanOutOfLimitException
+                if (queryCacheEnabled && e instanceof ScanOutOfLimitException) {
+                    cacheManager.getCache(EXCEPTION_QUERY_CACHE).put(new Element(sqlRequest, sqlResponse));
+                }
+            }
+
+            logQuery(sqlRequest, sqlResponse);
+            QueryMetricsFacade.updateMetrics(sqlRequest, sqlResponse);
+            return sqlResponse;
+
+        } finally {
+            BackdoorToggles.cleanToggles();
+        }
+    }
+
+    /**
+     * Passes the rows of a streaming query to the client writer. Checks authorization before the first row
+     * goes out, keeps a copy of the rows for the query cache as long as there are not too many, and tells
+     * a client disconnect from a query failure.
+     */
+    private class StreamingResultWriter implements QueryResultWriter {
+        final QueryResultWriter writer;
+        final int maxCollectedRows;
+        List<SelectedColumnMeta> columnMetas;
+        List<List<String>> collectedRows; // null if not collecting
+        boolean clientDisconnected;
+
+        StreamingResultWriter(QueryResultWriter writer, int maxCollectedRows) {
+            this.writer = writer;
+            this.maxCollectedRows = maxCollectedRows;
+            this.collectedRows = maxCollectedRows > 0 ? new ArrayList<List<String>>() : null;
+        }
+
+        @Override
+        public void writeColumnMetas(List<SelectedColumnMeta> metas) throws IOException {
+            if (KylinConfig.getInstanceFromEnv().isQuerySecureEnabled()) {
+                checkAuthorization(getQueriedRealization());
+            }
+            columnMetas = Lists.newArrayList(metas);
+            try {
+                writer.writeColumnMetas(metas);
+            } catch (IOException e) {
+                clientDisconnected = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void writeRow(List<String> row) throws IOException {
+            if (collectedRows != null) {
+                if (collectedRows.size() < maxCollectedRows)
+                    collectedRows.add(Lists.newArrayList(row));
+                else
+                    collectedRows = null; // too large to cache
+            }
+            try {
+                writer.writeRow(row);
+            } catch (IOException e) {
+                clientDisconnected = true;
+                throw e;
+            }
+        }
+
+        /** write a cached response, authorization is already checked */
+        void replay(SQLResponse cached) throws IOException {
+            collectedRows = null;
+            if (cached.getIsException())
+                return;
+            try {
+                writer.writeColumnMetas(cached.getColumnMetas());
+                for (List<String> row : cached.getResults()) {
+                    writer.writeRow(row);
+                }
+            } catch (IOException e) {
+                clientDisconnected = true;
+                throw e;
+            }
+        }
+
+        List<SelectedColumnMeta> getColumnMetas() {
+            return columnMetas;
+        }
+
+        List<List<String>> getCollectedRows() {
+            return collectedRows;
+        }
+
+        boolean isClientDisconnected() {
+            return clientDisconnected;
+        }
+    }
+
+    public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
+        checkQueryAllowed(sqlRequest);
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
 
         final String queryId = UUID.randomUUID().toString();
         if (sqlRequest.getBackdoorToggles() != null)
@@ -359,16 +522,11 @@ public class QueryService extends BasicService {
                 if (null == sqlResponse) {
                     sqlResponse = query(sqlRequest);
 
-                    long durationThreshold = kylinConfig.getQueryDurationCacheThreshold();
-                    long scancountThreshold = kylinConfig.getQueryScanCountCacheThreshold();
                     sqlResponse.setDuration(System.currentTimeMillis() - startTime);
                     logger.info("Stats of SQL response: isException: {}, duration: {}, total scan count {}", //
                             String.valueOf(sqlResponse.getIsException()), String.valueOf(sqlResponse.getDuration()), String.valueOf(sqlResponse.getTotalScanCount()));
-                    if (checkCondition(queryCacheEnabled, "query cache is disabled") && //
-                            checkCondition(!sqlResponse.getIsException(), "query has exception") && //
-                            checkCondition(sqlResponse.getDuration() > durationThreshold || sqlResponse.getTotalScanCount() > scancountThreshold, "query is too lightweight with duration: {} ({}), scan count: {} ({})", sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanCount(), scancountThreshold) && // 
-                            checkCondition(sqlResponse.getResults().size() < kylinConfig.getLargeQueryThreshold(), "query response is too large: {} ({})", sqlResponse.getResults().size(), kylinConfig.getLargeQueryThreshold())) {
-                        cacheManager.getCache(SUCCESS_QUERY_CACHE).put(new Element(sqlRequest, sqlResponse));
+                    if (checkCondition(queryCacheEnabled, "query cache is disabled")) {
+                        cacheSuccessQuery(sqlRequest, sqlResponse);
                     }
 
                 } else {
@@ -404,6 +562,17 @@ public class QueryService extends BasicService {
         }
     }
 
+    private void cacheSuccessQuery(SQLRequest sqlRequest, SQLResponse sqlResponse) {
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        long durationThreshold = kylinConfig.getQueryDurationCacheThreshold();
+        long scancountThreshold = kylinConfig.getQueryScanCountCacheThreshold();
+        if (checkCondition(!sqlResponse.getIsException(), "query has exception") && //
+                checkCondition(sqlResponse.getDuration() > durationThreshold || sqlResponse.getTotalScanCount() > scancountThreshold, "query is too lightweight with duration: {} ({}), scan count: {} ({})", sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanCount(), scancountThreshold) && // 
+                checkCondition(sqlResponse.getResults().size() < kylinConfig.getLargeQueryThreshold(), "query response is too large: {} ({})", sqlResponse.getResults().size(), kylinConfig.getLargeQueryThreshold())) {
+            cacheManager.getCache(SUCCESS_QUERY_CACHE).put(new Element(sqlRequest, sqlResponse));
+        }
+    }
+
     public SQLResponse searchQueryInCache(SQLRequest sqlRequest) {
         SQLResponse response = null;
         Cache exceptionCache = cacheManager.getCache(EXCEPTION_QUERY_CACHE);
@@ -424,6 +593,19 @@ public class QueryService extends BasicService {
         return response;
     }
 
+    /** the realization answering the current query, valid once the query is planned */
+    private String getQueriedRealization() {
+        String cube = "";
+        if (OLAPContext.getThreadLocalContexts() != null) {
+            for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
+                if (ctx.realization != null) {
+                    cube = ctx.realization.getName();
+                }
+            }
+        }
+        return cube;
+    }
+
     private void checkQueryAuth(SQLResponse sqlResponse) throws AccessDeniedException {
         if (!sqlResponse.getIsException() && KylinConfig.getInstanceFromEnv().isQuerySecureEnabled()) {
             checkAuthorization(sqlResponse.getCube());
@@ -431,6 +613,13 @@ public class QueryService extends BasicService {
     }
 
     private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest) throws Exception {
+        return queryWithSqlMassage(sqlRequest, null);
+    }
+
+    /**
+     * @param writer if not null, rows are passed to writer instead of being collected in response
+     */
+    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest, QueryResultWriter writer) throws Exception {
         String userInfo = SecurityContextHolder.getContext().getAuthentication().getName();
         final Collection<? extends GrantedAuthority> grantedAuthorities = SecurityContextHolder.getContext().getAuthentication().getAuthorities();
         for (GrantedAuthority grantedAuthority : grantedAuthorities) {
@@ -438,9 +627,18 @@ public class QueryService extends BasicService {
             userInfo += grantedAuthority.getAuthority();
         }
 
+        // force clear the query context before a new query, a fake response must not see the contexts of the last one
+        OLAPContext.clearThreadLocalContexts();
+
         SQLResponse fakeResponse = TableauInterceptor.tableauIntercept(sqlRequest.getSql());
         if (null != fakeResponse) {
             logger.debug("Return fake response, is exception? " + fakeResponse.getIsException());
+            if (writer != null && !fakeResponse.getIsException()) {
+                writer.writeColumnMetas(fakeResponse.getColumnMetas());
+                for (List<String> row : fakeResponse.getResults()) {
+                    writer.writeRow(row);
+                }
+            }
             return fakeResponse;
         }
 
@@ -457,11 +655,12 @@ public class QueryService extends BasicService {
         parameters.put(OLAPContext.PRM_USER_AUTHEN_INFO, userInfo);
         parameters.put(OLAPContext.PRM_ACCEPT_PARTIAL_RESULT, String.valueOf(sqlRequest.isAcceptPartial()));
         OLAPContext.setParameters(parameters);
-        // force clear the query context before a new query
-        OLAPContext.clearThreadLocalContexts();
-
-        return execute(correctedSql, sqlRequest);
 
+        if (writer == null) {
+            return execute(correctedSql, sqlRequest);
+        } else {
+            return execute(correctedSql, sqlRequest, writer);
+        }
     }
 
     protected List<TableMeta> getMetadata(CubeManager cubeMgr, String project, boolean cubedOnly) throws SQLException {
@@ -534,11 +733,34 @@ public class QueryService extends BasicService {
      * @throws Exception
      */
     private SQLResponse execute(String correctedSql, SQLRequest sqlRequest) throws Exception {
+        final List<List<String>> results = Lists.newArrayList();
+        final List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
+
+        SQLResponse response = execute(correctedSql, sqlRequest, new QueryResultWriter() {
+            @Override
+            public void writeColumnMetas(List<SelectedColumnMeta> metas) {
+                columnMetas.addAll(metas);
+            }
+
+            @Override
+            public void writeRow(List<String> row) {
+                results.add(row);
+            }
+        });
+
+        response.setColumnMetas(columnMetas);
+        response.setResults(results);
+        return response;
+    }
+
+    /**
+     * execute the query and pass the rows to writer, the returned response has no column metas or rows
+     */
+    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest, QueryResultWriter writer) throws Exception {
         Connection conn = null;
         Statement stat = null;
         ResultSet resultSet = null;
 
-        List<List<String>> results = Lists.newArrayList();
         List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
 
         try {
@@ -567,6 +789,8 @@ public class QueryService extends BasicService {
                 columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
             }
 
+            writer.writeColumnMetas(columnMetas);
+
             // fill in results
             while (resultSet.next()) {
                 List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
@@ -574,7 +798,7 @@ public class QueryService extends BasicService {
                     oneRow.add((resultSet.getString(i + 1)));
                 }
 
-                results.add(oneRow);
+                writer.writeRow(oneRow);
             }
         } finally {
             close(resultSet, stat, conn);
@@ -596,7 +820,7 @@ public class QueryService extends BasicService {
         }
         logger.info(sb.toString());
 
-        SQLResponse response = new SQLResponse(columnMetas, results, cube, 0, false, null, isPartialResult);
+        SQLResponse response = new SQLResponse(null, null, cube, 0, false, null, isPartialResult);
         response.setTotalScanCount(totalScanCount);
 
         return response;
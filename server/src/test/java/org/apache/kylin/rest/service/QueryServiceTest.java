@@ -18,17 +18,27 @@
 
 package org.apache.kylin.rest.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.kylin.job.exception.JobException;
 import org.apache.kylin.metadata.project.ProjectInstance;
+import org.apache.kylin.rest.model.SelectedColumnMeta;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.response.StreamingSQLResponseWriter;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
 /**
  * @author xduo
  */
@@ -40,6 +50,9 @@ public class QueryServiceTest extends ServiceTestBase {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     @Test
     public void testBasics() throws JobException, IOException, SQLException {
         Assert.assertNotNull(queryService.getConfig());
@@ -62,4 +75,45 @@ public class QueryServiceTest extends ServiceTestBase {
         response.setHitExceptionCache(true);
         queryService.logQuery(request, response);
     }
+
+    @Test
+    public void testStreamingFromCache() throws IOException {
+        SQLRequest request = cachedRequest("select count(*) from test_kylin_fact");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingSQLResponseWriter writer = new StreamingSQLResponseWriter(out);
+        SQLResponse response = queryService.doQueryStreaming(request, writer);
+        writer.writeEnd(response);
+
+        Assert.assertFalse(response.getIsException());
+        Assert.assertTrue(response.isStorageCacheUsed());
+        Assert.assertEquals(2, writer.getRowCount());
+        Assert.assertTrue(out.toString("UTF-8").contains("[\"b\"]"));
+    }
+
+    @Test
+    public void testStreamingClientDisconnected() throws IOException {
+        SQLRequest request = cachedRequest("select count(*) from test_kylin_fact");
+
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        Assert.assertNull(queryService.doQueryStreaming(request, new StreamingSQLResponseWriter(broken)));
+    }
+
+    private SQLRequest cachedRequest(String sql) {
+        SQLRequest request = new SQLRequest();
+        request.setSql(sql);
+        request.setProject(ProjectInstance.DEFAULT_PROJECT_NAME);
+
+        List<List<String>> results = new ArrayList<List<String>>();
+        results.add(Arrays.asList("a"));
+        results.add(Arrays.asList("b"));
+        SQLResponse cached = new SQLResponse(new ArrayList<SelectedColumnMeta>(), results, "test_kylin_cube_with_slr_empty", 0, false, null);
+        cacheManager.getCache(QueryService.SUCCESS_QUERY_CACHE).put(new Element(request, cached));
+        return request;
+    }
 }
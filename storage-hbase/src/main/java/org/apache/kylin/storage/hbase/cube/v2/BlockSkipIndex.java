@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+
+/**
+ * A per-block min/max index of rowkey dimensions, stored in its own column family of the cube HTable.
+ *
+ * Rows of a cuboid are cut into blocks of consecutive rowkeys, each block has one index cell keyed by
+ * the first rowkey of the block, the value is the min and max of every dimension in the block. Blocks
+ * never span cuboids or shards, so a block ends where the next index row starts.
+ */
+public class BlockSkipIndex {
+
+    public static final byte[] FAMILY = Bytes.toBytes("SI");
+    public static final byte[] QUALIFIER = Bytes.toBytes("M");
+
+    public static byte[] encode(byte[][] min, byte[][] max, int dimCount) {
+        int size = 5;
+        for (int i = 0; i < dimCount; i++) {
+            size += min[i].length + max[i].length + 10;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        BytesUtil.writeVInt(dimCount, buf);
+        for (int i = 0; i < dimCount; i++) {
+            BytesUtil.writeByteArray(min[i], buf);
+            BytesUtil.writeByteArray(max[i], buf);
+        }
+        byte[] result = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * decode the min and max of each dimension into the given arrays, return the dimension count
+     */
+    public static int decode(byte[] value, int offset, int length, ByteArray[] min, ByteArray[] max) {
+        ByteBuffer in = ByteBuffer.wrap(value, offset, length);
+        int dimCount = BytesUtil.readVInt(in);
+        for (int i = 0; i < dimCount; i++) {
+            byte[] lo = BytesUtil.readByteArray(in);
+            byte[] hi = BytesUtil.readByteArray(in);
+            if (i < min.length) {
+                min[i] = new ByteArray(lo);
+                max[i] = new ByteArray(hi);
+            }
+        }
+        return dimCount;
+    }
+}
@@ -21,14 +21,15 @@ package org.apache.kylin.storage.hbase.cube.v2;
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.zip.DataFormatException;
 
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.HConnection;
 import org.apache.hadoop.hbase.client.HTableInterface;
-import org.apache.hadoop.hbase.client.coprocessor.Batch;
 import org.apache.hadoop.hbase.ipc.BlockingRpcCallback;
 import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.kylin.common.KylinConfig;
@@ -36,9 +37,7 @@ import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
-import org.apache.kylin.common.util.CompressionUtils;
 import org.apache.kylin.common.util.ImmutableBitSet;
-import org.apache.kylin.common.util.LoggableCachedThreadPool;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.gridtable.GTInfo;
@@ -46,10 +45,13 @@ import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GTScanSelfTerminatedException;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.metadata.model.ISegment;
-import org.apache.kylin.storage.gtrecord.DummyPartitionStreamer;
+import org.apache.kylin.storage.gtrecord.IPartitionStreamer;
 import org.apache.kylin.storage.gtrecord.StorageResponseGTScatter;
 import org.apache.kylin.storage.hbase.HBaseConnection;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.ResultCodec;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse;
 import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitService;
@@ -66,8 +68,6 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeHBaseEndpointRPC.class);
 
-    private static ExecutorService executorService = new LoggableCachedThreadPool();
-
     public CubeHBaseEndpointRPC(ISegment segment, Cuboid cuboid, GTInfo fullGTInfo) {
         super(segment, cuboid, fullGTInfo);
     }
@@ -134,8 +134,6 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         scanRequest.clearScanRanges();//since raw scans are sent to coprocessor, we don't need to duplicate sending it
         scanRequestByteString = serializeGTScanReq(scanRequest);
 
-        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(shardNum, coprocessorTimeout);
-
         logger.info("Serialized scanRequestBytes {} bytes, rawScanBytesString {} bytes", scanRequestByteString.size(), rawScanByteString.size());
 
         logger.info("The scan {} for segment {} is as below with {} separate raw scans, shard part of start/end key is set to 0", Integer.toHexString(System.identityHashCode(scanRequest)), cubeSeg, rawScans.size());
@@ -143,7 +141,11 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
             logScan(rs, cubeSeg.getStorageLocationIdentifier());
         }
 
-        logger.debug("Submitting rpc to {} shards starting from shard {}, scan range count {}", shardNum, cuboidBaseShard, rawScans.size());
+        // one visit per region, scheduled together with the region visits of concurrent queries
+        final List<byte[]> regionStartKeys = getRegionStartKeys(conn, cubeSeg.getStorageLocationIdentifier(), getEPKeyRanges(cuboidBaseShard, shardNum, totalShards));
+        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(regionStartKeys.size(), coprocessorTimeout);
+
+        logger.debug("Submitting rpc to {} shards starting from shard {} on {} regions, scan range count {}", shardNum, cuboidBaseShard, regionStartKeys.size(), rawScans.size());
 
         final AtomicLong totalScannedCount = new AtomicLong(0);
 
@@ -158,80 +160,195 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         }
         builder.setRowkeyPreambleSize(cubeSeg.getRowKeyPreambleSize());
         builder.setKylinProperties(kylinConfig.getConfigAsString());
+        builder.setMaxResponseBytes(kylinConfig.getEndpointMaxResponseBytes());
+        if (compressionResult) {
+            for (String codec : kylinConfig.getEndpointCompressCodecs()) {
+                builder.addCompressionCodecs(codec);
+            }
+        } else {
+            builder.addCompressionCodecs(ResultCodec.NONE.getId());
+        }
         final String queryId = QueryContext.getQueryId();
         if (queryId != null) {
             builder.setQueryId(queryId);
         }
+        final String visitId = UUID.randomUUID().toString();
+        builder.setVisitId(visitId);
+
+        final String queryKey = queryId != null ? queryId : Integer.toHexString(System.identityHashCode(scanRequest));
+        final CubeVisitRequest request = builder.build();
+        for (final byte[] regionStartKey : regionStartKeys) {
+            RegionVisitScheduler.getInstance().submit(queryKey, new Runnable() {
+                // the request of the next block, a continuation of the previous one
+                CubeVisitRequest blockRequest = request;
 
-        for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
-            executorService.submit(new Runnable() {
                 @Override
                 public void run() {
 
                     final String logHeader = String.format("<sub-thread for Query %s GTScanRequest %s>", queryId, Integer.toHexString(System.identityHashCode(scanRequest)));
-                    final boolean[] abnormalFinish = new boolean[1];
+                    if (epResultItr.isCancelled()) {
+                        logger.info(logHeader + "Skip visiting shard " + BytesUtil.toHex(regionStartKey) + " as the scan is cancelled");
+                        return;
+                    }
 
+                    // tell the coprocessor to stop if the scan is cancelled while the region is being visited
+                    Runnable cancelListener = new Runnable() {
+                        @Override
+                        public void run() {
+                            cancelRegionVisit(conn, regionStartKey, visitId, logHeader);
+                        }
+                    };
+
+                    CubeVisitResponse result;
                     try {
+                        epResultItr.addCancelListener(cancelListener);
                         HTableInterface table = conn.getTable(cubeSeg.getStorageLocationIdentifier(), HBaseConnection.getCoprocessorPool());
-
-                        final CubeVisitRequest request = builder.build();
-                        final byte[] startKey = epRange.getFirst();
-                        final byte[] endKey = epRange.getSecond();
-
-                        table.coprocessorService(CubeVisitService.class, startKey, endKey, //
-                                new Batch.Call<CubeVisitService, CubeVisitResponse>() {
-                                    public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
-                                        ServerRpcController controller = new ServerRpcController();
-                                        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
-                                        rowsService.visitCube(controller, request, rpcCallback);
-                                        CubeVisitResponse response = rpcCallback.get();
-                                        if (controller.failedOnException()) {
-                                            throw controller.getFailedOn();
-                                        }
-                                        return response;
-                                    }
-                                }, new Batch.Callback<CubeVisitResponse>() {
-                                    @Override
-                                    public void update(byte[] region, byte[] row, CubeVisitResponse result) {
-                                        if (region == null)
-                                            return;
-
-                                        totalScannedCount.addAndGet(result.getStats().getScannedRowCount());
-                                        logger.info(logHeader + getStatsString(region, result));
-
-                                        if (result.getStats().getNormalComplete() != 1) {
-                                            abnormalFinish[0] = true;
-                                            return;
-                                        }
-                                        try {
-                                            if (compressionResult) {
-                                                epResultItr.append(CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows())));
-                                            } else {
-                                                epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
-                                            }
-                                        } catch (IOException | DataFormatException e) {
-                                            throw new RuntimeException(logHeader + "Error when decompressing", e);
-                                        }
-                                    }
-                                });
-
+                        try {
+                            result = visitRegion(CubeVisitService.newStub(table.coprocessorService(regionStartKey)), blockRequest, logHeader);
+                        } finally {
+                            table.close();
+                            epResultItr.removeCancelListener(cancelListener);
+                        }
                     } catch (Throwable ex) {
+                        if (epResultItr.isCancelled()) {
+                            logger.info(logHeader + "Visit of a cancelled scan failed: " + ex);
+                            return;
+                        }
                         logger.error(logHeader + "Error when visiting cubes by endpoint", ex); // double log coz the query thread may already timeout
+                        // the region may have moved or split, let the next query locate the regions again
+                        conn.clearRegionCache(TableName.valueOf(cubeSeg.getStorageLocationIdentifier()));
                         epResultItr.notifyCoprocException(ex);
                         return;
                     }
 
-                    if (abnormalFinish[0]) {
+                    if (epResultItr.isCancelled()) {
+                        logger.info(logHeader + "Drop the result of shard " + BytesUtil.toHex(regionStartKey) + " as the scan is cancelled");
+                        return;
+                    }
+
+                    totalScannedCount.addAndGet(result.getStats().getScannedRowCount());
+
+                    if (result.getStats().getNormalComplete() != 1) {
+                        logger.info(logHeader + getStatsString(regionStartKey, result));
                         Throwable ex = new GTScanSelfTerminatedException(logHeader + "The coprocessor thread stopped itself due to scan timeout or scan threshold(check region server log), failing current query...");
                         logger.error(logHeader + "Error when visiting cubes by endpoint", ex); // double log coz the query thread may already timeout
                         epResultItr.notifyCoprocException(ex);
                         return;
                     }
+
+                    if (result.hasContinuation()) {
+                        // hand over the current block; the next block is asked for when the consumer takes this one,
+                        // so a slow consumer leaves the scheduler thread free rather than blocking it
+                        logger.info(logHeader + "Partial block: " + getStatsString(regionStartKey, result));
+                        blockRequest = CubeVisitRequest.newBuilder(request).setContinuation(result.getContinuation()).build();
+                        final Runnable nextBlock = this;
+                        epResultItr.appendPartial(decodeRows(result, compressionResult, logHeader), new Runnable() {
+                            @Override
+                            public void run() {
+                                RegionVisitScheduler.getInstance().submit(queryKey, nextBlock);
+                            }
+                        });
+                    } else {
+                        logger.info(logHeader + getStatsString(regionStartKey, result));
+                        epResultItr.append(decodeRows(result, compressionResult, logHeader));
+                    }
                 }
             });
         }
 
-        return new StorageResponseGTScatter(fullGTInfo, new DummyPartitionStreamer(epResultItr), scanRequest.getColumns(), totalScannedCount.get(), scanRequest.getStoragePushDownLimit());
+        IPartitionStreamer partitionStreamer = new IPartitionStreamer() {
+            @Override
+            public Iterator<ByteBuffer> asBlockIterator() {
+                return epResultItr;
+            }
+
+            @Override
+            public void release(ByteBuffer block) {
+                ResponseBufferPool.getInstance().release(block.array());
+            }
+
+            @Override
+            public void close() throws IOException {
+                // the consumer may stop early, e.g. limit is satisfied, abort the visits still going on
+                epResultItr.cancel();
+            }
+        };
+        return new StorageResponseGTScatter(fullGTInfo, partitionStreamer, scanRequest.getColumns(), totalScannedCount.get(), scanRequest.getStoragePushDownLimit());
+    }
+
+    /**
+     * visit one block of a region, the response carries a continuation if the region has more blocks
+     */
+    private CubeVisitResponse visitRegion(CubeVisitService rowsService, CubeVisitRequest request, String logHeader) throws IOException {
+        ServerRpcController controller = new ServerRpcController();
+        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
+        rowsService.visitCube(controller, request, rpcCallback);
+        CubeVisitResponse response = rpcCallback.get();
+        if (controller.failedOnException()) {
+            throw controller.getFailedOn();
+        }
+        if (response == null) {
+            throw new IOException(logHeader + "No response from region, " + controller.errorText());
+        }
+        return response;
+    }
+
+    private void cancelRegionVisit(final HConnection conn, final byte[] regionStartKey, final String visitId, final String logHeader) {
+        // fire and forget, the query thread should not wait for it
+        HBaseConnection.getCoprocessorPool().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    HTableInterface table = conn.getTable(cubeSeg.getStorageLocationIdentifier(), HBaseConnection.getCoprocessorPool());
+                    try {
+                        ServerRpcController controller = new ServerRpcController();
+                        BlockingRpcCallback<CancelVisitResponse> rpcCallback = new BlockingRpcCallback<>();
+                        CubeVisitService.newStub(table.coprocessorService(regionStartKey)).cancelVisit(controller, CancelVisitRequest.newBuilder().setVisitId(visitId).build(), rpcCallback);
+                        rpcCallback.get();
+                        if (controller.failedOnException()) {
+                            throw controller.getFailedOn();
+                        }
+                    } finally {
+                        table.close();
+                    }
+                    logger.info(logHeader + "Cancelled visit " + visitId + " on shard " + BytesUtil.toHex(regionStartKey));
+                } catch (Throwable ex) {
+                    // e.g. coprocessor of older version, the visit will run to its end
+                    logger.warn(logHeader + "Failed to cancel visit " + visitId + " on shard " + BytesUtil.toHex(regionStartKey), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * start keys of the regions overlapping the endpoint key ranges, same as HTable.getStartKeysInRange(), the
+     * region locations come from the connection cache which is refreshed when a region visit fails
+     */
+    private List<byte[]> getRegionStartKeys(HConnection conn, String tableName, List<Pair<byte[], byte[]>> epRanges) throws IOException {
+        TableName table = TableName.valueOf(tableName);
+        List<byte[]> ret = Lists.newArrayList();
+        for (Pair<byte[], byte[]> epRange : epRanges) {
+            byte[] key = epRange.getFirst();
+            while (true) {
+                HRegionInfo info = conn.locateRegion(table, key).getRegionInfo();
+                ret.add(info.getStartKey());
+                key = info.getEndKey();
+                // endpoint end key is inclusive
+                if (key.length == 0 || Bytes.compareTo(key, epRange.getSecond()) > 0) {
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private ByteBuffer decodeRows(CubeVisitResponse response, boolean compressionResult, String logHeader) {
+        ResultCodec codec = ResultCodec.ofResponse(response.hasCompressionCodec(), response.getCompressionCodec(), compressionResult);
+        try {
+            return codec.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(response.getCompressedRows()), ResponseBufferPool.getInstance());
+        } catch (IOException e) {
+            throw new RuntimeException(logHeader + "Error when decompressing by " + codec.getId(), e);
+        }
     }
 
     private ByteString serializeGTScanReq(GTScanRequest scanRequest) {
@@ -276,7 +393,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
     private String getStatsString(byte[] region, CubeVisitResponse result) {
         StringBuilder sb = new StringBuilder();
         Stats stats = result.getStats();
-        sb.append("Endpoint RPC returned from HTable ").append(cubeSeg.getStorageLocationIdentifier()).append(" Shard ").append(BytesUtil.toHex(region)).append(" on host: ").append(stats.getHostname()).append(".");
+        sb.append("Endpoint RPC returned from HTable ").append(cubeSeg.getStorageLocationIdentifier()).append(" Shard ").append(region == null ? "" : BytesUtil.toHex(region)).append(" on host: ").append(stats.getHostname()).append(".");
         sb.append("Total scanned row: ").append(stats.getScannedRowCount()).append(". ");
         sb.append("Total filtered/aggred row: ").append(stats.getAggregatedRowCount()).append(". ");
         sb.append("Time elapsed in EP: ").append(stats.getServiceEndTime() - stats.getServiceStartTime()).append("(ms). ");
@@ -18,9 +18,12 @@
 
 package org.apache.kylin.storage.hbase.cube.v2;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.NotImplementedException;
@@ -28,17 +31,33 @@ import org.apache.kylin.gridtable.GTScanRequest;
 
 import com.google.common.base.Throwables;
 
-class ExpectedSizeIterator implements Iterator<byte[]> {
-    private BlockingQueue<byte[]> queue;
+/**
+ * Blocks returned by the coprocessors of all expected shards. A shard may return its rows in
+ * several blocks, the shard is counted as finished when its last block is appended. The next block
+ * of a shard is requested only when the consumer takes the current one, so a shard has at most one
+ * block in queue, and a visit holds no thread while the consumer is behind.
+ *
+ * It is also the cancellation channel of the shard visits. Once the consumer stops, or the visits
+ * fail or time out, the visits that are still queued or running are told to give up.
+ */
+class ExpectedSizeIterator implements Iterator<ByteBuffer> {
+    // marks the end of one shard in queue, compared by reference
+    private static final Block SHARD_END = new Block(null, null);
+
+    private BlockingQueue<Block> queue;
     private int expectedSize;
     private int current = 0;
+    private ByteBuffer nextBlock;
     private int coprocessorTimeout;
     private long deadline;
     private volatile Throwable coprocException;
+    private volatile boolean cancelled = false;
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<Runnable>();
 
     public ExpectedSizeIterator(int expectedSize, int coprocessorTimeout) {
         this.expectedSize = expectedSize;
-        this.queue = new ArrayBlockingQueue<byte[]>(expectedSize);
+        // one block and one end mark per shard at most
+        this.queue = new ArrayBlockingQueue<Block>(Math.max(expectedSize, 1) * 2);
 
         this.coprocessorTimeout = coprocessorTimeout;
         //longer timeout than coprocessor so that query thread will not timeout faster than coprocessor
@@ -47,27 +66,45 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
 
     @Override
     public boolean hasNext() {
-        return (current < expectedSize);
+        while (nextBlock == null && current < expectedSize && !cancelled) {
+            Block block = take();
+            if (block == SHARD_END) {
+                current++;
+            } else {
+                nextBlock = block.data;
+                if (block.requestNext != null) {
+                    block.requestNext.run();
+                }
+            }
+        }
+        return nextBlock != null;
     }
 
     @Override
-    public byte[] next() {
-        if (current >= expectedSize) {
+    public ByteBuffer next() {
+        if (!hasNext()) {
             throw new IllegalStateException("Won't have more data");
         }
+        ByteBuffer ret = nextBlock;
+        nextBlock = null;
+        return ret;
+    }
+
+    private Block take() {
         try {
-            current++;
-            byte[] ret = null;
+            Block ret = null;
 
             while (ret == null && coprocException == null && deadline > System.currentTimeMillis()) {
                 ret = queue.poll(1000, TimeUnit.MILLISECONDS);
             }
 
             if (coprocException != null) {
+                cancel();
                 throw Throwables.propagate(coprocException);
             }
 
             if (ret == null) {
+                cancel();
                 throw new RuntimeException("Timeout visiting cube! Check why coprocessor exception is not sent back? In coprocessor Self-termination is checked every " + //
                         GTScanRequest.terminateCheckInterval + " scanned rows, the configured timeout(" + coprocessorTimeout + ") cannot support this many scans?");
             }
@@ -84,16 +121,74 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
         throw new NotImplementedException();
     }
 
-    public void append(byte[] data) {
-        try {
-            queue.put(data);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("error when waiting queue", e);
+    /**
+     * append the last block of a shard
+     */
+    public void append(ByteBuffer data) {
+        put(new Block(data, null));
+        put(SHARD_END);
+    }
+
+    /**
+     * append a block of a shard that has more blocks to come, requestNext is run by the consumer
+     * when it takes this block, and should request the next block of the shard without waiting for it
+     */
+    public void appendPartial(ByteBuffer data, Runnable requestNext) {
+        put(new Block(data, requestNext));
+    }
+
+    private void put(Block block) {
+        // give up once cancelled, nobody is going to read it
+        if (!cancelled && !queue.offer(block)) {
+            throw new IllegalStateException("More than one block of a shard in queue");
         }
     }
 
     public void notifyCoprocException(Throwable ex) {
         coprocException = ex;
     }
+
+    /**
+     * run the listener on cancellation, or right now if already cancelled
+     */
+    public void addCancelListener(Runnable listener) {
+        cancelListeners.add(listener);
+        if (cancelled && cancelListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    public void removeCancelListener(Runnable listener) {
+        cancelListeners.remove(listener);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * stop waiting for the remaining shards, called by the consumer once it needs no more rows
+     */
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        queue.clear();
+        for (Runnable listener : cancelListeners) {
+            if (cancelListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
+    private static class Block {
+        final ByteBuffer data;
+        final Runnable requestNext;
+
+        Block(ByteBuffer data, Runnable requestNext) {
+            this.data = data;
+            this.requestNext = requestNext;
+        }
+    }
 }
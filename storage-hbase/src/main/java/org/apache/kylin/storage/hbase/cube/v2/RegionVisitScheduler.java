@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the region visits of all queries on a bounded set of threads.
+ *
+ * Each query has its own FIFO of visits, and no more than maxPerQuery of them run at the same time. A free
+ * thread goes round robin across the queries that have visits pending, so a query fanning out to hundreds of
+ * regions cannot starve the others. Queries that have submitted no more than interactiveVisits visits are
+ * served before the rest, i.e. a query is demoted to the batch lane once it has fanned out that far.
+ * A region returning its rows in several blocks is visited once per block, the next visit is submitted
+ * when the query takes the previous block, so a query slow to consume holds no thread in between.
+ */
+public class RegionVisitScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegionVisitScheduler.class);
+
+    private static RegionVisitScheduler instance;
+
+    public static synchronized RegionVisitScheduler getInstance() {
+        if (instance == null) {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            instance = new RegionVisitScheduler(config.getHBaseRpcSchedulerThreads(), config.getHBaseRpcMaxParallelismPerQuery(), config.getHBaseRpcInteractiveVisits());
+            logger.info("Creating region visit scheduler with {} threads, {} per query", instance.threads, instance.maxPerQuery);
+        }
+        return instance;
+    }
+
+    private final int threads;
+    private final int maxPerQuery;
+    private final int interactiveVisits;
+    private final ThreadPoolExecutor workers;
+
+    // queries with visits pending or running, in round robin order
+    private final LinkedHashMap<String, QueryVisits> queries = new LinkedHashMap<String, QueryVisits>();
+    private int running = 0;
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitMillis = new AtomicLong();
+    private volatile long maxQueueWaitMillis = 0;
+
+    RegionVisitScheduler(int threads, int maxPerQuery, int interactiveVisits) {
+        this.threads = threads;
+        this.maxPerQuery = maxPerQuery;
+        this.interactiveVisits = interactiveVisits;
+        // never queues by itself, a visit is handed over only when a thread is free
+        this.workers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * queue a region visit of the query, visits of the same query start in submission order
+     */
+    public void submit(String queryKey, Runnable visit) {
+        synchronized (this) {
+            QueryVisits q = queries.get(queryKey);
+            if (q == null) {
+                q = new QueryVisits(queryKey);
+                queries.put(queryKey, q);
+            }
+            q.pending.add(new Visit(q, visit));
+            q.submitted++;
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Visit next;
+            synchronized (this) {
+                if (running >= threads) {
+                    return;
+                }
+                next = pollNext();
+                if (next == null) {
+                    return;
+                }
+                running++;
+                next.query.running++;
+            }
+            workers.execute(next);
+        }
+    }
+
+    // the first runnable query of the interactive lane, or else of the batch lane
+    private Visit pollNext() {
+        QueryVisits batch = null;
+        QueryVisits chosen = null;
+        for (QueryVisits q : queries.values()) {
+            if (q.pending.isEmpty() || q.running >= maxPerQuery) {
+                continue;
+            }
+            if (q.submitted <= interactiveVisits) {
+                chosen = q;
+                break;
+            }
+            if (batch == null) {
+                batch = q;
+            }
+        }
+        if (chosen == null) {
+            chosen = batch;
+        }
+        if (chosen == null) {
+            return null;
+        }
+
+        // move to the tail for round robin
+        queries.remove(chosen.queryKey);
+        queries.put(chosen.queryKey, chosen);
+        return chosen.pending.poll();
+    }
+
+    private void finish(Visit visit) {
+        QueryVisits q = visit.query;
+        synchronized (this) {
+            running--;
+            q.running--;
+            if (q.running > 0 || !q.pending.isEmpty()) {
+                q = null;
+            } else {
+                queries.remove(q.queryKey);
+            }
+        }
+        if (q != null && logger.isDebugEnabled()) {
+            logger.debug("Query {} finished {} region visits, queue wait avg {} ms, max {} ms", q.queryKey, q.submitted, q.totalWaitMillis / q.submitted, q.maxWaitMillis);
+        }
+        dispatch();
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    public long getTotalQueueWaitMillis() {
+        return totalQueueWaitMillis.get();
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized int getPendingCount() {
+        int n = 0;
+        for (QueryVisits q : queries.values()) {
+            n += q.pending.size();
+        }
+        return n;
+    }
+
+    private static class QueryVisits {
+        final String queryKey;
+        final ArrayDeque<Visit> pending = new ArrayDeque<Visit>();
+        int submitted;
+        int running;
+        long totalWaitMillis; // guarded by the scheduler, updated by the visits
+        long maxWaitMillis;
+
+        QueryVisits(String queryKey) {
+            this.queryKey = queryKey;
+        }
+    }
+
+    private class Visit implements Runnable {
+        final QueryVisits query;
+        final Runnable task;
+        final long submitTime = System.currentTimeMillis();
+
+        Visit(QueryVisits query, Runnable task) {
+            this.query = query;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long wait = System.currentTimeMillis() - submitTime;
+            dispatchedCount.incrementAndGet();
+            totalQueueWaitMillis.addAndGet(wait);
+            synchronized (RegionVisitScheduler.this) {
+                query.totalWaitMillis += wait;
+                query.maxWaitMillis = Math.max(query.maxWaitMillis, wait);
+                maxQueueWaitMillis = Math.max(maxQueueWaitMillis, wait);
+            }
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.error("Region visit of query " + query.queryKey + " failed", e);
+            } finally {
+                finish(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Reusable buffers to decompress coprocessor responses into, so that each response block does not
+ * allocate a new array of its full size.
+ *
+ * Buffers are of power of 2 sizes. A buffer is given back once all rows of its block are consumed,
+ * only buffers lent by the pool are taken back, and no more than maxPooledBytes are kept idle.
+ */
+public class ResponseBufferPool {
+
+    private static final int MIN_SIZE_SHIFT = 16; // 64 KB
+    private static final int MAX_SIZE_SHIFT = 30;
+
+    private static ResponseBufferPool instance;
+
+    public static synchronized ResponseBufferPool getInstance() {
+        if (instance == null) {
+            instance = new ResponseBufferPool((long) KylinConfig.getInstanceFromEnv().getEndpointDecodeBufferPoolMB() * 1024 * 1024);
+        }
+        return instance;
+    }
+
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedQueue<byte[]>[] idle = new ConcurrentLinkedQueue[MAX_SIZE_SHIFT + 1];
+    // weak identity set, a buffer never given back, e.g. of a cancelled scan, is simply garbage collected
+    private final Set<byte[]> lent = Collections.newSetFromMap(new MapMaker().weakKeys().<byte[], Boolean> makeMap());
+
+    ResponseBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = MIN_SIZE_SHIFT; i <= MAX_SIZE_SHIFT; i++) {
+            idle[i] = new ConcurrentLinkedQueue<byte[]>();
+        }
+    }
+
+    /**
+     * a buffer of at least minSize bytes, with garbage in it
+     */
+    public byte[] borrow(int minSize) {
+        int shift = sizeShift(minSize);
+        if (shift > MAX_SIZE_SHIFT) {
+            return new byte[minSize]; // too large to pool
+        }
+
+        byte[] ret = idle[shift].poll();
+        if (ret != null) {
+            pooledBytes.addAndGet(-ret.length);
+        } else {
+            ret = new byte[1 << shift];
+        }
+        lent.add(ret);
+        return ret;
+    }
+
+    /**
+     * give back a buffer, ignored if the buffer is not from this pool
+     */
+    public void release(byte[] buffer) {
+        if (!lent.remove(buffer)) {
+            return;
+        }
+        if (pooledBytes.addAndGet(buffer.length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-buffer.length);
+            return;
+        }
+        idle[sizeShift(buffer.length)].offer(buffer);
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static int sizeShift(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_SIZE_SHIFT);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.cube.gridtable.BlockSkipEvaluator;
+import org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Walks the {@link BlockSkipIndex} along with a region scan, and tells where to reseek when the block of
+ * the current row cannot match the filter.
+ */
+class BlockSkipper implements Closeable {
+
+    static final byte[] END_OF_SCAN = new byte[0];
+
+    private final BlockSkipEvaluator evaluator;
+    private final RegionScanner indexScanner;
+    private final int preambleLen;
+    private final ByteArray[] min;
+    private final ByteArray[] max;
+
+    private byte[] blockStart; // block of the current row, null if not known
+    private boolean blockMayMatch;
+    private Cell nextBlock; // the block after, null if none
+    private boolean indexHasMore;
+    private final List<Cell> indexCells = Lists.newArrayList();
+
+    private int skippedBlocks = 0;
+
+    BlockSkipper(HRegion region, Scan dataScan, BlockSkipEvaluator evaluator, int columnCount, int preambleLen) throws IOException {
+        this.evaluator = evaluator;
+        this.preambleLen = preambleLen;
+        this.min = new ByteArray[columnCount];
+        this.max = new ByteArray[columnCount];
+
+        // the block holding the start row may start before it
+        byte[] indexStart = dataScan.getStartRow();
+        if (indexStart.length > 0 && region.getRegionInfo().containsRow(indexStart)) {
+            Result before = region.getClosestRowBefore(indexStart, BlockSkipIndex.FAMILY);
+            if (before != null && !before.isEmpty()) {
+                indexStart = before.getRow();
+            }
+        }
+
+        Scan indexScan = new Scan(indexStart, dataScan.getStopRow());
+        indexScan.addColumn(BlockSkipIndex.FAMILY, BlockSkipIndex.QUALIFIER);
+        indexScan.setCaching(dataScan.getCaching());
+        indexScan.setCacheBlocks(true);
+        this.indexScanner = region.getScanner(indexScan);
+        this.indexHasMore = true;
+        this.nextBlock = readIndex();
+    }
+
+    /**
+     * return null if the row may match, or the row to reseek to, or END_OF_SCAN if no later row can match
+     */
+    byte[] skipTo(byte[] row, int offset, int length) throws IOException {
+        while (nextBlock != null && Bytes.compareTo(nextBlock.getRowArray(), nextBlock.getRowOffset(), nextBlock.getRowLength(), row, offset, length) <= 0) {
+            blockStart = Bytes.copy(nextBlock.getRowArray(), nextBlock.getRowOffset(), nextBlock.getRowLength());
+            blockMayMatch = evaluate(nextBlock);
+            nextBlock = readIndex();
+        }
+
+        if (blockStart == null || blockMayMatch) {
+            return null;
+        }
+        // a block never spans cuboids or shards, guard against rows not covered by the index
+        if (length < preambleLen || !Bytes.equals(blockStart, 0, preambleLen, row, offset, preambleLen)) {
+            return null;
+        }
+
+        skippedBlocks++;
+        return nextBlock == null ? END_OF_SCAN : Bytes.copy(nextBlock.getRowArray(), nextBlock.getRowOffset(), nextBlock.getRowLength());
+    }
+
+    int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    private boolean evaluate(Cell indexCell) {
+        for (int i = 0; i < min.length; i++) {
+            min[i] = null;
+            max[i] = null;
+        }
+        BlockSkipIndex.decode(indexCell.getValueArray(), indexCell.getValueOffset(), indexCell.getValueLength(), min, max);
+        return evaluator.mayMatch(min, max);
+    }
+
+    private Cell readIndex() throws IOException {
+        while (indexHasMore) {
+            indexCells.clear();
+            indexHasMore = indexScanner.nextRaw(indexCells);
+            if (!indexCells.isEmpty()) {
+                return indexCells.get(0);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        indexScanner.close();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.common.util.BytesSerializer;
+import org.apache.kylin.common.util.BytesUtil;
+
+/**
+ * Where a paged cube visit stopped inside a region, so that the next visit can resume from there.
+ *
+ * The client treats it as an opaque token and simply sends it back with the next request.
+ */
+public class CubeVisitContinuation {
+
+    public int rawScanIndex; // index of the raw scan that was interrupted
+    public byte[] lastRowKey; // last hbase row returned, the next visit starts right after it
+    public long returnedRowCount; // rows returned by all previous blocks, for storage limit check
+    public long scannedRowCount; // rows scanned by all previous blocks, for scan threshold check
+
+    public CubeVisitContinuation(int rawScanIndex, byte[] lastRowKey, long returnedRowCount, long scannedRowCount) {
+        this.rawScanIndex = rawScanIndex;
+        this.lastRowKey = lastRowKey;
+        this.returnedRowCount = returnedRowCount;
+        this.scannedRowCount = scannedRowCount;
+    }
+
+    /**
+     * the smallest row key that is greater than lastRowKey
+     */
+    public byte[] getResumeStartKey() {
+        byte[] ret = new byte[lastRowKey.length + 1];
+        System.arraycopy(lastRowKey, 0, ret, 0, lastRowKey.length);
+        return ret;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(lastRowKey.length + 32);
+        serializer.serialize(this, buffer);
+        byte[] ret = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, ret, 0, ret.length);
+        return ret;
+    }
+
+    public static CubeVisitContinuation fromBytes(byte[] bytes) {
+        return serializer.deserialize(ByteBuffer.wrap(bytes));
+    }
+
+    public static final BytesSerializer<CubeVisitContinuation> serializer = new BytesSerializer<CubeVisitContinuation>() {
+        @Override
+        public void serialize(CubeVisitContinuation value, ByteBuffer out) {
+            BytesUtil.writeVInt(value.rawScanIndex, out);
+            BytesUtil.writeByteArray(value.lastRowKey, out);
+            BytesUtil.writeVLong(value.returnedRowCount, out);
+            BytesUtil.writeVLong(value.scannedRowCount, out);
+        }
+
+        @Override
+        public CubeVisitContinuation deserialize(ByteBuffer in) {
+            int rawScanIndex = BytesUtil.readVInt(in);
+            byte[] lastRowKey = BytesUtil.readByteArray(in);
+            long returnedRowCount = BytesUtil.readVLong(in);
+            long scannedRowCount = BytesUtil.readVLong(in);
+            return new CubeVisitContinuation(rawScanIndex, lastRowKey, returnedRowCount, scannedRowCount);
+        }
+    };
+}
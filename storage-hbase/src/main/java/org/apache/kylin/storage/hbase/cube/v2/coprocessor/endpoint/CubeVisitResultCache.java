@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest.IntList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Caches the compressed rows of complete aggregated cube visits on this region server, keyed by
+ * (region name, request digest).
+ *
+ * A cube HTable is never written after it is built, a refreshed or merged segment comes with a new HTable,
+ * and the region name changes on split or table re-creation. So an entry never gets stale. Entries of a
+ * region are dropped when the region closes on this server, the rest is LRU by size.
+ */
+public class CubeVisitResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CubeVisitResultCache.class);
+
+    private static CubeVisitResultCache instance;
+
+    // one per region server, sized by the config of the first visit, the env config is reset as regions close
+    public static synchronized CubeVisitResultCache getInstance(KylinConfig config) {
+        if (instance == null) {
+            instance = new CubeVisitResultCache(config.getEndpointResultCacheMaxMB(), config.getEndpointResultCacheMaxEntryMB());
+            logger.info("Created endpoint result cache of {} MB", config.getEndpointResultCacheMaxMB());
+        }
+        return instance;
+    }
+
+    /** drop the entries of a region no longer served by this region server */
+    public static synchronized void onRegionClosed(String regionName) {
+        if (instance != null) {
+            instance.evictRegion(regionName);
+        }
+    }
+
+    /**
+     * digest of what decides the rows of a visit, i.e. all but the properties, query id and paging of the request
+     */
+    public static String digest(CubeVisitRequest request, GTScanRequest scanReq) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(scanReq.getDigest());
+        hasher.putBytes(request.getHbaseRawScan().toByteArray());
+        hasher.putInt(request.getRowkeyPreambleSize());
+        for (IntList intList : request.getHbaseColumnsToGTList()) {
+            hasher.putInt(-1);
+            for (Integer i : intList.getIntsList()) {
+                hasher.putInt(i);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    // ============================================================================
+
+    private final long maxEntryBytes;
+    private final Cache<Key, Entry> cache;
+
+    CubeVisitResultCache(int maxMB, int maxEntryMB) {
+        this.maxEntryBytes = (long) maxEntryMB * 1024 * 1024;
+        this.cache = CacheBuilder.newBuilder().maximumWeight((long) maxMB * 1024 * 1024).weigher(new Weigher<Key, Entry>() {
+            @Override
+            public int weigh(Key key, Entry value) {
+                return value.compressedRows.length;
+            }
+        }).build();
+    }
+
+    /**
+     * return the cached entry if its codec is accepted by the request, or null
+     */
+    public Entry get(String regionName, String digest, List<String> acceptedCodecs, boolean legacyCompress) {
+        Entry entry = cache.getIfPresent(new Key(regionName, digest));
+        if (entry == null) {
+            return null;
+        }
+        boolean accepted = acceptedCodecs.isEmpty() ? entry.codec == (legacyCompress ? ResultCodec.DEFLATE : ResultCodec.NONE) //
+                : entry.codec == ResultCodec.NONE || acceptedCodecs.contains(entry.codec.getId());
+        return accepted ? entry : null;
+    }
+
+    /** cache the compressed rows, unless they are larger than the max entry size */
+    public void put(String regionName, String digest, Entry entry) {
+        if (entry.compressedRows.length > maxEntryBytes) {
+            return;
+        }
+        cache.put(new Key(regionName, digest), entry);
+    }
+
+    public void evictRegion(String regionName) {
+        int count = 0;
+        for (Iterator<Key> it = cache.asMap().keySet().iterator(); it.hasNext();) {
+            if (it.next().regionName.equals(regionName)) {
+                it.remove();
+                count++;
+            }
+        }
+        if (count > 0) {
+            logger.info("Evicted {} endpoint result cache entries of region {}", count, regionName);
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private static class Key {
+        final String regionName;
+        final String digest;
+
+        Key(String regionName, String digest) {
+            this.regionName = regionName;
+            this.digest = digest;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(regionName, digest);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return regionName.equals(other.regionName) && digest.equals(other.digest);
+        }
+    }
+
+    public static class Entry {
+        final byte[] compressedRows;
+        final ResultCodec codec;
+        final long scannedRowCount; // of the visit that filled the entry
+
+        public Entry(byte[] compressedRows, ResultCodec codec, long scannedRowCount) {
+            this.compressedRows = compressedRows;
+            this.codec = codec;
+            this.scannedRowCount = scannedRowCount;
+        }
+    }
+}
@@ -25,14 +25,15 @@ import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.mutable.MutableBoolean;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.Coprocessor;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.client.Scan;
@@ -45,10 +46,12 @@ import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
-import org.apache.kylin.common.util.CompressionUtils;
+import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.common.util.SetThreadName;
+import org.apache.kylin.cube.gridtable.BlockSkipEvaluator;
 import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanCancelledException;
 import org.apache.kylin.gridtable.GTScanExceedThresholdException;
 import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GTScanTimeoutException;
@@ -57,6 +60,7 @@ import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.gridtable.StorageSideBehavior;
 import org.apache.kylin.measure.BufferedMeasureCodec;
 import org.apache.kylin.metadata.realization.IRealizationConstants;
+import org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex;
 import org.apache.kylin.storage.hbase.cube.v2.CellListIterator;
 import org.apache.kylin.storage.hbase.cube.v2.CubeHBaseRPC;
 import org.apache.kylin.storage.hbase.cube.v2.HBaseReadonlyStore;
@@ -66,7 +70,6 @@ import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.Cub
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.protobuf.HBaseZeroCopyByteString;
 import com.google.protobuf.RpcCallback;
@@ -79,30 +82,74 @@ import com.sun.management.OperatingSystemMXBean;
 public class CubeVisitService extends CubeVisitProtos.CubeVisitService implements Coprocessor, CoprocessorService {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeVisitService.class);
-    //TODO limit memory footprint
-    private static final int MEMORY_LIMIT = 500 * 1024 * 1024;
+
+    // shared by all visits on this region server
+    private static MemoryBudgetController memBudget;
+
+    private static synchronized MemoryBudgetController getMemoryBudget(KylinConfig config) {
+        if (memBudget == null) {
+            // cap by the max heap, the free heap at the first visit depends on whatever else happens to be running
+            int heapLimitMB = (int) (Runtime.getRuntime().maxMemory() / MemoryBudgetController.ONE_MB / 2);
+            int budgetMB = Math.max(Math.min(config.getEndpointMemoryBudgetMB(), heapLimitMB), 0);
+            logger.info("Memory budget of concurrent cube visits is " + budgetMB + " MB");
+            memBudget = new MemoryBudgetController(budgetMB, heapLimitMB);
+        }
+        return memBudget;
+    }
 
     private RegionCoprocessorEnvironment env;
 
     private long serviceStartTime;
 
+    // an instance serves one region
+    private final ResultCodec.Stats codecStats = new ResultCodec.Stats();
+
     static class InnerScannerAsIterator implements CellListIterator {
         private RegionScanner regionScanner;
+        private BlockSkipper blockSkipper;
         private List<Cell> nextOne = Lists.newArrayList();
         private List<Cell> ret = Lists.newArrayList();
 
         private boolean hasMore;
 
         public InnerScannerAsIterator(RegionScanner regionScanner) {
+            this(regionScanner, null);
+        }
+
+        public InnerScannerAsIterator(RegionScanner regionScanner, BlockSkipper blockSkipper) {
             this.regionScanner = regionScanner;
+            this.blockSkipper = blockSkipper;
+            this.hasMore = true;
 
             try {
-                hasMore = regionScanner.nextRaw(nextOne);
+                fetchNext();
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        private void fetchNext() throws IOException {
+            if (!hasMore) {
+                return;
+            }
+            hasMore = regionScanner.nextRaw(nextOne);
+
+            while (blockSkipper != null && !nextOne.isEmpty()) {
+                Cell cell = nextOne.get(0);
+                byte[] reseekTo = blockSkipper.skipTo(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
+                if (reseekTo == null) {
+                    break;
+                }
+                nextOne.clear();
+                if (!hasMore || reseekTo == BlockSkipper.END_OF_SCAN) {
+                    hasMore = false;
+                    break;
+                }
+                regionScanner.reseek(reseekTo);
+                hasMore = regionScanner.nextRaw(nextOne);
+            }
+        }
+
         @Override
         public boolean hasNext() {
             return !nextOne.isEmpty();
@@ -118,9 +165,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             ret.addAll(nextOne);
             nextOne.clear();
             try {
-                if (hasMore) {
-                    hasMore = regionScanner.nextRaw(nextOne);
-                }
+                fetchNext();
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -147,6 +192,19 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         Bytes.putBytes(rawScan.endKey, 0, regionStartKey, 0, shardLength);
     }
 
+    // null if the region has no skip index, or the filter cannot tell a block has no match
+    private BlockSkipEvaluator createBlockSkipEvaluator(HRegion region, GTScanRequest scanReq, StorageSideBehavior behavior) {
+        if (!behavior.filterToggledOn() || scanReq.getFilterPushDown() == null || !region.getTableDesc().hasFamily(BlockSkipIndex.FAMILY)) {
+            return null;
+        }
+        try {
+            return new BlockSkipEvaluator(scanReq.getInfo(), scanReq.getFilterPushDown());
+        } catch (RuntimeException e) {
+            logger.warn("Skip index is not used as the filter cannot be translated: " + scanReq.getFilterPushDown(), e);
+            return null;
+        }
+    }
+
     private List<RawScan> deserializeRawScans(ByteBuffer in) {
         int rawScanCount = BytesUtil.readVInt(in);
         List<RawScan> ret = Lists.newArrayList();
@@ -169,11 +227,14 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
     @Override
     public void visitCube(final RpcController controller, final CubeVisitProtos.CubeVisitRequest request, RpcCallback<CubeVisitProtos.CubeVisitResponse> done) {
         List<RegionScanner> regionScanners = Lists.newArrayList();
+        List<BlockSkipper> blockSkippers = Lists.newArrayList();
         HRegion region = null;
 
         StringBuilder sb = new StringBuilder();
         byte[] allRows;
         String debugGitTag = "";
+        MemoryBudgetController visitBudget = null;
+        MemoryBudgetController.MemoryConsumer visitAdmission = null;
 
         String queryId = request.hasQueryId() ? request.getQueryId() : "UnknownId";
         try (SetThreadName ignored = new SetThreadName("Query %s", queryId)) {
@@ -198,27 +259,97 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             }
             StorageSideBehavior behavior = StorageSideBehavior.valueOf(scanReq.getStorageBehavior());
             final List<RawScan> hbaseRawScans = deserializeRawScans(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getHbaseRawScan())));
+            final int maxResponseBytes = request.hasMaxResponseBytes() ? request.getMaxResponseBytes() : 0;
+            final CubeVisitContinuation continuation = request.hasContinuation() ? CubeVisitContinuation.fromBytes(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getContinuation())) : null;
+            final int firstRawScanIndex = continuation == null ? 0 : continuation.rawScanIndex;
+            final long previousReturnedRowCount = continuation == null ? 0 : continuation.returnedRowCount;
+            final long previousScannedRowCount = continuation == null ? 0 : continuation.scannedRowCount;
 
             appendProfileInfo(sb, "start latency: " + (this.serviceStartTime - scanReq.getStartTime()));
 
+            // only complete aggregated visits are cached, a paged visit is mostly raw records
+            CubeVisitResultCache resultCache = null;
+            String resultCacheDigest = null;
+            if (kylinConfig.isEndpointResultCacheEnabled() && scanReq.hasAggregation() && continuation == null) {
+                resultCache = CubeVisitResultCache.getInstance(kylinConfig);
+                resultCacheDigest = CubeVisitResultCache.digest(request, scanReq);
+                CubeVisitResultCache.Entry cached = resultCache.get(region.getRegionNameAsString(), resultCacheDigest, request.getCompressionCodecsList(), kylinConfig.getCompressionResult());
+                if (cached != null) {
+                    appendProfileInfo(sb, "result cache hit, scanned " + cached.scannedRowCount + " rows when cached");
+                    CubeVisitProtos.CubeVisitResponse.Builder responseBuilder = CubeVisitProtos.CubeVisitResponse.newBuilder();
+                    if (request.getCompressionCodecsCount() > 0) {
+                        responseBuilder.setCompressionCodec(cached.codec.getId());
+                    }
+                    done.run(responseBuilder.//
+                            setCompressedRows(HBaseZeroCopyByteString.wrap(cached.compressedRows)).//
+                            setStats(CubeVisitProtos.CubeVisitResponse.Stats.newBuilder().//
+                                    setAggregatedRowCount(0).//
+                                    setScannedRowCount(0).//
+                                    setServiceStartTime(serviceStartTime).//
+                                    setServiceEndTime(System.currentTimeMillis()).//
+                                    setHostname(InetAddress.getLocalHost().getHostName()).//
+                                    setEtcMsg(sb.toString()).//
+                                    setNormalComplete(1).build())
+                            .//
+                            build());
+                    return;
+                }
+            }
+
+            // wait in queue if concurrent visits have used up the budget, instead of all of them piling up on heap
+            if (kylinConfig.getEndpointMemoryBudgetMB() > 0) {
+                visitBudget = getMemoryBudget(kylinConfig);
+                final String admissionName = "Visit of query " + queryId;
+                visitAdmission = new MemoryBudgetController.MemoryConsumer() {
+                    @Override
+                    public int freeUp(int mb) {
+                        return 0;
+                    }
+
+                    @Override
+                    public String toString() {
+                        return admissionName;
+                    }
+                };
+                long admissionStart = System.currentTimeMillis();
+                try {
+                    int admissionMB = Math.min(kylinConfig.getEndpointMemoryAdmissionMB(), visitBudget.getTotalBudgetMB());
+                    visitBudget.reserveInsist(visitAdmission, admissionMB, serviceStartTime + scanReq.getTimeout());
+                } catch (MemoryBudgetController.NotEnoughBudgetException e) {
+                    visitAdmission = null;
+                    throw new IOException("Region server is out of memory budget for cube visits, " + visitBudget.getRemainingBudgetMB() + " MB remaining of " + visitBudget.getTotalBudgetMB() + " MB", e);
+                }
+                appendProfileInfo(sb, "admitted after " + (System.currentTimeMillis() - admissionStart) + " ms");
+            }
+
             final List<InnerScannerAsIterator> cellListsForeachRawScan = Lists.newArrayList();
+            final BlockSkipEvaluator blockSkipEvaluator = createBlockSkipEvaluator(region, scanReq, behavior);
 
-            for (RawScan hbaseRawScan : hbaseRawScans) {
+            for (int i = firstRawScanIndex; i < hbaseRawScans.size(); i++) {
+                RawScan hbaseRawScan = hbaseRawScans.get(i);
                 if (request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN > 0) {
                     //if has shard, fill region shard to raw scan start/end
                     updateRawScanByCurrentRegion(hbaseRawScan, region, request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN);
                 }
+                if (continuation != null && i == continuation.rawScanIndex) {
+                    //resume right after the last row returned by previous block
+                    hbaseRawScan.startKey = continuation.getResumeStartKey();
+                }
 
                 Scan scan = CubeHBaseRPC.buildScan(hbaseRawScan);
                 RegionScanner innerScanner = region.getScanner(scan);
                 regionScanners.add(innerScanner);
 
-                InnerScannerAsIterator cellListIterator = new InnerScannerAsIterator(innerScanner);
+                BlockSkipper blockSkipper = null;
+                if (blockSkipEvaluator != null) {
+                    blockSkipper = new BlockSkipper(region, scan, blockSkipEvaluator, scanReq.getInfo().getColumnCount(), request.getRowkeyPreambleSize());
+                    blockSkippers.add(blockSkipper);
+                }
+
+                InnerScannerAsIterator cellListIterator = new InnerScannerAsIterator(innerScanner, blockSkipper);
                 cellListsForeachRawScan.add(cellListIterator);
             }
 
-            final Iterator<List<Cell>> allCellLists = Iterators.concat(cellListsForeachRawScan.iterator());
-
             if (behavior.ordinal() < StorageSideBehavior.SCAN.ordinal()) {
                 //this is only for CoprocessorBehavior.RAW_SCAN case to profile hbase scan speed
                 List<Cell> temp = Lists.newArrayList();
@@ -233,16 +364,24 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             if (behavior.ordinal() < StorageSideBehavior.SCAN_FILTER_AGGR_CHECKMEM.ordinal()) {
                 scanReq.disableAggCacheMemCheck(); // disable mem check if so told
+            } else {
+                scanReq.setAggCacheMemBudget(visitBudget);
             }
 
             final MutableBoolean scanNormalComplete = new MutableBoolean(true);
             final long deadline = serviceStartTime + scanReq.getTimeout();
             logger.info("deadline(local) is " + deadline);
             final long storagePushDownLimit = scanReq.getStoragePushDownLimit();
+            final String visitId = request.hasVisitId() ? request.getVisitId() : null;
+
+            // remember where the scan is, so that a paged visit can tell where to resume
+            final int[] lastRawScanIndex = new int[] { firstRawScanIndex };
+            final Cell[] lastRowCell = new Cell[1];
 
             final CellListIterator cellListIterator = new CellListIterator() {
 
-                int counter = 0;
+                long counter = previousScannedRowCount;
+                int current = 0;
 
                 @Override
                 public void close() throws IOException {
@@ -263,12 +402,28 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                     if (counter % (10 * GTScanRequest.terminateCheckInterval) == 1) {
                         logger.info("scanning " + counter + "th row from HBase.");
                     }
-                    return allCellLists.hasNext();
+                    if (counter % GTScanRequest.terminateCheckInterval == 1 && CubeVisitCancellations.isCancelled(visitId)) {
+                        throw new GTScanCancelledException("Visit " + visitId + " cancelled by client after scanned " + counter + " rows");
+                    }
+                    return seekNonEmpty();
                 }
 
                 @Override
                 public List<Cell> next() {
-                    return allCellLists.next();
+                    if (!seekNonEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    List<Cell> row = cellListsForeachRawScan.get(current).next();
+                    lastRawScanIndex[0] = firstRawScanIndex + current;
+                    lastRowCell[0] = row.get(0);
+                    return row;
+                }
+
+                private boolean seekNonEmpty() {
+                    while (current < cellListsForeachRawScan.size() && !cellListsForeachRawScan.get(current).hasNext()) {
+                        current++;
+                    }
+                    return current < cellListsForeachRawScan.size();
                 }
 
                 @Override
@@ -286,6 +441,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BufferedMeasureCodec.DEFAULT_BUFFER_SIZE);//ByteArrayOutputStream will auto grow
             int finalRowCount = 0;
+            CubeVisitContinuation nextContinuation = null;
 
             try {
                 for (GTRecord oneRecord : finalScanner) {
@@ -294,6 +450,9 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                         if (System.currentTimeMillis() > deadline) {
                             throw new GTScanTimeoutException("finalScanner timeouts after contributed " + finalRowCount);
                         }
+                        if (CubeVisitCancellations.isCancelled(visitId)) {
+                            throw new GTScanCancelledException("Visit " + visitId + " cancelled by client after contributed " + finalRowCount);
+                        }
                     }
 
                     buffer.clear();
@@ -309,11 +468,19 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                     finalRowCount++;
 
                     //if it's doing storage aggr, then should rely on GTAggregateScanner's limit check
-                    if (!scanReq.isDoingStorageAggregation() && finalRowCount >= storagePushDownLimit) {
+                    if (!scanReq.isDoingStorageAggregation() && previousReturnedRowCount + finalRowCount >= storagePushDownLimit) {
                         //read one more record than limit
                         logger.info("The finalScanner aborted because storagePushDownLimit is satisfied");
                         break;
                     }
+
+                    //aggregated rows cannot be resumed by row key, so only plain scans are paged
+                    if (maxResponseBytes > 0 && !scanReq.isDoingStorageAggregation() && outputStream.size() >= maxResponseBytes) {
+                        nextContinuation = new CubeVisitContinuation(lastRawScanIndex[0], CellUtil.cloneRow(lastRowCell[0]), //
+                                previousReturnedRowCount + finalRowCount, previousScannedRowCount + finalScanner.getScannedRowCount());
+                        logger.info("The finalScanner paused after " + finalRowCount + " rows because response block is full, the rest will be returned in next block");
+                        break;
+                    }
                 }
             } catch (GTScanTimeoutException e) {
                 scanNormalComplete.setValue(false);
@@ -321,11 +488,21 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             } catch (GTScanExceedThresholdException e) {
                 scanNormalComplete.setValue(false);
                 logger.info("The cube visit did not finish normally because scan num exceeds threshold", e);
+            } catch (GTScanCancelledException e) {
+                scanNormalComplete.setValue(false);
+                logger.info("The cube visit did not finish normally because it is cancelled: " + e.getMessage());
             } finally {
                 finalScanner.close();
             }
 
             appendProfileInfo(sb, "agg done");
+            if (!blockSkippers.isEmpty()) {
+                int skippedBlocks = 0;
+                for (BlockSkipper blockSkipper : blockSkippers) {
+                    skippedBlocks += blockSkipper.getSkippedBlocks();
+                }
+                appendProfileInfo(sb, "skipped " + skippedBlocks + " blocks by skip index");
+            }
 
             //outputStream.close() is not necessary
             byte[] compressedAllRows;
@@ -334,13 +511,16 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             } else {
                 allRows = new byte[0];
             }
-            if (!kylinConfig.getCompressionResult()) {
-                compressedAllRows = allRows;
-            } else {
-                compressedAllRows = CompressionUtils.compress(allRows);
-            }
+            ResultCodec codec = ResultCodec.select(request.getCompressionCodecsList(), kylinConfig.getCompressionResult(), //
+                    allRows.length, kylinConfig.getEndpointCompressMinBytes(), kylinConfig.getEndpointCompressMaxRatio(), codecStats);
+            compressedAllRows = codec.compress(allRows);
+            codecStats.record(codec, allRows.length, compressedAllRows.length);
+
+            appendProfileInfo(sb, "compress done by " + codec.getId());
 
-            appendProfileInfo(sb, "compress done");
+            if (resultCache != null && scanNormalComplete.booleanValue() && nextContinuation == null) {
+                resultCache.put(region.getRegionNameAsString(), resultCacheDigest, new CubeVisitResultCache.Entry(compressedAllRows, codec, finalScanner.getScannedRowCount()));
+            }
 
             OperatingSystemMXBean operatingSystemMXBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
             double systemCpuLoad = operatingSystemMXBean.getSystemCpuLoad();
@@ -351,6 +531,12 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             sb.append(" debugGitTag:" + debugGitTag);
 
             CubeVisitProtos.CubeVisitResponse.Builder responseBuilder = CubeVisitProtos.CubeVisitResponse.newBuilder();
+            if (nextContinuation != null && scanNormalComplete.booleanValue()) {
+                responseBuilder.setContinuation(HBaseZeroCopyByteString.wrap(nextContinuation.toBytes()));
+            }
+            if (request.getCompressionCodecsCount() > 0) {
+                responseBuilder.setCompressionCodec(codec.getId());
+            }
             done.run(responseBuilder.//
                     setCompressedRows(HBaseZeroCopyByteString.wrap(compressedAllRows)).//too many array copies 
                     setStats(CubeVisitProtos.CubeVisitResponse.Stats.newBuilder().//
@@ -376,9 +562,15 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             IOException wrapped = new IOException("OOM in coprocessor " + debugGitTag, oom);
             ResponseConverter.setControllerException(controller, wrapped);
         } finally {
+            if (visitAdmission != null) {
+                visitBudget.reserve(visitAdmission, 0);
+            }
             for (RegionScanner innerScanner : regionScanners) {
                 IOUtils.closeQuietly(innerScanner);
             }
+            for (BlockSkipper blockSkipper : blockSkippers) {
+                IOUtils.closeQuietly(blockSkipper);
+            }
             if (region != null) {
                 try {
                     region.closeRegionOperation();
@@ -390,6 +582,13 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         }
     }
 
+    @Override
+    public void cancelVisit(RpcController controller, CubeVisitProtos.CancelVisitRequest request, RpcCallback<CubeVisitProtos.CancelVisitResponse> done) {
+        logger.info("Cancelling visit " + request.getVisitId());
+        CubeVisitCancellations.cancel(request.getVisitId());
+        done.run(CubeVisitProtos.CancelVisitResponse.getDefaultInstance());
+    }
+
     @Override
     public void start(CoprocessorEnvironment env) throws IOException {
         if (env instanceof RegionCoprocessorEnvironment) {
@@ -401,6 +600,10 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
     @Override
     public void stop(CoprocessorEnvironment env) throws IOException {
+        // the region is closing on this server, e.g. moved or table dropped
+        if (this.env != null) {
+            CubeVisitResultCache.onRegionClosed(this.env.getRegion().getRegionNameAsString());
+        }
         // destroy KylinConfig when coprocessor stop
         KylinConfig.destroyInstance();
     }
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.CompressionUtils;
+import org.apache.kylin.storage.hbase.cube.v2.ResponseBufferPool;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Codecs of the rows in a cube visit response.
+ *
+ * The client lists the codecs it accepts in CubeVisitRequest and the region server picks one per response,
+ * see {@link #select}. "none" is always accepted. A client that lists nothing is an old client, it gets
+ * deflate or nothing according to kylin.storage.hbase.endpoint-compress-result, same as before.
+ *
+ * The recent ratios that drive the selection are kept in a {@link Stats}, one per region, as how well the
+ * rows compress depends on the cube.
+ */
+public enum ResultCodec {
+
+    NONE("none") {
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public ByteBuffer decompress(byte[] data, ResponseBufferPool pool) {
+            return ByteBuffer.wrap(data);
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        public byte[] compress(byte[] data) throws IOException {
+            return CompressionUtils.compress(data);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data) throws IOException {
+            try {
+                return CompressionUtils.decompress(data);
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public ByteBuffer decompress(byte[] data, ResponseBufferPool pool) throws IOException {
+            Inflater inflater = new Inflater();
+            byte[] buf = pool.borrow(data.length * 4);
+            int len = 0;
+            boolean ok = false;
+            try {
+                inflater.setInput(data);
+                while (!inflater.finished()) {
+                    if (len == buf.length) {
+                        byte[] larger = pool.borrow(buf.length * 2);
+                        System.arraycopy(buf, 0, larger, 0, len);
+                        pool.release(buf);
+                        buf = larger;
+                    }
+                    int n = inflater.inflate(buf, len, buf.length - len);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated deflate block of " + data.length + " bytes");
+                    }
+                    len += n;
+                }
+                ok = true;
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            } finally {
+                inflater.end();
+                if (!ok) {
+                    pool.release(buf);
+                }
+            }
+            return ByteBuffer.wrap(buf, 0, len);
+        }
+    },
+
+    /**
+     * [raw length (4 bytes)][lz4 block], several times faster than deflate at level 1 on both sides
+     */
+    LZ4("lz4") {
+        @Override
+        public byte[] compress(byte[] data) {
+            LZ4Compressor compressor = Lz4Holder.FACTORY.fastCompressor();
+            byte[] ret = new byte[4 + compressor.maxCompressedLength(data.length)];
+            BytesUtil.writeUnsigned(data.length, ret, 0, 4);
+            int len = compressor.compress(data, 0, data.length, ret, 4);
+            byte[] trimmed = new byte[4 + len];
+            System.arraycopy(ret, 0, trimmed, 0, trimmed.length);
+            return trimmed;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data) throws IOException {
+            if (data.length < 4) {
+                throw new IOException("Corrupted lz4 block of " + data.length + " bytes");
+            }
+            int rawLength = BytesUtil.readUnsigned(data, 0, 4);
+            byte[] ret = new byte[rawLength];
+            decompress(data, ret, rawLength);
+            return ret;
+        }
+
+        @Override
+        public ByteBuffer decompress(byte[] data, ResponseBufferPool pool) throws IOException {
+            if (data.length < 4) {
+                throw new IOException("Corrupted lz4 block of " + data.length + " bytes");
+            }
+            int rawLength = BytesUtil.readUnsigned(data, 0, 4);
+            byte[] buf = pool.borrow(rawLength);
+            try {
+                decompress(data, buf, rawLength);
+            } catch (IOException e) {
+                pool.release(buf);
+                throw e;
+            }
+            return ByteBuffer.wrap(buf, 0, rawLength);
+        }
+
+        private void decompress(byte[] data, byte[] dest, int rawLength) throws IOException {
+            LZ4FastDecompressor decompressor = Lz4Holder.FACTORY.fastDecompressor();
+            try {
+                decompressor.decompress(data, 4, dest, 0, rawLength);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupted lz4 block of " + data.length + " bytes", e);
+            }
+        }
+    };
+
+    private static class Lz4Holder {
+        // the pure java instance, native libs cannot be reloaded along with the coprocessor jar
+        static final LZ4Factory FACTORY = LZ4Factory.fastestJavaInstance();
+    }
+
+    private static final double RATIO_WEIGHT = 0.2; // weight of the latest response in the moving ratio
+    private static final int PROBE_INTERVAL = 16; // an ineffective codec is still tried once per this many responses
+
+    /**
+     * Compressed/raw ratio of recent responses per codec, thread safe.
+     */
+    public static class Stats {
+        private final double[] ratios = new double[values().length]; // 0 until the first response
+        private final int[] skipped = new int[values().length];
+
+        public synchronized void record(ResultCodec codec, int rawLength, int compressedLength) {
+            if (codec == NONE || rawLength == 0) {
+                return;
+            }
+            double ratio = ratios[codec.ordinal()];
+            double latest = (double) compressedLength / rawLength;
+            ratios[codec.ordinal()] = ratio == 0 ? latest : ratio * (1 - RATIO_WEIGHT) + RATIO_WEIGHT * latest;
+        }
+
+        public synchronized double getRecentRatio(ResultCodec codec) {
+            return ratios[codec.ordinal()];
+        }
+
+        synchronized boolean isEffective(ResultCodec codec, double maxRatio) {
+            return ratios[codec.ordinal()] <= maxRatio || ++skipped[codec.ordinal()] % PROBE_INTERVAL == 0;
+        }
+    }
+
+    private final String id;
+
+    ResultCodec(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public abstract byte[] compress(byte[] data) throws IOException;
+
+    public abstract byte[] decompress(byte[] data) throws IOException;
+
+    /**
+     * decompress into a buffer borrowed from the pool, the rows are between position and limit of the returned
+     * buffer, and its array is to be released to the pool once the rows are consumed
+     */
+    public abstract ByteBuffer decompress(byte[] data, ResponseBufferPool pool) throws IOException;
+
+    /**
+     * return the codec of the given id, or null if unknown, e.g. added by a newer client
+     */
+    public static ResultCodec fromId(String id) {
+        for (ResultCodec codec : values()) {
+            if (codec.id.equalsIgnoreCase(id)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the codec for the rows of a response
+     *
+     * @param accepted codec ids from the request in preference order, empty for an old client
+     * @param legacyCompress the deflate switch an old client decodes by
+     * @param rawLength size of the rows
+     * @param minBytes rows smaller than this are not worth compressing
+     * @param maxRatio skip a codec whose recent ratio is worse than this, as the CPU buys little network
+     * @param stats the recent ratios of the region
+     */
+    public static ResultCodec select(List<String> accepted, boolean legacyCompress, int rawLength, int minBytes, double maxRatio, Stats stats) {
+        if (accepted.isEmpty()) {
+            return legacyCompress ? DEFLATE : NONE;
+        }
+        if (rawLength < minBytes) {
+            return NONE;
+        }
+        for (String id : accepted) {
+            ResultCodec codec = fromId(id);
+            if (codec == NONE) {
+                return NONE;
+            }
+            if (codec != null && stats.isEffective(codec, maxRatio)) {
+                return codec;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * the codec of a response, old servers do not tell so it follows the deflate switch
+     */
+    public static ResultCodec ofResponse(boolean hasCodec, String codecId, boolean legacyCompress) {
+        if (!hasCodec) {
+            return legacyCompress ? DEFLATE : NONE;
+        }
+        ResultCodec codec = fromId(codecId);
+        if (codec == null) {
+            throw new IllegalStateException("Unknown result codec " + codecId);
+        }
+        return codec;
+    }
+}
@@ -107,6 +107,105 @@ public final class CubeVisitProtos {
      */
     com.google.protobuf.ByteString
         getQueryIdBytes();
+
+    // optional int32 maxResponseBytes = 7;
+    /**
+     * <code>optional int32 maxResponseBytes = 7;</code>
+     *
+     * <pre>
+     * 0 means the whole region result is returned in one response
+     * </pre>
+     */
+    boolean hasMaxResponseBytes();
+    /**
+     * <code>optional int32 maxResponseBytes = 7;</code>
+     *
+     * <pre>
+     * 0 means the whole region result is returned in one response
+     * </pre>
+     */
+    int getMaxResponseBytes();
+
+    // optional bytes continuation = 8;
+    /**
+     * <code>optional bytes continuation = 8;</code>
+     *
+     * <pre>
+     * echoed from the previous response to resume the visit
+     * </pre>
+     */
+    boolean hasContinuation();
+    /**
+     * <code>optional bytes continuation = 8;</code>
+     *
+     * <pre>
+     * echoed from the previous response to resume the visit
+     * </pre>
+     */
+    com.google.protobuf.ByteString getContinuation();
+
+    // repeated string compressionCodecs = 9;
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    java.util.List<java.lang.String>
+    getCompressionCodecsList();
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    int getCompressionCodecsCount();
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    java.lang.String getCompressionCodecs(int index);
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    com.google.protobuf.ByteString
+        getCompressionCodecsBytes(int index);
+
+    // optional string visitId = 10;
+    /**
+     * <code>optional string visitId = 10;</code>
+     *
+     * <pre>
+     * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+     * </pre>
+     */
+    boolean hasVisitId();
+    /**
+     * <code>optional string visitId = 10;</code>
+     *
+     * <pre>
+     * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+     * </pre>
+     */
+    java.lang.String getVisitId();
+    /**
+     * <code>optional string visitId = 10;</code>
+     *
+     * <pre>
+     * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+     * </pre>
+     */
+    com.google.protobuf.ByteString
+        getVisitIdBytes();
   }
   /**
    * Protobuf type {@code CubeVisitRequest}
@@ -192,6 +291,29 @@ public final class CubeVisitProtos {
               queryId_ = input.readBytes();
               break;
             }
+            case 56: {
+              bitField0_ |= 0x00000020;
+              maxResponseBytes_ = input.readInt32();
+              break;
+            }
+            case 66: {
+              bitField0_ |= 0x00000040;
+              continuation_ = input.readBytes();
+              break;
+            }
+            case 74: {
+              if (!((mutable_bitField0_ & 0x00000100) == 0x00000100)) {
+                compressionCodecs_ = new com.google.protobuf.LazyStringArrayList();
+                mutable_bitField0_ |= 0x00000100;
+              }
+              compressionCodecs_.add(input.readBytes());
+              break;
+            }
+            case 82: {
+              bitField0_ |= 0x00000080;
+              visitId_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -203,6 +325,9 @@ public final class CubeVisitProtos {
         if (((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
           hbaseColumnsToGT_ = java.util.Collections.unmodifiableList(hbaseColumnsToGT_);
         }
+        if (((mutable_bitField0_ & 0x00000100) == 0x00000100)) {
+          compressionCodecs_ = new com.google.protobuf.UnmodifiableLazyStringList(compressionCodecs_);
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -921,6 +1046,155 @@ public final class CubeVisitProtos {
       }
     }
 
+    // optional int32 maxResponseBytes = 7;
+    public static final int MAXRESPONSEBYTES_FIELD_NUMBER = 7;
+    private int maxResponseBytes_;
+    /**
+     * <code>optional int32 maxResponseBytes = 7;</code>
+     *
+     * <pre>
+     * 0 means the whole region result is returned in one response
+     * </pre>
+     */
+    public boolean hasMaxResponseBytes() {
+      return ((bitField0_ & 0x00000020) == 0x00000020);
+    }
+    /**
+     * <code>optional int32 maxResponseBytes = 7;</code>
+     *
+     * <pre>
+     * 0 means the whole region result is returned in one response
+     * </pre>
+     */
+    public int getMaxResponseBytes() {
+      return maxResponseBytes_;
+    }
+
+    // optional bytes continuation = 8;
+    public static final int CONTINUATION_FIELD_NUMBER = 8;
+    private com.google.protobuf.ByteString continuation_;
+    /**
+     * <code>optional bytes continuation = 8;</code>
+     *
+     * <pre>
+     * echoed from the previous response to resume the visit
+     * </pre>
+     */
+    public boolean hasContinuation() {
+      return ((bitField0_ & 0x00000040) == 0x00000040);
+    }
+    /**
+     * <code>optional bytes continuation = 8;</code>
+     *
+     * <pre>
+     * echoed from the previous response to resume the visit
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getContinuation() {
+      return continuation_;
+    }
+
+    // repeated string compressionCodecs = 9;
+    public static final int COMPRESSIONCODECS_FIELD_NUMBER = 9;
+    private com.google.protobuf.LazyStringList compressionCodecs_;
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    public java.util.List<java.lang.String>
+        getCompressionCodecsList() {
+      return compressionCodecs_;
+    }
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    public int getCompressionCodecsCount() {
+      return compressionCodecs_.size();
+    }
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    public java.lang.String getCompressionCodecs(int index) {
+      return compressionCodecs_.get(index);
+    }
+    /**
+     * <code>repeated string compressionCodecs = 9;</code>
+     *
+     * <pre>
+     * codecs accepted by the client in preference order, empty means legacy deflate switch
+     * </pre>
+     */
+    public com.google.protobuf.ByteString
+        getCompressionCodecsBytes(int index) {
+      return compressionCodecs_.getByteString(index);
+    }
+
+    // optional string visitId = 10;
+    public static final int VISITID_FIELD_NUMBER = 10;
+    private java.lang.Object visitId_;
+    /**
+     * <code>optional string visitId = 10;</code>
+     *
+     * <pre>
+     * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+     * </pre>
+     */
+    public boolean hasVisitId() {
+      return ((bitField0_ & 0x00000080) == 0x00000080);
+    }
+    /**
+     * <code>optional string visitId = 10;</code>
+     *
+     * <pre>
+     * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+     * </pre>
+     */
+    public java.lang.String getVisitId() {
+      java.lang.Object ref = visitId_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        if (bs.isValidUtf8()) {
+          visitId_ = s;
+        }
+        return s;
+      }
+    }
+    /**
+     * <code>optional string visitId = 10;</code>
+     *
+     * <pre>
+     * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+     * </pre>
+     */
+    public com.google.protobuf.ByteString
+        getVisitIdBytes() {
+      java.lang.Object ref = visitId_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        visitId_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
     private void initFields() {
       gtScanRequest_ = com.google.protobuf.ByteString.EMPTY;
       hbaseRawScan_ = com.google.protobuf.ByteString.EMPTY;
@@ -928,6 +1202,10 @@ public final class CubeVisitProtos {
       hbaseColumnsToGT_ = java.util.Collections.emptyList();
       kylinProperties_ = "";
       queryId_ = "";
+      maxResponseBytes_ = 0;
+      continuation_ = com.google.protobuf.ByteString.EMPTY;
+      compressionCodecs_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      visitId_ = "";
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -975,6 +1253,18 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000010) == 0x00000010)) {
         output.writeBytes(6, getQueryIdBytes());
       }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        output.writeInt32(7, maxResponseBytes_);
+      }
+      if (((bitField0_ & 0x00000040) == 0x00000040)) {
+        output.writeBytes(8, continuation_);
+      }
+      for (int i = 0; i < compressionCodecs_.size(); i++) {
+        output.writeBytes(9, compressionCodecs_.getByteString(i));
+      }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        output.writeBytes(10, getVisitIdBytes());
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -1008,6 +1298,27 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(6, getQueryIdBytes());
       }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(7, maxResponseBytes_);
+      }
+      if (((bitField0_ & 0x00000040) == 0x00000040)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(8, continuation_);
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < compressionCodecs_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(compressionCodecs_.getByteString(i));
+        }
+        size += dataSize;
+        size += 1 * getCompressionCodecsList().size();
+      }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(10, getVisitIdBytes());
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -1058,6 +1369,23 @@ public final class CubeVisitProtos {
         result = result && getQueryId()
             .equals(other.getQueryId());
       }
+      result = result && (hasMaxResponseBytes() == other.hasMaxResponseBytes());
+      if (hasMaxResponseBytes()) {
+        result = result && (getMaxResponseBytes()
+            == other.getMaxResponseBytes());
+      }
+      result = result && (hasContinuation() == other.hasContinuation());
+      if (hasContinuation()) {
+        result = result && getContinuation()
+            .equals(other.getContinuation());
+      }
+      result = result && getCompressionCodecsList()
+          .equals(other.getCompressionCodecsList());
+      result = result && (hasVisitId() == other.hasVisitId());
+      if (hasVisitId()) {
+        result = result && getVisitId()
+            .equals(other.getVisitId());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -1095,6 +1423,22 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + QUERYID_FIELD_NUMBER;
         hash = (53 * hash) + getQueryId().hashCode();
       }
+      if (hasMaxResponseBytes()) {
+        hash = (37 * hash) + MAXRESPONSEBYTES_FIELD_NUMBER;
+        hash = (53 * hash) + getMaxResponseBytes();
+      }
+      if (hasContinuation()) {
+        hash = (37 * hash) + CONTINUATION_FIELD_NUMBER;
+        hash = (53 * hash) + getContinuation().hashCode();
+      }
+      if (getCompressionCodecsCount() > 0) {
+        hash = (37 * hash) + COMPRESSIONCODECS_FIELD_NUMBER;
+        hash = (53 * hash) + getCompressionCodecsList().hashCode();
+      }
+      if (hasVisitId()) {
+        hash = (37 * hash) + VISITID_FIELD_NUMBER;
+        hash = (53 * hash) + getVisitId().hashCode();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -1221,6 +1565,14 @@ public final class CubeVisitProtos {
         bitField0_ = (bitField0_ & ~0x00000010);
         queryId_ = "";
         bitField0_ = (bitField0_ & ~0x00000020);
+        maxResponseBytes_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000040);
+        continuation_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000080);
+        compressionCodecs_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000100);
+        visitId_ = "";
+        bitField0_ = (bitField0_ & ~0x00000200);
         return this;
       }
 
@@ -1278,6 +1630,24 @@ public final class CubeVisitProtos {
           to_bitField0_ |= 0x00000010;
         }
         result.queryId_ = queryId_;
+        if (((from_bitField0_ & 0x00000040) == 0x00000040)) {
+          to_bitField0_ |= 0x00000020;
+        }
+        result.maxResponseBytes_ = maxResponseBytes_;
+        if (((from_bitField0_ & 0x00000080) == 0x00000080)) {
+          to_bitField0_ |= 0x00000040;
+        }
+        result.continuation_ = continuation_;
+        if (((bitField0_ & 0x00000100) == 0x00000100)) {
+          compressionCodecs_ = new com.google.protobuf.UnmodifiableLazyStringList(
+              compressionCodecs_);
+          bitField0_ = (bitField0_ & ~0x00000100);
+        }
+        result.compressionCodecs_ = compressionCodecs_;
+        if (((from_bitField0_ & 0x00000200) == 0x00000200)) {
+          to_bitField0_ |= 0x00000080;
+        }
+        result.visitId_ = visitId_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -1339,6 +1709,27 @@ public final class CubeVisitProtos {
           queryId_ = other.queryId_;
           onChanged();
         }
+        if (other.hasMaxResponseBytes()) {
+          setMaxResponseBytes(other.getMaxResponseBytes());
+        }
+        if (other.hasContinuation()) {
+          setContinuation(other.getContinuation());
+        }
+        if (!other.compressionCodecs_.isEmpty()) {
+          if (compressionCodecs_.isEmpty()) {
+            compressionCodecs_ = other.compressionCodecs_;
+            bitField0_ = (bitField0_ & ~0x00000100);
+          } else {
+            ensureCompressionCodecsIsMutable();
+            compressionCodecs_.addAll(other.compressionCodecs_);
+          }
+          onChanged();
+        }
+        if (other.hasVisitId()) {
+          bitField0_ |= 0x00000200;
+          visitId_ = other.visitId_;
+          onChanged();
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -1899,20 +2290,348 @@ public final class CubeVisitProtos {
         return this;
       }
 
-      // @@protoc_insertion_point(builder_scope:CubeVisitRequest)
-    }
-
-    static {
-      defaultInstance = new CubeVisitRequest(true);
-      defaultInstance.initFields();
-    }
+      // optional int32 maxResponseBytes = 7;
+      private int maxResponseBytes_ ;
+      /**
+       * <code>optional int32 maxResponseBytes = 7;</code>
+       *
+       * <pre>
+       * 0 means the whole region result is returned in one response
+       * </pre>
+       */
+      public boolean hasMaxResponseBytes() {
+        return ((bitField0_ & 0x00000040) == 0x00000040);
+      }
+      /**
+       * <code>optional int32 maxResponseBytes = 7;</code>
+       *
+       * <pre>
+       * 0 means the whole region result is returned in one response
+       * </pre>
+       */
+      public int getMaxResponseBytes() {
+        return maxResponseBytes_;
+      }
+      /**
+       * <code>optional int32 maxResponseBytes = 7;</code>
+       *
+       * <pre>
+       * 0 means the whole region result is returned in one response
+       * </pre>
+       */
+      public Builder setMaxResponseBytes(int value) {
+        bitField0_ |= 0x00000040;
+        maxResponseBytes_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 maxResponseBytes = 7;</code>
+       *
+       * <pre>
+       * 0 means the whole region result is returned in one response
+       * </pre>
+       */
+      public Builder clearMaxResponseBytes() {
+        bitField0_ = (bitField0_ & ~0x00000040);
+        maxResponseBytes_ = 0;
+        onChanged();
+        return this;
+      }
 
-    // @@protoc_insertion_point(class_scope:CubeVisitRequest)
+      // optional bytes continuation = 8;
+      private com.google.protobuf.ByteString continuation_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes continuation = 8;</code>
+       *
+       * <pre>
+       * echoed from the previous response to resume the visit
+       * </pre>
+       */
+      public boolean hasContinuation() {
+        return ((bitField0_ & 0x00000080) == 0x00000080);
+      }
+      /**
+       * <code>optional bytes continuation = 8;</code>
+       *
+       * <pre>
+       * echoed from the previous response to resume the visit
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getContinuation() {
+        return continuation_;
+      }
+      /**
+       * <code>optional bytes continuation = 8;</code>
+       *
+       * <pre>
+       * echoed from the previous response to resume the visit
+       * </pre>
+       */
+      public Builder setContinuation(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
   }
-
-  public interface CubeVisitResponseOrBuilder
-      extends com.google.protobuf.MessageOrBuilder {
-
+  bitField0_ |= 0x00000080;
+        continuation_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes continuation = 8;</code>
+       *
+       * <pre>
+       * echoed from the previous response to resume the visit
+       * </pre>
+       */
+      public Builder clearContinuation() {
+        bitField0_ = (bitField0_ & ~0x00000080);
+        continuation_ = getDefaultInstance().getContinuation();
+        onChanged();
+        return this;
+      }
+
+      // repeated string compressionCodecs = 9;
+      private com.google.protobuf.LazyStringList compressionCodecs_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      private void ensureCompressionCodecsIsMutable() {
+        if (!((bitField0_ & 0x00000100) == 0x00000100)) {
+          compressionCodecs_ = new com.google.protobuf.LazyStringArrayList(compressionCodecs_);
+          bitField0_ |= 0x00000100;
+         }
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public java.util.List<java.lang.String>
+          getCompressionCodecsList() {
+        return java.util.Collections.unmodifiableList(compressionCodecs_);
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public int getCompressionCodecsCount() {
+        return compressionCodecs_.size();
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public java.lang.String getCompressionCodecs(int index) {
+        return compressionCodecs_.get(index);
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public com.google.protobuf.ByteString
+          getCompressionCodecsBytes(int index) {
+        return compressionCodecs_.getByteString(index);
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public Builder setCompressionCodecs(
+          int index, java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureCompressionCodecsIsMutable();
+        compressionCodecs_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public Builder addCompressionCodecs(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureCompressionCodecsIsMutable();
+        compressionCodecs_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public Builder addAllCompressionCodecs(
+          java.lang.Iterable<java.lang.String> values) {
+        ensureCompressionCodecsIsMutable();
+        super.addAll(values, compressionCodecs_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public Builder clearCompressionCodecs() {
+        compressionCodecs_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000100);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string compressionCodecs = 9;</code>
+       *
+       * <pre>
+       * codecs accepted by the client in preference order, empty means legacy deflate switch
+       * </pre>
+       */
+      public Builder addCompressionCodecsBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureCompressionCodecsIsMutable();
+        compressionCodecs_.add(value);
+        onChanged();
+        return this;
+      }
+
+      // optional string visitId = 10;
+      private java.lang.Object visitId_ = "";
+      /**
+       * <code>optional string visitId = 10;</code>
+       *
+       * <pre>
+       * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+       * </pre>
+       */
+      public boolean hasVisitId() {
+        return ((bitField0_ & 0x00000200) == 0x00000200);
+      }
+      /**
+       * <code>optional string visitId = 10;</code>
+       *
+       * <pre>
+       * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+       * </pre>
+       */
+      public java.lang.String getVisitId() {
+        java.lang.Object ref = visitId_;
+        if (!(ref instanceof java.lang.String)) {
+          java.lang.String s = ((com.google.protobuf.ByteString) ref)
+              .toStringUtf8();
+          visitId_ = s;
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>optional string visitId = 10;</code>
+       *
+       * <pre>
+       * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+       * </pre>
+       */
+      public com.google.protobuf.ByteString
+          getVisitIdBytes() {
+        java.lang.Object ref = visitId_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          visitId_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>optional string visitId = 10;</code>
+       *
+       * <pre>
+       * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+       * </pre>
+       */
+      public Builder setVisitId(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000200;
+        visitId_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string visitId = 10;</code>
+       *
+       * <pre>
+       * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+       * </pre>
+       */
+      public Builder clearVisitId() {
+        bitField0_ = (bitField0_ & ~0x00000200);
+        visitId_ = getDefaultInstance().getVisitId();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string visitId = 10;</code>
+       *
+       * <pre>
+       * shared by the visits of all regions of one scan, to cancel them by cancelVisit
+       * </pre>
+       */
+      public Builder setVisitIdBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000200;
+        visitId_ = value;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:CubeVisitRequest)
+    }
+
+    static {
+      defaultInstance = new CubeVisitRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:CubeVisitRequest)
+  }
+
+  public interface CubeVisitResponseOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
     // required bytes compressedRows = 1;
     /**
      * <code>required bytes compressedRows = 1;</code>
@@ -1936,6 +2655,51 @@ public final class CubeVisitProtos {
      * <code>required .CubeVisitResponse.Stats stats = 2;</code>
      */
     org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.StatsOrBuilder getStatsOrBuilder();
+
+    // optional bytes continuation = 3;
+    /**
+     * <code>optional bytes continuation = 3;</code>
+     *
+     * <pre>
+     * present when the region has more rows, send it back to get the next block
+     * </pre>
+     */
+    boolean hasContinuation();
+    /**
+     * <code>optional bytes continuation = 3;</code>
+     *
+     * <pre>
+     * present when the region has more rows, send it back to get the next block
+     * </pre>
+     */
+    com.google.protobuf.ByteString getContinuation();
+
+    // optional string compressionCodec = 4;
+    /**
+     * <code>optional string compressionCodec = 4;</code>
+     *
+     * <pre>
+     * codec of compressedRows, absent from old servers
+     * </pre>
+     */
+    boolean hasCompressionCodec();
+    /**
+     * <code>optional string compressionCodec = 4;</code>
+     *
+     * <pre>
+     * codec of compressedRows, absent from old servers
+     * </pre>
+     */
+    java.lang.String getCompressionCodec();
+    /**
+     * <code>optional string compressionCodec = 4;</code>
+     *
+     * <pre>
+     * codec of compressedRows, absent from old servers
+     * </pre>
+     */
+    com.google.protobuf.ByteString
+        getCompressionCodecBytes();
   }
   /**
    * Protobuf type {@code CubeVisitResponse}
@@ -2006,6 +2770,16 @@ public final class CubeVisitProtos {
               bitField0_ |= 0x00000002;
               break;
             }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              continuation_ = input.readBytes();
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              compressionCodec_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -3510,40 +4284,127 @@ public final class CubeVisitProtos {
       return stats_;
     }
 
-    private void initFields() {
-      compressedRows_ = com.google.protobuf.ByteString.EMPTY;
-      stats_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.Stats.getDefaultInstance();
+    // optional bytes continuation = 3;
+    public static final int CONTINUATION_FIELD_NUMBER = 3;
+    private com.google.protobuf.ByteString continuation_;
+    /**
+     * <code>optional bytes continuation = 3;</code>
+     *
+     * <pre>
+     * present when the region has more rows, send it back to get the next block
+     * </pre>
+     */
+    public boolean hasContinuation() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
     }
-    private byte memoizedIsInitialized = -1;
-    public final boolean isInitialized() {
-      byte isInitialized = memoizedIsInitialized;
-      if (isInitialized != -1) return isInitialized == 1;
-
-      if (!hasCompressedRows()) {
-        memoizedIsInitialized = 0;
-        return false;
-      }
-      if (!hasStats()) {
-        memoizedIsInitialized = 0;
-        return false;
-      }
-      memoizedIsInitialized = 1;
-      return true;
+    /**
+     * <code>optional bytes continuation = 3;</code>
+     *
+     * <pre>
+     * present when the region has more rows, send it back to get the next block
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getContinuation() {
+      return continuation_;
     }
 
-    public void writeTo(com.google.protobuf.CodedOutputStream output)
-                        throws java.io.IOException {
-      getSerializedSize();
-      if (((bitField0_ & 0x00000001) == 0x00000001)) {
-        output.writeBytes(1, compressedRows_);
-      }
-      if (((bitField0_ & 0x00000002) == 0x00000002)) {
-        output.writeMessage(2, stats_);
-      }
-      getUnknownFields().writeTo(output);
+    // optional string compressionCodec = 4;
+    public static final int COMPRESSIONCODEC_FIELD_NUMBER = 4;
+    private java.lang.Object compressionCodec_;
+    /**
+     * <code>optional string compressionCodec = 4;</code>
+     *
+     * <pre>
+     * codec of compressedRows, absent from old servers
+     * </pre>
+     */
+    public boolean hasCompressionCodec() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
     }
-
-    private int memoizedSerializedSize = -1;
+    /**
+     * <code>optional string compressionCodec = 4;</code>
+     *
+     * <pre>
+     * codec of compressedRows, absent from old servers
+     * </pre>
+     */
+    public java.lang.String getCompressionCodec() {
+      java.lang.Object ref = compressionCodec_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        if (bs.isValidUtf8()) {
+          compressionCodec_ = s;
+        }
+        return s;
+      }
+    }
+    /**
+     * <code>optional string compressionCodec = 4;</code>
+     *
+     * <pre>
+     * codec of compressedRows, absent from old servers
+     * </pre>
+     */
+    public com.google.protobuf.ByteString
+        getCompressionCodecBytes() {
+      java.lang.Object ref = compressionCodec_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        compressionCodec_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
+    private void initFields() {
+      compressedRows_ = com.google.protobuf.ByteString.EMPTY;
+      stats_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.Stats.getDefaultInstance();
+      continuation_ = com.google.protobuf.ByteString.EMPTY;
+      compressionCodec_ = "";
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasCompressedRows()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasStats()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, compressedRows_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeMessage(2, stats_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(3, continuation_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBytes(4, getCompressionCodecBytes());
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
@@ -3557,6 +4418,14 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(2, stats_);
       }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(3, continuation_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, getCompressionCodecBytes());
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -3590,6 +4459,16 @@ public final class CubeVisitProtos {
         result = result && getStats()
             .equals(other.getStats());
       }
+      result = result && (hasContinuation() == other.hasContinuation());
+      if (hasContinuation()) {
+        result = result && getContinuation()
+            .equals(other.getContinuation());
+      }
+      result = result && (hasCompressionCodec() == other.hasCompressionCodec());
+      if (hasCompressionCodec()) {
+        result = result && getCompressionCodec()
+            .equals(other.getCompressionCodec());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -3611,6 +4490,14 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + STATS_FIELD_NUMBER;
         hash = (53 * hash) + getStats().hashCode();
       }
+      if (hasContinuation()) {
+        hash = (37 * hash) + CONTINUATION_FIELD_NUMBER;
+        hash = (53 * hash) + getContinuation().hashCode();
+      }
+      if (hasCompressionCodec()) {
+        hash = (37 * hash) + COMPRESSIONCODEC_FIELD_NUMBER;
+        hash = (53 * hash) + getCompressionCodec().hashCode();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -3729,6 +4616,10 @@ public final class CubeVisitProtos {
           statsBuilder_.clear();
         }
         bitField0_ = (bitField0_ & ~0x00000002);
+        continuation_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        compressionCodec_ = "";
+        bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
 
@@ -3769,6 +4660,14 @@ public final class CubeVisitProtos {
         } else {
           result.stats_ = statsBuilder_.build();
         }
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.continuation_ = continuation_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.compressionCodec_ = compressionCodec_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -3791,6 +4690,14 @@ public final class CubeVisitProtos {
         if (other.hasStats()) {
           mergeStats(other.getStats());
         }
+        if (other.hasContinuation()) {
+          setContinuation(other.getContinuation());
+        }
+        if (other.hasCompressionCodec()) {
+          bitField0_ |= 0x00000008;
+          compressionCodec_ = other.compressionCodec_;
+          onChanged();
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -3979,6 +4886,156 @@ public final class CubeVisitProtos {
         return statsBuilder_;
       }
 
+      // optional bytes continuation = 3;
+      private com.google.protobuf.ByteString continuation_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes continuation = 3;</code>
+       *
+       * <pre>
+       * present when the region has more rows, send it back to get the next block
+       * </pre>
+       */
+      public boolean hasContinuation() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bytes continuation = 3;</code>
+       *
+       * <pre>
+       * present when the region has more rows, send it back to get the next block
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getContinuation() {
+        return continuation_;
+      }
+      /**
+       * <code>optional bytes continuation = 3;</code>
+       *
+       * <pre>
+       * present when the region has more rows, send it back to get the next block
+       * </pre>
+       */
+      public Builder setContinuation(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        continuation_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes continuation = 3;</code>
+       *
+       * <pre>
+       * present when the region has more rows, send it back to get the next block
+       * </pre>
+       */
+      public Builder clearContinuation() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        continuation_ = getDefaultInstance().getContinuation();
+        onChanged();
+        return this;
+      }
+
+      // optional string compressionCodec = 4;
+      private java.lang.Object compressionCodec_ = "";
+      /**
+       * <code>optional string compressionCodec = 4;</code>
+       *
+       * <pre>
+       * codec of compressedRows, absent from old servers
+       * </pre>
+       */
+      public boolean hasCompressionCodec() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional string compressionCodec = 4;</code>
+       *
+       * <pre>
+       * codec of compressedRows, absent from old servers
+       * </pre>
+       */
+      public java.lang.String getCompressionCodec() {
+        java.lang.Object ref = compressionCodec_;
+        if (!(ref instanceof java.lang.String)) {
+          java.lang.String s = ((com.google.protobuf.ByteString) ref)
+              .toStringUtf8();
+          compressionCodec_ = s;
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>optional string compressionCodec = 4;</code>
+       *
+       * <pre>
+       * codec of compressedRows, absent from old servers
+       * </pre>
+       */
+      public com.google.protobuf.ByteString
+          getCompressionCodecBytes() {
+        java.lang.Object ref = compressionCodec_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          compressionCodec_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>optional string compressionCodec = 4;</code>
+       *
+       * <pre>
+       * codec of compressedRows, absent from old servers
+       * </pre>
+       */
+      public Builder setCompressionCodec(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        compressionCodec_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string compressionCodec = 4;</code>
+       *
+       * <pre>
+       * codec of compressedRows, absent from old servers
+       * </pre>
+       */
+      public Builder clearCompressionCodec() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        compressionCodec_ = getDefaultInstance().getCompressionCodec();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional string compressionCodec = 4;</code>
+       *
+       * <pre>
+       * codec of compressedRows, absent from old servers
+       * </pre>
+       */
+      public Builder setCompressionCodecBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        compressionCodec_ = value;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:CubeVisitResponse)
     }
 
@@ -3990,61 +5047,934 @@ public final class CubeVisitProtos {
     // @@protoc_insertion_point(class_scope:CubeVisitResponse)
   }
 
+  public interface CancelVisitRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required string visitId = 1;
+    /**
+     * <code>required string visitId = 1;</code>
+     */
+    boolean hasVisitId();
+    /**
+     * <code>required string visitId = 1;</code>
+     */
+    java.lang.String getVisitId();
+    /**
+     * <code>required string visitId = 1;</code>
+     */
+    com.google.protobuf.ByteString
+        getVisitIdBytes();
+  }
   /**
-   * Protobuf service {@code CubeVisitService}
+   * Protobuf type {@code CancelVisitRequest}
    */
-  public static abstract class CubeVisitService
-      implements com.google.protobuf.Service {
-    protected CubeVisitService() {}
-
-    public interface Interface {
-      /**
-       * <code>rpc visitCube(.CubeVisitRequest) returns (.CubeVisitResponse);</code>
-       */
-      public abstract void visitCube(
-          com.google.protobuf.RpcController controller,
-          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest request,
-          com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse> done);
-
+  public static final class CancelVisitRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements CancelVisitRequestOrBuilder {
+    // Use CancelVisitRequest.newBuilder() to construct.
+    private CancelVisitRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
+    private CancelVisitRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
 
-    public static com.google.protobuf.Service newReflectiveService(
-        final Interface impl) {
-      return new CubeVisitService() {
-        @java.lang.Override
-        public  void visitCube(
-            com.google.protobuf.RpcController controller,
-            org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest request,
-            com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse> done) {
-          impl.visitCube(controller, request, done);
-        }
-
-      };
+    private static final CancelVisitRequest defaultInstance;
+    public static CancelVisitRequest getDefaultInstance() {
+      return defaultInstance;
     }
 
-    public static com.google.protobuf.BlockingService
-        newReflectiveBlockingService(final BlockingInterface impl) {
-      return new com.google.protobuf.BlockingService() {
-        public final com.google.protobuf.Descriptors.ServiceDescriptor
-            getDescriptorForType() {
-          return getDescriptor();
-        }
+    public CancelVisitRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
 
-        public final com.google.protobuf.Message callBlockingMethod(
-            com.google.protobuf.Descriptors.MethodDescriptor method,
-            com.google.protobuf.RpcController controller,
-            com.google.protobuf.Message request)
-            throws com.google.protobuf.ServiceException {
-          if (method.getService() != getDescriptor()) {
-            throw new java.lang.IllegalArgumentException(
-              "Service.callBlockingMethod() given method descriptor for " +
-              "wrong service type.");
-          }
-          switch(method.getIndex()) {
-            case 0:
-              return impl.visitCube(controller, (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest)request);
-            default:
-              throw new java.lang.AssertionError("Can't get here.");
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private CancelVisitRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              visitId_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitRequest_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.class, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<CancelVisitRequest> PARSER =
+        new com.google.protobuf.AbstractParser<CancelVisitRequest>() {
+      public CancelVisitRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new CancelVisitRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<CancelVisitRequest> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required string visitId = 1;
+    public static final int VISITID_FIELD_NUMBER = 1;
+    private java.lang.Object visitId_;
+    /**
+     * <code>required string visitId = 1;</code>
+     */
+    public boolean hasVisitId() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required string visitId = 1;</code>
+     */
+    public java.lang.String getVisitId() {
+      java.lang.Object ref = visitId_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        if (bs.isValidUtf8()) {
+          visitId_ = s;
+        }
+        return s;
+      }
+    }
+    /**
+     * <code>required string visitId = 1;</code>
+     */
+    public com.google.protobuf.ByteString
+        getVisitIdBytes() {
+      java.lang.Object ref = visitId_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        visitId_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
+    private void initFields() {
+      visitId_ = "";
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasVisitId()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, getVisitIdBytes());
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(1, getVisitIdBytes());
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    @java.lang.Override
+    public boolean equals(final java.lang.Object obj) {
+      if (obj == this) {
+       return true;
+      }
+      if (!(obj instanceof org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest)) {
+        return super.equals(obj);
+      }
+      org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest other = (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest) obj;
+
+      boolean result = true;
+      result = result && (hasVisitId() == other.hasVisitId());
+      if (hasVisitId()) {
+        result = result && getVisitId()
+            .equals(other.getVisitId());
+      }
+      result = result &&
+          getUnknownFields().equals(other.getUnknownFields());
+      return result;
+    }
+
+    private int memoizedHashCode = 0;
+    @java.lang.Override
+    public int hashCode() {
+      if (memoizedHashCode != 0) {
+        return memoizedHashCode;
+      }
+      int hash = 41;
+      hash = (19 * hash) + getDescriptorForType().hashCode();
+      if (hasVisitId()) {
+        hash = (37 * hash) + VISITID_FIELD_NUMBER;
+        hash = (53 * hash) + getVisitId().hashCode();
+      }
+      hash = (29 * hash) + getUnknownFields().hashCode();
+      memoizedHashCode = hash;
+      return hash;
+    }
+
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code CancelVisitRequest}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitRequest_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.class, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.Builder.class);
+      }
+
+      // Construct using org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        visitId_ = "";
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitRequest_descriptor;
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest getDefaultInstanceForType() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.getDefaultInstance();
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest build() {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest buildPartial() {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest result = new org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.visitId_ = visitId_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest) {
+          return mergeFrom((org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest other) {
+        if (other == org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.getDefaultInstance()) return this;
+        if (other.hasVisitId()) {
+          bitField0_ |= 0x00000001;
+          visitId_ = other.visitId_;
+          onChanged();
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasVisitId()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required string visitId = 1;
+      private java.lang.Object visitId_ = "";
+      /**
+       * <code>required string visitId = 1;</code>
+       */
+      public boolean hasVisitId() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required string visitId = 1;</code>
+       */
+      public java.lang.String getVisitId() {
+        java.lang.Object ref = visitId_;
+        if (!(ref instanceof java.lang.String)) {
+          java.lang.String s = ((com.google.protobuf.ByteString) ref)
+              .toStringUtf8();
+          visitId_ = s;
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>required string visitId = 1;</code>
+       */
+      public com.google.protobuf.ByteString
+          getVisitIdBytes() {
+        java.lang.Object ref = visitId_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          visitId_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>required string visitId = 1;</code>
+       */
+      public Builder setVisitId(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        visitId_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required string visitId = 1;</code>
+       */
+      public Builder clearVisitId() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        visitId_ = getDefaultInstance().getVisitId();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required string visitId = 1;</code>
+       */
+      public Builder setVisitIdBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        visitId_ = value;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:CancelVisitRequest)
+    }
+
+    static {
+      defaultInstance = new CancelVisitRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:CancelVisitRequest)
+  }
+
+  public interface CancelVisitResponseOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+  }
+  /**
+   * Protobuf type {@code CancelVisitResponse}
+   */
+  public static final class CancelVisitResponse extends
+      com.google.protobuf.GeneratedMessage
+      implements CancelVisitResponseOrBuilder {
+    // Use CancelVisitResponse.newBuilder() to construct.
+    private CancelVisitResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private CancelVisitResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final CancelVisitResponse defaultInstance;
+    public static CancelVisitResponse getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public CancelVisitResponse getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private CancelVisitResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitResponse_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.class, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<CancelVisitResponse> PARSER =
+        new com.google.protobuf.AbstractParser<CancelVisitResponse>() {
+      public CancelVisitResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new CancelVisitResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<CancelVisitResponse> getParserForType() {
+      return PARSER;
+    }
+
+    private void initFields() {
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    @java.lang.Override
+    public boolean equals(final java.lang.Object obj) {
+      if (obj == this) {
+       return true;
+      }
+      if (!(obj instanceof org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse)) {
+        return super.equals(obj);
+      }
+      org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse other = (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse) obj;
+
+      boolean result = true;
+      result = result &&
+          getUnknownFields().equals(other.getUnknownFields());
+      return result;
+    }
+
+    private int memoizedHashCode = 0;
+    @java.lang.Override
+    public int hashCode() {
+      if (memoizedHashCode != 0) {
+        return memoizedHashCode;
+      }
+      int hash = 41;
+      hash = (19 * hash) + getDescriptorForType().hashCode();
+      hash = (29 * hash) + getUnknownFields().hashCode();
+      memoizedHashCode = hash;
+      return hash;
+    }
+
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code CancelVisitResponse}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponseOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitResponse_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.class, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.Builder.class);
+      }
+
+      // Construct using org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_CancelVisitResponse_descriptor;
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse getDefaultInstanceForType() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance();
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse build() {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse buildPartial() {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse result = new org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse(this);
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse) {
+          return mergeFrom((org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse other) {
+        if (other == org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance()) return this;
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:CancelVisitResponse)
+    }
+
+    static {
+      defaultInstance = new CancelVisitResponse(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:CancelVisitResponse)
+  }
+
+  /**
+   * Protobuf service {@code CubeVisitService}
+   */
+  public static abstract class CubeVisitService
+      implements com.google.protobuf.Service {
+    protected CubeVisitService() {}
+
+    public interface Interface {
+      /**
+       * <code>rpc visitCube(.CubeVisitRequest) returns (.CubeVisitResponse);</code>
+       */
+      public abstract void visitCube(
+          com.google.protobuf.RpcController controller,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest request,
+          com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse> done);
+
+      /**
+       * <code>rpc cancelVisit(.CancelVisitRequest) returns (.CancelVisitResponse);</code>
+       */
+      public abstract void cancelVisit(
+          com.google.protobuf.RpcController controller,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest request,
+          com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse> done);
+
+    }
+
+    public static com.google.protobuf.Service newReflectiveService(
+        final Interface impl) {
+      return new CubeVisitService() {
+        @java.lang.Override
+        public  void visitCube(
+            com.google.protobuf.RpcController controller,
+            org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest request,
+            com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse> done) {
+          impl.visitCube(controller, request, done);
+        }
+
+        @java.lang.Override
+        public  void cancelVisit(
+            com.google.protobuf.RpcController controller,
+            org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest request,
+            com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse> done) {
+          impl.cancelVisit(controller, request, done);
+        }
+
+      };
+    }
+
+    public static com.google.protobuf.BlockingService
+        newReflectiveBlockingService(final BlockingInterface impl) {
+      return new com.google.protobuf.BlockingService() {
+        public final com.google.protobuf.Descriptors.ServiceDescriptor
+            getDescriptorForType() {
+          return getDescriptor();
+        }
+
+        public final com.google.protobuf.Message callBlockingMethod(
+            com.google.protobuf.Descriptors.MethodDescriptor method,
+            com.google.protobuf.RpcController controller,
+            com.google.protobuf.Message request)
+            throws com.google.protobuf.ServiceException {
+          if (method.getService() != getDescriptor()) {
+            throw new java.lang.IllegalArgumentException(
+              "Service.callBlockingMethod() given method descriptor for " +
+              "wrong service type.");
+          }
+          switch(method.getIndex()) {
+            case 0:
+              return impl.visitCube(controller, (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest)request);
+            case 1:
+              return impl.cancelVisit(controller, (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest)request);
+            default:
+              throw new java.lang.AssertionError("Can't get here.");
           }
         }
 
@@ -4059,6 +5989,8 @@ public final class CubeVisitProtos {
           switch(method.getIndex()) {
             case 0:
               return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest.getDefaultInstance();
+            case 1:
+              return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.getDefaultInstance();
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -4075,6 +6007,8 @@ public final class CubeVisitProtos {
           switch(method.getIndex()) {
             case 0:
               return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.getDefaultInstance();
+            case 1:
+              return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance();
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -4091,6 +6025,14 @@ public final class CubeVisitProtos {
         org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest request,
         com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse> done);
 
+    /**
+     * <code>rpc cancelVisit(.CancelVisitRequest) returns (.CancelVisitResponse);</code>
+     */
+    public abstract void cancelVisit(
+        com.google.protobuf.RpcController controller,
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest request,
+        com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse> done);
+
     public static final
         com.google.protobuf.Descriptors.ServiceDescriptor
         getDescriptor() {
@@ -4118,6 +6060,11 @@ public final class CubeVisitProtos {
             com.google.protobuf.RpcUtil.<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse>specializeCallback(
               done));
           return;
+        case 1:
+          this.cancelVisit(controller, (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest)request,
+            com.google.protobuf.RpcUtil.<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse>specializeCallback(
+              done));
+          return;
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -4134,6 +6081,8 @@ public final class CubeVisitProtos {
       switch(method.getIndex()) {
         case 0:
           return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest.getDefaultInstance();
+        case 1:
+          return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest.getDefaultInstance();
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -4150,6 +6099,8 @@ public final class CubeVisitProtos {
       switch(method.getIndex()) {
         case 0:
           return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.getDefaultInstance();
+        case 1:
+          return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance();
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -4185,6 +6136,21 @@ public final class CubeVisitProtos {
             org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.class,
             org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.getDefaultInstance()));
       }
+
+      public  void cancelVisit(
+          com.google.protobuf.RpcController controller,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest request,
+          com.google.protobuf.RpcCallback<org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse> done) {
+        channel.callMethod(
+          getDescriptor().getMethods().get(1),
+          controller,
+          request,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance(),
+          com.google.protobuf.RpcUtil.generalizeCallback(
+            done,
+            org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.class,
+            org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance()));
+      }
     }
 
     public static BlockingInterface newBlockingStub(
@@ -4197,6 +6163,11 @@ public final class CubeVisitProtos {
           com.google.protobuf.RpcController controller,
           org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitRequest request)
           throws com.google.protobuf.ServiceException;
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse cancelVisit(
+          com.google.protobuf.RpcController controller,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest request)
+          throws com.google.protobuf.ServiceException;
     }
 
     private static final class BlockingStub implements BlockingInterface {
@@ -4217,6 +6188,18 @@ public final class CubeVisitProtos {
           org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.getDefaultInstance());
       }
 
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse cancelVisit(
+          com.google.protobuf.RpcController controller,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitRequest request)
+          throws com.google.protobuf.ServiceException {
+        return (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse) channel.callBlockingMethod(
+          getDescriptor().getMethods().get(1),
+          controller,
+          request,
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CancelVisitResponse.getDefaultInstance());
+      }
+
     }
 
     // @@protoc_insertion_point(class_scope:CubeVisitService)
@@ -4242,6 +6225,16 @@ public final class CubeVisitProtos {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_CubeVisitResponse_Stats_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_CancelVisitRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_CancelVisitRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_CancelVisitResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_CancelVisitResponse_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -4253,25 +6246,32 @@ public final class CubeVisitProtos {
     java.lang.String[] descriptorData = {
       "\npstorage-hbase/src/main/java/org/apache" +
       "/kylin/storage/hbase/cube/v2/coprocessor" +
-      "/endpoint/protobuf/CubeVisit.proto\"\323\001\n\020C" +
+      "/endpoint/protobuf/CubeVisit.proto\"\257\002\n\020C" +
       "ubeVisitRequest\022\025\n\rgtScanRequest\030\001 \002(\014\022\024" +
       "\n\014hbaseRawScan\030\002 \002(\014\022\032\n\022rowkeyPreambleSi" +
       "ze\030\003 \002(\005\0223\n\020hbaseColumnsToGT\030\004 \003(\0132\031.Cub" +
       "eVisitRequest.IntList\022\027\n\017kylinProperties" +
-      "\030\005 \002(\t\022\017\n\007queryId\030\006 \001(\t\032\027\n\007IntList\022\014\n\004in" +
-      "ts\030\001 \003(\005\"\321\002\n\021CubeVisitResponse\022\026\n\016compre" +
-      "ssedRows\030\001 \002(\014\022\'\n\005stats\030\002 \002(\0132\030.CubeVisi",
-      "tResponse.Stats\032\372\001\n\005Stats\022\030\n\020serviceStar" +
-      "tTime\030\001 \001(\003\022\026\n\016serviceEndTime\030\002 \001(\003\022\027\n\017s" +
-      "cannedRowCount\030\003 \001(\003\022\032\n\022aggregatedRowCou" +
-      "nt\030\004 \001(\003\022\025\n\rsystemCpuLoad\030\005 \001(\001\022\036\n\026freeP" +
-      "hysicalMemorySize\030\006 \001(\001\022\031\n\021freeSwapSpace" +
-      "Size\030\007 \001(\001\022\020\n\010hostname\030\010 \001(\t\022\016\n\006etcMsg\030\t" +
-      " \001(\t\022\026\n\016normalComplete\030\n \001(\0052F\n\020CubeVisi" +
-      "tService\0222\n\tvisitCube\022\021.CubeVisitRequest" +
-      "\032\022.CubeVisitResponseB`\nEorg.apache.kylin" +
-      ".storage.hbase.cube.v2.coprocessor.endpo",
-      "int.generatedB\017CubeVisitProtosH\001\210\001\001\240\001\001"
+      "\030\005 \002(\t\022\017\n\007queryId\030\006 \001(\t\022\030\n\020maxResponseBy" +
+      "tes\030\007 \001(\005\022\024\n\014continuation\030\010 \001(\014\022\031\n\021compr" +
+      "essionCodecs\030\t \003(\t\022\017\n\007visitId\030\n \001(\t\032\027\n\007I",
+      "ntList\022\014\n\004ints\030\001 \003(\005\"\201\003\n\021CubeVisitRespon" +
+      "se\022\026\n\016compressedRows\030\001 \002(\014\022\'\n\005stats\030\002 \002(" +
+      "\0132\030.CubeVisitResponse.Stats\022\024\n\014continuat" +
+      "ion\030\003 \001(\014\022\030\n\020compressionCodec\030\004 \001(\t\032\372\001\n\005" +
+      "Stats\022\030\n\020serviceStartTime\030\001 \001(\003\022\026\n\016servi" +
+      "ceEndTime\030\002 \001(\003\022\027\n\017scannedRowCount\030\003 \001(\003" +
+      "\022\032\n\022aggregatedRowCount\030\004 \001(\003\022\025\n\rsystemCp" +
+      "uLoad\030\005 \001(\001\022\036\n\026freePhysicalMemorySize\030\006 " +
+      "\001(\001\022\031\n\021freeSwapSpaceSize\030\007 \001(\001\022\020\n\010hostna" +
+      "me\030\010 \001(\t\022\016\n\006etcMsg\030\t \001(\t\022\026\n\016normalComple",
+      "te\030\n \001(\005\"%\n\022CancelVisitRequest\022\017\n\007visitI" +
+      "d\030\001 \002(\t\"\025\n\023CancelVisitResponse2\200\001\n\020CubeV" +
+      "isitService\0222\n\tvisitCube\022\021.CubeVisitRequ" +
+      "est\032\022.CubeVisitResponse\0228\n\013cancelVisit\022\023" +
+      ".CancelVisitRequest\032\024.CancelVisitRespons" +
+      "eB`\nEorg.apache.kylin.storage.hbase.cube" +
+      ".v2.coprocessor.endpoint.generatedB\017Cube" +
+      "VisitProtosH\001\210\001\001\240\001\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -4283,7 +6283,7 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitRequest_descriptor,
-              new java.lang.String[] { "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "KylinProperties", "QueryId", });
+              new java.lang.String[] { "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "KylinProperties", "QueryId", "MaxResponseBytes", "Continuation", "CompressionCodecs", "VisitId", });
           internal_static_CubeVisitRequest_IntList_descriptor =
             internal_static_CubeVisitRequest_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitRequest_IntList_fieldAccessorTable = new
@@ -4295,13 +6295,25 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitResponse_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitResponse_descriptor,
-              new java.lang.String[] { "CompressedRows", "Stats", });
+              new java.lang.String[] { "CompressedRows", "Stats", "Continuation", "CompressionCodec", });
           internal_static_CubeVisitResponse_Stats_descriptor =
             internal_static_CubeVisitResponse_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitResponse_Stats_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitResponse_Stats_descriptor,
               new java.lang.String[] { "ServiceStartTime", "ServiceEndTime", "ScannedRowCount", "AggregatedRowCount", "SystemCpuLoad", "FreePhysicalMemorySize", "FreeSwapSpaceSize", "Hostname", "EtcMsg", "NormalComplete", });
+          internal_static_CancelVisitRequest_descriptor =
+            getDescriptor().getMessageTypes().get(2);
+          internal_static_CancelVisitRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_CancelVisitRequest_descriptor,
+              new java.lang.String[] { "VisitId", });
+          internal_static_CancelVisitResponse_descriptor =
+            getDescriptor().getMessageTypes().get(3);
+          internal_static_CancelVisitResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_CancelVisitResponse_descriptor,
+              new java.lang.String[] { });
           return null;
         }
       };
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.cube.kv.RowKeyColumnIO;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Cuts sorted rowkeys into blocks and produces the {@link BlockSkipIndex} cell of each block.
+ */
+public class BlockSkipIndexBuilder {
+
+    private final CubeDesc cubeDesc;
+    private final RowKeyColumnIO colIO;
+    private final int preambleLen;
+    private final int rowsPerBlock;
+    private final Map<Long, int[]> columnLengthsByCuboid = Maps.newHashMap();
+
+    private byte[] blockStart;
+    private int[] columnLengths;
+    private byte[][] min;
+    private byte[][] max;
+    private int rows;
+
+    public BlockSkipIndexBuilder(CubeSegment seg, int rowsPerBlock) {
+        this.cubeDesc = seg.getCubeDesc();
+        this.colIO = new RowKeyColumnIO(seg.getDimensionEncodingMap());
+        this.preambleLen = seg.getRowKeyPreambleSize();
+        this.rowsPerBlock = rowsPerBlock;
+    }
+
+    /**
+     * add the next rowkey in sorted order, return the index cell of the previous block if the rowkey starts a new block
+     */
+    public KeyValue add(byte[] key, int offset, int length) {
+        KeyValue done = null;
+        if (blockStart != null && (rows >= rowsPerBlock || !Bytes.equals(blockStart, 0, preambleLen, key, offset, preambleLen))) {
+            done = finish();
+        }
+
+        if (blockStart == null) {
+            blockStart = Bytes.copy(key, offset, length);
+            long cuboidId = Bytes.toLong(key, offset + preambleLen - RowConstants.ROWKEY_CUBOIDID_LEN, RowConstants.ROWKEY_CUBOIDID_LEN);
+            columnLengths = getColumnLengths(cuboidId);
+            min = new byte[columnLengths.length][];
+            max = new byte[columnLengths.length][];
+        }
+
+        int pos = offset + preambleLen;
+        for (int i = 0; i < columnLengths.length; i++) {
+            int len = columnLengths[i];
+            if (rows == 0) {
+                min[i] = Bytes.copy(key, pos, len);
+                max[i] = Bytes.copy(key, pos, len);
+            } else if (Bytes.compareTo(key, pos, len, min[i], 0, len) < 0) {
+                System.arraycopy(key, pos, min[i], 0, len);
+            } else if (Bytes.compareTo(key, pos, len, max[i], 0, len) > 0) {
+                System.arraycopy(key, pos, max[i], 0, len);
+            }
+            pos += len;
+        }
+        rows++;
+        return done;
+    }
+
+    /**
+     * return the index cell of the current block, or null if there is none
+     */
+    public KeyValue finish() {
+        if (blockStart == null) {
+            return null;
+        }
+        byte[] value = BlockSkipIndex.encode(min, max, columnLengths.length);
+        KeyValue kv = new KeyValue(blockStart, BlockSkipIndex.FAMILY, BlockSkipIndex.QUALIFIER, 0, KeyValue.Type.Put, value);
+        blockStart = null;
+        rows = 0;
+        return kv;
+    }
+
+    private int[] getColumnLengths(long cuboidId) {
+        int[] result = columnLengthsByCuboid.get(cuboidId);
+        if (result == null) {
+            List<TblColRef> columns = Cuboid.findById(cubeDesc, cuboidId).getColumns();
+            result = new int[columns.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = colIO.getColumnLength(columns.get(i));
+            }
+            columnLengthsByCuboid.put(cuboidId, result);
+        }
+        return result;
+    }
+}
@@ -41,7 +41,6 @@ import org.apache.hadoop.util.ToolRunner;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
-import org.apache.kylin.common.util.ShardingHash;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
@@ -55,7 +54,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 /**
  */
@@ -195,45 +193,17 @@ public class CreateHTableJob extends AbstractHadoopJob {
 
         if (cubeSegment.isEnableSharding()) {
             //each cuboid will be split into different number of shards
-            HashMap<Long, Short> cuboidShards = Maps.newHashMap();
-
-            //each shard/region may be split into multiple hfiles; array index: region ID, Map: key: cuboidID, value cuboid size in the region
-            List<HashMap<Long, Double>> innerRegionSplits = Lists.newArrayList();
-            for (int i = 0; i < nRegion; i++) {
-                innerRegionSplits.add(new HashMap<Long, Double>());
-            }
-
-            double[] regionSizes = new double[nRegion];
-            for (long cuboidId : allCuboids) {
-                double estimatedSize = cubeSizeMap.get(cuboidId);
-                double magic = 23;
-                int shardNum = (int) (estimatedSize * magic / mbPerRegion + 1);
-                if (shardNum < 1) {
-                    shardNum = 1;
-                }
-
-                if (shardNum > nRegion) {
-                    logger.info(String.format("Cuboid %d 's estimated size %.2f MB will generate %d regions, reduce to %d", cuboidId, estimatedSize, shardNum, nRegion));
-                    shardNum = nRegion;
-                } else {
-                    logger.info(String.format("Cuboid %d 's estimated size %.2f MB will generate %d regions", cuboidId, estimatedSize, shardNum));
-                }
-
-                cuboidShards.put(cuboidId, (short) shardNum);
-                short startShard = ShardingHash.getShard(cuboidId, nRegion);
-                for (short i = startShard; i < startShard + shardNum; ++i) {
-                    short j = (short) (i % nRegion);
-                    regionSizes[j] = regionSizes[j] + estimatedSize / shardNum;
-                    innerRegionSplits.get(j).put(cuboidId, estimatedSize / shardNum);
-                }
-            }
+            boolean balanced = kylinConfig.isHBaseBalancedShardAssignmentEnabled();
+            RegionShardPlanner.Plan plan = RegionShardPlanner.plan(cubeSizeMap, nRegion, mbPerRegion, balanced);
 
+            double[] regionSizes = plan.regionSizes;
             for (int i = 0; i < nRegion; ++i) {
                 logger.info(String.format("Region %d's estimated size is %.2f MB, accounting for %.2f percent", i, regionSizes[i], 100.0 * regionSizes[i] / totalSizeInM));
             }
+            logger.info(String.format("Expected region skew (biggest region over average) is %.2f, with %s shard assignment", plan.getSkew(), balanced ? "balanced" : "hashed"));
 
-            CuboidShardUtil.saveCuboidShards(cubeSegment, cuboidShards, nRegion);
-            saveHFileSplits(innerRegionSplits, mbPerRegion, hfileSplitsOutputFolder, kylinConfig);
+            CuboidShardUtil.saveCuboidShards(cubeSegment, plan.cuboidShards, plan.cuboidBaseShards, nRegion);
+            saveHFileSplits(plan.innerRegionSplits, mbPerRegion, hfileSplitsOutputFolder, kylinConfig);
             return getSplitsByRegionCount(nRegion);
 
         } else {
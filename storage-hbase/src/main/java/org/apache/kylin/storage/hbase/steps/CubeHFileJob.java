@@ -40,9 +40,13 @@ import org.apache.hadoop.util.ToolRunner;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.job.execution.AbstractExecutable;
+import org.apache.kylin.job.execution.ExecutableManager;
 import org.apache.kylin.storage.hbase.HBaseConnection;
+import org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +57,34 @@ public class CubeHFileJob extends AbstractHadoopJob {
 
     protected static final Logger logger = LoggerFactory.getLogger(CubeHFileJob.class);
 
+    private boolean skipped = false;
+    private long skippedBytesWritten = -1;
+
+    @Override
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public long getSkippedBytesWritten() {
+        return skippedBytesWritten;
+    }
+
+    // in-mem cubing has written the HFiles already if it wrote them directly
+    private boolean checkSkip(String cubingJobId, CubeInstance cube, Path output) throws IOException {
+        if (cubingJobId == null || !cube.getConfig().isInMemCubingDirectHFileEnabled())
+            return false;
+
+        ExecutableManager execMgr = ExecutableManager.getInstance(KylinConfig.getInstanceFromEnv());
+        AbstractExecutable cubingJob = execMgr.getJob(cubingJobId);
+        skipped = cubingJob instanceof CubingJob && ((CubingJob) cubingJob).isInMemCubing();
+        if (skipped) {
+            FileSystem fs = output.getFileSystem(HBaseConnection.getCurrentHBaseConfiguration());
+            skippedBytesWritten = fs.exists(output) ? fs.getContentSummary(output).getLength() : 0;
+        }
+        return skipped;
+    }
+
     public int run(String[] args) throws Exception {
         Options options = new Options();
 
@@ -63,6 +95,8 @@ public class CubeHFileJob extends AbstractHadoopJob {
             options.addOption(OPTION_INPUT_PATH);
             options.addOption(OPTION_OUTPUT_PATH);
             options.addOption(OPTION_HTABLE_NAME);
+            options.addOption(OPTION_SEGMENT_ID);
+            options.addOption(OPTION_CUBING_JOB_ID);
             parseOptions(options, args);
 
             Path partitionFilePath = new Path(getOptionValue(OPTION_PARTITION_FILE_PATH));
@@ -73,6 +107,12 @@ public class CubeHFileJob extends AbstractHadoopJob {
             CubeManager cubeMgr = CubeManager.getInstance(KylinConfig.getInstanceFromEnv());
 
             CubeInstance cube = cubeMgr.getCube(cubeName);
+
+            if (checkSkip(getOptionValue(OPTION_CUBING_JOB_ID), cube, output)) {
+                logger.info("Skip job " + getOptionValue(OPTION_JOB_NAME) + ", HFiles of " + skippedBytesWritten + " bytes are written by in-mem cubing");
+                return 0;
+            }
+
             job = Job.getInstance(getConf(), getOptionValue(OPTION_JOB_NAME));
 
             setJobClasspath(job, cube.getConfig());
@@ -88,6 +128,7 @@ public class CubeHFileJob extends AbstractHadoopJob {
 
             // set job configuration
             job.getConfiguration().set(BatchConstants.CFG_CUBE_NAME, cubeName);
+            job.getConfiguration().set(BatchConstants.CFG_CUBE_SEGMENT_ID, getOptionValue(OPTION_SEGMENT_ID));
             // add metadata to distributed cache
             attachCubeMetadata(cube, job.getConfiguration());
 
@@ -98,6 +139,11 @@ public class CubeHFileJob extends AbstractHadoopJob {
             HFileOutputFormat.configureIncrementalLoad(job, htable);
             reconfigurePartitions(hbaseConf, partitionFilePath);
 
+            // configureIncrementalLoad() has set the sort reducer, replace it if the table has the skip index family
+            if (htable.getTableDescriptor().hasFamily(BlockSkipIndex.FAMILY)) {
+                job.setReducerClass(CubeHFileReducer.class);
+            }
+
             // set block replication to 3 for hfiles
             hbaseConf.set(DFSConfigKeys.DFS_REPLICATION_KEY, "3");
 
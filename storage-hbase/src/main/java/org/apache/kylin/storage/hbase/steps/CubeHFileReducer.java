@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.KeyValueSortReducer;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+
+/**
+ * Writes the {@link org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex} cells along with the sorted cube cells.
+ */
+public class CubeHFileReducer extends KeyValueSortReducer {
+
+    private BlockSkipIndexBuilder skipIndexBuilder;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        String cubeName = context.getConfiguration().get(BatchConstants.CFG_CUBE_NAME);
+        String segmentID = context.getConfiguration().get(BatchConstants.CFG_CUBE_SEGMENT_ID);
+
+        KylinConfig config = AbstractHadoopJob.loadKylinPropsAndMetadata();
+        CubeSegment segment = CubeManager.getInstance(config).getCube(cubeName).getSegmentById(segmentID);
+        skipIndexBuilder = new BlockSkipIndexBuilder(segment, config.getStorageSkipIndexRowsPerBlock());
+    }
+
+    @Override
+    protected void reduce(ImmutableBytesWritable row, Iterable<KeyValue> kvs, Context context) throws IOException, InterruptedException {
+        KeyValue indexCell = skipIndexBuilder.add(row.get(), row.getOffset(), row.getLength());
+        if (indexCell != null) {
+            context.write(new ImmutableBytesWritable(indexCell.getRow()), indexCell);
+        }
+        super.reduce(row, kvs, context);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        KeyValue indexCell = skipIndexBuilder.finish();
+        if (indexCell != null) {
+            context.write(new ImmutableBytesWritable(indexCell.getRow()), indexCell);
+        }
+    }
+}
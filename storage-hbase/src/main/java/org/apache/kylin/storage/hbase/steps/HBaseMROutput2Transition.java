@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.engine.mr.IMROutput2;
+import org.apache.kylin.engine.mr.IMROutput2.IMRInMemCubingOutputFormat;
 import org.apache.kylin.engine.mr.steps.MergeCuboidJob;
 import org.apache.kylin.job.execution.DefaultChainedExecutable;
 import org.slf4j.Logger;
@@ -62,6 +63,11 @@ public class HBaseMROutput2Transition implements IMROutput2 {
             public void addStepPhase4_Cleanup(DefaultChainedExecutable jobFlow) {
                 // nothing to do
             }
+
+            @Override
+            public IMRInMemCubingOutputFormat getInMemCubingOutputFormat() {
+                return seg.getConfig().isInMemCubingDirectHFileEnabled() ? new InMemCuboidHFileOutputFormat(seg, steps) : null;
+            }
         };
     }
 
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.engine.mr.ByteArrayWritable;
+import org.apache.kylin.engine.mr.IMROutput2.IMRInMemCubingOutputFormat;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.storage.hbase.HBaseConnection;
+import org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets in-mem cubing reducers write HFiles of the segment HTable directly, one reducer per region,
+ * so that the HFiles are ready for bulk load without a separate conversion job.
+ */
+public class InMemCuboidHFileOutputFormat implements IMRInMemCubingOutputFormat {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemCuboidHFileOutputFormat.class);
+
+    private final CubeSegment seg;
+    private final HBaseMRSteps steps;
+
+    public InMemCuboidHFileOutputFormat(CubeSegment seg, HBaseMRSteps steps) {
+        this.seg = seg;
+        this.steps = steps;
+    }
+
+    @Override
+    public void configureJob(Job job, String cuboidRootPath, String jobFlowId) throws IOException {
+        Configuration conf = job.getConfiguration();
+        // For separate HBase cluster, the HFile path is qualified in HBase cluster, same as CubeHFileJob
+        HBaseConnection.addHBaseClusterNNHAConfiguration(conf);
+        conf.set(BatchConstants.CFG_OUTPUT_PATH, cuboidRootPath);
+
+        Configuration hbaseConf = HBaseConfiguration.create(conf);
+        HTable htable = new HTable(hbaseConf, seg.getStorageLocationIdentifier());
+        try {
+            // sets output format, family settings, and a reducer per region
+            HFileOutputFormat.configureIncrementalLoad(job, htable);
+            conf.setBoolean(InMemCuboidHFileReducer.CFG_WRITE_SKIP_INDEX, htable.getTableDescriptor().hasFamily(BlockSkipIndex.FAMILY));
+            configurePartitions(job, htable.getStartKeys(), new Path(steps.getRealizationRootPath(jobFlowId), "inmem_hfile_partitions"));
+        } finally {
+            htable.close();
+        }
+
+        job.setReducerClass(InMemCuboidHFileReducer.class);
+        // cuboid files are written by reducers on their own, a speculative attempt would overwrite them
+        job.setReduceSpeculativeExecution(false);
+
+        Path hfilePath = new Path(steps.getHFilePath(jobFlowId));
+        FileOutputFormat.setOutputPath(job, hfilePath);
+        HadoopUtil.deletePath(conf, hfilePath);
+    }
+
+    // map output keys are ByteArrayWritable rather than ImmutableBytesWritable, so the region splits are written again
+    private void configurePartitions(Job job, byte[][] startKeys, Path partitionFile) throws IOException {
+        Configuration conf = job.getConfiguration();
+        HadoopUtil.deletePath(conf, partitionFile);
+        SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(partitionFile), SequenceFile.Writer.keyClass(ByteArrayWritable.class), SequenceFile.Writer.valueClass(NullWritable.class));
+        try {
+            // the first region starts with an empty key
+            for (int i = 1; i < startKeys.length; i++) {
+                writer.append(new ByteArrayWritable(startKeys[i]), NullWritable.get());
+            }
+        } finally {
+            writer.close();
+        }
+        TotalOrderPartitioner.setPartitionFile(conf, partitionFile);
+        logger.info("Write " + (startKeys.length - 1) + " region splits to " + partitionFile + " for " + job.getNumReduceTasks() + " reducers");
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.HBaseColumnDesc;
+import org.apache.kylin.cube.model.HBaseColumnFamilyDesc;
+import org.apache.kylin.engine.mr.ByteArrayWritable;
+import org.apache.kylin.engine.mr.KylinReducer;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.measure.MeasureAggregators;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Aggregates the output of in-mem cubing like InMemCuboidReducer, and writes the rows as HFile cells as well as
+ * to the cuboid file. Reducers are partitioned by region, so the HFiles need no further conversion before bulk load.
+ */
+public class InMemCuboidHFileReducer extends KylinReducer<ByteArrayWritable, ByteArrayWritable, ImmutableBytesWritable, KeyValue> {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemCuboidHFileReducer.class);
+
+    public static final String CFG_WRITE_SKIP_INDEX = "kylin.hfile.write.skip.index";
+
+    private BufferedMeasureCodec codec;
+    private MeasureAggregators aggs;
+    private List<KeyValueCreator> keyValueCreators;
+    private BlockSkipIndexBuilder skipIndexBuilder;
+
+    private Object[] input;
+    private Object[] result;
+
+    private int vcounter;
+
+    private Text outputKey;
+    private Text outputValue;
+    private ImmutableBytesWritable rowKey;
+    private List<KeyValue> rowCells;
+    private SequenceFile.Writer cuboidWriter;
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        super.bindCurrentConfiguration(context.getConfiguration());
+        Configuration conf = context.getConfiguration();
+        KylinConfig config = AbstractHadoopJob.loadKylinPropsAndMetadata();
+
+        String cubeName = conf.get(BatchConstants.CFG_CUBE_NAME).toUpperCase();
+        CubeInstance cube = CubeManager.getInstance(config).getCube(cubeName);
+        CubeDesc cubeDesc = cube.getDescriptor();
+
+        List<MeasureDesc> measuresDescs = cubeDesc.getMeasures();
+        codec = new BufferedMeasureCodec(measuresDescs);
+        aggs = new MeasureAggregators(measuresDescs);
+        input = new Object[measuresDescs.size()];
+        result = new Object[measuresDescs.size()];
+
+        keyValueCreators = Lists.newArrayList();
+        for (HBaseColumnFamilyDesc cfDesc : cubeDesc.getHbaseMapping().getColumnFamily()) {
+            for (HBaseColumnDesc colDesc : cfDesc.getColumns()) {
+                keyValueCreators.add(new KeyValueCreator(cubeDesc, colDesc));
+            }
+        }
+        if (conf.getBoolean(CFG_WRITE_SKIP_INDEX, false)) {
+            String segmentID = conf.get(BatchConstants.CFG_CUBE_SEGMENT_ID);
+            skipIndexBuilder = new BlockSkipIndexBuilder(cube.getSegmentById(segmentID), config.getStorageSkipIndexRowsPerBlock());
+        }
+
+        outputKey = new Text();
+        outputValue = new Text();
+        rowKey = new ImmutableBytesWritable();
+        rowCells = Lists.newArrayList();
+
+        // same name as the part file of a SequenceFileOutputFormat, so the cuboid directory looks the same to merge
+        Path cuboidFile = new Path(conf.get(BatchConstants.CFG_OUTPUT_PATH), String.format("part-r-%05d", context.getTaskAttemptID().getTaskID().getId()));
+        cuboidWriter = SequenceFile.createWriter(conf, SequenceFile.Writer.file(cuboidFile), SequenceFile.Writer.keyClass(Text.class), SequenceFile.Writer.valueClass(Text.class));
+        logger.info("Writing cuboid file " + cuboidFile);
+    }
+
+    @Override
+    public void doReduce(ByteArrayWritable key, Iterable<ByteArrayWritable> values, Context context) throws IOException, InterruptedException {
+
+        aggs.reset();
+
+        for (ByteArrayWritable value : values) {
+            if (vcounter++ % BatchConstants.NORMAL_RECORD_LOG_THRESHOLD == 0) {
+                logger.info("Handling value with ordinal (This is not KV number!): " + vcounter);
+            }
+            codec.decode(value.asBuffer(), input);
+            aggs.aggregate(input);
+        }
+        aggs.collectStates(result);
+
+        // cuboid file
+        outputKey.set(key.array(), key.offset(), key.length());
+        ByteBuffer valueBuf = codec.encode(result);
+        outputValue.set(valueBuf.array(), 0, valueBuf.position());
+        cuboidWriter.append(outputKey, outputValue);
+
+        // HFile cells
+        if (skipIndexBuilder != null) {
+            writeCell(skipIndexBuilder.add(key.array(), key.offset(), key.length()), context);
+        }
+
+        rowKey.set(outputKey.getBytes(), 0, outputKey.getLength());
+        rowCells.clear();
+        if (keyValueCreators.size() == 1 && keyValueCreators.get(0).isFullCopy) {
+            rowCells.add(keyValueCreators.get(0).create(outputKey, outputValue.getBytes(), 0, outputValue.getLength()));
+        } else {
+            for (KeyValueCreator creator : keyValueCreators) {
+                rowCells.add(creator.create(outputKey, result));
+            }
+            // cells of a row must be in family and qualifier order in HFile
+            Collections.sort(rowCells, KeyValue.COMPARATOR);
+        }
+        for (KeyValue cell : rowCells) {
+            context.write(rowKey, cell);
+        }
+    }
+
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        if (skipIndexBuilder != null) {
+            writeCell(skipIndexBuilder.finish(), context);
+        }
+        cuboidWriter.close();
+    }
+
+    private void writeCell(KeyValue cell, Context context) throws IOException, InterruptedException {
+        if (cell != null) {
+            context.write(new ImmutableBytesWritable(cell.getRow()), cell);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ShardingHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Plans how many shards each cuboid spreads over and which region its first shard lands on, given the
+ * cuboid sizes estimated from sampled statistics. One shard is one region.
+ *
+ * By default the base shard is hashed from cuboid id, so several big cuboids may pile on the same regions.
+ * When balanced, cuboids are placed from the biggest on the consecutive regions with the least load so far,
+ * which keeps the biggest region, the one dominating query latency, close to the average.
+ */
+public class RegionShardPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegionShardPlanner.class);
+
+    public static class Plan {
+        public final Map<Long, Short> cuboidShards = Maps.newHashMap();
+        public final Map<Long, Short> cuboidBaseShards = Maps.newHashMap();
+        public final double[] regionSizes;
+        // array index: region ID, Map: key: cuboidID, value cuboid size in the region
+        public final List<HashMap<Long, Double>> innerRegionSplits = Lists.newArrayList();
+
+        Plan(int nRegion) {
+            regionSizes = new double[nRegion];
+            for (int i = 0; i < nRegion; i++) {
+                innerRegionSplits.add(new HashMap<Long, Double>());
+            }
+        }
+
+        /** the biggest region size over the average, 1.0 means perfectly even */
+        public double getSkew() {
+            double total = 0;
+            double max = 0;
+            for (double size : regionSizes) {
+                total += size;
+                max = Math.max(max, size);
+            }
+            return total == 0 ? 1.0 : max * regionSizes.length / total;
+        }
+    }
+
+    public static Plan plan(final Map<Long, Double> cuboidSizeMap, int nRegion, int mbPerRegion, boolean balanced) {
+        List<Long> allCuboids = Lists.newArrayList(cuboidSizeMap.keySet());
+        if (balanced) {
+            // biggest first, the small ones fill up the gaps afterwards
+            Collections.sort(allCuboids, new Comparator<Long>() {
+                @Override
+                public int compare(Long c1, Long c2) {
+                    int result = Double.compare(cuboidSizeMap.get(c2), cuboidSizeMap.get(c1));
+                    return result != 0 ? result : c1.compareTo(c2);
+                }
+            });
+        } else {
+            Collections.sort(allCuboids);
+        }
+
+        Plan plan = new Plan(nRegion);
+        for (long cuboidId : allCuboids) {
+            double estimatedSize = cuboidSizeMap.get(cuboidId);
+            int shardNum = getShardNum(cuboidId, estimatedSize, nRegion, mbPerRegion);
+
+            short hashedShard = ShardingHash.getShard(cuboidId, nRegion);
+            short startShard = balanced ? leastLoadedStart(plan.regionSizes, shardNum, hashedShard) : hashedShard;
+
+            plan.cuboidShards.put(cuboidId, (short) shardNum);
+            plan.cuboidBaseShards.put(cuboidId, startShard);
+            for (int i = startShard; i < startShard + shardNum; ++i) {
+                int j = i % nRegion;
+                plan.regionSizes[j] += estimatedSize / shardNum;
+                plan.innerRegionSplits.get(j).put(cuboidId, estimatedSize / shardNum);
+            }
+        }
+        return plan;
+    }
+
+    private static int getShardNum(long cuboidId, double estimatedSize, int nRegion, int mbPerRegion) {
+        double magic = 23;
+        int shardNum = (int) (estimatedSize * magic / mbPerRegion + 1);
+        if (shardNum < 1) {
+            shardNum = 1;
+        }
+
+        if (shardNum > nRegion) {
+            logger.info(String.format("Cuboid %d 's estimated size %.2f MB will generate %d regions, reduce to %d", cuboidId, estimatedSize, shardNum, nRegion));
+            shardNum = nRegion;
+        } else {
+            logger.info(String.format("Cuboid %d 's estimated size %.2f MB will generate %d regions", cuboidId, estimatedSize, shardNum));
+        }
+        return shardNum;
+    }
+
+    // the start of the consecutive (wrapping) regions with the least total size, prefer the hashed one on tie
+    static short leastLoadedStart(double[] regionSizes, int shardNum, short hashedShard) {
+        int nRegion = regionSizes.length;
+        if (shardNum >= nRegion) {
+            return hashedShard;
+        }
+
+        double windowSize = 0;
+        for (int i = 0; i < shardNum; i++) {
+            windowSize += regionSizes[i];
+        }
+
+        double[] windowSizes = new double[nRegion];
+        for (int s = 0; s < nRegion; s++) {
+            windowSizes[s] = windowSize;
+            windowSize += regionSizes[(s + shardNum) % nRegion] - regionSizes[s];
+        }
+
+        int best = hashedShard;
+        for (int s = 0; s < nRegion; s++) {
+            if (windowSizes[s] < windowSizes[best]) {
+                best = s;
+            }
+        }
+        return (short) best;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.CubeVisitContinuation;
+import org.junit.Test;
+
+public class ExpectedSizeIteratorTest {
+
+    @Test
+    public void testPartialBlocks() throws Exception {
+        final ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 10000);
+        // each shard appends its next block only when asked for, as a region visit is resubmitted
+        itr.appendPartial(ByteBuffer.wrap(new byte[] { 1 }), new Runnable() {
+            @Override
+            public void run() {
+                itr.append(ByteBuffer.wrap(new byte[] { 2 }));
+            }
+        });
+        itr.appendPartial(ByteBuffer.wrap(new byte[] { 3 }), new Runnable() {
+            @Override
+            public void run() {
+                itr.appendPartial(ByteBuffer.wrap(new byte[] { 4 }), new Runnable() {
+                    @Override
+                    public void run() {
+                        itr.append(ByteBuffer.wrap(new byte[] { 5 }));
+                    }
+                });
+            }
+        });
+
+        List<Byte> blocks = new ArrayList<Byte>();
+        while (itr.hasNext()) {
+            blocks.add(itr.next().get(0));
+        }
+        assertEquals(5, blocks.size());
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testNextBlockRequestedOnTake() throws Exception {
+        final ExpectedSizeIterator itr = new ExpectedSizeIterator(1, 10000);
+        final AtomicInteger requested = new AtomicInteger();
+        Runnable requestNext = new Runnable() {
+            @Override
+            public void run() {
+                requested.incrementAndGet();
+            }
+        };
+
+        // the producer returns at once, the next block waits for the consumer
+        itr.appendPartial(ByteBuffer.wrap(new byte[] { 1 }), requestNext);
+        assertEquals(0, requested.get());
+
+        assertTrue(itr.hasNext());
+        assertEquals(1, requested.get());
+        itr.next();
+
+        itr.cancel();
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testEmptyLastBlock() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(1, 10000);
+        itr.append(ByteBuffer.allocate(0));
+        assertTrue(itr.hasNext());
+        assertEquals(0, itr.next().remaining());
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testCancel() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(3, 10000);
+        final AtomicInteger cancelCalls = new AtomicInteger();
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                cancelCalls.incrementAndGet();
+            }
+        };
+        Runnable finished = new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("removed listener should not run");
+            }
+        };
+        itr.addCancelListener(listener);
+        itr.addCancelListener(finished);
+        itr.removeCancelListener(finished);
+
+        itr.append(ByteBuffer.wrap(new byte[] { 1 }));
+        assertTrue(itr.hasNext());
+        itr.next();
+
+        // consumer has got enough, the other 2 shards are not waited for
+        itr.cancel();
+        itr.cancel();
+        assertTrue(itr.isCancelled());
+        assertEquals(1, cancelCalls.get());
+        assertFalse(itr.hasNext());
+
+        itr.append(ByteBuffer.wrap(new byte[] { 2 }));
+        assertFalse(itr.hasNext());
+
+        // a visit starting after cancellation is told at once
+        itr.addCancelListener(listener);
+        assertEquals(2, cancelCalls.get());
+    }
+
+    @Test
+    public void testCancelOnCoprocException() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 10000);
+        final AtomicInteger cancelCalls = new AtomicInteger();
+        itr.addCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                cancelCalls.incrementAndGet();
+            }
+        });
+        itr.append(ByteBuffer.wrap(new byte[] { 1 }));
+        assertTrue(itr.hasNext());
+        itr.next();
+        itr.notifyCoprocException(new IllegalStateException("region failed"));
+        try {
+            itr.hasNext();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, cancelCalls.get());
+    }
+
+    @Test
+    public void testContinuationSerDe() {
+        CubeVisitContinuation c = new CubeVisitContinuation(3, Bytes.toBytes("row-key"), 1000, 123456789L);
+        CubeVisitContinuation c2 = CubeVisitContinuation.fromBytes(c.toBytes());
+        assertEquals(3, c2.rawScanIndex);
+        assertArrayEquals(Bytes.toBytes("row-key"), c2.lastRowKey);
+        assertEquals(1000, c2.returnedRowCount);
+        assertEquals(123456789L, c2.scannedRowCount);
+        assertArrayEquals(Bytes.toBytes("row-key\0"), c2.getResumeStartKey());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class RegionVisitSchedulerTest {
+
+    @Test
+    public void testParallelismPerQuery() throws InterruptedException {
+        RegionVisitScheduler scheduler = new RegionVisitScheduler(8, 2, 4);
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            scheduler.submit("q1", new Runnable() {
+                @Override
+                public void run() {
+                    int n = concurrent.incrementAndGet();
+                    synchronized (maxConcurrent) {
+                        maxConcurrent.set(Math.max(maxConcurrent.get(), n));
+                    }
+                    sleep(5);
+                    concurrent.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxConcurrent.get());
+        assertEquals(20, scheduler.getDispatchedCount());
+        waitIdle(scheduler);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testInteractiveQueryFirst() throws InterruptedException {
+        RegionVisitScheduler scheduler = new RegionVisitScheduler(1, 4, 3);
+        final List<String> order = Collections.synchronizedList(Lists.<String> newArrayList());
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(12);
+
+        for (int i = 0; i < 10; i++) {
+            final boolean first = i == 0;
+            scheduler.submit("heavy", new Runnable() {
+                @Override
+                public void run() {
+                    if (first) {
+                        await(blocker);
+                    }
+                    order.add("heavy");
+                    done.countDown();
+                }
+            });
+        }
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit("light", new Runnable() {
+                @Override
+                public void run() {
+                    order.add("light");
+                    done.countDown();
+                }
+            });
+        }
+        assertEquals(11, scheduler.getPendingCount());
+        blocker.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // the heavy query is past its interactive visits, the light one goes ahead of its queue
+        assertEquals(Lists.newArrayList("heavy", "light", "light"), order.subList(0, 3));
+        assertTrue(scheduler.getMaxQueueWaitMillis() >= 0);
+    }
+
+    @Test
+    public void testRoundRobin() throws InterruptedException {
+        RegionVisitScheduler scheduler = new RegionVisitScheduler(1, 4, 0);
+        final List<String> order = Collections.synchronizedList(Lists.<String> newArrayList());
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(7);
+
+        scheduler.submit("blocker", new Runnable() {
+            @Override
+            public void run() {
+                await(blocker);
+                done.countDown();
+            }
+        });
+        for (final String query : new String[] { "a", "a", "a", "b", "b", "b" }) {
+            scheduler.submit(query, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(query);
+                    done.countDown();
+                }
+            });
+        }
+        blocker.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Lists.newArrayList("a", "b", "a", "b", "a", "b"), order);
+    }
+
+    @Test
+    public void testFailedVisitReleasesThread() throws InterruptedException {
+        RegionVisitScheduler scheduler = new RegionVisitScheduler(1, 1, 4);
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit("q", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected");
+            }
+        });
+        scheduler.submit("q", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    private static void waitIdle(RegionVisitScheduler scheduler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (scheduler.getRunningCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, scheduler.getRunningCount());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
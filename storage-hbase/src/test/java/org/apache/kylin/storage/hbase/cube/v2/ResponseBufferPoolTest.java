@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.ResultCodec;
+import org.junit.Test;
+
+public class ResponseBufferPoolTest {
+
+    @Test
+    public void testBorrowAndRelease() {
+        ResponseBufferPool pool = new ResponseBufferPool(1024 * 1024);
+        byte[] a = pool.borrow(100);
+        assertEquals(64 * 1024, a.length);
+        byte[] b = pool.borrow(100 * 1024);
+        assertEquals(128 * 1024, b.length);
+
+        pool.release(a);
+        assertEquals(a.length, pool.getPooledBytes());
+        assertSame(a, pool.borrow(1000));
+        assertEquals(0, pool.getPooledBytes());
+
+        // twice released, or not from the pool
+        pool.release(b);
+        pool.release(b);
+        pool.release(new byte[64 * 1024]);
+        assertEquals(b.length, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testMaxPooledBytes() {
+        ResponseBufferPool pool = new ResponseBufferPool(100 * 1024);
+        byte[] a = pool.borrow(1);
+        byte[] b = pool.borrow(1);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(64 * 1024, pool.getPooledBytes());
+        assertSame(a, pool.borrow(1));
+        assertNotSame(b, pool.borrow(1));
+    }
+
+    @Test
+    public void testPooledDecompress() throws IOException {
+        byte[] data = new byte[300000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 100 < 90 ? 0 : i % 7);
+        }
+
+        ResponseBufferPool pool = new ResponseBufferPool(16 * 1024 * 1024);
+        for (ResultCodec codec : ResultCodec.values()) {
+            ByteBuffer rows = codec.decompress(codec.compress(data), pool);
+            assertEquals(codec.getId(), 0, rows.position());
+            assertArrayEquals(codec.getId(), data, Arrays.copyOf(rows.array(), rows.limit()));
+            pool.release(rows.array());
+        }
+        // deflate grows its buffer while inflating, the outgrown buffers are given back too
+        assertTrue(pool.getPooledBytes() > 0);
+
+        ByteBuffer empty = ResultCodec.LZ4.decompress(ResultCodec.LZ4.compress(new byte[0]), pool);
+        assertEquals(0, empty.remaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedDeflate() throws IOException {
+        byte[] compressed = ResultCodec.DEFLATE.compress(new byte[100000]);
+        ResultCodec.DEFLATE.decompress(Arrays.copyOf(compressed, compressed.length / 2), new ResponseBufferPool(0));
+    }
+}
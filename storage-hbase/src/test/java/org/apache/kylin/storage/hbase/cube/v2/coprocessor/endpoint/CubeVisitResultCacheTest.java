@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CubeVisitResultCacheTest {
+
+    private static final List<String> LEGACY = Collections.emptyList();
+
+    @Test
+    public void testCodecAccepted() {
+        CubeVisitResultCache cache = new CubeVisitResultCache(1, 1);
+        cache.put("region-a", "d1", new CubeVisitResultCache.Entry(new byte[100], ResultCodec.LZ4, 1000));
+        cache.put("region-a", "d2", new CubeVisitResultCache.Entry(new byte[100], ResultCodec.NONE, 1000));
+
+        assertNotNull(cache.get("region-a", "d1", Lists.newArrayList("lz4", "deflate"), true));
+        assertNull(cache.get("region-a", "d1", Lists.newArrayList("deflate"), true));
+        assertNull(cache.get("region-a", "d1", LEGACY, true));
+        assertNull(cache.get("region-b", "d1", Lists.newArrayList("lz4"), true));
+
+        // uncompressed rows are fine for any new client, and for an old client not asking for compression
+        assertNotNull(cache.get("region-a", "d2", Lists.newArrayList("deflate"), true));
+        assertNotNull(cache.get("region-a", "d2", LEGACY, false));
+        assertNull(cache.get("region-a", "d2", LEGACY, true));
+    }
+
+    @Test
+    public void testSizeBound() {
+        CubeVisitResultCache cache = new CubeVisitResultCache(1, 1);
+        cache.put("region-a", "big", new CubeVisitResultCache.Entry(new byte[2 * 1024 * 1024], ResultCodec.NONE, 1));
+        assertEquals(0, cache.size());
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("region-a", "d" + i, new CubeVisitResultCache.Entry(new byte[100 * 1024], ResultCodec.NONE, 1));
+        }
+        // 1 MB holds no more than 10 of them
+        assertTrue(cache.size() <= 10);
+        assertNotNull(cache.get("region-a", "d19", LEGACY, false));
+    }
+
+    @Test
+    public void testEvictRegion() {
+        CubeVisitResultCache cache = new CubeVisitResultCache(1, 1);
+        cache.put("region-a", "d1", new CubeVisitResultCache.Entry(new byte[10], ResultCodec.NONE, 1));
+        cache.put("region-a", "d2", new CubeVisitResultCache.Entry(new byte[10], ResultCodec.NONE, 1));
+        cache.put("region-b", "d1", new CubeVisitResultCache.Entry(new byte[10], ResultCodec.NONE, 1));
+
+        cache.evictRegion("region-a");
+        assertEquals(1, cache.size());
+        assertNull(cache.get("region-a", "d1", LEGACY, false));
+        assertNotNull(cache.get("region-b", "d1", LEGACY, false));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ResultCodecTest {
+
+    private static byte[] compressibleRows(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i % 100 < 90 ? 0 : i % 7);
+        }
+        return data;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = compressibleRows(100000);
+        for (ResultCodec codec : ResultCodec.values()) {
+            byte[] compressed = codec.compress(data);
+            assertArrayEquals(codec.getId(), data, codec.decompress(compressed));
+            if (codec != ResultCodec.NONE) {
+                assertTrue(codec.getId(), compressed.length < data.length / 4);
+            }
+            assertArrayEquals(new byte[0], codec.decompress(codec.compress(new byte[0])));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedLz4() throws IOException {
+        ResultCodec.LZ4.decompress(new byte[] { 0, 1 });
+    }
+
+    @Test
+    public void testSelect() {
+        List<String> empty = Collections.emptyList();
+        ResultCodec.Stats stats = new ResultCodec.Stats();
+        assertEquals(ResultCodec.DEFLATE, ResultCodec.select(empty, true, 10, 4096, 0.9, stats));
+        assertEquals(ResultCodec.NONE, ResultCodec.select(empty, false, 100000, 4096, 0.9, stats));
+
+        assertEquals(ResultCodec.NONE, ResultCodec.select(Lists.newArrayList("lz4", "deflate"), true, 100, 4096, 0.9, stats));
+        assertEquals(ResultCodec.DEFLATE, ResultCodec.select(Lists.newArrayList("snappy", "deflate"), true, 100000, 4096, 1.0, stats));
+        assertEquals(ResultCodec.NONE, ResultCodec.select(Lists.newArrayList("none", "deflate"), true, 100000, 4096, 1.0, stats));
+    }
+
+    @Test
+    public void testSkipIneffectiveCodec() throws IOException {
+        byte[] random = new byte[100000];
+        new Random(0).nextBytes(random);
+        ResultCodec.Stats stats = new ResultCodec.Stats();
+        for (int i = 0; i < 10; i++) {
+            stats.record(ResultCodec.LZ4, random.length, ResultCodec.LZ4.compress(random).length);
+        }
+        assertTrue(stats.getRecentRatio(ResultCodec.LZ4) > 0.9);
+
+        List<String> accepted = Lists.newArrayList("lz4", "deflate");
+        int lz4 = 0;
+        for (int i = 0; i < 32; i++) {
+            if (ResultCodec.select(accepted, true, random.length, 4096, 0.9, stats) == ResultCodec.LZ4) {
+                lz4++;
+            }
+        }
+        assertEquals(2, lz4); // probed once per 16 responses, otherwise falls back to the next codec
+
+        // the stats of another region are not affected
+        assertEquals(ResultCodec.LZ4, ResultCodec.select(accepted, true, random.length, 4096, 0.9, new ResultCodec.Stats()));
+
+        // recovers once the data compresses again
+        byte[] data = compressibleRows(100000);
+        for (int i = 0; i < 20; i++) {
+            stats.record(ResultCodec.LZ4, data.length, ResultCodec.LZ4.compress(data).length);
+        }
+        assertEquals(ResultCodec.LZ4, ResultCodec.select(accepted, true, data.length, 4096, 0.9, stats));
+    }
+
+    @Test
+    public void testOfResponse() {
+        assertEquals(ResultCodec.DEFLATE, ResultCodec.ofResponse(false, "", true));
+        assertEquals(ResultCodec.NONE, ResultCodec.ofResponse(false, "", false));
+        assertEquals(ResultCodec.LZ4, ResultCodec.ofResponse(true, "lz4", true));
+    }
+}
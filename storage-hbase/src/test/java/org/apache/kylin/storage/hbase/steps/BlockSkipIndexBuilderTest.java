@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.storage.hbase.cube.v2.BlockSkipIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockSkipIndexBuilderTest extends LocalFileMetadataTestCase {
+
+    private CubeSegment seg;
+    private long baseCuboidId;
+
+    @Before
+    public void setup() throws Exception {
+        this.createTestMetadata();
+        seg = CubeManager.getInstance(getTestConfig()).getCube("TEST_KYLIN_CUBE_WITHOUT_SLR_READY").getFirstSegment();
+        baseCuboidId = Cuboid.getBaseCuboidId(seg.getCubeDesc());
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testBlocks() {
+        BlockSkipIndexBuilder builder = new BlockSkipIndexBuilder(seg, 2);
+
+        assertNull(builder.add(rowkey(baseCuboidId, 1), 0, rowkey(baseCuboidId, 1).length));
+        assertNull(builder.add(rowkey(baseCuboidId, 3), 0, rowkey(baseCuboidId, 3).length));
+        KeyValue first = builder.add(rowkey(baseCuboidId, 5), 0, rowkey(baseCuboidId, 5).length);
+        KeyValue second = builder.finish();
+        assertNull(builder.finish());
+
+        assertArrayEquals(rowkey(baseCuboidId, 1), first.getRow());
+        assertArrayEquals(rowkey(baseCuboidId, 5), second.getRow());
+
+        ByteArray[] min = new ByteArray[8];
+        ByteArray[] max = new ByteArray[8];
+        assertEquals(8, BlockSkipIndex.decode(first.getValueArray(), first.getValueOffset(), first.getValueLength(), min, max));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(1, min[i].array()[min[i].offset()]);
+            assertEquals(3, max[i].array()[max[i].offset()]);
+        }
+
+        BlockSkipIndex.decode(second.getValueArray(), second.getValueOffset(), second.getValueLength(), min, max);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(min[i], max[i]);
+        }
+    }
+
+    private byte[] rowkey(long cuboidId, int fill) {
+        int preamble = seg.getRowKeyPreambleSize();
+        byte[] key = new byte[preamble + 22]; // body length of the base cuboid
+        Arrays.fill(key, preamble, key.length, (byte) fill);
+        Bytes.putLong(key, preamble - 8, cuboidId);
+        return key;
+    }
+}
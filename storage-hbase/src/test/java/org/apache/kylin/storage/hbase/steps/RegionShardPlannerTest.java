@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.kylin.common.util.ShardingHash;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class RegionShardPlannerTest {
+
+    @Test
+    public void testLeastLoadedStart() {
+        double[] sizes = new double[] { 5, 1, 0, 3, 4 };
+        assertEquals(2, RegionShardPlanner.leastLoadedStart(sizes, 1, (short) 0));
+        assertEquals(1, RegionShardPlanner.leastLoadedStart(sizes, 2, (short) 0));
+        // wrapping window of region 4 and 0 is the biggest
+        assertEquals(1, RegionShardPlanner.leastLoadedStart(sizes, 3, (short) 4));
+        // on tie the hashed shard is kept
+        assertEquals(3, RegionShardPlanner.leastLoadedStart(new double[4], 2, (short) 3));
+        assertEquals(2, RegionShardPlanner.leastLoadedStart(sizes, 5, (short) 2));
+    }
+
+    @Test
+    public void testBalancedPlan() {
+        int nRegion = 7;
+        int mbPerRegion = 1000;
+        Map<Long, Double> sizes = Maps.newHashMap();
+        double total = 0;
+        for (long cuboid = 1; cuboid <= 60; cuboid++) {
+            double size = cuboid % 10 == 0 ? 400 : 10 * (cuboid % 7 + 1);
+            sizes.put(cuboid, size);
+            total += size;
+        }
+
+        RegionShardPlanner.Plan hashed = RegionShardPlanner.plan(sizes, nRegion, mbPerRegion, false);
+        RegionShardPlanner.Plan balanced = RegionShardPlanner.plan(sizes, nRegion, mbPerRegion, true);
+
+        assertEquals(hashed.cuboidShards, balanced.cuboidShards);
+        for (Map.Entry<Long, Short> entry : hashed.cuboidBaseShards.entrySet()) {
+            assertEquals(ShardingHash.getShard(entry.getKey(), nRegion), (short) entry.getValue());
+        }
+
+        double balancedTotal = 0;
+        for (int i = 0; i < nRegion; i++) {
+            balancedTotal += balanced.regionSizes[i];
+            double inner = 0;
+            for (double size : balanced.innerRegionSplits.get(i).values()) {
+                inner += size;
+            }
+            assertEquals(balanced.regionSizes[i], inner, 0.001);
+        }
+        assertEquals(total, balancedTotal, 0.001);
+
+        assertTrue(balanced.getSkew() <= hashed.getSkew());
+        assertTrue(balanced.getSkew() < 1.2);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.AbstractApplication;
+import org.apache.kylin.common.util.OptionsHelper;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.cuboid.CuboidPruningAdvisor;
+import org.apache.kylin.cube.cuboid.CuboidStatsCache;
+import org.apache.kylin.cube.cuboid.CuboidUsage;
+import org.apache.kylin.cube.cuboid.CuboidUsageManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recommends cuboid pruning of a cube by the cuboid usage recorded by queries, see kylin.query.cuboid-usage-tracking-enabled.
+ *
+ * bin/kylin.sh org.apache.kylin.tool.CuboidPruningCLI -cube cube_name [-minHits 10] [-output whitelist.txt]
+ */
+public class CuboidPruningCLI extends AbstractApplication {
+
+    private static final Logger logger = LoggerFactory.getLogger(CuboidPruningCLI.class);
+
+    private static final Option OPTION_CUBE = OptionBuilder.withArgName("cube").hasArg().isRequired(true).withDescription("the cube to recommend for").create("cube");
+
+    private static final Option OPTION_MIN_HITS = OptionBuilder.withArgName("minHits").hasArg().isRequired(false).withDescription("cuboids and queries hit less often are considered unused, default 1").create("minHits");
+
+    private static final Option OPTION_OUTPUT = OptionBuilder.withArgName("output").hasArg().isRequired(false).withDescription("file to write the cuboid whitelist to, one cuboid ID per line").create("output");
+
+    private final Options options;
+
+    private List<String> report;
+
+    public CuboidPruningCLI() {
+        options = new Options();
+        options.addOption(OPTION_CUBE);
+        options.addOption(OPTION_MIN_HITS);
+        options.addOption(OPTION_OUTPUT);
+    }
+
+    public static void main(String[] args) {
+        CuboidPruningCLI cli = new CuboidPruningCLI();
+        cli.execute(args);
+    }
+
+    @Override
+    protected Options getOptions() {
+        return options;
+    }
+
+    @Override
+    protected void execute(OptionsHelper optionsHelper) throws Exception {
+        String cubeName = optionsHelper.getOptionValue(OPTION_CUBE);
+        String minHitsStr = optionsHelper.getOptionValue(OPTION_MIN_HITS);
+        long minHits = StringUtils.isEmpty(minHitsStr) ? 1 : Long.parseLong(minHitsStr);
+        String output = optionsHelper.getOptionValue(OPTION_OUTPUT);
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        CubeInstance cube = CubeManager.getInstance(config).getCube(cubeName);
+        if (cube == null) {
+            throw new RuntimeException("Could not find cube: " + cubeName);
+        }
+        CuboidUsage usage = CuboidUsageManager.getInstance(config).getCuboidUsage(cubeName);
+        if (usage == null || usage.isEmpty()) {
+            throw new RuntimeException("No cuboid usage recorded for cube: " + cubeName);
+        }
+
+        report = recommend(cube, usage, minHits);
+        for (String line : report) {
+            System.out.println(line);
+        }
+
+        if (output != null) {
+            Set<Long> whitelist = new CuboidPruningAdvisor(cube.getDescriptor(), usage, minHits).getCuboidWhitelist();
+            FileUtils.writeLines(new File(output), whitelist);
+            logger.info("Cuboid whitelist of " + whitelist.size() + " cuboids was written to " + output);
+        }
+    }
+
+    List<String> getReport() {
+        return report;
+    }
+
+    private List<String> recommend(CubeInstance cube, CuboidUsage usage, long minHits) throws IOException {
+        CuboidPruningAdvisor advisor = new CuboidPruningAdvisor(cube.getDescriptor(), usage, minHits);
+        List<String> result = new ArrayList<String>();
+
+        long queries = 0;
+        for (long count : usage.getQueriedCuboids().values()) {
+            queries += count;
+        }
+        result.add("Cube " + cube.getName() + ": " + queries + " queries since " + new Date(usage.getStartTime()));
+        if (cube.getDescriptor().getLastModified() > usage.getStartTime()) {
+            result.add("WARNING: the cube desc was modified after usage tracking started, cuboid IDs may have changed meaning");
+        }
+
+        Set<Long> whitelist = advisor.getCuboidWhitelist();
+        List<Long> unused = advisor.getUnusedCuboids();
+        result.add("Cuboids used at least " + minHits + " times: " + whitelist.size() + " (base cuboid included), unused: " + unused.size());
+
+        Map<Long, Long> rowEstimates = CuboidStatsCache.getInstance(KylinConfig.getInstanceFromEnv()).loadCuboidRowEstimates(cube);
+        if (rowEstimates != null) {
+            long totalRows = 0;
+            long unusedRows = 0;
+            for (Map.Entry<Long, Long> entry : rowEstimates.entrySet()) {
+                totalRows += entry.getValue();
+                if (!whitelist.contains(entry.getKey())) {
+                    unusedRows += entry.getValue();
+                }
+            }
+            result.add("Estimated rows of unused cuboids: " + unusedRows + " of " + totalRows);
+        }
+
+        List<Long> uncovered = advisor.getUncoveredQueries();
+        if (!uncovered.isEmpty()) {
+            result.add("Queried cuboids covered by no aggregation group, answered by the base cuboid: " + uncovered);
+        }
+        for (CuboidPruningAdvisor.Recommendation recommendation : advisor.getAggregationGroupRecommendations()) {
+            result.add(recommendation.toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.tool;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidUsageManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuboidPruningCLITest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        CuboidUsageManager.clearCache();
+    }
+
+    @After
+    public void after() throws Exception {
+        CuboidUsageManager.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRecommend() throws Exception {
+        String cubeName = "test_kylin_cube_with_slr_empty";
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        CubeDesc cubeDesc = CubeManager.getInstance(config).getCube(cubeName).getDescriptor();
+        long baseCuboid = Cuboid.getBaseCuboidId(cubeDesc);
+        long scanned = Cuboid.findById(cubeDesc, 256 | 128).getId();
+
+        CuboidUsageManager manager = CuboidUsageManager.getInstance(config);
+        manager.record(cubeName, 256 | 128, scanned, 100, 10);
+        manager.record(cubeName, baseCuboid, baseCuboid, 1000, 1000);
+        manager.flush();
+
+        File output = File.createTempFile("cuboid_whitelist", ".txt");
+        try {
+            CuboidPruningCLI cli = new CuboidPruningCLI();
+            cli.execute(new String[] { "-cube", cubeName, "-output", output.getAbsolutePath() });
+            Assert.assertTrue(cli.getReport().size() > 2);
+
+            List<String> lines = FileUtils.readLines(output);
+            Assert.assertEquals(2, lines.size());
+            Assert.assertTrue(lines.contains(String.valueOf(baseCuboid)));
+            Assert.assertTrue(lines.contains(String.valueOf(scanned)));
+        } finally {
+            output.delete();
+        }
+    }
+}